@@ -13,10 +13,14 @@ public class AppProps {
     private Security security = new Security();
     private Jwt jwt = new Jwt();
     private Optimizer optimizer = new Optimizer();
+    private Osrm osrm = new Osrm();
+    private Geocoding geocoding = new Geocoding();
 
     public Security getSecurity() { return security; }
     public Jwt getJwt() { return jwt; }
     public Optimizer getOptimizer() { return optimizer; }
+    public Osrm getOsrm() { return osrm; }
+    public Geocoding getGeocoding() { return geocoding; }
 
     public static class Security {
         private String issuer = "https://mediroute.local";
@@ -61,6 +65,42 @@ public class AppProps {
         private int relaxMaxPerDriver = 2;
         /** Max pickup distance (km) in normal pass. */
         private double maxPickupDistanceKm = 50.0;
+        /** Assignment engine: GREEDY (per-ride scan), ROUTES (insertion route building) or VRPTW (OR-Tools). */
+        private Engine engine = Engine.GREEDY;
+        /** Wall-clock budget for a single routing solve. */
+        private int solveTimeLimitSeconds = 30;
+        /** Average road speed (km/h) used for travel-time estimates. */
+        private double averageSpeedKmh = 25.0;
+        /** Dwell time (minutes) at each pickup and dropoff stop. */
+        private int serviceMinutes = 5;
+        /** Nearest compatible drivers per ride whose routes an incremental repair may insert it into. */
+        private int repairCandidateDrivers = 8;
+        /** GREEDY engine: solve the vehicle-type partitions of a run concurrently instead of one by one. */
+        private boolean parallelPartitions = false;
+        /** GREEDY engine: wall-clock budget for improving its routes by local search after the run commits; 0 skips it. */
+        private int improvementSeconds = 0;
+        /** How often a running improvement publishes its best plan so far. */
+        private int improvementPublishSeconds = 2;
+        /** GREEDY and ROUTES engines: recurring rides start on the driver they had on an earlier day. */
+        private boolean warmStart = false;
+        /** Days back a warm start looks for an earlier occurrence of a recurring ride. */
+        private int warmStartLookbackDays = 7;
+        /** Same-day dispatch: keep re-planning the next hours of rides on a fixed cadence. */
+        private boolean rollingHorizon = false;
+        /** Hours ahead of now a rolling-horizon tick plans. */
+        private int horizonHours = 3;
+        /** Rides picked up within this many minutes of a tick keep their driver from then on. */
+        private int horizonCommitMinutes = 45;
+        /** Unassigned rides whose pickup passed at most this many minutes before a tick are still planned. */
+        private int horizonGraceMinutes = 15;
+        /** Minutes between rolling-horizon ticks. */
+        private int horizonCadenceMinutes = 5;
+        /** Emergency insertions slower than this (ms) are logged as over budget. */
+        private int emergencyLatencyBudgetMs = 300;
+        /** Seconds an emergency insertion reuses the loaded fleet and its spatial index; 0 loads it every time. */
+        private int emergencyFleetCacheSeconds = 60;
+
+        public enum Engine { GREEDY, ROUTES, VRPTW }
 
         public boolean isRelaxForUnassigned() { return relaxForUnassigned; }
         public void setRelaxForUnassigned(boolean relaxForUnassigned) { this.relaxForUnassigned = relaxForUnassigned; }
@@ -68,5 +108,93 @@ public class AppProps {
         public void setRelaxMaxPerDriver(int relaxMaxPerDriver) { this.relaxMaxPerDriver = relaxMaxPerDriver; }
         public double getMaxPickupDistanceKm() { return maxPickupDistanceKm; }
         public void setMaxPickupDistanceKm(double v) { this.maxPickupDistanceKm = v; }
+        public Engine getEngine() { return engine; }
+        public void setEngine(Engine engine) { this.engine = engine; }
+        public int getSolveTimeLimitSeconds() { return solveTimeLimitSeconds; }
+        public void setSolveTimeLimitSeconds(int v) { this.solveTimeLimitSeconds = v; }
+        public double getAverageSpeedKmh() { return averageSpeedKmh; }
+        public void setAverageSpeedKmh(double v) { this.averageSpeedKmh = v; }
+        public int getServiceMinutes() { return serviceMinutes; }
+        public void setServiceMinutes(int v) { this.serviceMinutes = v; }
+        public int getRepairCandidateDrivers() { return repairCandidateDrivers; }
+        public void setRepairCandidateDrivers(int v) { this.repairCandidateDrivers = v; }
+        public boolean isParallelPartitions() { return parallelPartitions; }
+        public void setParallelPartitions(boolean v) { this.parallelPartitions = v; }
+        public int getImprovementSeconds() { return improvementSeconds; }
+        public void setImprovementSeconds(int v) { this.improvementSeconds = v; }
+        public int getImprovementPublishSeconds() { return improvementPublishSeconds; }
+        public void setImprovementPublishSeconds(int v) { this.improvementPublishSeconds = v; }
+        public boolean isWarmStart() { return warmStart; }
+        public void setWarmStart(boolean v) { this.warmStart = v; }
+        public int getWarmStartLookbackDays() { return warmStartLookbackDays; }
+        public void setWarmStartLookbackDays(int v) { this.warmStartLookbackDays = v; }
+        public boolean isRollingHorizon() { return rollingHorizon; }
+        public void setRollingHorizon(boolean v) { this.rollingHorizon = v; }
+        public int getHorizonHours() { return horizonHours; }
+        public void setHorizonHours(int v) { this.horizonHours = v; }
+        public int getHorizonCommitMinutes() { return horizonCommitMinutes; }
+        public void setHorizonCommitMinutes(int v) { this.horizonCommitMinutes = v; }
+        public int getHorizonGraceMinutes() { return horizonGraceMinutes; }
+        public void setHorizonGraceMinutes(int v) { this.horizonGraceMinutes = v; }
+        public int getHorizonCadenceMinutes() { return horizonCadenceMinutes; }
+        public void setHorizonCadenceMinutes(int v) { this.horizonCadenceMinutes = v; }
+        public int getEmergencyLatencyBudgetMs() { return emergencyLatencyBudgetMs; }
+        public void setEmergencyLatencyBudgetMs(int v) { this.emergencyLatencyBudgetMs = v; }
+        public int getEmergencyFleetCacheSeconds() { return emergencyFleetCacheSeconds; }
+        public void setEmergencyFleetCacheSeconds(int v) { this.emergencyFleetCacheSeconds = v; }
+    }
+
+    public static class Osrm {
+        /** Row tiles of the OSRM matrix cache kept in process, in front of the shared cache. */
+        private int matrixCacheLocalTiles = 50_000;
+        /** Most destinations cached per origin; cells beyond it are fetched again when needed. */
+        private int matrixCacheRowColumns = 4096;
+        /** How long matrix cells stay in the shared cache. */
+        private int matrixCacheTtlHours = 168;
+        /** Road graph file for the embedded routing fallback; empty disables it. */
+        private String fallbackGraph = "";
+        /** Hours of day (0-23) when estimated travel times are scaled by {@code peakTravelFactor}. */
+        private List<Integer> peakHours = List.of(7, 8, 16, 17);
+        /** Travel-time multiplier applied during peak hours; OSRM durations are free-flow. */
+        private double peakTravelFactor = 1.25;
+
+        public int getMatrixCacheLocalTiles() { return matrixCacheLocalTiles; }
+        public void setMatrixCacheLocalTiles(int v) { this.matrixCacheLocalTiles = v; }
+        public int getMatrixCacheRowColumns() { return matrixCacheRowColumns; }
+        public void setMatrixCacheRowColumns(int v) { this.matrixCacheRowColumns = v; }
+        public int getMatrixCacheTtlHours() { return matrixCacheTtlHours; }
+        public void setMatrixCacheTtlHours(int v) { this.matrixCacheTtlHours = v; }
+        public String getFallbackGraph() { return fallbackGraph; }
+        public void setFallbackGraph(String v) { this.fallbackGraph = v; }
+        public List<Integer> getPeakHours() { return peakHours; }
+        public void setPeakHours(List<Integer> v) { this.peakHours = v; }
+        public double getPeakTravelFactor() { return peakTravelFactor; }
+        public void setPeakTravelFactor(double v) { this.peakTravelFactor = v; }
+    }
+
+    public static class Geocoding {
+        /** Addresses kept in process, in front of the geocoded_addresses table. */
+        private int localEntries = 50_000;
+        /** How long an address Google could not resolve is not retried. */
+        private int negativeTtlMinutes = 60;
+        /** Where addresses are resolved: GOOGLE, LOCAL_FIRST (local index, then Google) or LOCAL_ONLY. */
+        private Provider provider = Provider.GOOGLE;
+        /** Address extract CSV for the local index (OpenAddresses or address,lat,lng); optional. */
+        private String addressIndex = "";
+        /** Minimum local match score (0-1) for an address to count as resolved. */
+        private double minMatchScore = 0.8;
+
+        public enum Provider { GOOGLE, LOCAL_FIRST, LOCAL_ONLY }
+
+        public int getLocalEntries() { return localEntries; }
+        public void setLocalEntries(int v) { this.localEntries = v; }
+        public int getNegativeTtlMinutes() { return negativeTtlMinutes; }
+        public void setNegativeTtlMinutes(int v) { this.negativeTtlMinutes = v; }
+        public Provider getProvider() { return provider; }
+        public void setProvider(Provider v) { this.provider = v; }
+        public String getAddressIndex() { return addressIndex; }
+        public void setAddressIndex(String v) { this.addressIndex = v; }
+        public double getMinMatchScore() { return minMatchScore; }
+        public void setMinMatchScore(double v) { this.minMatchScore = v; }
     }
-}
\ No newline at end of file
+}
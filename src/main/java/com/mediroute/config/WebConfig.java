@@ -1,5 +1,6 @@
 package com.mediroute.config;
 
+import com.mediroute.service.distance.OsrmMatrixCache;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.cache.CacheManager;
@@ -16,6 +17,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
 
+import java.time.Duration;
 import java.util.Map;
 
 // Option A: Add a configuration to serve a default favicon
@@ -37,9 +39,10 @@ public class WebConfig implements WebMvcConfigurer {
     }
 
     @Bean
-    public CacheManager cacheManager(org.springframework.beans.factory.ObjectProvider<RedisConnectionFactory> redisFactoryProvider) {
+    public CacheManager cacheManager(org.springframework.beans.factory.ObjectProvider<RedisConnectionFactory> redisFactoryProvider,
+                                     AppProps appProps) {
         var redisFactory = redisFactoryProvider.getIfAvailable();
-        var cacheNames = java.util.Set.of("geo:addr", "osrm:distance");
+        var cacheNames = java.util.Set.of("osrm:distance", OsrmMatrixCache.CACHE_NAME);
         if (redisFactory != null) {
             RedisCacheConfiguration defaults = RedisCacheConfiguration.defaultCacheConfig()
                     .serializeKeysWith(SerializationPair.fromSerializer(new StringRedisSerializer()))
@@ -47,6 +50,9 @@ public class WebConfig implements WebMvcConfigurer {
             return RedisCacheManager.builder(redisFactory)
                     .cacheDefaults(defaults)
                     .initialCacheNames(cacheNames)
+                    // Road matrices change rarely; keep them long so recurring addresses stay warm
+                    .withCacheConfiguration(OsrmMatrixCache.CACHE_NAME,
+                            defaults.entryTtl(Duration.ofHours(appProps.getOsrm().getMatrixCacheTtlHours())))
                     .build();
         }
         // Fallback in-memory cache if Redis isn't configured/running
@@ -11,7 +11,10 @@ import com.mediroute.repository.RideAuditRepository;
 import com.mediroute.service.assigment.AssignmentSummaryService;
 import com.mediroute.service.driver.DriverService;
 import com.mediroute.service.parser.ExcelParserService;
+import com.mediroute.service.parser.UploadJobService;
+import com.mediroute.service.ride.ImprovementStatusService;
 import com.mediroute.service.ride.OptimizationIntegrationService;
+import com.mediroute.service.ride.OptimizationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -37,7 +40,9 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
+import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
 
 @CrossOrigin(origins = {"http://localhost:3000", "https://app.mediroute.com"})
 @RestController
@@ -63,21 +68,28 @@ public class RidesAndOptimizationController {
     private final DriverService driverService;
     private final AssignmentSummaryService summaryService;
     private final OptimizationIntegrationService optimizationService;
+    private final OptimizationService incrementalOptimizationService;
+    private final UploadJobService uploadJobService;
+    private final ImprovementStatusService improvementStatusService;
 
-    @Operation(summary = "Upload Excel/CSV file", description = "Parse and import rides from Excel or CSV file")
+    @Operation(summary = "Upload Excel/CSV file", description = "Parse and import rides from Excel or CSV file; "
+            + "with async=true, import it as a background upload job instead")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "File processed successfully"),
+            @ApiResponse(responseCode = "202", description = "Upload job accepted (async=true)"),
             @ApiResponse(responseCode = "400", description = "Invalid file format"),
             @ApiResponse(responseCode = "500", description = "Processing error")
     })
     @PostMapping("/rides/upload")
     @PreAuthorize("hasAnyRole('PROVIDER','ADMIN','DISPATCHER')")
-    public ResponseEntity<ParseResult> uploadExcel(
+    public ResponseEntity<?> uploadExcel(
             @Parameter(description = "Excel or CSV file containing ride data")
             @RequestParam("file") MultipartFile file,
             @Parameter(description = "Assignment date for the rides")
             @RequestParam(name = "assignmentDate", required = false)
-            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate assignmentDate) throws IOException {
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate assignmentDate,
+            @Parameter(description = "Return at once with an upload job to follow")
+            @RequestParam(name = "async", defaultValue = "false") boolean async) throws IOException {
 
         log.info("Received file upload: {}", file.getOriginalFilename());
 
@@ -86,21 +98,28 @@ public class RidesAndOptimizationController {
             log.info("No assignmentDate provided, defaulting to {}", assignmentDate);
         }
 
+        if (async) {
+            return UploadJobController.accepted(uploadJobService.submit(file, assignmentDate, false));
+        }
+
         ParseResult result = excelParserService.parseExcelWithMedicalFeatures(file, assignmentDate, false);
         log.info("Processed {} rides from file", result.getSuccessfulRows());
 
         return ResponseEntity.ok(result);
     }
 
-    @Operation(summary = "Upload and optimize", description = "Parse file and immediately run optimization")
+    @Operation(summary = "Upload and optimize", description = "Parse file and immediately run optimization; "
+            + "with async=true, run both as a background upload job instead")
     @PostMapping("/rides/upload-and-optimize")
     @PreAuthorize("hasAnyRole('PROVIDER','ADMIN','DISPATCHER')")
-    public ResponseEntity<ParseResult> uploadAndOptimize(
+    public ResponseEntity<?> uploadAndOptimize(
             @Parameter(description = "Excel or CSV file containing ride data")
             @RequestParam("file") MultipartFile file,
             @Parameter(description = "Assignment date for the rides")
             @RequestParam(name = "assignmentDate", required = false)
-            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate assignmentDate) throws IOException {
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate assignmentDate,
+            @Parameter(description = "Return at once with an upload job to follow")
+            @RequestParam(name = "async", defaultValue = "false") boolean async) throws IOException {
 
         log.info("Received file upload with optimization: {}", file.getOriginalFilename());
 
@@ -108,6 +127,10 @@ public class RidesAndOptimizationController {
             assignmentDate = LocalDate.now().plusDays(1);
         }
 
+        if (async) {
+            return UploadJobController.accepted(uploadJobService.submit(file, assignmentDate, true));
+        }
+
         ParseResult result = excelParserService.parseExcelWithMedicalFeatures(file, assignmentDate, true);
         log.info("Processed and optimized {} rides from file", result.getSuccessfulRows());
 
@@ -201,6 +224,97 @@ public class RidesAndOptimizationController {
         }
     }
 
+    @Operation(summary = "Insert an emergency ride", description = "Commit one urgent ride to the live route of a "
+            + "nearby driver where it adds the least travel, keeping every other assignment; no batch optimization runs")
+    @PostMapping("/optimization/emergency/{rideId}")
+    @PreAuthorize("hasAnyRole('ADMIN','DISPATCHER')")
+    public ResponseEntity<EmergencyInsertionResult> insertEmergencyRide(@PathVariable Long rideId) {
+        log.info("🚑 Inserting emergency ride {}", rideId);
+        try {
+            return ResponseEntity.ok(incrementalOptimizationService.insertEmergencyRide(rideId));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(NOT_FOUND, e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Run a rolling-horizon dispatch tick", description = "Plan the rides picked up in the "
+            + "next hours: unassigned ones go into current routes, and those placed by earlier ticks are planned again "
+            + "unless they are close enough to pickup to be committed; 409 while another tick is running")
+    @PostMapping("/optimization/horizon")
+    @PreAuthorize("hasAnyRole('ADMIN','DISPATCHER')")
+    public ResponseEntity<OptimizationResult> dispatchHorizon(
+            @Parameter(description = "Start of the horizon; defaults to now")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime now) {
+        LocalDateTime start = now != null ? now : LocalDateTime.now();
+        log.info("🕒 Running rolling-horizon dispatch from {}", start);
+
+        try {
+            return ResponseEntity.ok(incrementalOptimizationService.dispatchHorizon(start));
+
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(CONFLICT, e.getMessage());
+        } catch (Exception e) {
+            log.error("Rolling-horizon dispatch failed: {}", e.getMessage(), e);
+
+            OptimizationResult errorResult = OptimizationResult.builder()
+                    .optimizationRan(false)
+                    .optimizationError(e.getMessage())
+                    .successRate(0.0)
+                    .build();
+
+            return ResponseEntity.ok(errorResult);
+        }
+    }
+
+    @Operation(summary = "Repair schedule after changes", description = "Take cancelled and changed rides (and the "
+            + "rides of deactivated drivers) off their routes and insert changed, added and displaced rides into "
+            + "nearby routes, keeping every other assignment")
+    @PostMapping("/optimization/delta")
+    @PreAuthorize("hasAnyRole('ADMIN','DISPATCHER')")
+    public ResponseEntity<OptimizationResult> repairSchedule(@RequestBody ScheduleDelta delta) {
+        log.info("🩹 Repairing schedule: {} added, {} cancelled, {} changed rides, {} deactivated drivers",
+                sizeOf(delta.getAddedRideIds()), sizeOf(delta.getCancelledRideIds()),
+                sizeOf(delta.getChangedRideIds()), sizeOf(delta.getDeactivatedDriverIds()));
+
+        try {
+            return ResponseEntity.ok(incrementalOptimizationService.reOptimize(delta));
+
+        } catch (Exception e) {
+            log.error("Schedule repair failed: {}", e.getMessage(), e);
+
+            OptimizationResult errorResult = OptimizationResult.builder()
+                    .optimizationRan(false)
+                    .optimizationError(e.getMessage())
+                    .successRate(0.0)
+                    .build();
+
+            return ResponseEntity.ok(errorResult);
+        }
+    }
+
+    private static int sizeOf(List<Long> ids) {
+        return ids == null ? 0 : ids.size();
+    }
+
+    @Operation(summary = "List route improvements", description = "Optimization runs of the last minutes that improve "
+            + "their routes in the background (optimizer.improvement-seconds), each with its best plan so far")
+    @GetMapping("/optimization/improvements")
+    @PreAuthorize("hasAnyRole('ADMIN','DISPATCHER')")
+    public ResponseEntity<List<ImprovementStatusDto>> listImprovements() {
+        return ResponseEntity.ok(improvementStatusService.list());
+    }
+
+    @Operation(summary = "Get best plan so far", description = "Best routes an optimization run has found so far; "
+            + "republished every few seconds while it improves, final once finished is true")
+    @GetMapping("/optimization/improvements/{batchId}")
+    @PreAuthorize("hasAnyRole('ADMIN','DISPATCHER')")
+    public ResponseEntity<ImprovementStatusDto> getImprovement(
+            @Parameter(description = "Optimization batch ID") @PathVariable String batchId) {
+        return improvementStatusService.get(batchId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @Operation(
             summary = "Get rides by date",
             description = "Retrieve all rides for a specific date (paginated). Results are scoped to the caller's organization.")
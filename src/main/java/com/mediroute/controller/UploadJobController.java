@@ -0,0 +1,73 @@
+package com.mediroute.controller;
+
+import com.mediroute.dto.UploadJobDto;
+import com.mediroute.entity.UploadJob;
+import com.mediroute.service.parser.UploadJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+@RestController
+@RequestMapping("/api/v1/upload-jobs")
+@RequiredArgsConstructor
+@Tag(name = "Upload Jobs", description = "Background ride uploads with progress")
+public class UploadJobController {
+
+    /** Longest a status request may wait for new progress. */
+    private static final int MAX_WAIT_SECONDS = 30;
+
+    private final UploadJobService uploadJobService;
+
+    @Operation(summary = "Submit upload job", description = "Accept an Excel or CSV file and import it in the background")
+    @PostMapping
+    @PreAuthorize("hasAnyRole('PROVIDER','ADMIN','DISPATCHER')")
+    public ResponseEntity<Map<String, Object>> submit(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(name = "assignmentDate", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate assignmentDate,
+            @RequestParam(name = "optimize", defaultValue = "false") boolean optimize) throws IOException {
+        return accepted(uploadJobService.submit(file, assignmentDate, optimize));
+    }
+
+    @Operation(summary = "Upload job status", description = "Job status and per-phase progress. With waitSeconds, "
+            + "waits until the progress version is past 'since' or the job finishes (long poll)")
+    @GetMapping("/{jobId}")
+    @PreAuthorize("hasAnyRole('PROVIDER','ADMIN','DISPATCHER')")
+    public CompletableFuture<ResponseEntity<UploadJobDto>> getStatus(
+            @PathVariable Long jobId,
+            @Parameter(description = "Progress version already seen") @RequestParam(defaultValue = "-1") long since,
+            @Parameter(description = "Seconds to wait for news, at most 30") @RequestParam(defaultValue = "0") int waitSeconds) {
+        Duration wait = Duration.ofSeconds(Math.max(0, Math.min(waitSeconds, MAX_WAIT_SECONDS)));
+        return uploadJobService.awaitStatus(jobId, since, wait)
+                .thenApply(status -> status.map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build()));
+    }
+
+    @Operation(summary = "Upload job events", description = "Server-sent 'progress' events until the job finishes")
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('PROVIDER','ADMIN','DISPATCHER')")
+    public ResponseEntity<SseEmitter> events(@PathVariable Long jobId) {
+        return uploadJobService.subscribe(jobId).map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build());
+    }
+
+    static ResponseEntity<Map<String, Object>> accepted(UploadJob job) {
+        return ResponseEntity.accepted().body(Map.of(
+                "jobId", job.getId(),
+                "status", job.getStatus(),
+                "statusUrl", "/api/v1/upload-jobs/" + job.getId(),
+                "eventsUrl", "/api/v1/upload-jobs/" + job.getId() + "/events"));
+    }
+}
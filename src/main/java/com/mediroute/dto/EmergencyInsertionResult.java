@@ -0,0 +1,38 @@
+package com.mediroute.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@Schema(description = "Outcome of inserting one urgent ride into the live routes")
+public class EmergencyInsertionResult {
+    private Long rideId;
+
+    @Schema(description = "True if the ride was committed to a driver's route")
+    private boolean assigned;
+
+    private String batchId;
+    private Long driverId;
+    private String driverName;
+
+    @Schema(description = "Position of the ride on the driver's route, starting at 1")
+    private Integer sequenceNumber;
+
+    private LocalDateTime pickupEta;
+    private LocalDateTime dropoffEta;
+
+    @Schema(description = "Driver routes the insertion was evaluated against")
+    private int candidateRoutes;
+
+    @Schema(description = "Why the ride could not be placed")
+    private String reason;
+
+    private long elapsedMs;
+
+    @Schema(description = "True if the insertion took longer than the configured latency budget")
+    private boolean overBudget;
+}
@@ -0,0 +1,37 @@
+package com.mediroute.dto;
+
+import com.mediroute.service.ride.routing.RoutePlan;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@Schema(description = "Best plan found so far by the route improvement of an optimization run")
+public class ImprovementStatusDto {
+    private String batchId;
+
+    @Schema(description = "True once the improvement budget is spent; this plan is then the one assigned")
+    private boolean finished;
+
+    private int iterations;
+    private long elapsedMs;
+
+    @Schema(description = "Total driving time of the routes, in minutes")
+    private long travelMinutes;
+
+    private int assignedRideCount;
+
+    @Schema(description = "Rides per driver in visiting order, with estimated pickup and dropoff times")
+    private Map<Long, List<RoutePlan.Stop>> routes;
+
+    @Schema(description = "Rides the plan does not route, and why")
+    private Map<Long, String> unassignedReasons;
+
+    private LocalDateTime startedAt;
+    private LocalDateTime publishedAt;
+}
@@ -1,5 +1,7 @@
 package com.mediroute.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.mediroute.entity.Patient;
 import com.mediroute.entity.Ride;
 import com.mediroute.service.ride.EnhancedMedicalTransportOptimizer;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -9,6 +11,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.List;
+import java.util.Set;
 
 @Data
 @AllArgsConstructor
@@ -21,6 +24,10 @@ public class ParseResult {
     private final int successfulRows;
     private final double successRate;
 
+    @Schema(description = "Rows that could not be imported, in file order")
+    @Builder.Default
+    private final List<BulkRideUploadResultDto.ProcessingError> rowErrors = List.of();
+
     @Schema(description = "Whether optimization was run")
     private Boolean optimizationRan = false;
 
@@ -30,6 +37,11 @@ public class ParseResult {
     @Schema(description = "Optimization result if run")
     private EnhancedMedicalTransportOptimizer.OptimizationResult optimizationResult;
 
+    @Schema(hidden = true)
+    @JsonIgnore
+    @Builder.Default
+    private Set<Patient> updatedPatients = Set.of();
+
     // Constructor for your existing code
     public ParseResult(List<Ride> rides, int skipped, int total) {
         this.rides = rides;
@@ -37,9 +49,16 @@ public class ParseResult {
         this.totalRows = total;
         this.successfulRows = rides.size();
         this.successRate = total > 0 ? (rides.size() * 100.0) / total : 0.0;
+        this.rowErrors = List.of();
+        this.updatedPatients = Set.of();
     }
 
     public static ParseResult create(List<Ride> rides, int skipped, int total) {
+        return create(rides, skipped, total, List.of());
+    }
+
+    public static ParseResult create(List<Ride> rides, int skipped, int total,
+                                     List<BulkRideUploadResultDto.ProcessingError> rowErrors) {
         int successful = rides.size();
         double rate = total > 0 ? (successful * 100.0) / total : 0.0;
 
@@ -49,6 +68,7 @@ public class ParseResult {
                 .totalRows(total)
                 .successfulRows(successful)
                 .successRate(rate)
+                .rowErrors(rowErrors)
                 .build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.mediroute.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Schema(description = "Changes to an optimized day, repaired without re-optimizing the whole day")
+public class ScheduleDelta {
+    @Schema(description = "Day whose rides move off deactivated drivers; defaults to today. Rides are repaired on their own pickup day")
+    private LocalDate date;
+
+    @Schema(description = "New rides to place on existing routes")
+    @Builder.Default
+    private List<Long> addedRideIds = new ArrayList<>();
+
+    @Schema(description = "Rides to take off their routes and mark cancelled")
+    @Builder.Default
+    private List<Long> cancelledRideIds = new ArrayList<>();
+
+    @Schema(description = "Rides whose time, place or needs changed; they are taken off their routes and placed again")
+    @Builder.Default
+    private List<Long> changedRideIds = new ArrayList<>();
+
+    @Schema(description = "Drivers taken out of service; their rides for the day are placed on other routes")
+    @Builder.Default
+    private List<Long> deactivatedDriverIds = new ArrayList<>();
+
+    public boolean isEmpty() {
+        return none(addedRideIds) && none(cancelledRideIds) && none(changedRideIds) && none(deactivatedDriverIds);
+    }
+
+    private static boolean none(List<Long> ids) {
+        return ids == null || ids.isEmpty();
+    }
+}
@@ -0,0 +1,45 @@
+package com.mediroute.dto;
+
+import com.mediroute.entity.UploadJob;
+import com.mediroute.service.parser.UploadProgress;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@Schema(description = "Status and progress of an upload job")
+public class UploadJobDto {
+    private Long jobId;
+    private UploadJob.JobStatus status;
+
+    @Schema(description = "Current phase; for a failed job, the phase that failed")
+    private UploadJob.Phase phase;
+
+    @Schema(description = "Done/total units per phase (rows, unique addresses, rides); total 0 means not known yet")
+    private Map<UploadJob.Phase, UploadProgress.PhaseCount> phases;
+
+    @Schema(description = "Increases on every progress change; pass as 'since' to wait for the next one")
+    private long version;
+
+    private String filename;
+    private LocalDate assignmentDate;
+    private boolean runOptimization;
+    private Integer totalRows;
+    private Integer successfulRows;
+    private Integer skippedRows;
+
+    @Schema(description = "Rows that could not be imported, in file order; only kept for recently finished jobs")
+    private List<BulkRideUploadResultDto.ProcessingError> rowErrors;
+
+    private String optimizationBatchId;
+    private String error;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,59 @@
+package com.mediroute.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Durable address lookup. Rows without coordinates are negative entries: the address could not be
+ * resolved and is not retried before {@code retryAfter}.
+ */
+@Entity
+@Table(name = "geocoded_addresses")
+public class GeocodedAddress {
+
+    public enum Source { GOOGLE, LOCAL, RIDE, PATIENT }
+
+    /** Trimmed, lower-cased address. */
+    @Id
+    @Column(name = "address_key", columnDefinition = "text")
+    private String addressKey;
+
+    @Column(name = "address", nullable = false, columnDefinition = "text")
+    private String address;
+
+    @Column(name = "latitude")
+    private Double latitude;
+
+    @Column(name = "longitude")
+    private Double longitude;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "source", nullable = false, length = 16)
+    private Source source;
+
+    @Column(name = "resolved_at")
+    private LocalDateTime resolvedAt;
+
+    @Column(name = "retry_after")
+    private LocalDateTime retryAfter;
+
+    public boolean isResolved() {
+        return latitude != null && longitude != null;
+    }
+
+    // Getters and setters
+    public String getAddressKey() { return addressKey; }
+    public void setAddressKey(String addressKey) { this.addressKey = addressKey; }
+    public String getAddress() { return address; }
+    public void setAddress(String address) { this.address = address; }
+    public Double getLatitude() { return latitude; }
+    public void setLatitude(Double latitude) { this.latitude = latitude; }
+    public Double getLongitude() { return longitude; }
+    public void setLongitude(Double longitude) { this.longitude = longitude; }
+    public Source getSource() { return source; }
+    public void setSource(Source source) { this.source = source; }
+    public LocalDateTime getResolvedAt() { return resolvedAt; }
+    public void setResolvedAt(LocalDateTime resolvedAt) { this.resolvedAt = resolvedAt; }
+    public LocalDateTime getRetryAfter() { return retryAfter; }
+    public void setRetryAfter(LocalDateTime retryAfter) { this.retryAfter = retryAfter; }
+}
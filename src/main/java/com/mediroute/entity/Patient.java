@@ -38,8 +38,10 @@ import java.util.Map;
 @EqualsAndHashCode(exclude = {"rides", "history"}) // Prevent circular references
 public class Patient {
 
+    // Pooled sequence ids (see 010-pooled-ids.xml) keep bulk inserts batchable
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "patients_id_seq")
+    @SequenceGenerator(name = "patients_id_seq", sequenceName = "patients_id_seq", allocationSize = 500)
     private Long id;
 
     @Column(name = "org_id")
@@ -33,8 +33,10 @@ import java.util.List;
 @EntityListeners(AuditingEntityListener.class)
 public class Ride {
 
+    // Pooled sequence ids (see 010-pooled-ids.xml) keep bulk inserts batchable
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "rides_id_seq")
+    @SequenceGenerator(name = "rides_id_seq", sequenceName = "rides_id_seq", allocationSize = 500)
     private Long id;
 
     @Column(name = "org_id")
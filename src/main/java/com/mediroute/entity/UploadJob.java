@@ -0,0 +1,98 @@
+package com.mediroute.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "upload_jobs", indexes = {
+        @Index(name = "idx_upload_jobs_status", columnList = "status"),
+        @Index(name = "idx_upload_jobs_submitted", columnList = "submitted_at")
+})
+public class UploadJob {
+
+    public enum JobStatus { PENDING, RUNNING, COMPLETED, FAILED }
+    /** Phases of an upload, in the order they run; OPTIMIZE only runs when requested. */
+    public enum Phase { PARSE, GEOCODE, DISTANCE, PERSIST, OPTIMIZE }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "org_id")
+    private Long orgId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private JobStatus status = JobStatus.PENDING;
+
+    // Last phase reached; for a failed job, the phase that failed
+    @Enumerated(EnumType.STRING)
+    @Column(name = "phase", length = 16)
+    private Phase phase;
+
+    @Column(name = "filename", length = 512)
+    private String filename;
+
+    @Column(name = "assignment_date")
+    private LocalDate assignmentDate;
+
+    @Column(name = "run_optimization", nullable = false)
+    private boolean runOptimization;
+
+    @Column(name = "total_rows")
+    private Integer totalRows;
+
+    @Column(name = "successful_rows")
+    private Integer successfulRows;
+
+    @Column(name = "skipped_rows")
+    private Integer skippedRows;
+
+    @Column(name = "optimization_batch_id", length = 128)
+    private String optimizationBatchId;
+
+    @Column(name = "error", columnDefinition = "text")
+    private String error;
+
+    @Column(name = "submitted_at")
+    private LocalDateTime submittedAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    // Getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public Long getOrgId() { return orgId; }
+    public void setOrgId(Long orgId) { this.orgId = orgId; }
+    public JobStatus getStatus() { return status; }
+    public void setStatus(JobStatus status) { this.status = status; }
+    public Phase getPhase() { return phase; }
+    public void setPhase(Phase phase) { this.phase = phase; }
+    public String getFilename() { return filename; }
+    public void setFilename(String filename) { this.filename = filename; }
+    public LocalDate getAssignmentDate() { return assignmentDate; }
+    public void setAssignmentDate(LocalDate assignmentDate) { this.assignmentDate = assignmentDate; }
+    public boolean isRunOptimization() { return runOptimization; }
+    public void setRunOptimization(boolean runOptimization) { this.runOptimization = runOptimization; }
+    public Integer getTotalRows() { return totalRows; }
+    public void setTotalRows(Integer totalRows) { this.totalRows = totalRows; }
+    public Integer getSuccessfulRows() { return successfulRows; }
+    public void setSuccessfulRows(Integer successfulRows) { this.successfulRows = successfulRows; }
+    public Integer getSkippedRows() { return skippedRows; }
+    public void setSkippedRows(Integer skippedRows) { this.skippedRows = skippedRows; }
+    public String getOptimizationBatchId() { return optimizationBatchId; }
+    public void setOptimizationBatchId(String optimizationBatchId) { this.optimizationBatchId = optimizationBatchId; }
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+    public LocalDateTime getSubmittedAt() { return submittedAt; }
+    public void setSubmittedAt(LocalDateTime submittedAt) { this.submittedAt = submittedAt; }
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+    public LocalDateTime getCompletedAt() { return completedAt; }
+    public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+}
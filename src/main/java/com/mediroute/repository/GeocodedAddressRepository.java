@@ -0,0 +1,11 @@
+package com.mediroute.repository;
+
+import com.mediroute.entity.GeocodedAddress;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface GeocodedAddressRepository extends JpaRepository<GeocodedAddress, String> {
+
+    List<GeocodedAddress> findByLatitudeIsNotNullAndLongitudeIsNotNull();
+}
@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +18,8 @@ public interface PatientRepository extends BaseRepository<Patient, Long> {
 
     Optional<Patient> findByPhone(String phone);
     Optional<Patient> findByPhoneAndOrgId(String phone, Long orgId);
+    List<Patient> findByPhoneIn(Collection<String> phones);
+    List<Patient> findByOrgIdAndPhoneIn(Long orgId, Collection<String> phones);
     Optional<Patient> findByNameAndPhone(String name, String phone);
     List<Patient> findByIsActiveTrue();
     List<Patient> findByNameContainingIgnoreCase(String name);
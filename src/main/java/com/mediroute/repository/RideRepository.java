@@ -13,6 +13,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -63,6 +64,28 @@ public interface RideRepository extends BaseRepository<Ride, Long> {
                                                               @Param("start") LocalDateTime start,
                                                               @Param("end") LocalDateTime end);
 
+    @Query("SELECT r FROM Ride r " +
+            "LEFT JOIN FETCH r.patient p " +
+            "LEFT JOIN FETCH r.pickupDriver pd " +
+            "WHERE r.pickupDriver.id IN :driverIds " +
+            "AND r.pickupTime BETWEEN :start AND :end " +
+            "ORDER BY r.pickupTime ASC")
+    List<Ride> findByPickupDriverIdInAndPickupTimeBetweenWithPatient(@Param("driverIds") Collection<Long> driverIds,
+                                                                     @Param("start") LocalDateTime start,
+                                                                     @Param("end") LocalDateTime end);
+
+    /** Optimizer-assigned rides of the given patients, latest first; warm starts match recurring rides against them. */
+    @Query("SELECT r FROM Ride r " +
+            "JOIN FETCH r.patient p " +
+            "JOIN FETCH r.pickupDriver pd " +
+            "WHERE p.id IN :patientIds " +
+            "AND r.optimizationBatchId IS NOT NULL " +
+            "AND r.pickupTime BETWEEN :start AND :end " +
+            "ORDER BY r.pickupTime DESC")
+    List<Ride> findOptimizedByPatientIdInAndPickupTimeBetween(@Param("patientIds") Collection<Long> patientIds,
+                                                              @Param("start") LocalDateTime start,
+                                                              @Param("end") LocalDateTime end);
+
     @Query("SELECT r FROM Ride r " +
             "LEFT JOIN FETCH r.patient p " +
             "WHERE r.status = 'SCHEDULED' " +
@@ -88,6 +111,22 @@ public interface RideRepository extends BaseRepository<Ride, Long> {
     List<Ride> findRidesWithValidCoordinatesAndPatient(@Param("start") LocalDateTime start,
                                                        @Param("end") LocalDateTime end);
 
+    @Query("SELECT r FROM Ride r " +
+            "LEFT JOIN FETCH r.patient p " +
+            "WHERE r.pickupLocation.latitude IS NOT NULL " +
+            "AND r.pickupLocation.longitude IS NOT NULL " +
+            "AND r.dropoffLocation.latitude IS NOT NULL " +
+            "AND r.dropoffLocation.longitude IS NOT NULL " +
+            "AND r.pickupDriver IS NULL AND r.dropoffDriver IS NULL " +
+            "AND r.pickupTime BETWEEN :start AND :end " +
+            "ORDER BY r.priority DESC, r.pickupTime ASC")
+    List<Ride> findUnassignedRidesWithValidCoordinatesAndPatient(@Param("start") LocalDateTime start,
+                                                                 @Param("end") LocalDateTime end);
+
+    /** Rides a rolling-horizon dispatch placed but has not committed yet, recognized by their batch id. */
+    List<Ride> findByStatusAndOptimizationBatchIdStartingWithAndPickupTimeBetween(RideStatus status, String batchPrefix,
+                                                                                 LocalDateTime start, LocalDateTime end);
+
     @Query("SELECT r FROM Ride r " +
             "LEFT JOIN FETCH r.patient p " +
             "WHERE r.id IN :rideIds " +
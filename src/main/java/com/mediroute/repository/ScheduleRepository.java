@@ -10,6 +10,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,6 +25,8 @@ public interface ScheduleRepository extends BaseRepository<Schedule, Long> {
 
     Optional<Schedule> findByRideIdAndDate(Long rideId, LocalDate date);
 
+    List<Schedule> findByRideIdIn(Collection<Long> rideIds);
+
     // Status-based Queries
     List<Schedule> findByDateAndStatusOrderBySequenceNumber(LocalDate date, RideStatus status);
 
@@ -0,0 +1,12 @@
+package com.mediroute.repository;
+
+import com.mediroute.entity.UploadJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface UploadJobRepository extends JpaRepository<UploadJob, Long> {
+
+    List<UploadJob> findByStatusIn(Collection<UploadJob.JobStatus> statuses);
+}
@@ -15,6 +15,11 @@ public interface DistanceService {
      */
     int[][] getDistanceMatrix(List<String> origins, List<String> destinations);
 
+    /**
+     * Returns road distances and travel durations from each origin to each destination.
+     * Cells the routing engine could not provide are {@code NaN}.
+     */
+    RoadMatrix getRoadMatrix(List<String> origins, List<String> destinations);
 
 }
 
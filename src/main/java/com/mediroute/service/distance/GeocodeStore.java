@@ -0,0 +1,120 @@
+package com.mediroute.service.distance;
+
+import com.mediroute.config.AppProps;
+import com.mediroute.entity.GeocodedAddress;
+import com.mediroute.repository.GeocodedAddressRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Address lookups that never leave the box: a bounded in-process LRU in front of the
+ * {@code geocoded_addresses} table, which is seeded from ride and patient locations.
+ * Addresses Google could not resolve are stored as negative entries until their retry time.
+ * Keys are trimmed, lower-cased addresses.
+ */
+@Slf4j
+@Component
+public class GeocodeStore {
+
+    /** A known answer; {@code point} is null for an address that is known not to resolve. */
+    public record Known(GeocodingService.GeoPoint point) {}
+
+    private record Entry(GeocodingService.GeoPoint point, LocalDateTime retryAfter) {
+        boolean isLive(LocalDateTime now) {
+            return point != null || retryAfter == null || retryAfter.isAfter(now);
+        }
+    }
+
+    private final GeocodedAddressRepository repository;
+    private final int negativeTtlMinutes;
+    private final Map<String, Entry> local;
+
+    public GeocodeStore(GeocodedAddressRepository repository, AppProps appProps) {
+        this.repository = repository;
+        this.negativeTtlMinutes = appProps.getGeocoding().getNegativeTtlMinutes();
+        int maxEntries = appProps.getGeocoding().getLocalEntries();
+        this.local = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /** Known answer for {@code key}, or null if it has to be looked up. */
+    public Known find(String key) {
+        return findAll(List.of(key)).get(key);
+    }
+
+    /** Known answers for the keys the store can answer; one table query covers every local miss. */
+    public Map<String, Known> findAll(Collection<String> keys) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Known> known = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String key : keys) {
+            Entry entry = local.get(key);
+            if (entry != null && entry.isLive(now)) known.put(key, new Known(entry.point()));
+            else misses.add(key);
+        }
+        if (misses.isEmpty()) return known;
+
+        try {
+            for (GeocodedAddress row : repository.findAllById(misses)) {
+                Entry entry = row.isResolved()
+                        ? new Entry(new GeocodingService.GeoPoint(row.getLatitude(), row.getLongitude()), null)
+                        : new Entry(null, row.getRetryAfter());
+                if (!entry.isLive(now)) continue;
+                local.put(row.getAddressKey(), entry);
+                known.put(row.getAddressKey(), new Known(entry.point()));
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to read geocoded addresses: {}", e.getMessage());
+        }
+        return known;
+    }
+
+    public void remember(String key, String address, GeocodingService.GeoPoint point, GeocodedAddress.Source source) {
+        local.put(key, new Entry(point, null));
+        GeocodedAddress row = row(key, address);
+        row.setSource(source);
+        row.setLatitude(point.lat());
+        row.setLongitude(point.lng());
+        row.setResolvedAt(LocalDateTime.now());
+        save(row);
+    }
+
+    /** Record that {@code address} does not resolve; it is not looked up again for the negative TTL. */
+    public void rememberFailure(String key, String address) {
+        LocalDateTime retryAfter = LocalDateTime.now().plusMinutes(negativeTtlMinutes);
+        local.put(key, new Entry(null, retryAfter));
+        GeocodedAddress row = row(key, address);
+        row.setRetryAfter(retryAfter);
+        save(row);
+    }
+
+    private static GeocodedAddress row(String key, String address) {
+        GeocodedAddress row = new GeocodedAddress();
+        row.setAddressKey(key);
+        row.setAddress(address.trim());
+        row.setSource(GeocodedAddress.Source.GOOGLE);
+        return row;
+    }
+
+    private void save(GeocodedAddress row) {
+        try {
+            repository.save(row);
+        } catch (Exception e) {
+            // Another node may have stored the same address first; the local entry is still valid
+            log.warn("⚠️ Failed to store geocoded address {}: {}", row.getAddressKey(), e.getMessage());
+        }
+    }
+}
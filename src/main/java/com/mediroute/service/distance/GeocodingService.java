@@ -1,27 +1,61 @@
 package com.mediroute.service.distance;
 
+import com.mediroute.config.AppProps;
+import com.mediroute.entity.GeocodedAddress;
+import com.mediroute.service.distance.offline.LocalGeocoder;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class GeocodingService {
 
+    /** Concurrent Google lookups per batch; the geocoding rate limiter caps overall throughput. */
+    private static final int BATCH_WORKERS = 8;
+    /** Google statuses that say nothing about the address itself, so are never cached as negative. */
+    private static final Set<String> TRANSIENT_STATUSES = Set.of("OVER_QUERY_LIMIT", "REQUEST_DENIED", "UNKNOWN_ERROR");
+
     // Google API key must be provided via environment or secret store
     @Value("${google.api.key}")
     private String apiKey;
 
     private final RestTemplate restTemplate;
+    private final GeocodeStore store;
+    private final LocalGeocoder localGeocoder;
+    private final AppProps appProps;
+    private final RateLimiterRegistry rateLimiterRegistry;
+    // Lookups in progress by address key; concurrent callers for the same address share one request
+    private final Map<String, CompletableFuture<GeoPoint>> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService batchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Receives how many of a batch's unique addresses are settled, found or not. */
+    @FunctionalInterface
+    public interface BatchProgress {
+        void settled(int done, int unique);
+    }
 
     public record GeoPoint(double lat, double lng) {
         public String toOSRMFormat() {
@@ -29,11 +63,109 @@ public class GeocodingService {
         }
     }
 
-    @Cacheable(cacheNames = "geo:addr", key = "#address == null ? '' : #address.trim().toLowerCase()", unless = "#result == null")
     public GeoPoint geocode(String address) {
         if (address == null || address.isBlank()) return null;
+        String key = addressKey(address);
+        GeocodeStore.Known known = store.find(key);
+        return known != null ? known.point() : shared(key, address).join();
+    }
+
+    /**
+     * Geocode a whole batch, e.g. every pickup and dropoff of an upload. Addresses are collapsed by
+     * their key first, addresses the {@link GeocodeStore} knows (including known failures) are served
+     * from it, and the remaining unique addresses are resolved concurrently; Google lookups run under
+     * the {@code geocoding} rate limiter.
+     *
+     * @return resolved points keyed by the addresses as given; unresolvable addresses are absent
+     */
+    public Map<String, GeoPoint> geocodeAll(Collection<String> addresses) {
+        return geocodeAll(addresses, (done, unique) -> {});
+    }
+
+    public Map<String, GeoPoint> geocodeAll(Collection<String> addresses, BatchProgress progress) {
+        Map<String, String> unique = new LinkedHashMap<>();
+        for (String address : addresses) {
+            if (address != null && !address.isBlank()) unique.putIfAbsent(addressKey(address), address);
+        }
 
+        Map<String, GeocodeStore.Known> known = store.findAll(unique.keySet());
+        Map<String, GeoPoint> byKey = new ConcurrentHashMap<>();
+        List<Map.Entry<String, String>> pending = new ArrayList<>();
+        for (Map.Entry<String, String> entry : unique.entrySet()) {
+            GeocodeStore.Known hit = known.get(entry.getKey());
+            if (hit == null) pending.add(entry);
+            else if (hit.point() != null) byKey.put(entry.getKey(), hit.point());
+        }
+
+        AtomicInteger settled = new AtomicInteger(unique.size() - pending.size());
+        progress.settled(settled.get(), unique.size());
+
+        int workers = Math.min(pending.size(), BATCH_WORKERS);
+        AtomicInteger next = new AtomicInteger();
+        List<CompletableFuture<Void>> running = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            running.add(CompletableFuture.runAsync(() -> {
+                for (int i = next.getAndIncrement(); i < pending.size(); i = next.getAndIncrement()) {
+                    Map.Entry<String, String> entry = pending.get(i);
+                    GeoPoint point = shared(entry.getKey(), entry.getValue()).join();
+                    if (point != null) byKey.put(entry.getKey(), point);
+                    progress.settled(settled.incrementAndGet(), unique.size());
+                }
+            }, batchExecutor));
+        }
+        CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)).join();
+        log.info("🌍 Geocoded {} addresses: {} unique, {} already known, {} looked up ({})",
+                addresses.size(), unique.size(), known.size(), pending.size(), appProps.getGeocoding().getProvider());
+
+        Map<String, GeoPoint> result = new HashMap<>();
+        for (String address : addresses) {
+            GeoPoint point = address != null ? byKey.get(addressKey(address)) : null;
+            if (point != null) result.put(address, point);
+        }
+        return result;
+    }
+
+    /** Key of the {@code geocoded_addresses} table, matching its seed normalization. */
+    private static String addressKey(String address) {
+        return address.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The in-flight lookup for {@code key}, starting one on the calling thread if there is none.
+     */
+    private CompletableFuture<GeoPoint> shared(String key, String address) {
+        CompletableFuture<GeoPoint> mine = new CompletableFuture<>();
+        CompletableFuture<GeoPoint> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            mine.complete(fetch(key, address));
+        } finally {
+            mine.complete(null);
+            inFlight.remove(key, mine);
+        }
+        return mine;
+    }
+
+    /** Resolve through the local index and/or Google, as configured, and remember the answer. */
+    private GeoPoint fetch(String key, String address) {
+        AppProps.Geocoding.Provider provider = appProps.getGeocoding().getProvider();
+        if (provider != AppProps.Geocoding.Provider.GOOGLE) {
+            GeoPoint local = localGeocoder.lookup(address);
+            if (local != null) {
+                store.remember(key, address, local, GeocodedAddress.Source.LOCAL);
+                return local;
+            }
+            // A local miss says nothing about whether Google could resolve it, so it is not cached
+            if (provider == AppProps.Geocoding.Provider.LOCAL_ONLY) return null;
+        }
+        return fetchFromGoogle(key, address);
+    }
+
+    private GeoPoint fetchFromGoogle(String key, String address) {
         try {
+            RateLimiter.waitForPermission(rateLimiterRegistry.rateLimiter("geocoding"));
             String encoded = URLEncoder.encode(address, StandardCharsets.UTF_8);
             String url = "https://maps.googleapis.com/maps/api/geocode/json?address=" + encoded + "&key=" + apiKey;
 
@@ -45,7 +177,10 @@ public class GeocodingService {
 
             List<?> results = (List<?>) response.get("results");
             if (results.isEmpty()) {
-                log.warn("No geocoding result for address: {}", address);
+                log.warn("No geocoding result for address: {} (status {})", address, response.get("status"));
+                if (!TRANSIENT_STATUSES.contains(String.valueOf(response.get("status")))) {
+                    store.rememberFailure(key, address);
+                }
                 return null;
             }
 
@@ -54,11 +189,18 @@ public class GeocodingService {
 
             double lat = (Double) location.get("lat");
             double lng = (Double) location.get("lng");
-            return new GeoPoint(lat, lng);
+            GeoPoint point = new GeoPoint(lat, lng);
+            store.remember(key, address, point, GeocodedAddress.Source.GOOGLE);
+            return point;
 
         } catch (Exception e) {
             log.error("❌ Failed to geocode address: {}", address, e);
             return null;
         }
     }
+
+    @PreDestroy
+    void shutdownBatchExecutor() {
+        batchExecutor.shutdownNow();
+    }
 }
\ No newline at end of file
@@ -2,10 +2,12 @@ package com.mediroute.service.distance;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediroute.service.distance.offline.EmbeddedRouter;
 import com.mediroute.utils.CoordinateNormalizer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.cache.annotation.Cacheable;
@@ -13,10 +15,17 @@ import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.retry.annotation.Retry;
 import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
 import io.github.resilience4j.bulkhead.annotation.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import jakarta.annotation.PreDestroy;
 
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 @RequiredArgsConstructor
@@ -26,29 +35,42 @@ public class OsrmDistanceService implements DistanceService {
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
     private final GeocodingService geocodingService;
+    private final OsrmMatrixCache matrixCache;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final EmbeddedRouter embeddedRouter;
+    private final RoadEstimator roadEstimator;
+    // Matrix block workers; how many run at once is taken from the osrm bulkhead
+    private final ExecutorService blockExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     @Value("${osrm.base-url:http://localhost:5000}")
     private String osrmBaseUrl;
 
     private static final int OSRM_MAX_POINTS = 100;
+    private static final double FALLBACK_DISTANCE_METERS = 10000.0;
+    private static final long HEALTH_TTL_MS = 30_000;
 
-    private static boolean orToolsAvailable = false;
+    // Last health probe; callers within HEALTH_TTL_MS of it reuse the result
+    private volatile boolean osrmHealthy;
+    private volatile long healthCheckedAt = Long.MIN_VALUE;
 
-    static {
-        try {
-            System.loadLibrary("jniortools");
-            orToolsAvailable = true;
-            log.info("✅ OR-Tools loaded successfully");
-        } catch (UnsatisfiedLinkError e) {
-            log.warn("⚠️ OR-Tools not available, using fallback algorithm");
-            orToolsAvailable = false;
+    /**
+     * Whether OSRM is reachable, probed at most once every {@link #HEALTH_TTL_MS} ms.
+     */
+    public boolean isOsrmHealthy() {
+        long now = System.currentTimeMillis();
+        if (healthCheckedAt != Long.MIN_VALUE && now - healthCheckedAt < HEALTH_TTL_MS) {
+            return osrmHealthy;
         }
+        osrmHealthy = probeOsrm();
+        healthCheckedAt = now;
+        return osrmHealthy;
     }
 
     /**
      * Lightweight health check to verify OSRM is reachable.
      */
-    public boolean isOsrmHealthy() {
+    private boolean probeOsrm() {
         try {
             // Probe a lightweight valid endpoint; Denver coords within our sample map
             String url = osrmBaseUrl + "/nearest/v1/driving/-104.9903,39.7392";
@@ -68,86 +90,12 @@ public class OsrmDistanceService implements DistanceService {
 
     @Override
     public double[][] getDistanceMatrix(List<String> locations) {
-//        if (!orToolsAvailable || locations.size() > 100) {
-//            return getFallbackDistanceMatrix(locations);
-//        }
         try {
             if (locations == null || locations.isEmpty()) {
                 throw new IllegalArgumentException("❌ Location list is empty or null.");
             }
-
-            int total = locations.size();
-            double[][] fullMatrix = new double[total][total];
-
-            List<String> coords = new ArrayList<>();
-            for (String loc : locations) {
-                String coord;
-                if (loc.matches("^-?\\d+(\\.\\d+)?,-?\\d+(\\.\\d+)?$")) {
-                    coord = CoordinateNormalizer.normalize(loc);
-                } else {
-                    GeocodingService.GeoPoint geo = geocodingService.geocode(loc);
-                    if (geo == null) {
-                        throw new IllegalArgumentException("❌ Failed to geocode location: " + loc);
-                    }
-                    coord = geo.lng() + "," + geo.lat();
-                }
-                coords.add(coord);
-            }
-
-            // Handle batching for large matrices
-            for (int i = 0; i < total; i += OSRM_MAX_POINTS) {
-                int iEnd = Math.min(i + OSRM_MAX_POINTS, total);
-                for (int j = 0; j < total; j += OSRM_MAX_POINTS) {
-                    int jEnd = Math.min(j + OSRM_MAX_POINTS, total);
-
-                    List<String> subOrigins = coords.subList(i, iEnd);
-                    List<String> subDestinations = coords.subList(j, jEnd);
-
-                    String coordString = String.join(";", subOrigins);
-                    if (!subOrigins.equals(subDestinations)) {
-                        coordString += ";" + String.join(";", subDestinations);
-                    }
-
-                    String url = osrmBaseUrl + "/table/v1/driving/" + coordString + "?annotations=distance";
-
-                    try {
-                        String response = restTemplate.getForObject(url, String.class);
-                        JsonNode json = objectMapper.readTree(response);
-                        JsonNode distances = json.get("distances");
-
-                        if (distances == null || !distances.isArray()) {
-                            log.warn("Invalid OSRM response for batch [{}-{}]x[{}-{}]", i, iEnd, j, jEnd);
-                            continue;
-                        }
-
-                        // Fill fullMatrix
-                        for (int r = 0; r < distances.size(); r++) {
-                            int globalRow = i + r;
-                            if (globalRow >= total) break;
-
-                            for (int c = 0; c < distances.get(r).size(); c++) {
-                                int globalCol = j + c;
-                                if (globalCol >= total) break;
-
-                                fullMatrix[globalRow][globalCol] = distances.get(r).get(c).asDouble();
-                            }
-                        }
-                    } catch (Exception e) {
-                        log.error("❌ Failed to get distance matrix for batch [{}-{}]x[{}-{}]: {}",
-                                i, iEnd, j, jEnd, e.getMessage());
-                        // Fill with default values
-                        for (int r = i; r < iEnd; r++) {
-                            for (int c = j; c < jEnd; c++) {
-                                if (r < total && c < total) {
-                                    fullMatrix[r][c] = r == c ? 0.0 : 10000.0; // Default distance
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-
-            return fullMatrix;
+            // Cells neither OSRM nor the embedded router could provide get the default distance (never cached)
+            return getRoadMatrix(locations, locations).toDistanceArray(FALLBACK_DISTANCE_METERS, true);
 
         } catch (Exception e) {
             log.error("❌ Failed to fetch distance matrix from OSRM", e);
@@ -157,13 +105,174 @@ public class OsrmDistanceService implements DistanceService {
             double[][] defaultMatrix = new double[size][size];
             for (int i = 0; i < size; i++) {
                 for (int j = 0; j < size; j++) {
-                    defaultMatrix[i][j] = i == j ? 0.0 : 10000.0; // 10km default
+                    defaultMatrix[i][j] = i == j ? 0.0 : FALLBACK_DISTANCE_METERS; // 10km default
                 }
             }
             return defaultMatrix;
         }
     }
 
+    @Override
+    public RoadMatrix getRoadMatrix(List<String> origins, List<String> destinations) {
+        List<String> sources = resolveCoordinates(origins);
+        List<String> targets = resolveCoordinates(destinations);
+
+        // Serve known cells from the matrix cache; only rows and columns with unknown cells go to OSRM
+        RoadMatrix matrix = matrixCache.lookup(sources, targets);
+        boolean[] rowMissing = new boolean[matrix.rows()];
+        boolean[] colMissing = new boolean[matrix.cols()];
+        for (int r = 0; r < matrix.rows(); r++) {
+            for (int c = 0; c < matrix.cols(); c++) {
+                if (!matrix.isKnown(r, c)) {
+                    rowMissing[r] = true;
+                    colMissing[c] = true;
+                }
+            }
+        }
+        int[] missingRows = indicesOf(rowMissing);
+        int[] missingCols = indicesOf(colMissing);
+
+        if (missingRows.length > 0) {
+            List<String> rowCoords = new ArrayList<>(missingRows.length);
+            List<String> colCoords = new ArrayList<>(missingCols.length);
+            for (int r : missingRows) rowCoords.add(sources.get(r));
+            for (int c : missingCols) colCoords.add(targets.get(c));
+
+            io.github.resilience4j.circuitbreaker.CircuitBreaker breaker = circuitBreakerRegistry.circuitBreaker("osrm");
+            if (breaker.getState() == io.github.resilience4j.circuitbreaker.CircuitBreaker.State.OPEN) {
+                log.warn("⚠️ OSRM circuit breaker open; skipping {}x{} table fetch", rowCoords.size(), colCoords.size());
+            } else {
+                RoadMatrix fetched = fetchRoadTable(rowCoords, colCoords, breaker);
+                matrixCache.store(rowCoords, colCoords, fetched);
+                matrix.merge(fetched, missingRows, missingCols);
+                // Fresh cells calibrate the estimator here; cached ones did when the matrix cache first read them
+                roadEstimator.observe(rowCoords, colCoords, fetched);
+            }
+        }
+
+        if (missingRows.length > 0) {
+            // Whatever OSRM could not provide comes from the embedded graph; those cells are never cached
+            int routedLocally = embeddedRouter.fill(matrix, sources, targets);
+            if (routedLocally > 0) {
+                log.info("🛣️ Embedded router filled {} matrix cells OSRM could not provide", routedLocally);
+            }
+        }
+        log.debug("🗺️ OSRM matrix {}x{}: {}x{} fetched, rest served from cache",
+                matrix.rows(), matrix.cols(), missingRows.length, missingCols.length);
+        return matrix;
+    }
+
+    /**
+     * OSRM {@code lng,lat} strings for the given locations; anything that is not already a
+     * coordinate pair is geocoded.
+     */
+    private List<String> resolveCoordinates(List<String> locations) {
+        List<String> addresses = locations.stream().filter(loc -> !isCoordinatePair(loc)).toList();
+        Map<String, GeocodingService.GeoPoint> geocoded = addresses.isEmpty()
+                ? Map.of() : geocodingService.geocodeAll(addresses);
+
+        List<String> coords = new ArrayList<>(locations.size());
+        for (String loc : locations) {
+            if (isCoordinatePair(loc)) {
+                coords.add(CoordinateNormalizer.normalize(loc));
+                continue;
+            }
+            GeocodingService.GeoPoint geo = geocoded.get(loc);
+            if (geo == null) {
+                throw new IllegalArgumentException("❌ Failed to geocode location: " + loc);
+            }
+            coords.add(geo.lng() + "," + geo.lat());
+        }
+        return coords;
+    }
+
+    private static boolean isCoordinatePair(String location) {
+        return location.matches("^-?\\d+(\\.\\d+)?,-?\\d+(\\.\\d+)?$");
+    }
+
+    private static int[] indicesOf(boolean[] flags) {
+        int count = 0;
+        for (boolean f : flags) if (f) count++;
+        int[] indices = new int[count];
+        for (int i = 0, k = 0; i < flags.length; i++) {
+            if (flags[i]) indices[k++] = i;
+        }
+        return indices;
+    }
+
+    /**
+     * OSRM table from every origin to every destination, split into blocks of at most
+     * {@link #OSRM_MAX_POINTS} origins by {@link #OSRM_MAX_POINTS} destinations. Blocks are requested
+     * concurrently by as many workers as the {@code osrm} bulkhead admits, and their failures count
+     * towards the {@code osrm} circuit breaker. Cells of blocks that failed are left {@code NaN}.
+     */
+    private RoadMatrix fetchRoadTable(List<String> origins, List<String> destinations,
+                                      io.github.resilience4j.circuitbreaker.CircuitBreaker breaker) {
+        RoadMatrix matrix = new RoadMatrix(origins.size(), destinations.size());
+
+        int rowBlocks = (origins.size() + OSRM_MAX_POINTS - 1) / OSRM_MAX_POINTS;
+        int colBlocks = (destinations.size() + OSRM_MAX_POINTS - 1) / OSRM_MAX_POINTS;
+        int blockCount = rowBlocks * colBlocks;
+        io.github.resilience4j.bulkhead.Bulkhead bulkhead = bulkheadRegistry.bulkhead("osrm");
+        int workers = Math.min(blockCount, bulkhead.getBulkheadConfig().getMaxConcurrentCalls());
+
+        // Blocks write disjoint cells, so workers fill the shared matrix directly
+        AtomicInteger nextBlock = new AtomicInteger();
+        List<CompletableFuture<Void>> running = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            running.add(CompletableFuture.runAsync(() -> {
+                for (int b = nextBlock.getAndIncrement(); b < blockCount; b = nextBlock.getAndIncrement()) {
+                    int i = (b / colBlocks) * OSRM_MAX_POINTS;
+                    int j = (b % colBlocks) * OSRM_MAX_POINTS;
+                    fetchRoadBlock(origins, i, Math.min(i + OSRM_MAX_POINTS, origins.size()),
+                            destinations, j, Math.min(j + OSRM_MAX_POINTS, destinations.size()), matrix,
+                            bulkhead, breaker);
+                }
+            }, blockExecutor));
+        }
+        CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)).join();
+        return matrix;
+    }
+
+    private void fetchRoadBlock(List<String> origins, int i, int iEnd, List<String> destinations, int j, int jEnd,
+                                RoadMatrix matrix, io.github.resilience4j.bulkhead.Bulkhead bulkhead,
+                                io.github.resilience4j.circuitbreaker.CircuitBreaker breaker) {
+        // Each distinct coordinate is sent once; sources/destinations pick the exact rows and columns
+        Map<String, Integer> position = new LinkedHashMap<>();
+        StringJoiner sourceParam = new StringJoiner(";");
+        StringJoiner destinationParam = new StringJoiner(";");
+        for (String coord : origins.subList(i, iEnd)) {
+            sourceParam.add(String.valueOf(position.computeIfAbsent(coord, k -> position.size())));
+        }
+        for (String coord : destinations.subList(j, jEnd)) {
+            destinationParam.add(String.valueOf(position.computeIfAbsent(coord, k -> position.size())));
+        }
+
+        String url = osrmBaseUrl + "/table/v1/driving/" + String.join(";", position.keySet())
+                + "?sources=" + sourceParam + "&destinations=" + destinationParam
+                + "&annotations=distance,duration";
+
+        try {
+            // Decode the body as it streams in; cells go straight into the flat matrix arrays
+            Boolean decoded = breaker.executeSupplier(() -> bulkhead.executeSupplier(() ->
+                    restTemplate.execute(url, HttpMethod.GET, null,
+                            response -> OsrmTableDecoder.decode(objectMapper.getFactory(), response.getBody(),
+                                    matrix, i, j, iEnd - i, jEnd - j))));
+
+            if (!Boolean.TRUE.equals(decoded)) {
+                log.warn("Invalid OSRM response for batch [{}-{}]x[{}-{}]", i, iEnd, j, jEnd);
+            }
+        } catch (Exception e) {
+            log.error("❌ Failed to get distance matrix for batch [{}-{}]x[{}-{}]: {}",
+                    i, iEnd, j, jEnd, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdownBlockExecutor() {
+        blockExecutor.shutdownNow();
+    }
+
     @Override
     @Cacheable(cacheNames = "osrm:distance", key = "#root.target.normalize(#origin) + '->' + #root.target.normalize(#destination)")
     @CircuitBreaker(name = "osrm", fallbackMethod = "fallbackDistance")
@@ -181,14 +290,20 @@ public class OsrmDistanceService implements DistanceService {
             return json.get("routes").get(0).get("distance").asInt();
         } catch (Exception e) {
             log.warn("OSRM distance fallback for single-leg: {}", e.getMessage());
-            return 10000; // 10km default
+            return localDistance(origin, destination);
         }
     }
 
     // Fallback signature must match method args plus Throwable at the end
     private int fallbackDistance(String origin, String destination, Throwable t) {
         log.warn("Using fallback distance for {} -> {} due to: {}", origin, destination, t.toString());
-        return 10000;
+        return localDistance(origin, destination);
+    }
+
+    /** Embedded-router distance, or the 10 km default when the local graph cannot answer. */
+    private int localDistance(String origin, String destination) {
+        double meters = embeddedRouter.distanceMeters(origin, destination);
+        return Double.isNaN(meters) ? (int) FALLBACK_DISTANCE_METERS : (int) Math.round(meters);
     }
 
     // Normalize coordinates (round to ~5 decimal places ~1m) to improve cache hit rate
@@ -206,22 +321,12 @@ public class OsrmDistanceService implements DistanceService {
     @Override
     public int[][] getDistanceMatrix(List<String> origins, List<String> destinations) {
         try {
-            String allCoords = String.join(";", origins) + ";" + String.join(";", destinations);
-            String url = osrmBaseUrl + "/table/v1/driving/" +
-                    URLEncoder.encode(allCoords, StandardCharsets.UTF_8) +
-                    "?annotations=distance&sources=0";
-
-            String response = restTemplate.getForObject(url, String.class);
-            JsonNode json = objectMapper.readTree(response);
-            JsonNode distances = json.get("distances");
-
-            int rows = distances.size();
-            int cols = distances.get(0).size();
-            int[][] matrix = new int[rows][cols];
-
-            for (int i = 0; i < rows; i++) {
-                for (int j = 0; j < cols; j++) {
-                    matrix[i][j] = distances.get(i).get(j).asInt();
+            RoadMatrix road = getRoadMatrix(origins, destinations);
+            int[][] matrix = new int[road.rows()][road.cols()];
+            for (int i = 0; i < road.rows(); i++) {
+                for (int j = 0; j < road.cols(); j++) {
+                    float meters = road.meters(i, j);
+                    matrix[i][j] = Float.isNaN(meters) ? (int) FALLBACK_DISTANCE_METERS : Math.round(meters);
                 }
             }
             return matrix;
@@ -0,0 +1,253 @@
+package com.mediroute.service.distance;
+
+import com.mediroute.config.AppProps;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cell-level cache for OSRM table results (distance and duration), keyed by normalized
+ * {@code lng,lat} coordinate pairs.
+ * <p>
+ * Each origin row is split by destination into {@value #TILES_PER_ROW} tiles, and a tile is stored as one
+ * entry per annotation, so a matrix lookup costs at most that many reads per origin rather than one per
+ * cell, and a new cell rewrites only its tile. A row holds at most {@code matrixCacheRowColumns}
+ * destinations; cells beyond that are not cached. Tiles sit in a bounded in-process LRU in front of the
+ * shared {@value #CACHE_NAME} cache (Redis, or the in-memory fallback configured in
+ * {@link com.mediroute.config.WebConfig}). Only values OSRM actually returned may be stored;
+ * defaults used after a failed call must not be.
+ * <p>
+ * Cells read from the shared cache that this process has not held yet calibrate the
+ * {@link RoadEstimator}, which otherwise only sees cells fetched from OSRM, so it calibrates after a
+ * restart with a warm shared cache. A tile evicted from the LRU and read again is observed again.
+ */
+@Slf4j
+@Component
+public class OsrmMatrixCache {
+
+    public static final String CACHE_NAME = "osrm:matrix";
+    static final int TILES_PER_ROW = 16;
+    private static final String DISTANCE = "distance";
+    private static final String DURATION = "duration";
+
+    private final Cache shared;
+    private final RoadEstimator roadEstimator;
+    private final int tileColumns;
+    private final Map<String, Tile> local;
+
+    public OsrmMatrixCache(CacheManager cacheManager, AppProps appProps, RoadEstimator roadEstimator) {
+        this.shared = cacheManager.getCache(CACHE_NAME);
+        this.roadEstimator = roadEstimator;
+        this.tileColumns = Math.max(1, Math.ceilDiv(appProps.getOsrm().getMatrixCacheRowColumns(), TILES_PER_ROW));
+        int maxTiles = appProps.getOsrm().getMatrixCacheLocalTiles();
+        this.local = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Tile> eldest) {
+                return size() > maxTiles;
+            }
+        });
+    }
+
+    /**
+     * Cached distances and durations for every origin x destination cell; unknown cells are NaN.
+     */
+    public RoadMatrix lookup(List<String> origins, List<String> destinations) {
+        Columns columns = Columns.of(destinations);
+        RoadMatrix matrix = new RoadMatrix(origins.size(), columns.names.length);
+        for (int i = 0; i < origins.size(); i++) {
+            String origin = normalize(origins.get(i));
+            for (int t = 0; t < TILES_PER_ROW; t++) {
+                int[] tileColumns = columns.byTile[t];
+                if (tileColumns.length == 0) continue;
+                String key = tileKey(origin, t);
+                Tile tile = local.get(key);
+                if (tile == null || !tile.covers(columns.names, tileColumns)) {
+                    tile = refreshFromShared(origin, t, tile);
+                }
+                if (tile == null) continue;
+                for (int j : tileColumns) {
+                    Double meters = tile.meters.get(columns.names[j]);
+                    Double seconds = tile.seconds.get(columns.names[j]);
+                    if (meters != null) matrix.setMeters(i, j, meters.floatValue());
+                    if (seconds != null) matrix.setSeconds(i, j, seconds.floatValue());
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Durations for every origin x destination cell held in this process; unknown cells are NaN. Unlike
+     * {@link #lookup} it never reads the shared cache, so its cost does not depend on the network.
+     */
+    public RoadMatrix peekSeconds(List<String> origins, List<String> destinations) {
+        Columns columns = Columns.of(destinations);
+        RoadMatrix matrix = new RoadMatrix(origins.size(), columns.names.length);
+        for (int i = 0; i < origins.size(); i++) {
+            String origin = normalize(origins.get(i));
+            for (int t = 0; t < TILES_PER_ROW; t++) {
+                if (columns.byTile[t].length == 0) continue;
+                Tile tile = local.get(tileKey(origin, t));
+                if (tile == null) continue;
+                for (int j : columns.byTile[t]) {
+                    Double seconds = tile.seconds.get(columns.names[j]);
+                    if (seconds != null) matrix.setSeconds(i, j, seconds.floatValue());
+                }
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Store every known value of {@code values}; each tile that gained a cell is written to the shared cache.
+     */
+    public void store(List<String> origins, List<String> destinations, RoadMatrix values) {
+        Columns columns = Columns.of(destinations);
+        for (int i = 0; i < origins.size(); i++) {
+            String origin = normalize(origins.get(i));
+            for (int t = 0; t < TILES_PER_ROW; t++) {
+                if (columns.byTile[t].length == 0) continue;
+                String key = tileKey(origin, t);
+                Tile tile = local.computeIfAbsent(key, k -> new Tile());
+                boolean metersChanged = false;
+                boolean secondsChanged = false;
+                for (int j : columns.byTile[t]) {
+                    metersChanged |= put(tile.meters, columns.names[j], values.meters(i, j));
+                    secondsChanged |= put(tile.seconds, columns.names[j], values.seconds(i, j));
+                }
+                if (metersChanged) writeShared(DISTANCE + "|" + key, tile.meters);
+                if (secondsChanged) writeShared(DURATION + "|" + key, tile.seconds);
+            }
+        }
+    }
+
+    /**
+     * Round a {@code lng,lat} pair to 5 decimals (~1 m) so nearby duplicates share cells.
+     */
+    public static String normalize(String coord) {
+        try {
+            String[] parts = coord.split(",");
+            return String.format(Locale.US, "%.5f,%.5f",
+                    Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()));
+        } catch (Exception e) {
+            return coord;
+        }
+    }
+
+    /** Add a new cell unless it is unknown or the tile is full; true if the tile gained it. */
+    private boolean put(Map<String, Double> cells, String column, double value) {
+        if (Double.isNaN(value) || cells.containsKey(column) || cells.size() >= tileColumns) return false;
+        return cells.putIfAbsent(column, value) == null;
+    }
+
+    private void writeShared(String key, Map<String, Double> cells) {
+        if (shared == null) return;
+        try {
+            shared.put(key, new HashMap<>(cells));
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to write OSRM matrix tile {} to shared cache: {}", key, e.getMessage());
+        }
+    }
+
+    private static String tileKey(String normalizedOrigin, int tile) {
+        return normalizedOrigin + "|" + tile;
+    }
+
+    /** Tile of a normalized destination; String hashes are stable across processes. */
+    private static int tileOf(String normalizedDestination) {
+        return Math.floorMod(normalizedDestination.hashCode(), TILES_PER_ROW);
+    }
+
+    private Tile refreshFromShared(String origin, int t, Tile tile) {
+        if (shared == null) return tile;
+        String key = tileKey(origin, t);
+        Map<?, ?> meters;
+        Map<?, ?> seconds;
+        try {
+            meters = shared.get(DISTANCE + "|" + key, Map.class);
+            seconds = shared.get(DURATION + "|" + key, Map.class);
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to read OSRM matrix tile {} from shared cache: {}", key, e.getMessage());
+            return tile;
+        }
+        if (meters == null && seconds == null) return tile;
+
+        Tile merged = tile != null ? tile : new Tile();
+        Set<String> added = new LinkedHashSet<>();
+        merge(meters, merged.meters, added);
+        merge(seconds, merged.seconds, added);
+        local.put(key, merged);
+        observe(origin, merged, added);
+        return merged;
+    }
+
+    private void merge(Map<?, ?> stored, Map<String, Double> cells, Set<String> added) {
+        if (stored == null) return;
+        stored.forEach((column, value) -> {
+            if (column instanceof String name && value instanceof Number number
+                    && put(cells, name, number.doubleValue())) {
+                added.add(name);
+            }
+        });
+    }
+
+    /** Feed the cells that just became complete in this process to the estimator. */
+    private void observe(String origin, Tile tile, Set<String> added) {
+        if (roadEstimator == null || added.isEmpty()) return;
+        List<String> destinations = new ArrayList<>(added.size());
+        RoadMatrix cells = new RoadMatrix(1, added.size());
+        for (String column : added) {
+            Double meters = tile.meters.get(column);
+            Double seconds = tile.seconds.get(column);
+            if (meters == null || seconds == null) continue;
+            cells.setMeters(0, destinations.size(), meters.floatValue());
+            cells.setSeconds(0, destinations.size(), seconds.floatValue());
+            destinations.add(column);
+        }
+        if (!destinations.isEmpty()) roadEstimator.observe(List.of(origin), destinations, cells);
+    }
+
+    /** Distance and duration cells of one tile of an origin row, held in process. */
+    private static final class Tile {
+        final Map<String, Double> meters = new ConcurrentHashMap<>();
+        final Map<String, Double> seconds = new ConcurrentHashMap<>();
+
+        boolean covers(String[] names, int[] columns) {
+            for (int j : columns) {
+                if (!meters.containsKey(names[j]) || !seconds.containsKey(names[j])) return false;
+            }
+            return true;
+        }
+    }
+
+    /** Normalized destinations of a request, and which of them fall in each tile. */
+    private record Columns(String[] names, int[][] byTile) {
+
+        static Columns of(List<String> destinations) {
+            String[] names = destinations.stream().map(OsrmMatrixCache::normalize).toArray(String[]::new);
+            int[] tileOf = new int[names.length];
+            int[] counts = new int[TILES_PER_ROW];
+            for (int j = 0; j < names.length; j++) {
+                tileOf[j] = tileOf(names[j]);
+                counts[tileOf[j]]++;
+            }
+            int[][] byTile = new int[TILES_PER_ROW][];
+            for (int t = 0; t < TILES_PER_ROW; t++) byTile[t] = new int[counts[t]];
+            int[] filled = new int[TILES_PER_ROW];
+            for (int j = 0; j < names.length; j++) byTile[tileOf[j]][filled[tileOf[j]]++] = j;
+            return new Columns(names, byTile);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.mediroute.service.distance;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streams an OSRM {@code /table} response straight into a {@link RoadMatrix}, without building
+ * the response string or a {@code JsonNode} tree. Only {@code distances} and {@code durations}
+ * are read; every other field is skipped. {@code null} cells stay {@code NaN}.
+ */
+public final class OsrmTableDecoder {
+
+    private OsrmTableDecoder() {}
+
+    /**
+     * Decode one table block into {@code target}, cell {@code [r][c]} of the response landing at
+     * {@code [rowOffset + r][colOffset + c]}. Rows and columns beyond {@code rows x cols} are ignored.
+     *
+     * @return whether the response contained a {@code distances} array
+     */
+    public static boolean decode(JsonFactory factory, InputStream body, RoadMatrix target,
+                                 int rowOffset, int colOffset, int rows, int cols) throws IOException {
+        try (JsonParser parser = factory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) return false;
+
+            boolean sawDistances = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.START_ARRAY && "distances".equals(field)) {
+                    readRows(parser, target, true, rowOffset, colOffset, rows, cols);
+                    sawDistances = true;
+                } else if (value == JsonToken.START_ARRAY && "durations".equals(field)) {
+                    readRows(parser, target, false, rowOffset, colOffset, rows, cols);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return sawDistances;
+        }
+    }
+
+    private static void readRows(JsonParser parser, RoadMatrix target, boolean meters,
+                                 int rowOffset, int colOffset, int rows, int cols) throws IOException {
+        int r = 0;
+        for (JsonToken row = parser.nextToken(); row != JsonToken.END_ARRAY; row = parser.nextToken(), r++) {
+            if (row != JsonToken.START_ARRAY) {
+                parser.skipChildren();
+                continue;
+            }
+            int c = 0;
+            for (JsonToken cell = parser.nextToken(); cell != JsonToken.END_ARRAY; cell = parser.nextToken(), c++) {
+                if (!cell.isNumeric() || r >= rows || c >= cols) continue;
+                if (meters) {
+                    target.setMeters(rowOffset + r, colOffset + c, parser.getFloatValue());
+                } else {
+                    target.setSeconds(rowOffset + r, colOffset + c, parser.getFloatValue());
+                }
+            }
+        }
+    }
+}
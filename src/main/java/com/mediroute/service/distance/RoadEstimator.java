@@ -0,0 +1,158 @@
+package com.mediroute.service.distance;
+
+import com.mediroute.config.AppProps;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cheap road distance and travel time estimates from straight-line distance, calibrated against
+ * the OSRM cells {@link OsrmDistanceService} serves.
+ * <p>
+ * Each observation updates a least-squares circuity factor (road meters per great-circle meter) and an
+ * average speed, per region (origin cell of {@value #REGION_DEG} degrees) and trip-length band. Estimates
+ * use the regional fit once it has {@value #MIN_SAMPLES} samples, else the band-wide fit, else the
+ * defaults. Configured peak hours scale travel time, since OSRM's own durations are free-flow.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RoadEstimator {
+
+    /** Typical road-network detour over great-circle distance before any data is seen. */
+    static final double DEFAULT_CIRCUITY = 1.3;
+    private static final double REGION_DEG = 0.25;
+    private static final int MIN_SAMPLES = 30;
+    /** Upper bounds (km) of the trip-length bands; short trips detour proportionally more. */
+    private static final double[] BAND_UPPER_KM = {2, 10, 30};
+    /** Cells sampled per observed matrix, so huge matrices do not dominate the fit. */
+    private static final int MAX_SAMPLES_PER_MATRIX = 20_000;
+    private static final double EARTH_RADIUS_M = 6_371_000.0;
+
+    private final AppProps appProps;
+    private final Map<Long, Fit> regional = new ConcurrentHashMap<>();
+    private final Fit[] bands = {new Fit(), new Fit(), new Fit(), new Fit()};
+
+    /**
+     * Feed known cells of an OSRM matrix; points are {@code lng,lat} pairs.
+     */
+    public void observe(List<String> origins, List<String> destinations, RoadMatrix matrix) {
+        double[][] from = parse(origins);
+        double[][] to = parse(destinations);
+        long cells = (long) matrix.rows() * matrix.cols();
+        int stride = (int) Math.max(1, cells / MAX_SAMPLES_PER_MATRIX);
+
+        for (long cell = 0; cell < cells; cell += stride) {
+            int r = (int) (cell / matrix.cols());
+            int c = (int) (cell % matrix.cols());
+            if (from[r] == null || to[c] == null || !matrix.isKnown(r, c)) continue;
+
+            double straight = haversineMeters(from[r][1], from[r][0], to[c][1], to[c][0]);
+            double road = matrix.meters(r, c);
+            double seconds = matrix.seconds(r, c);
+            // Snapping noise dominates very short legs; ratios below 1 or far above 3 are bad snaps
+            if (straight < 200 || seconds <= 0 || road < 0.9 * straight || road > 3 * straight) continue;
+
+            int band = band(straight / 1000.0);
+            regional.computeIfAbsent(regionKey(from[r][1], from[r][0], band), k -> new Fit()).add(straight, road, seconds);
+            bands[band].add(straight, road, seconds);
+        }
+    }
+
+    /** Estimated road distance in km between two points. */
+    public double roadKm(double lat1, double lng1, double lat2, double lng2) {
+        double straightKm = haversineMeters(lat1, lng1, lat2, lng2) / 1000.0;
+        Fit fit = fitFor(lat1, lng1, straightKm);
+        return straightKm * (fit != null ? fit.circuity() : DEFAULT_CIRCUITY);
+    }
+
+    /**
+     * Estimated driving time in seconds; {@code hourOfDay} outside 0-23 skips the peak-hour factor.
+     */
+    public double travelSeconds(double lat1, double lng1, double lat2, double lng2, int hourOfDay) {
+        double straightKm = haversineMeters(lat1, lng1, lat2, lng2) / 1000.0;
+        Fit fit = fitFor(lat1, lng1, straightKm);
+        double roadKm = straightKm * (fit != null ? fit.circuity() : DEFAULT_CIRCUITY);
+        double speedKmh = fit != null ? fit.speedKmh() : appProps.getOptimizer().getAverageSpeedKmh();
+        return roadKm / Math.max(1.0, speedKmh) * 3600.0 * peakFactor(hourOfDay);
+    }
+
+    /** Travel-time multiplier for {@code hourOfDay}: the configured peak factor in peak hours, else 1. */
+    public double peakFactor(int hourOfDay) {
+        AppProps.Osrm settings = appProps.getOsrm();
+        if (settings.getPeakHours() != null && settings.getPeakHours().contains(hourOfDay)) {
+            return settings.getPeakTravelFactor();
+        }
+        return 1.0;
+    }
+
+    private Fit fitFor(double lat, double lng, double straightKm) {
+        int band = band(straightKm);
+        Fit fit = regional.get(regionKey(lat, lng, band));
+        if (fit != null && fit.samples() >= MIN_SAMPLES) return fit;
+        fit = bands[band];
+        return fit.samples() >= MIN_SAMPLES ? fit : null;
+    }
+
+    private static int band(double straightKm) {
+        int band = 0;
+        while (band < BAND_UPPER_KM.length && straightKm > BAND_UPPER_KM[band]) band++;
+        return band;
+    }
+
+    private static long regionKey(double lat, double lng, int band) {
+        long row = (long) Math.floor((lat + 90.0) / REGION_DEG);
+        long col = (long) Math.floor((lng + 180.0) / REGION_DEG);
+        return ((row << 16 | col) << 2) | band;
+    }
+
+    private static double[][] parse(List<String> points) {
+        double[][] parsed = new double[points.size()][];
+        for (int i = 0; i < parsed.length; i++) {
+            try {
+                String[] parts = points.get(i).split(",");
+                parsed[i] = new double[]{Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim())};
+            } catch (Exception e) {
+                parsed[i] = null;
+            }
+        }
+        return parsed;
+    }
+
+    static double haversineMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_M * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    /** Running least-squares sums for one region/band. */
+    private static final class Fit {
+        private long samples;
+        private double straightTimesRoad;
+        private double straightSquared;
+        private double roadMeters;
+        private double seconds;
+
+        synchronized void add(double straight, double road, double travelSeconds) {
+            samples++;
+            straightTimesRoad += straight * road;
+            straightSquared += straight * straight;
+            roadMeters += road;
+            seconds += travelSeconds;
+        }
+
+        synchronized long samples() { return samples; }
+
+        /** Slope of road ~ straight through the origin. */
+        synchronized double circuity() { return straightTimesRoad / straightSquared; }
+
+        synchronized double speedKmh() { return roadMeters / seconds * 3.6; }
+    }
+}
@@ -0,0 +1,63 @@
+package com.mediroute.service.distance;
+
+import java.util.Arrays;
+
+/**
+ * Road distances (meters) and travel durations (seconds) from each origin to each destination,
+ * stored row-major in flat arrays. Cells OSRM did not provide are {@link Float#NaN}.
+ */
+public final class RoadMatrix {
+
+    private final int rows;
+    private final int cols;
+    private final float[] meters;
+    private final float[] seconds;
+
+    public RoadMatrix(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        this.meters = new float[rows * cols];
+        this.seconds = new float[rows * cols];
+        Arrays.fill(meters, Float.NaN);
+        Arrays.fill(seconds, Float.NaN);
+    }
+
+    public int rows() { return rows; }
+    public int cols() { return cols; }
+
+    public float meters(int row, int col) { return meters[row * cols + col]; }
+    public float seconds(int row, int col) { return seconds[row * cols + col]; }
+
+    /** Both distance and duration are known for the cell. */
+    public boolean isKnown(int row, int col) {
+        int cell = row * cols + col;
+        return !Float.isNaN(meters[cell]) && !Float.isNaN(seconds[cell]);
+    }
+
+    public void setMeters(int row, int col, float value) { meters[row * cols + col] = value; }
+    public void setSeconds(int row, int col, float value) { seconds[row * cols + col] = value; }
+
+    /** Copy every known value of {@code block} into this matrix at the given row/column positions. */
+    public void merge(RoadMatrix block, int[] rowAt, int[] colAt) {
+        for (int r = 0; r < block.rows; r++) {
+            for (int c = 0; c < block.cols; c++) {
+                float m = block.meters(r, c);
+                float s = block.seconds(r, c);
+                if (!Float.isNaN(m)) setMeters(rowAt[r], colAt[c], m);
+                if (!Float.isNaN(s)) setSeconds(rowAt[r], colAt[c], s);
+            }
+        }
+    }
+
+    /** Distances as {@code double[rows][cols]}, with {@code fallbackMeters} for unknown off-diagonal cells. */
+    public double[][] toDistanceArray(double fallbackMeters, boolean zeroDiagonal) {
+        double[][] out = new double[rows][cols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                float m = meters(r, c);
+                out[r][c] = !Float.isNaN(m) ? m : zeroDiagonal && r == c ? 0.0 : fallbackMeters;
+            }
+        }
+        return out;
+    }
+}
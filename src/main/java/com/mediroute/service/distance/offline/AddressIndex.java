@@ -0,0 +1,326 @@
+package com.mediroute.service.distance.offline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory address search over normalized tokens. Each address is reduced to canonical tokens
+ * ("Street" and "St." both become {@code st}), tokens are weighted by inverse document frequency,
+ * and a query is matched to the address maximizing the weighted Dice overlap of their tokens.
+ * Street and city tokens tolerate one or two typos through a trigram index of the vocabulary;
+ * house numbers must match exactly.
+ * <p>
+ * Immutable once built, so lookups are safe from any thread.
+ */
+public final class AddressIndex {
+
+    public record Match(double lat, double lng, double score) {}
+
+    /** Candidates are drawn from the postings of this many of the rarest query tokens. */
+    private static final int CANDIDATE_TOKENS = 2;
+    /** Weight of a query token the index has never seen, e.g. an apartment number. */
+    private static final float UNKNOWN_TOKEN_WEIGHT = 2.0f;
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    private static final Map<String, String> CANONICAL = Map.ofEntries(
+            Map.entry("street", "st"), Map.entry("str", "st"),
+            Map.entry("avenue", "ave"), Map.entry("av", "ave"),
+            Map.entry("road", "rd"), Map.entry("boulevard", "blvd"),
+            Map.entry("drive", "dr"), Map.entry("lane", "ln"),
+            Map.entry("court", "ct"), Map.entry("place", "pl"),
+            Map.entry("parkway", "pkwy"), Map.entry("highway", "hwy"),
+            Map.entry("circle", "cir"), Map.entry("terrace", "ter"),
+            Map.entry("trail", "trl"), Map.entry("square", "sq"),
+            Map.entry("north", "n"), Map.entry("south", "s"),
+            Map.entry("east", "e"), Map.entry("west", "w"),
+            Map.entry("northeast", "ne"), Map.entry("northwest", "nw"),
+            Map.entry("southeast", "se"), Map.entry("southwest", "sw"),
+            Map.entry("suite", "ste"), Map.entry("apartment", "apt"),
+            Map.entry("colorado", "co"), Map.entry("mount", "mt"), Map.entry("saint", "st"));
+    private static final Set<String> IGNORED = Set.of("usa", "us", "united", "states", "america");
+
+    private final float[] lat;
+    private final float[] lng;
+    /** Sorted token ids per address. */
+    private final int[][] addressTokens;
+    /** Token id of each address's house number, or -1. */
+    private final int[] houseNumber;
+    private final float[] addressWeight;
+
+    private final Map<String, Integer> tokenIds;
+    private final String[] tokenText;
+    private final float[] idf;
+    private final int[][] postings;
+    private final Map<String, int[]> trigramTokens;
+
+    private AddressIndex(Builder b) {
+        int size = b.size;
+        this.lat = Arrays.copyOf(b.lat, size);
+        this.lng = Arrays.copyOf(b.lng, size);
+        this.addressTokens = b.addressTokens.toArray(int[][]::new);
+        this.houseNumber = Arrays.copyOf(b.houseNumber, size);
+        this.tokenIds = b.tokenIds;
+        this.tokenText = b.tokenText.toArray(String[]::new);
+
+        int tokens = tokenText.length;
+        int[] frequency = new int[tokens];
+        for (int[] ids : addressTokens) for (int id : ids) frequency[id]++;
+
+        this.idf = new float[tokens];
+        this.postings = new int[tokens][];
+        for (int t = 0; t < tokens; t++) {
+            idf[t] = (float) Math.log(1.0 + (double) size / Math.max(1, frequency[t]));
+            postings[t] = new int[frequency[t]];
+        }
+        int[] filled = new int[tokens];
+        for (int a = 0; a < size; a++) {
+            for (int id : addressTokens[a]) postings[id][filled[id]++] = a;
+        }
+
+        this.addressWeight = new float[size];
+        for (int a = 0; a < size; a++) {
+            float weight = 0;
+            for (int id : addressTokens[a]) weight += idf[id];
+            addressWeight[a] = weight;
+        }
+
+        Map<String, List<Integer>> trigrams = new HashMap<>();
+        for (int t = 0; t < tokens; t++) {
+            if (!isFuzzy(tokenText[t])) continue;
+            for (String gram : trigrams(tokenText[t])) trigrams.computeIfAbsent(gram, k -> new ArrayList<>()).add(t);
+        }
+        this.trigramTokens = new HashMap<>(trigrams.size() * 2);
+        trigrams.forEach((gram, ids) -> trigramTokens.put(gram, ids.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return lat.length;
+    }
+
+    /**
+     * Best matching address for {@code query}, or null when nothing scores at least {@code minScore}
+     * (1.0 is an exact token match).
+     */
+    public Match lookup(String query, double minScore) {
+        List<String> queryTokens = tokens(query);
+        if (queryTokens.isEmpty()) return null;
+
+        // Index tokens each query token can match, with their similarity
+        List<int[]> matchIds = new ArrayList<>(queryTokens.size());
+        List<float[]> matchSimilarity = new ArrayList<>(queryTokens.size());
+        float queryWeight = 0;
+        for (String token : queryTokens) {
+            Integer exact = tokenIds.get(token);
+            if (exact != null) {
+                matchIds.add(new int[]{exact});
+                matchSimilarity.add(new float[]{1f});
+                queryWeight += idf[exact];
+            } else {
+                fuzzyMatches(token, matchIds, matchSimilarity);
+                int[] ids = matchIds.get(matchIds.size() - 1);
+                float weight = UNKNOWN_TOKEN_WEIGHT;
+                for (int id : ids) weight = Math.max(weight, idf[id]);
+                queryWeight += weight;
+            }
+        }
+        int queryHouse = isHouseNumber(queryTokens.get(0)) ? tokenIds.getOrDefault(queryTokens.get(0), -2) : -1;
+
+        int[] candidates = candidates(matchIds);
+        int[] used = new int[matchIds.size()];
+        int best = -1;
+        double bestScore = 0;
+        for (int a : candidates) {
+            if (queryHouse != -1 && houseNumber[a] >= 0 && houseNumber[a] != queryHouse) continue;
+            float matched = 0;
+            int usedCount = 0;
+            int[] tokens = addressTokens[a];
+            for (int q = 0; q < matchIds.size(); q++) {
+                int[] ids = matchIds.get(q);
+                float[] similarity = matchSimilarity.get(q);
+                float bestToken = 0;
+                int bestId = -1;
+                for (int m = 0; m < ids.length; m++) {
+                    if (similarity[m] * idf[ids[m]] > bestToken && Arrays.binarySearch(tokens, ids[m]) >= 0
+                            && !contains(used, usedCount, ids[m])) {
+                        bestToken = similarity[m] * idf[ids[m]];
+                        bestId = ids[m];
+                    }
+                }
+                // Each address token counts once, e.g. a misspelt street that is also the city
+                if (bestId >= 0) used[usedCount++] = bestId;
+                matched += bestToken;
+            }
+            double score = 2.0 * matched / (queryWeight + addressWeight[a]);
+            if (score > bestScore) {
+                bestScore = score;
+                best = a;
+            }
+        }
+        return best >= 0 && bestScore >= minScore ? new Match(lat[best], lng[best], bestScore) : null;
+    }
+
+    /** Union of the postings of the rarest matched query tokens, ascending. */
+    private int[] candidates(List<int[]> matchIds) {
+        Integer[] order = new Integer[matchIds.size()];
+        long[] frequency = new long[order.length];
+        for (int q = 0; q < order.length; q++) {
+            order[q] = q;
+            for (int id : matchIds.get(q)) frequency[q] += postings[id].length;
+        }
+        Arrays.sort(order, (x, y) -> Long.compare(frequency[x], frequency[y]));
+
+        int[] union = new int[0];
+        int used = 0;
+        for (int q : order) {
+            if (frequency[q] == 0) continue;
+            for (int id : matchIds.get(q)) union = merge(union, postings[id]);
+            if (++used == CANDIDATE_TOKENS) break;
+        }
+        return union;
+    }
+
+    private void fuzzyMatches(String token, List<int[]> matchIds, List<float[]> matchSimilarity) {
+        if (!isFuzzy(token)) {
+            matchIds.add(new int[0]);
+            matchSimilarity.add(new float[0]);
+            return;
+        }
+        List<String> grams = trigrams(token);
+        Map<Integer, Integer> shared = new HashMap<>();
+        for (String gram : grams) {
+            for (int id : trigramTokens.getOrDefault(gram, new int[0])) shared.merge(id, 1, Integer::sum);
+        }
+
+        int maxEdits = token.length() <= 6 ? 1 : 2;
+        List<Integer> ids = new ArrayList<>();
+        List<Float> similarity = new ArrayList<>();
+        shared.forEach((id, count) -> {
+            // Each edit destroys at most three trigrams
+            if (count < grams.size() - 3 * maxEdits) return;
+            int edits = editDistance(token, tokenText[id], maxEdits);
+            if (edits <= maxEdits) {
+                ids.add(id);
+                similarity.add(1f - (float) edits / token.length());
+            }
+        });
+        matchIds.add(ids.stream().mapToInt(Integer::intValue).toArray());
+        float[] sims = new float[similarity.size()];
+        for (int i = 0; i < sims.length; i++) sims[i] = similarity.get(i);
+        matchSimilarity.add(sims);
+    }
+
+    /** Canonical tokens of an address, in order. */
+    static List<String> tokens(String address) {
+        List<String> tokens = new ArrayList<>();
+        if (address == null) return tokens;
+        for (String raw : address.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (raw.isEmpty() || IGNORED.contains(raw)) continue;
+            tokens.add(CANONICAL.getOrDefault(raw, raw));
+        }
+        return tokens;
+    }
+
+    private static boolean isHouseNumber(String token) {
+        return !token.isEmpty() && Character.isDigit(token.charAt(0));
+    }
+
+    private static boolean isFuzzy(String token) {
+        return token.length() >= MIN_FUZZY_LENGTH && !Character.isDigit(token.charAt(0));
+    }
+
+    private static List<String> trigrams(String token) {
+        String padded = "^" + token + "$";
+        List<String> grams = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) grams.add(padded.substring(i, i + 3));
+        return grams;
+    }
+
+    /** Levenshtein distance, or {@code max + 1} once it is known to exceed {@code max}. */
+    static int editDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) return max + 1;
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) return max + 1;
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) if (values[i] == value) return true;
+        return false;
+    }
+
+    private static int[] merge(int[] a, int[] b) {
+        int[] out = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            int next;
+            if (j == b.length || (i < a.length && a[i] < b[j])) next = a[i++];
+            else if (i == a.length || b[j] < a[i]) next = b[j++];
+            else { next = a[i++]; j++; }
+            out[n++] = next;
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    public static final class Builder {
+        private final Map<String, Integer> tokenIds = new HashMap<>();
+        private final List<String> tokenText = new ArrayList<>();
+        private final List<int[]> addressTokens = new ArrayList<>();
+        private float[] lat = new float[1024];
+        private float[] lng = new float[1024];
+        private int[] houseNumber = new int[1024];
+        private int size;
+
+        private Builder() {}
+
+        public Builder add(String address, double latitude, double longitude) {
+            List<String> tokens = tokens(address);
+            if (tokens.isEmpty()) return this;
+            if (size == lat.length) {
+                lat = Arrays.copyOf(lat, size * 2);
+                lng = Arrays.copyOf(lng, size * 2);
+                houseNumber = Arrays.copyOf(houseNumber, size * 2);
+            }
+            int[] ids = tokens.stream().mapToInt(this::tokenId).sorted().distinct().toArray();
+            lat[size] = (float) latitude;
+            lng[size] = (float) longitude;
+            houseNumber[size] = isHouseNumber(tokens.get(0)) ? tokenId(tokens.get(0)) : -1;
+            addressTokens.add(ids);
+            size++;
+            return this;
+        }
+
+        private int tokenId(String token) {
+            return tokenIds.computeIfAbsent(token, t -> {
+                tokenText.add(t);
+                return tokenText.size() - 1;
+            });
+        }
+
+        public AddressIndex build() {
+            return new AddressIndex(this);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.mediroute.service.distance.offline;
+
+import com.mediroute.config.AppProps;
+import com.mediroute.service.distance.RoadMatrix;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * In-process router over a {@link RoadGraph}, used when OSRM is unreachable or its circuit breaker
+ * is open. Answers are fastest-time Dijkstra paths on the same OSM extract OSRM was built from, so
+ * optimization keeps realistic road distances instead of a flat default.
+ * <p>
+ * Disabled unless {@code app.osrm.fallback-graph} points at a graph file.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmbeddedRouter {
+
+    /** Speed assumed for the leg between a point and its nearest graph node. */
+    private static final double SNAP_SPEED_MPS = 25 / 3.6;
+
+    private final AppProps appProps;
+    private final ThreadLocal<Search> searches = new ThreadLocal<>();
+
+    private volatile RoadGraph graph;
+
+    @PostConstruct
+    void loadGraph() {
+        String configured = appProps.getOsrm().getFallbackGraph();
+        if (configured == null || configured.isBlank()) {
+            log.info("🛣️ Embedded routing fallback disabled (no app.osrm.fallback-graph)");
+            return;
+        }
+        Path file = Path.of(configured);
+        if (!Files.isReadable(file)) {
+            log.warn("⚠️ Embedded routing fallback disabled: {} is not readable", file);
+            return;
+        }
+        try {
+            graph = RoadGraph.load(file);
+            log.info("🛣️ Embedded routing fallback loaded {} nodes / {} edges from {}",
+                    graph.nodeCount(), graph.edgeCount(), file);
+        } catch (Exception e) {
+            log.error("❌ Failed to load embedded road graph {}: {}", file, e.getMessage());
+        }
+    }
+
+    public boolean isAvailable() {
+        return graph != null;
+    }
+
+    /** Use {@code roadGraph} directly instead of the configured file. */
+    public void use(RoadGraph roadGraph) {
+        this.graph = roadGraph;
+    }
+
+    /**
+     * Fill every unknown cell of {@code matrix} from the local graph. Points are {@code lng,lat}
+     * pairs; cells whose points cannot be snapped or are not connected stay {@code NaN}.
+     *
+     * @return number of cells filled
+     */
+    public int fill(RoadMatrix matrix, List<String> origins, List<String> destinations) {
+        RoadGraph g = graph;
+        if (g == null) return 0;
+
+        Snap[] to = destinations.stream().map(p -> snap(g, p)).toArray(Snap[]::new);
+        int[] targetNodes = Arrays.stream(to).filter(s -> s != null).mapToInt(Snap::node).distinct().sorted().toArray();
+
+        return IntStream.range(0, origins.size()).parallel().map(r -> {
+            boolean missing = false;
+            for (int c = 0; c < matrix.cols() && !missing; c++) missing = !matrix.isKnown(r, c);
+            Snap from = missing ? snap(g, origins.get(r)) : null;
+            if (from == null) return 0;
+
+            Search search = search(g);
+            search.run(from.node(), targetNodes);
+            int filled = 0;
+            for (int c = 0; c < matrix.cols(); c++) {
+                if (matrix.isKnown(r, c) || to[c] == null) continue;
+                float seconds = search.seconds(to[c].node());
+                if (Float.isInfinite(seconds)) continue;
+                double snapMeters = from.meters() + to[c].meters();
+                matrix.setMeters(r, c, (float) (search.meters(to[c].node()) + snapMeters));
+                matrix.setSeconds(r, c, (float) (seconds + snapMeters / SNAP_SPEED_MPS));
+                filled++;
+            }
+            return filled;
+        }).sum();
+    }
+
+    /** Road distance in meters between two {@code lng,lat} points, or {@code NaN} if unknown. */
+    public double distanceMeters(String origin, String destination) {
+        RoadMatrix matrix = new RoadMatrix(1, 1);
+        fill(matrix, List.of(origin), List.of(destination));
+        return matrix.meters(0, 0);
+    }
+
+    private Search search(RoadGraph g) {
+        Search search = searches.get();
+        if (search == null || search.graph != g) {
+            search = new Search(g);
+            searches.set(search);
+        }
+        return search;
+    }
+
+    private static Snap snap(RoadGraph g, String point) {
+        try {
+            String[] parts = point.split(",");
+            double lng = Double.parseDouble(parts[0].trim());
+            double lat = Double.parseDouble(parts[1].trim());
+            int node = g.nearestNode(lat, lng);
+            return node < 0 ? null : new Snap(node, RoadGraph.haversineMeters(lat, lng, g.lat(node), g.lng(node)));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private record Snap(int node, double meters) {}
+
+    /**
+     * Reusable one-to-many Dijkstra state. Only touched nodes are reset between runs, so a search
+     * costs what it explores rather than the size of the graph.
+     */
+    private static final class Search {
+        private final RoadGraph graph;
+        private final float[] seconds;
+        private final float[] meters;
+        private int[] touched = new int[1024];
+        private int touchedCount;
+        private int[] heapNode = new int[1024];
+        private float[] heapKey = new float[1024];
+        private int heapSize;
+
+        Search(RoadGraph graph) {
+            this.graph = graph;
+            this.seconds = new float[graph.nodeCount()];
+            this.meters = new float[graph.nodeCount()];
+            Arrays.fill(seconds, Float.POSITIVE_INFINITY);
+        }
+
+        float seconds(int node) { return seconds[node]; }
+        float meters(int node) { return meters[node]; }
+
+        /** Settle nodes from {@code source} until every node of sorted {@code targets} is settled. */
+        void run(int source, int[] targets) {
+            for (int i = 0; i < touchedCount; i++) seconds[touched[i]] = Float.POSITIVE_INFINITY;
+            touchedCount = 0;
+            heapSize = 0;
+
+            relax(source, 0f, 0f);
+            int remaining = targets.length;
+            while (heapSize > 0 && remaining > 0) {
+                float key = heapKey[0];
+                int node = pop();
+                if (key > seconds[node]) continue; // stale entry
+                if (Arrays.binarySearch(targets, node) >= 0) remaining--;
+                for (int e = graph.firstEdge(node), end = graph.edgeEnd(node); e < end; e++) {
+                    relax(graph.edgeTarget(e), key + graph.edgeSeconds(e), meters[node] + graph.edgeMeters(e));
+                }
+            }
+        }
+
+        private void relax(int node, float time, float distance) {
+            if (time >= seconds[node]) return;
+            if (seconds[node] == Float.POSITIVE_INFINITY) {
+                if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+                touched[touchedCount++] = node;
+            }
+            seconds[node] = time;
+            meters[node] = distance;
+            push(node, time);
+        }
+
+        private void push(int node, float key) {
+            if (heapSize == heapNode.length) {
+                heapNode = Arrays.copyOf(heapNode, heapSize * 2);
+                heapKey = Arrays.copyOf(heapKey, heapSize * 2);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heapKey[parent] <= key) break;
+                heapNode[i] = heapNode[parent];
+                heapKey[i] = heapKey[parent];
+                i = parent;
+            }
+            heapNode[i] = node;
+            heapKey[i] = key;
+        }
+
+        private int pop() {
+            int top = heapNode[0];
+            int lastNode = heapNode[--heapSize];
+            float lastKey = heapKey[heapSize];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) break;
+                if (child + 1 < heapSize && heapKey[child + 1] < heapKey[child]) child++;
+                if (heapKey[child] >= lastKey) break;
+                heapNode[i] = heapNode[child];
+                heapKey[i] = heapKey[child];
+                i = child;
+            }
+            heapNode[i] = lastNode;
+            heapKey[i] = lastKey;
+            return top;
+        }
+    }
+}
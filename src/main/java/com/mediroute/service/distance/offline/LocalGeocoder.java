@@ -0,0 +1,150 @@
+package com.mediroute.service.distance.offline;
+
+import com.mediroute.config.AppProps;
+import com.mediroute.entity.GeocodedAddress;
+import com.mediroute.repository.GeocodedAddressRepository;
+import com.mediroute.service.distance.GeocodingService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Resolves addresses against an {@link AddressIndex} built at startup from an optional address
+ * extract ({@code app.geocoding.address-index}) and every resolved row of {@code geocoded_addresses},
+ * i.e. the ride and patient addresses we have already seen.
+ * <p>
+ * The extract is CSV with a header row, either OpenAddresses ({@code LON,LAT,NUMBER,STREET,...,CITY,
+ * REGION,POSTCODE}) or plain {@code address,lat,lng}. Disabled when the geocoding provider is GOOGLE.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LocalGeocoder {
+
+    private final AppProps appProps;
+    private final GeocodedAddressRepository repository;
+
+    private volatile AddressIndex index;
+
+    @PostConstruct
+    void loadIndex() {
+        AppProps.Geocoding settings = appProps.getGeocoding();
+        if (settings.getProvider() == AppProps.Geocoding.Provider.GOOGLE) {
+            log.info("🗺️ Local geocoder disabled (app.geocoding.provider=GOOGLE)");
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        AddressIndex.Builder builder = AddressIndex.builder();
+        String extract = settings.getAddressIndex();
+        if (extract != null && !extract.isBlank()) {
+            try {
+                readExtract(Path.of(extract), builder);
+            } catch (Exception e) {
+                log.error("❌ Failed to read address extract {}: {}", extract, e.getMessage());
+            }
+        }
+        try {
+            for (GeocodedAddress row : repository.findByLatitudeIsNotNullAndLongitudeIsNotNull()) {
+                builder.add(row.getAddress(), row.getLatitude(), row.getLongitude());
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to read geocoded addresses for the local index: {}", e.getMessage());
+        }
+        index = builder.build();
+        log.info("🗺️ Local geocoder indexed {} addresses in {}ms", index.size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isAvailable() {
+        AddressIndex current = index;
+        return current != null && current.size() > 0;
+    }
+
+    /** Use {@code addressIndex} directly instead of loading one. */
+    public void use(AddressIndex addressIndex) {
+        this.index = addressIndex;
+    }
+
+    /** Point of the best indexed match for {@code address}, or null below the configured score. */
+    public GeocodingService.GeoPoint lookup(String address) {
+        AddressIndex current = index;
+        if (current == null) return null;
+        AddressIndex.Match match = current.lookup(address, appProps.getGeocoding().getMinMatchScore());
+        return match != null ? new GeocodingService.GeoPoint(match.lat(), match.lng()) : null;
+    }
+
+    static void readExtract(Path file, AddressIndex.Builder builder) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) return;
+            List<String> columns = split(header.replace("﻿", "").toLowerCase(Locale.ROOT));
+            int lon = columns.indexOf("lon"), lat = columns.indexOf("lat");
+            int address = columns.indexOf("address");
+            int[] parts = {columns.indexOf("number"), columns.indexOf("street"), columns.indexOf("city"),
+                    columns.indexOf("region"), columns.indexOf("postcode")};
+            if (lon < 0) lon = columns.indexOf("lng");
+            if (lat < 0 || lon < 0 || (address < 0 && parts[1] < 0)) {
+                throw new IOException("expected lat/lon columns and address or street columns, got " + header);
+            }
+
+            int rows = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                List<String> fields = split(line);
+                try {
+                    double latitude = Double.parseDouble(fields.get(lat));
+                    double longitude = Double.parseDouble(fields.get(lon));
+                    builder.add(address >= 0 ? fields.get(address) : join(fields, parts), latitude, longitude);
+                    rows++;
+                } catch (RuntimeException e) {
+                    // Skip rows with missing or malformed coordinates
+                }
+            }
+            log.info("🗺️ Read {} addresses from {}", rows, file);
+        }
+    }
+
+    private static String join(List<String> fields, int[] columns) {
+        StringBuilder out = new StringBuilder();
+        for (int column : columns) {
+            if (column >= 0 && column < fields.size() && !fields.get(column).isBlank()) {
+                out.append(fields.get(column)).append(' ');
+            }
+        }
+        return out.toString();
+    }
+
+    /** Split one CSV line, honouring double quotes. */
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
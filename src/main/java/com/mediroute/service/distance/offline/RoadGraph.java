@@ -0,0 +1,165 @@
+package com.mediroute.service.distance.offline;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Directed road graph in CSR form, memory-mapped from the file written by {@link RoadGraphImporter}.
+ * <p>
+ * File layout (big-endian): {@code int magic, int nodes, int edges, float lat[nodes], float lng[nodes],
+ * int firstEdge[nodes + 1], int target[edges], float meters[edges], float seconds[edges]}.
+ * Edges leaving node {@code n} are {@code firstEdge[n] .. firstEdge[n + 1] - 1}.
+ */
+public final class RoadGraph {
+
+    static final int MAGIC = 0x4D524731; // "MRG1"
+    private static final int HEADER_BYTES = 12;
+
+    /** Nearest-node grid cell, ~1.1 km of latitude. */
+    private static final double CELL_DEG = 0.01;
+    private static final int LNG_CELLS = 36_000;
+    private static final int SNAP_RINGS = 2;
+
+    private final int nodes;
+    private final int edges;
+    private final FloatBuffer lat;
+    private final FloatBuffer lng;
+    private final IntBuffer firstEdge;
+    private final IntBuffer target;
+    private final FloatBuffer meters;
+    private final FloatBuffer seconds;
+    /** {@code cellKey << 32 | node}, sorted, for nearest-node lookup. */
+    private final long[] cellIndex;
+
+    private RoadGraph(ByteBuffer data) throws IOException {
+        if (data.getInt(0) != MAGIC) {
+            throw new IOException("Not a road graph file (bad magic)");
+        }
+        this.nodes = data.getInt(4);
+        this.edges = data.getInt(8);
+        long expected = HEADER_BYTES + 4L * (3L * nodes + 1 + 3L * edges);
+        if (data.capacity() != expected) {
+            throw new IOException("Road graph file is " + data.capacity() + " bytes, expected " + expected);
+        }
+        int at = HEADER_BYTES;
+        this.lat = data.slice(at, 4 * nodes).asFloatBuffer();
+        at += 4 * nodes;
+        this.lng = data.slice(at, 4 * nodes).asFloatBuffer();
+        at += 4 * nodes;
+        this.firstEdge = data.slice(at, 4 * (nodes + 1)).asIntBuffer();
+        at += 4 * (nodes + 1);
+        this.target = data.slice(at, 4 * edges).asIntBuffer();
+        at += 4 * edges;
+        this.meters = data.slice(at, 4 * edges).asFloatBuffer();
+        at += 4 * edges;
+        this.seconds = data.slice(at, 4 * edges).asFloatBuffer();
+
+        this.cellIndex = new long[nodes];
+        for (int n = 0; n < nodes; n++) {
+            cellIndex[n] = cellKey(cellRow(lat(n)), cellCol(lng(n))) << 32 | n;
+        }
+        Arrays.sort(cellIndex);
+    }
+
+    /** Map a graph file read-only; the OS pages it in on demand. */
+    public static RoadGraph load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Road graph file exceeds 2 GB: " + file);
+            }
+            return new RoadGraph(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /** Write a graph in the layout {@link #load(Path)} reads. */
+    public static void write(Path file, float[] lat, float[] lng, int[] firstEdge,
+                             int[] target, float[] meters, float[] seconds) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(lat.length);
+            out.writeInt(target.length);
+            for (float v : lat) out.writeFloat(v);
+            for (float v : lng) out.writeFloat(v);
+            for (int v : firstEdge) out.writeInt(v);
+            for (int v : target) out.writeInt(v);
+            for (float v : meters) out.writeFloat(v);
+            for (float v : seconds) out.writeFloat(v);
+        }
+    }
+
+    public int nodeCount() { return nodes; }
+    public int edgeCount() { return edges; }
+
+    public double lat(int node) { return lat.get(node); }
+    public double lng(int node) { return lng.get(node); }
+
+    public int firstEdge(int node) { return firstEdge.get(node); }
+    public int edgeEnd(int node) { return firstEdge.get(node + 1); }
+    public int edgeTarget(int edge) { return target.get(edge); }
+    public float edgeMeters(int edge) { return meters.get(edge); }
+    public float edgeSeconds(int edge) { return seconds.get(edge); }
+
+    /**
+     * Closest node within about two grid cells of the point, or {@code -1} if there is none.
+     */
+    public int nearestNode(double latitude, double longitude) {
+        int row = cellRow(latitude);
+        int col = cellCol(longitude);
+        int best = -1;
+        double bestMeters = Double.MAX_VALUE;
+        for (int dr = -SNAP_RINGS; dr <= SNAP_RINGS; dr++) {
+            for (int dc = -SNAP_RINGS; dc <= SNAP_RINGS; dc++) {
+                long key = cellKey(row + dr, col + dc);
+                int i = lowerBound(key << 32);
+                for (; i < cellIndex.length && cellIndex[i] >>> 32 == key; i++) {
+                    int node = (int) cellIndex[i];
+                    double d = haversineMeters(latitude, longitude, lat(node), lng(node));
+                    if (d < bestMeters) {
+                        bestMeters = d;
+                        best = node;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private int lowerBound(long value) {
+        int lo = 0, hi = cellIndex.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cellIndex[mid] < value) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int cellRow(double latitude) {
+        return (int) Math.floor((latitude + 90.0) / CELL_DEG);
+    }
+
+    private static int cellCol(double longitude) {
+        return (int) Math.floor((longitude + 180.0) / CELL_DEG);
+    }
+
+    private static long cellKey(int row, int col) {
+        return (long) row * LNG_CELLS + Math.floorMod(col, LNG_CELLS);
+    }
+
+    static double haversineMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 6_371_000.0 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
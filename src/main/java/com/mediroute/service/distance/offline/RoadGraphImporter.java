@@ -0,0 +1,146 @@
+package com.mediroute.service.distance.offline;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds a {@link RoadGraph} file from the roads of an OSM extract exported as GeoJSON sequence:
+ * <pre>
+ * osmium tags-filter colorado-latest.osm.pbf w/highway -o roads.osm.pbf
+ * osmium export -f geojsonseq roads.osm.pbf -o roads.geojsonseq
+ * java -cp app.jar -Dloader.main=com.mediroute.service.distance.offline.RoadGraphImporter \
+ *      org.springframework.boot.loader.launch.PropertiesLauncher roads.geojsonseq road-graph.bin
+ * </pre>
+ * Ways are joined where they share a vertex. Travel times use a per-highway-class speed table
+ * close to OSRM's car profile defaults.
+ */
+@Slf4j
+public final class RoadGraphImporter {
+
+    private static final Map<String, Double> SPEED_KMH = Map.ofEntries(
+            Map.entry("motorway", 90.0), Map.entry("motorway_link", 45.0),
+            Map.entry("trunk", 85.0), Map.entry("trunk_link", 40.0),
+            Map.entry("primary", 65.0), Map.entry("primary_link", 30.0),
+            Map.entry("secondary", 55.0), Map.entry("secondary_link", 25.0),
+            Map.entry("tertiary", 40.0), Map.entry("tertiary_link", 20.0),
+            Map.entry("unclassified", 25.0), Map.entry("residential", 25.0),
+            Map.entry("living_street", 10.0), Map.entry("service", 15.0));
+
+    private final Map<Long, Integer> nodeIds = new HashMap<>();
+    private float[] lat = new float[1 << 16];
+    private float[] lng = new float[1 << 16];
+    private int[] from = new int[1 << 16];
+    private int[] to = new int[1 << 16];
+    private float[] meters = new float[1 << 16];
+    private float[] seconds = new float[1 << 16];
+    private int edgeCount;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            log.error("usage: RoadGraphImporter <roads.geojsonseq> <road-graph.bin>");
+            System.exit(2);
+        }
+        RoadGraphImporter importer = new RoadGraphImporter();
+        importer.read(Path.of(args[0]));
+        importer.write(Path.of(args[1]));
+        log.info("✅ Wrote {} nodes / {} edges to {}", importer.nodeIds.size(), importer.edgeCount, args[1]);
+    }
+
+    void read(Path geojsonSeq) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        try (BufferedReader reader = Files.newBufferedReader(geojsonSeq, StandardCharsets.UTF_8)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                // RFC 8142 records may start with an ASCII record separator
+                String record = line.replace("\u001E", "").trim();
+                if (!record.isEmpty()) addWay(mapper.readTree(record));
+            }
+        }
+    }
+
+    private void addWay(JsonNode feature) {
+        JsonNode geometry = feature.path("geometry");
+        JsonNode properties = feature.path("properties");
+        Double speed = SPEED_KMH.get(properties.path("highway").asText());
+        if (speed == null || !"LineString".equals(geometry.path("type").asText())) return;
+
+        String oneway = properties.path("oneway").asText("");
+        boolean forward = !"-1".equals(oneway);
+        boolean backward = !(oneway.equals("yes") || oneway.equals("1") || oneway.equals("true")
+                || oneway.equals("-1") || "roundabout".equals(properties.path("junction").asText())
+                || (properties.path("highway").asText().equals("motorway") && !oneway.equals("no")));
+        double metersPerSecond = speed / 3.6;
+
+        JsonNode points = geometry.path("coordinates");
+        int previous = -1;
+        for (JsonNode point : points) {
+            int node = node(point.get(1).asDouble(), point.get(0).asDouble());
+            if (previous >= 0 && previous != node) {
+                float length = (float) RoadGraph.haversineMeters(lat[previous], lng[previous], lat[node], lng[node]);
+                float time = (float) (length / metersPerSecond);
+                if (forward) addEdge(previous, node, length, time);
+                if (backward) addEdge(node, previous, length, time);
+            }
+            previous = node;
+        }
+    }
+
+    private int node(double latitude, double longitude) {
+        long key = (long) (int) Math.round(latitude * 1e6) << 32 | ((int) Math.round(longitude * 1e6) & 0xffffffffL);
+        return nodeIds.computeIfAbsent(key, k -> {
+            int id = nodeIds.size();
+            if (id == lat.length) {
+                lat = Arrays.copyOf(lat, id * 2);
+                lng = Arrays.copyOf(lng, id * 2);
+            }
+            lat[id] = (float) latitude;
+            lng[id] = (float) longitude;
+            return id;
+        });
+    }
+
+    private void addEdge(int a, int b, float length, float time) {
+        if (edgeCount == from.length) {
+            int size = edgeCount * 2;
+            from = Arrays.copyOf(from, size);
+            to = Arrays.copyOf(to, size);
+            meters = Arrays.copyOf(meters, size);
+            seconds = Arrays.copyOf(seconds, size);
+        }
+        from[edgeCount] = a;
+        to[edgeCount] = b;
+        meters[edgeCount] = length;
+        seconds[edgeCount] = time;
+        edgeCount++;
+    }
+
+    /** Counting-sort the edge list by source node into CSR order and write it. */
+    void write(Path out) throws IOException {
+        int nodes = nodeIds.size();
+        int[] firstEdge = new int[nodes + 1];
+        for (int e = 0; e < edgeCount; e++) firstEdge[from[e] + 1]++;
+        for (int n = 0; n < nodes; n++) firstEdge[n + 1] += firstEdge[n];
+
+        int[] next = Arrays.copyOf(firstEdge, nodes);
+        int[] csrTarget = new int[edgeCount];
+        float[] csrMeters = new float[edgeCount];
+        float[] csrSeconds = new float[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            int slot = next[from[e]]++;
+            csrTarget[slot] = to[e];
+            csrMeters[slot] = meters[e];
+            csrSeconds[slot] = seconds[e];
+        }
+        RoadGraph.write(out, Arrays.copyOf(lat, nodes), Arrays.copyOf(lng, nodes), firstEdge,
+                csrTarget, csrMeters, csrSeconds);
+    }
+}
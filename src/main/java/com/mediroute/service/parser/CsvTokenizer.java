@@ -0,0 +1,274 @@
+package com.mediroute.service.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * RFC-4180 CSV tokenizer over a reused {@code char[]} buffer. Each {@link #next()} finds one record
+ * (quoted fields may hold commas, doubled quotes and line breaks) and marks its fields as slices of
+ * the buffer; nothing is allocated per field. Quotes are removed and doubled quotes collapsed in
+ * place, and fields are trimmed. Text after a closing quote is kept; a quote inside an unquoted field
+ * is an ordinary character.
+ * <p>
+ * Slices are only valid until the next call to {@link #next()}. {@link #appendTo(Records)} copies a
+ * record out, e.g. to parse it on another thread.
+ */
+public final class CsvTokenizer {
+
+    private static final int INITIAL_BUFFER = 64 * 1024;
+
+    private final Reader in;
+    private char[] buf = new char[INITIAL_BUFFER];
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    private int nextLine = 1;
+    private int line;
+    // Line breaks inside quoted fields of the record found by the last scan
+    private int innerBreaks;
+    private int recordStart;
+    private int recordEnd;
+    private int[] bounds = new int[32];
+    private int fields;
+
+    public CsvTokenizer(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Advance to the next record.
+     *
+     * @return false at the end of the input
+     */
+    public boolean next() throws IOException {
+        int end;
+        while ((end = scanRecord()) < 0) {
+            if (!fill()) break;
+        }
+        if (pos >= limit && eof) return false;
+        if (end < 0) end = limit;
+
+        line = nextLine;
+        recordStart = pos;
+        recordEnd = end;
+        tokenize(pos, end);
+
+        // Consume the terminator: \n, \r\n or a lone \r
+        pos = end;
+        if (pos < limit && buf[pos] == '\r') pos++;
+        if (pos < limit && buf[pos] == '\n') pos++;
+        nextLine += innerBreaks + 1;
+        return true;
+    }
+
+    /** 1-based line on which the current record starts. */
+    public int line() {
+        return line;
+    }
+
+    public int fieldCount() {
+        return fields;
+    }
+
+    /** Field {@code i} of the current record as a string, or "" when the record is shorter. */
+    public String field(int i) {
+        return i < fields ? new String(buf, bounds[2 * i], bounds[2 * i + 1] - bounds[2 * i]) : "";
+    }
+
+    /** Field {@code i} of the current record as a view of the buffer, valid until {@link #next()}. */
+    public CharSequence slice(int i) {
+        return i < fields ? CharBuffer.wrap(buf, bounds[2 * i], bounds[2 * i + 1] - bounds[2 * i]) : "";
+    }
+
+    /** Copy the current record to {@code records}. */
+    public void appendTo(Records records) {
+        records.add(line, buf, recordStart, recordEnd, bounds, fields);
+    }
+
+    /**
+     * Find the end of the record starting at {@code pos} without touching the buffer.
+     *
+     * @return index of its line terminator, or -1 if the buffer ends first and more input may follow
+     */
+    private int scanRecord() {
+        boolean quoted = false;
+        boolean fieldStart = true;
+        int breaks = 0;
+        for (int i = pos; i < limit; i++) {
+            char c = buf[i];
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 >= limit && !eof) return -1;
+                    if (i + 1 < limit && buf[i + 1] == '"') i++;
+                    else quoted = false;
+                } else if (c == '\n' || (c == '\r' && (i + 1 >= limit || buf[i + 1] != '\n'))) {
+                    breaks++;
+                }
+            } else if (c == ',') {
+                fieldStart = true;
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r' && i + 1 >= limit && !eof) return -1;
+                innerBreaks = breaks;
+                return i;
+            } else if (c == '"' && fieldStart) {
+                quoted = true;
+                fieldStart = false;
+            } else if (c > ' ') {
+                fieldStart = false;
+            }
+        }
+        innerBreaks = breaks;
+        return eof ? limit : -1;
+    }
+
+    /** Split {@code [from, to)} into fields, unquoting in place. */
+    private void tokenize(int from, int to) {
+        fields = 0;
+        int i = from;
+        while (true) {
+            while (i < to && buf[i] <= ' ') i++;
+            int start = i;
+            int end;
+            if (i < to && buf[i] == '"') {
+                // Quoted: copy the content down over the opening quote, collapsing doubled quotes
+                int w = i;
+                i++;
+                while (i < to) {
+                    char c = buf[i++];
+                    if (c == '"') {
+                        if (i < to && buf[i] == '"') i++;
+                        else break;
+                    }
+                    buf[w++] = c;
+                }
+                // Anything after the closing quote up to the separator belongs to the field too
+                while (i < to && buf[i] != ',') buf[w++] = buf[i++];
+                end = w;
+            } else {
+                while (i < to && buf[i] != ',') i++;
+                end = i;
+            }
+            while (end > start && buf[end - 1] <= ' ') end--;
+            addField(start, end);
+            if (i >= to) break;
+            i++; // separator
+        }
+    }
+
+    private void addField(int start, int end) {
+        if (2 * fields + 2 > bounds.length) bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        bounds[2 * fields] = start;
+        bounds[2 * fields + 1] = end;
+        fields++;
+    }
+
+    /** Move the unread part of the buffer to the front, growing it if full, and read more. */
+    private boolean fill() throws IOException {
+        if (eof) return false;
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+        int read = in.read(buf, limit, buf.length - limit);
+        if (read < 0) eof = true;
+        else limit += read;
+        return true;
+    }
+
+    /**
+     * Records copied out of a tokenizer: the characters of all records in one array plus their field
+     * bounds, so a batch of rows costs a few allocations however many fields it has. Fields are
+     * addressed by record and column; a column the record does not have, or a negative one, is empty.
+     */
+    public static final class Records {
+        private char[] chars;
+        private int charCount;
+        private int[] bounds;
+        private int boundCount;
+        private int[] firstField;
+        private int[] lines;
+        private int size;
+
+        public Records(int expectedRecords) {
+            chars = new char[Math.max(16, expectedRecords * 64)];
+            bounds = new int[Math.max(16, expectedRecords * 24)];
+            firstField = new int[expectedRecords + 1];
+            lines = new int[Math.max(1, expectedRecords)];
+        }
+
+        void add(int line, char[] source, int from, int to, int[] fieldBounds, int fieldCount) {
+            int length = to - from;
+            if (charCount + length > chars.length) chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+            System.arraycopy(source, from, chars, charCount, length);
+            if (boundCount + 2 * fieldCount > bounds.length) {
+                bounds = Arrays.copyOf(bounds, Math.max(bounds.length * 2, boundCount + 2 * fieldCount));
+            }
+            int shift = charCount - from;
+            for (int f = 0; f < 2 * fieldCount; f++) bounds[boundCount + f] = fieldBounds[f] + shift;
+            if (size + 2 > firstField.length) firstField = Arrays.copyOf(firstField, firstField.length * 2);
+            if (size + 1 > lines.length) lines = Arrays.copyOf(lines, lines.length * 2);
+
+            firstField[size] = boundCount / 2;
+            lines[size] = line;
+            size++;
+            boundCount += 2 * fieldCount;
+            firstField[size] = boundCount / 2;
+            charCount += length;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /** 1-based line on which {@code record} starts. */
+        public int line(int record) {
+            return lines[record];
+        }
+
+        public int length(int record, int column) {
+            int field = field(record, column);
+            return field < 0 ? 0 : bounds[2 * field + 1] - bounds[2 * field];
+        }
+
+        public boolean isBlank(int record, int column) {
+            return length(record, column) == 0;
+        }
+
+        public String string(int record, int column) {
+            int field = field(record, column);
+            return field < 0 ? "" : new String(chars, bounds[2 * field], bounds[2 * field + 1] - bounds[2 * field]);
+        }
+
+        /** The field as a view of the shared array; valid as long as these records. */
+        public CharSequence slice(int record, int column) {
+            int field = field(record, column);
+            return field < 0 ? "" : CharBuffer.wrap(chars, bounds[2 * field], bounds[2 * field + 1] - bounds[2 * field]);
+        }
+
+        /** Whether the field equals one of {@code values}, ignoring case. */
+        public boolean equalsAnyIgnoreCase(int record, int column, String... values) {
+            int field = field(record, column);
+            if (field < 0) return false;
+            int start = bounds[2 * field];
+            int length = bounds[2 * field + 1] - start;
+            for (String value : values) {
+                if (value.length() != length) continue;
+                int c = 0;
+                while (c < length && Character.toLowerCase(chars[start + c]) == Character.toLowerCase(value.charAt(c))) c++;
+                if (c == length) return true;
+            }
+            return false;
+        }
+
+        private int field(int record, int column) {
+            if (column < 0) return -1;
+            int field = firstField[record] + column;
+            return field < firstField[record + 1] ? field : -1;
+        }
+    }
+}
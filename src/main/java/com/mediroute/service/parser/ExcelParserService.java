@@ -3,28 +3,48 @@ package com.mediroute.service.parser;
 import com.mediroute.dto.*;
 import com.mediroute.entity.Patient;
 import com.mediroute.entity.Ride;
+import com.mediroute.entity.UploadJob;
 import com.mediroute.entity.embeddable.Location;
 import com.mediroute.repository.PatientRepository;
 import com.mediroute.repository.RideRepository;
 import com.mediroute.service.distance.GeocodingService;
 import com.mediroute.service.distance.OsrmDistanceService;
 import com.mediroute.service.ride.EnhancedMedicalTransportOptimizer;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 import static com.mediroute.config.SecurityBeans.currentOrgId;
 
-import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.*;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -39,6 +59,25 @@ public class ExcelParserService {
     private final OsrmDistanceService distanceService;
     private final EnhancedMedicalTransportOptimizer medicalTransportOptimizer;
 
+    /** Parsed rows buffered before their patients are resolved with one query. */
+    private static final int PATIENT_LOOKUP_CHUNK = 1_000;
+    /** CSV lines per parse task. */
+    private static final int CSV_PARSE_CHUNK = 500;
+    /** Parse tasks allowed ahead of the writer, which bounds memory while it waits on the database. */
+    private static final int CSV_PARSE_AHEAD = 2 * Runtime.getRuntime().availableProcessors();
+    private static final CompletableFuture<List<ParsedLine>> END_OF_CSV = CompletableFuture.completedFuture(List.of());
+    /** Columns CSV rows are read by, resolved to positions once per file; the first five are required. */
+    private static final List<String> CSV_COLUMNS = List.of("NAME", "PHONE", "PICK UP", "DROP OFF", "TIME",
+            "PURPOSE", "CANCELLED", "RETURN", "NOTE", "DISTANCE", "RUN ID");
+    private static final List<String> CSV_REQUIRED = CSV_COLUMNS.subList(0, 5);
+    private static final int COL_NAME = 0, COL_PHONE = 1, COL_PICKUP = 2, COL_DROPOFF = 3, COL_TIME = 4,
+            COL_PURPOSE = 5, COL_CANCELLED = 6, COL_RETURN = 7, COL_NOTE = 8, COL_DISTANCE = 9, COL_RUN_ID = 10;
+    /** Cell texts read as yes, compared ignoring case. */
+    private static final String[] TRUE_VALUES = {"true", "yes", "y", "1", "x", "✓"};
+    private static final List<String> EXCEL_REQUIRED = List.of("NAME", "PHONE", "PICK UP", "DROP OFF");
+
+    private final ExecutorService parseExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
     // Fixed HEADER_VARIATIONS - using proper Map.of syntax
     private static final Map<String, List<String>> HEADER_VARIATIONS = createHeaderVariations();
 
@@ -59,91 +98,261 @@ public class ExcelParserService {
     }
 
     /**
-     * Enhanced parser that handles both CSV and Excel with your existing logic
+     * Enhanced parser that handles both CSV and Excel with your existing logic. Runs every phase of
+     * the upload in the caller's request and transaction; {@link UploadJobService} runs the same
+     * phases as a background job.
      */
     public ParseResult parseExcelWithMedicalFeatures(MultipartFile file, LocalDate assignmentDate, boolean runOptimization) throws IOException {
+        UploadProgress progress = new UploadProgress();
+        ParseResult result = parseUpload(file.getOriginalFilename(), file, assignmentDate, progress);
+
+        // Enrich with geocoding and distance calculation
+        enrichUpload(result.getRides(), progress);
+
+        // Insert the upload's new patients and all rides in JDBC batches
+        persistUpload(result, progress);
+
+        // Run optimization if requested
+        if (runOptimization) {
+            optimizeUpload(result, progress);
+        }
+
+        log.info("✅ Parse complete: {} rides processed, {} successful, {} skipped",
+                result.getTotalRows(), result.getSuccessfulRows(), result.getSkippedRows());
+
+        return result;
+    }
+
+    /**
+     * PARSE phase: turn an uploaded CSV or Excel file into unsaved rides. Only reads: changes the rows
+     * make to existing patients are kept in memory and saved with the rides by {@link #persistUpload}.
+     */
+    @Transactional(readOnly = true)
+    public ParseResult parseUpload(String filename, InputStreamSource source, LocalDate assignmentDate,
+                                   UploadProgress progress) throws IOException {
         if (assignmentDate == null) {
             assignmentDate = LocalDate.now().plusDays(1);
         }
 
-        log.info("🔍 Parsing file: {} for date: {}", file.getOriginalFilename(), assignmentDate);
+        log.info("🔍 Parsing file: {} for date: {}", filename, assignmentDate);
+        progress.start(UploadJob.Phase.PARSE, 0);
 
-        ParseResult result;
-        String filename = file.getOriginalFilename();
+        ParseResult result = (filename != null && filename.toLowerCase().endsWith(".csv"))
+                ? parseCsvFile(source, assignmentDate, progress)
+                : parseExcelFileEnhanced(source, assignmentDate, progress);
+        int rows = result.getSuccessfulRows() + result.getSkippedRows();
+        progress.update(UploadJob.Phase.PARSE, rows, rows);
+        return result;
+    }
 
-        if (filename != null && filename.toLowerCase().endsWith(".csv")) {
-            result = parseCsvFile(file, assignmentDate);
-        } else {
-            result = parseExcelFileEnhanced(file, assignmentDate);
+    /**
+     * GEOCODE and DISTANCE phases. Only calls out to the geocoder and OSRM, so it runs without
+     * holding a database transaction when called on its own.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void enrichUpload(List<Ride> rides, UploadProgress progress) {
+        enrichRidesWithLocationData(rides, progress);
+    }
+
+    /**
+     * OPTIMIZE phase; the optimizer opens its own transaction.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void optimizeUpload(ParseResult result, UploadProgress progress) {
+        progress.start(UploadJob.Phase.OPTIMIZE, 1);
+        if (result.getRides().isEmpty()) {
+            progress.advance(UploadJob.Phase.OPTIMIZE, 1);
+            return;
+        }
+        log.info("🚀 Running optimization on {} parsed rides...", result.getRides().size());
+        try {
+            var optimizationResult = medicalTransportOptimizer.optimizeSchedule(result.getRides());
+            result.setOptimizationRan(true);
+            result.setOptimizationResult(optimizationResult);
+        } catch (Exception e) {
+            log.error("❌ Optimization failed: {}", e.getMessage(), e);
+            result.setOptimizationError(e.getMessage());
         }
+        progress.advance(UploadJob.Phase.OPTIMIZE, 1);
+    }
 
-        // Enrich with geocoding and distance calculation
-        enrichRidesWithLocationData(result.getRides());
+    /**
+     * CSV upload as a pipeline: a reader thread cuts the file into chunks of lines, parse workers turn
+     * each chunk into validated rows, and the calling thread takes the chunks back in file order to
+     * resolve patients and build rides. Row errors are therefore reported in line order.
+     */
+    private ParseResult parseCsvFile(InputStreamSource file, LocalDate assignmentDate, UploadProgress progress) throws IOException {
+        try (Reader reader = new InputStreamReader(file.getInputStream())) {
+            CsvTokenizer csv = new CsvTokenizer(reader);
+            if (!csv.next()) {
+                throw new IllegalArgumentException("Empty CSV file");
+            }
 
-        // Run optimization if requested
-        if (runOptimization && !result.getRides().isEmpty()) {
-            log.info("🚀 Running optimization on {} parsed rides...", result.getRides().size());
+            List<String> headers = new ArrayList<>(csv.fieldCount());
+            for (int i = 0; i < csv.fieldCount(); i++) headers.add(csv.field(i));
+            int[] plan = csvColumnPlan(buildHeaderMapping(headers));
+            TimeOfDayParser times = new TimeOfDayParser();
+            UploadBatch<CsvRow> batch = new UploadBatch<>("CSV", CsvRow::phone, this::buildCsvRide, progress);
+
+            BlockingQueue<CompletableFuture<List<ParsedLine>>> chunks = new ArrayBlockingQueue<>(CSV_PARSE_AHEAD);
+            AtomicBoolean abandoned = new AtomicBoolean();
+            CompletableFuture<Integer> reading = CompletableFuture.supplyAsync(
+                    () -> readCsvChunks(csv, plan, assignmentDate, times, chunks, abandoned), parseExecutor);
             try {
-                var optimizationResult = medicalTransportOptimizer.optimizeSchedule(result.getRides());
-                result.setOptimizationRan(true);
-                result.setOptimizationResult(optimizationResult);
-            } catch (Exception e) {
-                log.error("❌ Optimization failed: {}", e.getMessage(), e);
-                result.setOptimizationError(e.getMessage());
+                for (var chunk = chunks.take(); chunk != END_OF_CSV; chunk = chunks.take()) {
+                    for (ParsedLine parsed : chunk.join()) {
+                        if (parsed.error() != null) batch.reject(parsed.line(), parsed.error());
+                        else batch.add(parsed.line(), parsed.row());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("CSV upload interrupted", e);
+            } finally {
+                // Releases the reader if this thread failed before reaching the end of the file
+                abandoned.set(true);
+                chunks.clear();
+            }
+            batch.flush();
+
+            try {
+                return batch.result(reading.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+                throw e;
             }
         }
+    }
 
-        log.info("✅ Parse complete: {} rides processed, {} successful, {} skipped",
-                result.getTotalRows(), result.getSuccessfulRows(), result.getSkippedRows());
+    /** Outcome of parsing one CSV line: a row, null for a skipped (cancelled) ride, or an error. */
+    private record ParsedLine(int line, CsvRow row, String error) {}
 
-        return result;
+    /** A CSV row parsed and validated off the request thread, waiting for its patient. */
+    private record CsvRow(String name, String phone, String pickup, String dropoff, String purpose,
+                          LocalDateTime pickupTime, boolean roundTrip, String runId, String notes,
+                          NoteFindings noteFindings, Double distance) {}
+
+    /**
+     * Positions of {@link #CSV_COLUMNS} in this file, -1 where absent; resolved once so rows are read
+     * by index.
+     */
+    private static int[] csvColumnPlan(Map<String, Integer> headerMap) {
+        int[] plan = new int[CSV_COLUMNS.size()];
+        for (int column = 0; column < plan.length; column++) {
+            plan[column] = headerMap.getOrDefault(CSV_COLUMNS.get(column), -1);
+        }
+        return plan;
     }
 
     /**
-     * Enhanced CSV parser for your headers
+     * Reader stage: tokenizes records into chunks for the parse workers and queues their results in
+     * file order.
+     *
+     * @return number of records read including the header
      */
-    private ParseResult parseCsvFile(MultipartFile file, LocalDate assignmentDate) throws IOException {
-        List<Ride> rides = new ArrayList<>();
-        int totalRows = 0;
-        int skipped = 0;
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            String headerLine = reader.readLine();
-            if (headerLine == null) {
-                throw new IllegalArgumentException("Empty CSV file");
+    private int readCsvChunks(CsvTokenizer csv, int[] plan, LocalDate assignmentDate, TimeOfDayParser times,
+                              BlockingQueue<CompletableFuture<List<ParsedLine>>> chunks, AtomicBoolean abandoned) {
+        int records = 1;
+        try {
+            CsvTokenizer.Records chunk = new CsvTokenizer.Records(CSV_PARSE_CHUNK);
+            while (!abandoned.get() && csv.next()) {
+                csv.appendTo(chunk);
+                records++;
+                if (chunk.size() == CSV_PARSE_CHUNK) {
+                    submitCsvChunk(chunk, plan, assignmentDate, times, chunks, abandoned);
+                    chunk = new CsvTokenizer.Records(CSV_PARSE_CHUNK);
+                }
+            }
+            if (chunk.size() > 0) {
+                submitCsvChunk(chunk, plan, assignmentDate, times, chunks, abandoned);
             }
+            return records;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            enqueue(chunks, END_OF_CSV, abandoned);
+        }
+    }
 
-            Map<String, Integer> headerMap = buildHeaderMapping(Arrays.asList(headerLine.split(",")));
-            totalRows++;
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                totalRows++;
-                try {
-                    String[] values = parseCsvLine(line);
-                    Ride ride = parseRideFromCsvValues(values, headerMap, assignmentDate);
-                    if (ride != null) {
-                        rides.add(ride);
-                    } else {
-                        skipped++;
-                    }
-                } catch (Exception e) {
-                    log.error("❌ Failed to parse CSV row {}: {}", totalRows, e.getMessage());
-                    skipped++;
-                }
+    private void submitCsvChunk(CsvTokenizer.Records chunk, int[] plan, LocalDate assignmentDate, TimeOfDayParser times,
+                                BlockingQueue<CompletableFuture<List<ParsedLine>>> chunks, AtomicBoolean abandoned) {
+        enqueue(chunks, CompletableFuture.supplyAsync(
+                () -> parseCsvChunk(chunk, plan, assignmentDate, times), parseExecutor), abandoned);
+    }
+
+    private static <T> void enqueue(BlockingQueue<T> queue, T item, AtomicBoolean abandoned) {
+        try {
+            while (!abandoned.get() && !queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                // Writer is busy; wait for room
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+    }
 
-        return ParseResult.create(rides, skipped, totalRows);
+    /** Parse stage: pure per-record work, run on the parse workers. */
+    private List<ParsedLine> parseCsvChunk(CsvTokenizer.Records records, int[] plan, LocalDate assignmentDate,
+                                           TimeOfDayParser times) {
+        List<ParsedLine> parsed = new ArrayList<>(records.size());
+        for (int record = 0; record < records.size(); record++) {
+            int line = records.line(record);
+            try {
+                parsed.add(new ParsedLine(line, parseCsvRow(records, record, plan, assignmentDate, times), null));
+            } catch (Exception e) {
+                parsed.add(new ParsedLine(line, null, e.getMessage() != null ? e.getMessage() : e.toString()));
+            }
+        }
+        return parsed;
     }
 
     /**
-     * Enhanced Excel parser using your existing logic
+     * Enhanced Excel parser. .xlsx files are streamed row by row so the workbook is never held in
+     * memory; legacy .xls files are small by format and still go through the workbook model.
      */
-    private ParseResult parseExcelFileEnhanced(MultipartFile file, LocalDate assignmentDate) throws IOException {
-        List<Ride> rides = new ArrayList<>();
-        int totalRows = 0;
-        int skipped = 0;
+    private ParseResult parseExcelFileEnhanced(InputStreamSource file, LocalDate assignmentDate, UploadProgress progress) throws IOException {
+        try (InputStream in = FileMagic.prepareToCheckMagic(file.getInputStream())) {
+            if (FileMagic.valueOf(in) != FileMagic.OOXML) {
+                return parseLegacyExcelFile(file, assignmentDate, progress);
+            }
+        }
+
+        AtomicReference<UploadBatch<String[]>> batch = new AtomicReference<>();
+
+        // The SAX reader needs random access to the zip, so spool the upload to disk rather than heap
+        boolean spooled = !(file instanceof FileSystemResource);
+        Path upload = spooled ? Files.createTempFile("rides-", ".xlsx") : ((FileSystemResource) file).getFile().toPath();
+        try {
+            if (file instanceof MultipartFile multipart) {
+                multipart.transferTo(upload);
+            } else if (spooled) {
+                try (InputStream in = file.getInputStream()) {
+                    Files.copy(in, upload, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            int totalRows = StreamingXlsxReader.read(upload, (rowIndex, cells) -> {
+                if (batch.get() == null) {
+                    if (rowIndex != 0) {
+                        throw new IllegalArgumentException("No header row found in Excel file");
+                    }
+                    batch.set(excelBatch(buildEnhancedHeaderMapping(cells), assignmentDate, progress));
+                    return;
+                }
+                batch.get().add(rowIndex + 1, cells);
+            });
+
+            if (totalRows == 0) {
+                throw new IllegalArgumentException("Empty Excel file");
+            }
+            batch.get().flush();
+            return batch.get().result(totalRows);
+        } finally {
+            if (spooled) Files.deleteIfExists(upload);
+        }
+    }
+
+    private ParseResult parseLegacyExcelFile(InputStreamSource file, LocalDate assignmentDate, UploadProgress progress) throws IOException {
+        UploadBatch<String[]> batch;
+        int totalRows;
 
         try (Workbook workbook = WorkbookFactory.create(file.getInputStream())) {
             Sheet sheet = workbook.getSheetAt(0);
@@ -153,151 +362,280 @@ public class ExcelParserService {
                 throw new IllegalArgumentException("Empty Excel file");
             }
 
-            // Build header mapping using your existing method
-            Map<String, Integer> headerMap = buildEnhancedHeaderMapping(sheet);
+            Row headerRow = sheet.getRow(0);
+            if (headerRow == null) {
+                throw new IllegalArgumentException("No header row found in Excel file");
+            }
+            batch = excelBatch(buildEnhancedHeaderMapping(cellTexts(headerRow)), assignmentDate, progress);
 
-            // Process data rows using your existing logic
             for (int i = 1; i <= sheet.getLastRowNum(); i++) {
                 Row row = sheet.getRow(i);
                 if (row == null) continue;
-
-                try {
-                    Ride ride = parseEnhancedRideRow(row, headerMap, assignmentDate);
-                    if (ride != null) {
-                        rides.add(ride);
-                    } else {
-                        skipped++;
-                    }
-                } catch (Exception e) {
-                    log.error("❌ Failed to parse Excel row {}: {}", i + 1, e.getMessage());
-                    skipped++;
-                }
+                batch.add(i + 1, cellTexts(row));
             }
+            batch.flush();
         }
 
-        return ParseResult.create(rides, skipped, totalRows);
+        return batch.result(totalRows);
+    }
+
+    private UploadBatch<String[]> excelBatch(Map<String, Integer> headerMap, LocalDate assignmentDate, UploadProgress progress) {
+        TimeOfDayParser times = new TimeOfDayParser();
+        return new UploadBatch<>("Excel", cells -> getValue(cells, headerMap, "PHONE"),
+                (cells, patients, updated) -> parseEnhancedRideRow(cells, headerMap, patients, updated, assignmentDate, times),
+                progress);
+    }
+
+    @FunctionalInterface
+    private interface RowParser<T> {
+        /**
+         * The ride for one data row, or null to skip it; {@code patients} holds the upload's patients by
+         * phone, and existing patients the row changes are added to {@code updated}.
+         */
+        Ride parse(T row, Map<String, Patient> patients, Set<Patient> updated);
     }
 
     /**
-     * Parse ride from CSV values matching your header spec
+     * Data rows of one upload on their way to rides, in file order. Rows are buffered in chunks; each
+     * chunk looks up the existing patients for all of its phone numbers in one query before its rows
+     * are turned into rides. Rejected rows are buffered with the rest so errors keep file order.
+     * Nothing is written here: {@link #persistUpload} saves the upload's rides and the patients they
+     * introduced or changed.
      */
-    private Ride parseRideFromCsvValues(String[] values, Map<String, Integer> headerMap, LocalDate assignmentDate) {
-        try {
-            // Extract required fields from your CSV format
-            String name = getValue(values, headerMap, "NAME");
-            String phone = getValue(values, headerMap, "PHONE");
-            String pickupLocation = getValue(values, headerMap, "PICK UP");
-            String dropoffLocation = getValue(values, headerMap, "DROP OFF");
-            String purpose = getValue(values, headerMap, "PURPOSE");
-            String timeStr = getValue(values, headerMap, "TIME");
-            String cancelled = getValue(values, headerMap, "CANCELLED");
-            String returnTrip = getValue(values, headerMap, "RETURN");
-            String runId = getValue(values, headerMap, "RUN ID");
-            String notes = getValue(values, headerMap, "NOTE");
-            String distanceStr = getValue(values, headerMap, "DISTANCE");
-
-            // Validate required fields
-            if (isBlank(name) || isBlank(phone) || isBlank(pickupLocation) || isBlank(dropoffLocation) || isBlank(timeStr)) {
-                log.warn("⚠️ Skipping row with missing required fields");
-                return null;
-            }
+    private final class UploadBatch<T> {
+        private final String kind;
+        private final Function<T, String> phoneOf;
+        private final RowParser<T> parser;
+        private final UploadProgress progress;
+        private final Map<String, Patient> patientsByPhone = new HashMap<>();
+        private final Set<Patient> updatedPatients = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final List<Integer> lines = new ArrayList<>();
+        private final List<T> rows = new ArrayList<>();
+        private final List<String> rejections = new ArrayList<>();
+        private final List<Ride> rides = new ArrayList<>();
+        private final List<BulkRideUploadResultDto.ProcessingError> errors = new ArrayList<>();
+        private int skipped;
+
+        UploadBatch(String kind, Function<T, String> phoneOf, RowParser<T> parser, UploadProgress progress) {
+            this.kind = kind;
+            this.phoneOf = phoneOf;
+            this.parser = parser;
+            this.progress = progress;
+        }
 
-            // Check if cancelled
-            if (!isBlank(cancelled) && parseBoolean(cancelled)) {
-                log.debug("🚫 Skipping cancelled ride for {}", name);
-                return null;
-            }
+        /** Queue a data row from 1-based {@code line}; a null row is skipped without an error. */
+        void add(int line, T row) {
+            buffer(line, row, null);
+        }
 
-            // Find or create patient
-        Patient patient = findOrCreatePatient(name, phone);
+        void reject(int line, String message) {
+            buffer(line, null, message);
+        }
 
-            // Parse pickup time
-            LocalDateTime pickupTime = parseDateTime(timeStr, assignmentDate);
-            if (pickupTime == null) {
-                log.warn("⚠️ Invalid time format for {}: {}", name, timeStr);
-                return null;
-            }
+        private void buffer(int line, T row, String rejection) {
+            lines.add(line);
+            rows.add(row);
+            rejections.add(rejection);
+            if (rows.size() == PATIENT_LOOKUP_CHUNK) flush();
+        }
 
-            // Create ride with your embeddable Location
-            Ride ride = Ride.builder()
-                    .patient(patient)
-                    .pickupLocation(createLocation(pickupLocation))
-                    .dropoffLocation(createLocation(dropoffLocation))
-                    .pickupTime(pickupTime)
-                    .priority(determinePriority(purpose))
-                    .status(RideStatus.SCHEDULED)
-                    .build();
-            Long org = currentOrgId();
-            if (org != null) {
-                ride.setOrgId(org);
+        void flush() {
+            Set<String> phones = new HashSet<>();
+            for (T row : rows) {
+                String phone = row != null ? phoneOf.apply(row) : null;
+                if (!isBlank(phone) && !patientsByPhone.containsKey(phone)) phones.add(phone);
+            }
+            if (!phones.isEmpty()) {
+                Long org = currentOrgId();
+                List<Patient> existing = (org != null)
+                        ? patientRepository.findByOrgIdAndPhoneIn(org, phones)
+                        : patientRepository.findByPhoneIn(phones);
+                existing.forEach(patient -> patientsByPhone.putIfAbsent(patient.getPhone(), patient));
             }
 
-            // Handle return trip logic
-            boolean isRoundTrip = !isBlank(returnTrip) && parseBoolean(returnTrip);
-            ride.setIsRoundTrip(isRoundTrip);
-            ride.setRideType(isRoundTrip ? RideType.ROUND_TRIP : RideType.ONE_WAY);
-
-            // Set appointment duration based on purpose if round trip
-            if (isRoundTrip) {
-                Integer duration = determineAppointmentDuration(purpose);
-                ride.setAppointmentDuration(duration);
-                if (duration != null) {
-                    LocalDateTime dropoffTime = pickupTime.plusMinutes(duration);
-                    ride.setDropoffTime(dropoffTime);
-                    ride.setDropoffTimeWindow(dropoffTime, 5);
+            for (int i = 0; i < rows.size(); i++) {
+                String rejection = rejections.get(i);
+                if (rejection == null && rows.get(i) != null) {
+                    try {
+                        Ride ride = parser.parse(rows.get(i), patientsByPhone, updatedPatients);
+                        if (ride != null) {
+                            rides.add(ride);
+                            continue;
+                        }
+                    } catch (Exception e) {
+                        rejection = e.getMessage() != null ? e.getMessage() : e.toString();
+                    }
+                }
+                if (rejection != null) {
+                    log.warn("⚠️ Skipping {} row {}: {}", kind, lines.get(i), rejection);
+                    errors.add(new BulkRideUploadResultDto.ProcessingError(lines.get(i), rejection));
                 }
+                skipped++;
             }
+            progress.advance(UploadJob.Phase.PARSE, rows.size());
+            lines.clear();
+            rows.clear();
+            rejections.clear();
+        }
 
-            // Set time windows (±5 minutes default)
-            ride.setPickupTimeWindow(pickupTime, 5);
-            // Unassigned initially means SCHEDULED (no driver assigned yet)
-            ride.setStatus(RideStatus.SCHEDULED);
+        ParseResult result(int totalRows) {
+            ParseResult result = ParseResult.create(rides, skipped, totalRows, errors);
+            result.setUpdatedPatients(updatedPatients);
+            return result;
+        }
+    }
 
-            // Handle notes and special requirements
-            if (!isBlank(notes)) {
-                patient.addSpecialNeed("notes", notes);
-                analyzeNotesForMedicalRequirements(patient, notes);
-            }
+    /**
+     * PERSIST phase: save parsed rides, the patients they introduced and the changes the rows made to
+     * existing patients, all in this transaction. Ids come from pooled sequences, so the inserts go out
+     * in JDBC batches.
+     */
+    public void persistUpload(ParseResult result, UploadProgress progress) {
+        List<Ride> rides = result.getRides();
+        progress.start(UploadJob.Phase.PERSIST, rides.size());
+        Set<Patient> newPatients = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Ride ride : rides) {
+            if (ride.getPatient() != null && ride.getPatient().getId() == null) newPatients.add(ride.getPatient());
+        }
+        Set<Patient> updatedPatients = result.getUpdatedPatients();
+        if (!updatedPatients.isEmpty()) {
+            // Load them in one query so merging the parsed changes needs no select per patient
+            patientRepository.findAllById(updatedPatients.stream().map(Patient::getId).toList());
+            patientRepository.saveAll(updatedPatients);
+        }
+        patientRepository.saveAll(newPatients);
+        rideRepository.saveAll(rides);
+        progress.advance(UploadJob.Phase.PERSIST, rides.size());
+        log.info("💾 Saved {} rides, {} new and {} updated patients", rides.size(), newPatients.size(),
+                updatedPatients.size());
+    }
 
-            // Parse distance if provided
-            if (!isBlank(distanceStr)) {
-                try {
-                    double distance = Double.parseDouble(distanceStr.replaceAll("[^0-9.]", ""));
-                    ride.setDistance(distance);
-                } catch (NumberFormatException e) {
-                    log.debug("Could not parse distance: {}", distanceStr);
-                }
+    /**
+     * Parse and validate one CSV row matching your header spec, without touching the database.
+     *
+     * @return the row, or null for a cancelled ride
+     * @throws IllegalArgumentException naming what is wrong with the row
+     */
+    private CsvRow parseCsvRow(CsvTokenizer.Records records, int record, int[] plan, LocalDate assignmentDate,
+                               TimeOfDayParser times) {
+        String missing = ExcelRowValidator.missingRequired(CSV_REQUIRED, i -> !records.isBlank(record, plan[i]));
+        if (missing != null) {
+            throw new IllegalArgumentException(missing);
+        }
+
+        // Check if cancelled
+        if (records.equalsAnyIgnoreCase(record, plan[COL_CANCELLED], TRUE_VALUES)) {
+            log.debug("🚫 Skipping cancelled ride for {}", records.string(record, plan[COL_NAME]));
+            return null;
+        }
+
+        // Parse pickup time
+        LocalTime time = times.parse(records.slice(record, plan[COL_TIME]));
+        if (time == null) {
+            throw new IllegalArgumentException("Invalid time format: " + records.string(record, plan[COL_TIME]));
+        }
+        LocalDateTime pickupTime = LocalDateTime.of(assignmentDate, time);
+
+        // Parse distance if provided
+        Double distance = null;
+        if (!records.isBlank(record, plan[COL_DISTANCE])) {
+            String distanceStr = records.string(record, plan[COL_DISTANCE]);
+            try {
+                distance = Double.parseDouble(distanceStr.replaceAll("[^0-9.]", ""));
+            } catch (NumberFormatException e) {
+                log.debug("Could not parse distance: {}", distanceStr);
             }
+        }
+
+        String notes = records.string(record, plan[COL_NOTE]);
+        return new CsvRow(records.string(record, plan[COL_NAME]), records.string(record, plan[COL_PHONE]),
+                records.string(record, plan[COL_PICKUP]), records.string(record, plan[COL_DROPOFF]),
+                records.string(record, plan[COL_PURPOSE]), pickupTime,
+                records.equalsAnyIgnoreCase(record, plan[COL_RETURN], TRUE_VALUES),
+                records.string(record, plan[COL_RUN_ID]), notes, analyzeNotes(notes), distance);
+    }
+
+    /**
+     * Ride for a parsed CSV row; runs on the writer thread in file order.
+     */
+    private Ride buildCsvRide(CsvRow row, Map<String, Patient> patients, Set<Patient> updated) {
+        // Find or create patient
+        Patient patient = findOrCreatePatient(patients, row.name(), row.phone());
+        LocalDateTime pickupTime = row.pickupTime();
+
+        // Create ride with your embeddable Location
+        Ride ride = Ride.builder()
+                .patient(patient)
+                .pickupLocation(createLocation(row.pickup()))
+                .dropoffLocation(createLocation(row.dropoff()))
+                .pickupTime(pickupTime)
+                .priority(determinePriority(row.purpose()))
+                .status(RideStatus.SCHEDULED)
+                .build();
+        Long org = currentOrgId();
+        if (org != null) {
+            ride.setOrgId(org);
+        }
 
-            // Set run ID for batch tracking
-            if (!isBlank(runId)) {
-                ride.setOptimizationBatchId(runId);
+        // Handle return trip logic
+        boolean isRoundTrip = row.roundTrip();
+        ride.setIsRoundTrip(isRoundTrip);
+        ride.setRideType(isRoundTrip ? RideType.ROUND_TRIP : RideType.ONE_WAY);
+
+        // Set appointment duration based on purpose if round trip
+        if (isRoundTrip) {
+            Integer duration = determineAppointmentDuration(row.purpose());
+            ride.setAppointmentDuration(duration);
+            if (duration != null) {
+                LocalDateTime dropoffTime = pickupTime.plusMinutes(duration);
+                ride.setDropoffTime(dropoffTime);
+                ride.setDropoffTimeWindow(dropoffTime, 5);
             }
+        }
 
-            return rideRepository.save(ride);
+        // Set time windows (±5 minutes default)
+        ride.setPickupTimeWindow(pickupTime, 5);
+        // Unassigned initially means SCHEDULED (no driver assigned yet)
+        ride.setStatus(RideStatus.SCHEDULED);
 
-        } catch (Exception e) {
-            log.error("❌ Failed to parse ride from CSV values", e);
-            return null;
+        // Handle notes and special requirements
+        if (!isBlank(row.notes())) {
+            patient.addSpecialNeed("notes", row.notes());
+            applyNoteFindings(patient, row.noteFindings());
+            if (patient.getId() != null) updated.add(patient);
         }
+
+        if (row.distance() != null) {
+            ride.setDistance(row.distance());
+        }
+
+        // Set run ID for batch tracking
+        if (!isBlank(row.runId())) {
+            ride.setOptimizationBatchId(row.runId());
+        }
+
+        return ride;
     }
 
     /**
      * Use your existing parseEnhancedRideRow method but with Location embeddable
      */
-    private Ride parseEnhancedRideRow(Row row, Map<String, Integer> headerMap, LocalDate assignmentDate) {
+    private Ride parseEnhancedRideRow(String[] row, Map<String, Integer> headerMap, Map<String, Patient> patients,
+                                      Set<Patient> updated, LocalDate assignmentDate, TimeOfDayParser times) {
         // Extract basic required fields
-        String name = getCellValue(row, headerMap, "NAME");
-        String phone = getCellValue(row, headerMap, "PHONE");
-        String pickup = getCellValue(row, headerMap, "PICK UP");
-        String dropoff = getCellValue(row, headerMap, "DROP OFF");
-
-        if (name.isBlank() || phone.isBlank() || pickup.isBlank() || dropoff.isBlank()) {
-            return null;
+        String name = getValue(row, headerMap, "NAME");
+        String phone = getValue(row, headerMap, "PHONE");
+        String pickup = getValue(row, headerMap, "PICK UP");
+        String dropoff = getValue(row, headerMap, "DROP OFF");
+
+        String missing = ExcelRowValidator.missingRequired(row, headerMap, EXCEL_REQUIRED);
+        if (missing != null) {
+            throw new IllegalArgumentException(missing);
         }
 
         // Find or create patient with enhanced medical information
-        Patient patient = findOrCreateEnhancedPatient(row, headerMap, name, phone);
+        Patient patient = findOrCreateEnhancedPatient(patients, row, headerMap, name, phone);
+        if (patient.getId() != null) updated.add(patient);
 
         // Create ride with enhanced features using embeddable Location
         Ride ride = Ride.builder()
@@ -312,7 +650,7 @@ public class ExcelParserService {
         }
 
         // Parse time
-        parsePickupTime(ride, row, headerMap, assignmentDate);
+        parsePickupTime(ride, row, headerMap, assignmentDate, times);
 
         // Parse medical transport specific fields
         parseMedicalTransportFields(ride, row, headerMap);
@@ -324,7 +662,7 @@ public class ExcelParserService {
         // Determine vehicle requirements based on patient needs
         setVehicleRequirements(ride);
 
-        return rideRepository.save(ride);
+        return ride;
     }
 
     // Rest of the helper methods remain the same...
@@ -348,23 +686,19 @@ public class ExcelParserService {
         return headerMap;
     }
 
-    private Map<String, Integer> buildEnhancedHeaderMapping(Sheet sheet) {
+    private Map<String, Integer> buildEnhancedHeaderMapping(String[] headerRow) {
         Map<String, Integer> headerMap = new HashMap<>();
-        Row headerRow = sheet.getRow(0);
 
-        if (headerRow == null) {
-            throw new IllegalArgumentException("No header row found in Excel file");
-        }
-
-        for (Cell cell : headerRow) {
-            String header = cell.getStringCellValue().trim().toUpperCase();
-            headerMap.put(header, cell.getColumnIndex());
+        for (int column = 0; column < headerRow.length; column++) {
+            if (isBlank(headerRow[column])) continue;
+            String header = headerRow[column].trim().toUpperCase();
+            headerMap.put(header, column);
 
             // Add medical header variations
-            addMedicalHeaderVariations(headerMap, header, cell.getColumnIndex());
+            addMedicalHeaderVariations(headerMap, header, column);
 
             // Add CSV header variations
-            addCsvHeaderVariations(headerMap, header, cell.getColumnIndex());
+            addCsvHeaderVariations(headerMap, header, column);
         }
 
         log.debug("📋 Found headers: {}", String.join(", ", headerMap.keySet()));
@@ -409,15 +743,13 @@ public class ExcelParserService {
         return location;
     }
 
-    private Patient findOrCreatePatient(String name, String phone) {
+    private Patient findOrCreatePatient(Map<String, Patient> patients, String name, String phone) {
         Long org = currentOrgId();
-        Optional<Patient> existingPatient = (org != null)
-                ? patientRepository.findByPhoneAndOrgId(phone, org)
-                : patientRepository.findByPhone(phone);
+        Patient existingPatient = patients.get(phone);
 
-        if (existingPatient.isPresent()) {
+        if (existingPatient != null) {
             log.debug("👤 Found existing patient: {}", name);
-            return existingPatient.get();
+            return existingPatient;
         }
 
         log.debug("👤 Creating new patient: {}", name);
@@ -428,18 +760,15 @@ public class ExcelParserService {
                 .build();
         if (org != null) patient.setOrgId(org);
 
-        return patientRepository.save(patient);
+        patients.put(phone, patient);
+        return patient;
     }
 
-    private Patient findOrCreateEnhancedPatient(Row row, Map<String, Integer> headerMap, String name, String phone) {
+    private Patient findOrCreateEnhancedPatient(Map<String, Patient> patients, String[] row, Map<String, Integer> headerMap,
+                                                String name, String phone) {
         Long org = currentOrgId();
-        Optional<Patient> existingPatient = (org != null)
-                ? patientRepository.findByPhoneAndOrgId(phone, org)
-                : patientRepository.findByPhone(phone);
-
-        Patient patient;
-        if (existingPatient.isPresent()) {
-            patient = existingPatient.get();
+        Patient patient = patients.get(phone);
+        if (patient != null) {
             log.debug("📝 Found existing patient: {}", name);
         } else {
             patient = Patient.builder()
@@ -449,37 +778,18 @@ public class ExcelParserService {
                     .build();
             if (org != null) patient.setOrgId(org);
             log.debug("👤 Creating new patient: {}", name);
+            patients.put(phone, patient);
         }
 
         // Update/set medical information from Excel
         updatePatientMedicalInfo(patient, row, headerMap);
 
-        return patientRepository.save(patient);
+        return patient;
     }
 
     // All other helper methods remain the same...
     // (Including: parseDateTime, determineAppointmentDuration, etc.)
 
-    private String[] parseCsvLine(String line) {
-        List<String> values = new ArrayList<>();
-        boolean inQuotes = false;
-        StringBuilder current = new StringBuilder();
-
-        for (char c : line.toCharArray()) {
-            if (c == '"') {
-                inQuotes = !inQuotes;
-            } else if (c == ',' && !inQuotes) {
-                values.add(current.toString().trim());
-                current = new StringBuilder();
-            } else {
-                current.append(c);
-            }
-        }
-        values.add(current.toString().trim());
-
-        return values.toArray(new String[0]);
-    }
-
     private String getValue(String[] values, Map<String, Integer> headerMap, String key) {
         Integer index = headerMap.get(key);
         if (index == null || index >= values.length) {
@@ -521,78 +831,13 @@ public class ExcelParserService {
         return 60; // Default 1 hour
     }
 
-    private LocalDateTime parseDateTime(String timeStr, LocalDate assignmentDate) {
-        if (isBlank(timeStr)) return null;
-
-        try {
-            String cleanTime = timeStr.trim().toUpperCase();
-            cleanTime = cleanTime.replaceAll("^(AT|@)\\s*", "");
-
-            LocalTime time = null;
-
-            // Try parsing various formats
-            List<DateTimeFormatter> formatters = Arrays.asList(
-                    DateTimeFormatter.ofPattern("H:mm"),
-                    DateTimeFormatter.ofPattern("HH:mm"),
-                    DateTimeFormatter.ofPattern("h:mm a"),
-                    DateTimeFormatter.ofPattern("H:mm a")
-            );
-
-            for (DateTimeFormatter formatter : formatters) {
-                try {
-                    time = LocalTime.parse(cleanTime, formatter);
-                    break;
-                } catch (DateTimeParseException ignored) {
-                    // Try next formatter
-                }
-            }
-
-            if (time == null) {
-                time = parseTimeManually(cleanTime);
-            }
-
-            return time != null ? LocalDateTime.of(assignmentDate, time) : null;
-
-        } catch (Exception e) {
-            log.debug("Failed to parse time: {}", timeStr, e);
-            return null;
-        }
-    }
-
-    private LocalTime parseTimeManually(String timeStr) {
-        try {
-            String cleaned = timeStr.replaceAll("[^0-9APM]", "");
-            boolean isPM = cleaned.contains("P");
-            boolean isAM = cleaned.contains("A");
-            String numbers = cleaned.replaceAll("[APM]", "");
-
-            if (numbers.length() == 3 || numbers.length() == 4) {
-                int hour, minute;
-                if (numbers.length() == 3) {
-                    hour = Integer.parseInt(numbers.substring(0, 1));
-                    minute = Integer.parseInt(numbers.substring(1));
-                } else {
-                    hour = Integer.parseInt(numbers.substring(0, 2));
-                    minute = Integer.parseInt(numbers.substring(2));
-                }
-
-                // Convert 12-hour to 24-hour
-                if (isPM && hour != 12) hour += 12;
-                if (isAM && hour == 12) hour = 0;
-
-                return LocalTime.of(hour, minute);
-            }
-        } catch (Exception e) {
-            log.debug("Manual time parsing failed for: {}", timeStr, e);
-        }
-        return null;
-    }
-
     private boolean parseBoolean(String value) {
         if (isBlank(value)) return false;
-        String lower = value.toLowerCase().trim();
-        return "true".equals(lower) || "yes".equals(lower) || "y".equals(lower) ||
-                "1".equals(lower) || "x".equals(lower) || "✓".equals(lower);
+        String trimmed = value.trim();
+        for (String truthy : TRUE_VALUES) {
+            if (truthy.equalsIgnoreCase(trimmed)) return true;
+        }
+        return false;
     }
 
     private boolean isBlank(String str) {
@@ -606,14 +851,25 @@ public class ExcelParserService {
                 ride.getDropoffLocation().isValid();
     }
 
-    private void enrichRidesWithLocationData(List<Ride> rides) {
+    private void enrichRidesWithLocationData(List<Ride> rides, UploadProgress progress) {
         log.info("🌍 Enriching {} rides with location data...", rides.size());
 
+        // Resolve every distinct address of the upload once, concurrently, before touching rides
+        List<String> addresses = new ArrayList<>(rides.size() * 2);
+        for (Ride ride : rides) {
+            if (ride.getPickupLocation() != null) addresses.add(ride.getPickupLocation().getAddress());
+            if (ride.getDropoffLocation() != null) addresses.add(ride.getDropoffLocation().getAddress());
+        }
+        progress.start(UploadJob.Phase.GEOCODE, 0);
+        Map<String, GeocodingService.GeoPoint> geocoded = geocodingService.geocodeAll(addresses,
+                (done, unique) -> progress.update(UploadJob.Phase.GEOCODE, done, unique));
+
+        progress.start(UploadJob.Phase.DISTANCE, rides.size());
         for (Ride ride : rides) {
             try {
                 // Geocode pickup location
                 if (ride.getPickupLocation() != null && ride.getPickupLocation().getAddress() != null) {
-                    GeocodingService.GeoPoint pickupGeo = geocodingService.geocode(ride.getPickupLocation().getAddress());
+                    GeocodingService.GeoPoint pickupGeo = geocoded.get(ride.getPickupLocation().getAddress());
                     if (pickupGeo != null) {
                         ride.getPickupLocation().setLatitude(pickupGeo.lat());
                         ride.getPickupLocation().setLongitude(pickupGeo.lng());
@@ -622,7 +878,7 @@ public class ExcelParserService {
 
                 // Geocode dropoff location
                 if (ride.getDropoffLocation() != null && ride.getDropoffLocation().getAddress() != null) {
-                    GeocodingService.GeoPoint dropoffGeo = geocodingService.geocode(ride.getDropoffLocation().getAddress());
+                    GeocodingService.GeoPoint dropoffGeo = geocoded.get(ride.getDropoffLocation().getAddress());
                     if (dropoffGeo != null) {
                         ride.getDropoffLocation().setLatitude(dropoffGeo.lat());
                         ride.getDropoffLocation().setLongitude(dropoffGeo.lng());
@@ -634,11 +890,10 @@ public class ExcelParserService {
                     calculateDistanceAndDuration(ride);
                 }
 
-                rideRepository.save(ride);
-
             } catch (Exception e) {
                 log.error("❌ Failed to enrich ride {} with location data", ride.getId(), e);
             }
+            progress.advance(UploadJob.Phase.DISTANCE, 1);
         }
 
         log.info("✅ Location enrichment complete");
@@ -671,115 +926,75 @@ public class ExcelParserService {
         }
     }
 
-    private void analyzeNotesForMedicalRequirements(Patient patient, String notes) {
-        if (isBlank(notes)) return;
+    /** Medical requirements mentioned in a ride's notes. */
+    private record NoteFindings(boolean wheelchair, boolean stretcher, boolean oxygen, boolean dialysis, boolean chemo) {}
+
+    private NoteFindings analyzeNotes(String notes) {
+        if (isBlank(notes)) return null;
 
         String notesLower = notes.toLowerCase();
+        return new NoteFindings(
+                notesLower.contains("wheelchair") || notesLower.contains("w/c") || notesLower.contains("wc"),
+                notesLower.contains("stretcher") || notesLower.contains("gurney") || notesLower.contains("bed bound"),
+                notesLower.contains("oxygen") || notesLower.contains("o2") || notesLower.contains("breathing"),
+                notesLower.contains("dialysis"),
+                notesLower.contains("chemo") || notesLower.contains("chemotherapy"));
+    }
+
+    private void applyNoteFindings(Patient patient, NoteFindings findings) {
+        if (findings == null) return;
 
         // Check for wheelchair requirements
-        if (notesLower.contains("wheelchair") || notesLower.contains("w/c") || notesLower.contains("wc")) {
+        if (findings.wheelchair()) {
             patient.setRequiresWheelchair(true);
             patient.setMobilityLevel(MobilityLevel.WHEELCHAIR);
         }
 
         // Check for stretcher requirements
-        if (notesLower.contains("stretcher") || notesLower.contains("gurney") || notesLower.contains("bed bound")) {
+        if (findings.stretcher()) {
             patient.setRequiresStretcher(true);
             patient.setMobilityLevel(MobilityLevel.STRETCHER);
         }
 
         // Check for oxygen requirements
-        if (notesLower.contains("oxygen") || notesLower.contains("o2") || notesLower.contains("breathing")) {
+        if (findings.oxygen()) {
             patient.setRequiresOxygen(true);
         }
 
         // Add medical conditions based on keywords
-        if (notesLower.contains("dialysis")) {
+        if (findings.dialysis()) {
             patient.addMedicalCondition("dialysis");
         }
-        if (notesLower.contains("chemo") || notesLower.contains("chemotherapy")) {
+        if (findings.chemo()) {
             patient.addMedicalCondition("chemotherapy");
         }
     }
 
     // Placeholder methods - implement as needed
-    private void parsePickupTime(Ride ride, Row row, Map<String, Integer> headerMap, LocalDate assignmentDate) {
+    private void parsePickupTime(Ride ride, String[] row, Map<String, Integer> headerMap, LocalDate assignmentDate,
+                                 TimeOfDayParser times) {
         // Your existing time parsing logic (enhanced)
-        Cell timeCell = row.getCell(headerMap.getOrDefault("TIME", -1));
-        if (timeCell == null) {
+        Integer timeColumn = headerMap.get("TIME");
+        if (timeColumn == null || timeColumn >= row.length) {
             throw new RuntimeException("Missing TIME column");
         }
 
-        try {
-            LocalTime time;
-
-            if (timeCell.getCellType() == CellType.NUMERIC) {
-                // Excel numeric date/time
-                Date javaDate = DateUtil.getJavaDate(timeCell.getNumericCellValue());
-                time = javaDate.toInstant().atZone(ZoneId.of("America/Denver")).toLocalTime();
-            } else {
-                String timeStr = getCellValue(timeCell).trim();
-                if (timeStr.isEmpty()) {
-                    throw new RuntimeException("Empty TIME value");
-                }
-
-                if (timeStr.matches("\\d+(\\.\\d+)?")) {
-                    double numericTime = Double.parseDouble(timeStr);
-                    Date javaDate = DateUtil.getJavaDate(numericTime);
-                    time = javaDate.toInstant().atZone(ZoneId.of("America/Denver")).toLocalTime();
-                } else {
-                    // Enhanced time parsing for various formats
-                    time = parseTimeString(timeStr);
-                }
-            }
-
-            ride.setPickupTime(LocalDateTime.of(assignmentDate, time));
-
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to parse TIME: " + e.getMessage(), e);
+        String timeStr = row[timeColumn].trim();
+        if (timeStr.isEmpty()) {
+            throw new RuntimeException("Empty TIME value");
         }
-    }
-        private LocalTime parseTimeString(String timeStr) {
-        // Handle various time formats: "9:30", "9:30 AM", "09:30", "930", etc.
-        timeStr = timeStr.toUpperCase().trim();
-
-        // Remove AM/PM and handle 12-hour format
-        boolean isPM = timeStr.contains("PM");
-        boolean isAM = timeStr.contains("AM");
-        timeStr = timeStr.replaceAll("[APM\\s]", "");
 
-        // Handle different formats
-        if (timeStr.contains(":")) {
-            String[] parts = timeStr.split(":");
-            int hour = Integer.parseInt(parts[0]);
-            int minute = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
-
-            // Convert 12-hour to 24-hour
-            if (isPM && hour != 12) hour += 12;
-            if (isAM && hour == 12) hour = 0;
-
-            return LocalTime.of(hour, minute);
-        } else {
-            // Handle formats like "930" (9:30) or "15" (3:00 PM)
-            if (timeStr.length() == 3 || timeStr.length() == 4) {
-                int hour = Integer.parseInt(timeStr.substring(0, timeStr.length() - 2));
-                int minute = Integer.parseInt(timeStr.substring(timeStr.length() - 2));
-
-                if (isPM && hour != 12) hour += 12;
-                if (isAM && hour == 12) hour = 0;
-
-                return LocalTime.of(hour, minute);
-            } else {
-                int hour = Integer.parseInt(timeStr);
-                if (isPM && hour != 12) hour += 12;
-                if (isAM && hour == 12) hour = 0;
-                return LocalTime.of(hour, 0);
-            }
+        // Date/time cells arrive as their Excel serial, whose fraction is the time of day
+        LocalTime time = times.parse(timeStr);
+        if (time == null) {
+            throw new RuntimeException("Failed to parse TIME: " + timeStr);
         }
+        ride.setPickupTime(LocalDateTime.of(assignmentDate, time));
     }
-        private void parseMedicalTransportFields(Ride ride, Row row, Map<String, Integer> headerMap) {
+
+        private void parseMedicalTransportFields(Ride ride, String[] row, Map<String, Integer> headerMap) {
         // Appointment duration
-        String duration = getCellValue(row, headerMap, "DURATION");
+        String duration = getValue(row, headerMap, "DURATION");
         if (!duration.isBlank()) {
             try {
                 int durationMinutes = Integer.parseInt(duration.replaceAll("[^0-9]", ""));
@@ -805,7 +1020,7 @@ public class ExcelParserService {
         }
 
         // Priority level
-        String priority = getCellValue(row, headerMap, "PRIORITY");
+        String priority = getValue(row, headerMap, "PRIORITY");
         if (!priority.isBlank()) {
             if (priority.toLowerCase().contains("emergency")) {
                 ride.setPriority(Priority.EMERGENCY);
@@ -819,7 +1034,7 @@ public class ExcelParserService {
         }
 
         // Vehicle type override (if specified in Excel)
-        String vehicleType = getCellValue(row, headerMap, "VEHICLE_TYPE");
+        String vehicleType = getValue(row, headerMap, "VEHICLE_TYPE");
         if (!vehicleType.isBlank()) {
             ride.setRequiredVehicleType(vehicleType.toLowerCase().replace(" ", "_"));
         }
@@ -846,30 +1061,30 @@ public class ExcelParserService {
         }
     }
 
-    private void updatePatientMedicalInfo(Patient patient, Row row, Map<String, Integer> headerMap) {
+    private void updatePatientMedicalInfo(Patient patient, String[] row, Map<String, Integer> headerMap) {
         // Enhanced contact info
-        patient.setPhone(getCellValue(row, headerMap, "PHONE"));
+        patient.setPhone(getValue(row, headerMap, "PHONE"));
 
         // Wheelchair requirement
-        String wheelchair = getCellValue(row, headerMap, "WHEELCHAIR");
+        String wheelchair = getValue(row, headerMap, "WHEELCHAIR");
         if (!wheelchair.isBlank()) {
             patient.setRequiresWheelchair(parseBoolean(wheelchair));
         }
 
         // Stretcher requirement
-        String stretcher = getCellValue(row, headerMap, "STRETCHER");
+        String stretcher = getValue(row, headerMap, "STRETCHER");
         if (!stretcher.isBlank()) {
             patient.setRequiresStretcher(parseBoolean(stretcher));
         }
 
         // Oxygen requirement
-        String oxygen = getCellValue(row, headerMap, "OXYGEN");
+        String oxygen = getValue(row, headerMap, "OXYGEN");
         if (!oxygen.isBlank()) {
             patient.setRequiresOxygen(parseBoolean(oxygen));
         }
 
         // Emergency contact
-        String emergencyContact = getCellValue(row, headerMap, "EMERGENCY_CONTACT");
+        String emergencyContact = getValue(row, headerMap, "EMERGENCY_CONTACT");
         if (!emergencyContact.isBlank()) {
             if (emergencyContact.contains(":")) {
                 String[] parts = emergencyContact.split(":", 2);
@@ -881,13 +1096,13 @@ public class ExcelParserService {
         }
 
         // Insurance information
-        String insurance = getCellValue(row, headerMap, "INSURANCE");
+        String insurance = getValue(row, headerMap, "INSURANCE");
         if (!insurance.isBlank()) {
             patient.setInsuranceProvider(insurance);
         }
 
         // Medical conditions
-        String conditions = getCellValue(row, headerMap, "MEDICAL_CONDITIONS");
+        String conditions = getValue(row, headerMap, "MEDICAL_CONDITIONS");
         if (!conditions.isBlank()) {
             List<String> conditionList = Arrays.stream(conditions.split("[,;]"))
                     .map(String::trim)
@@ -897,7 +1112,7 @@ public class ExcelParserService {
         }
 
         // Special needs
-        String specialNeeds = getCellValue(row, headerMap, "SPECIAL_NEEDS");
+        String specialNeeds = getValue(row, headerMap, "SPECIAL_NEEDS");
         if (!specialNeeds.isBlank()) {
             for (String need : specialNeeds.split("[,;]")) {
                 patient.addSpecialNeed(need.trim(), true);
@@ -914,18 +1129,28 @@ public class ExcelParserService {
         }
     }
 
-    private String getCellValue(Row row, Map<String, Integer> headerMap, String header) {
-        Integer columnIndex = headerMap.get(header);
-        if (columnIndex == null) return "";
-
-        Cell cell = row.getCell(columnIndex);
-        return getCellValue(cell);
+    /** Cell texts of a workbook row, matching what {@link StreamingXlsxReader} produces. */
+    private String[] cellTexts(Row row) {
+        String[] cells = new String[Math.max(0, row.getLastCellNum())];
+        for (int column = 0; column < cells.length; column++) {
+            cells[column] = getCellValue(row.getCell(column));
+        }
+        return cells;
     }
 
     private String getCellValue(Cell cell) {
         if (cell == null) return "";
+        // Date/time cells keep their Excel serial so parsePickupTime converts them exactly
+        if (cell.getCellType() == CellType.NUMERIC && DateUtil.isCellDateFormatted(cell)) {
+            return BigDecimal.valueOf(cell.getNumericCellValue()).toPlainString();
+        }
         // Use DataFormatter to preserve human-readable content (avoids scientific notation on phones)
         DataFormatter formatter = new DataFormatter();
         return formatter.formatCellValue(cell).trim();
     }
-}
\ No newline at end of file
+
+    @PreDestroy
+    void shutdownParseExecutor() {
+        parseExecutor.shutdownNow();
+    }
+}
@@ -1,4 +1,43 @@
 package com.mediroute.service.parser;
 
-public class ExcelRowValidator {
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Row-level checks shared by the CSV and Excel upload parsers. Stateless, so safe to call from
+ * parse workers.
+ */
+public final class ExcelRowValidator {
+
+    private ExcelRowValidator() {}
+
+    /**
+     * @param row       cell texts of one data row
+     * @param headerMap column index by canonical header name
+     * @param required  canonical header names that must have a value
+     * @return an error message naming the empty required columns, or null if the row has them all
+     */
+    public static String missingRequired(String[] row, Map<String, Integer> headerMap, List<String> required) {
+        return missingRequired(required, i -> {
+            Integer index = headerMap.get(required.get(i));
+            return index != null && index < row.length && row[index] != null && !row[index].isBlank();
+        });
+    }
+
+    /**
+     * @param required names of the required columns
+     * @param present  whether the row has a value for {@code required.get(i)}
+     * @return an error message naming the empty required columns, or null if the row has them all
+     */
+    public static String missingRequired(List<String> required, IntPredicate present) {
+        List<String> missing = null;
+        for (int i = 0; i < required.size(); i++) {
+            if (present.test(i)) continue;
+            if (missing == null) missing = new ArrayList<>();
+            missing.add(required.get(i));
+        }
+        return missing == null ? null : "Missing required " + String.join(", ", missing);
+    }
 }
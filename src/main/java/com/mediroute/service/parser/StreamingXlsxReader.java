@@ -0,0 +1,120 @@
+package com.mediroute.service.parser;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Reads the first sheet of an .xlsx file row by row through POI's SAX event API, so memory use
+ * does not grow with the number of rows (only the shared strings table is held).
+ * <p>
+ * Cells arrive formatted the way {@link DataFormatter} shows them, except date/time-formatted numbers,
+ * which are passed as the raw Excel serial (e.g. {@code 0.3958333}) so callers can convert them exactly.
+ */
+public final class StreamingXlsxReader {
+
+    @FunctionalInterface
+    public interface RowHandler {
+        /**
+         * @param rowIndex 0-based row index in the sheet
+         * @param cells    cell texts by column index; missing cells are {@code ""}
+         */
+        void row(int rowIndex, String[] cells);
+    }
+
+    private StreamingXlsxReader() {}
+
+    /**
+     * Stream every non-empty row of the first sheet of {@code file} to {@code handler}, in order.
+     *
+     * @return the index of the last row plus one, i.e. the sheet's row count including gaps
+     */
+    public static int read(Path file, RowHandler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            StylesTable styles = reader.getStylesTable();
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) return 0;
+
+            RowCollector collector = new RowCollector(handler);
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(styles, null, strings, collector,
+                        new SerialDateFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+            return collector.lastRow + 1;
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Unreadable .xlsx file: " + e.getMessage(), e);
+        }
+    }
+
+    private static final class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final RowHandler handler;
+        private String[] cells = new String[16];
+        private int width;
+        private int lastRow = -1;
+
+        RowCollector(RowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            Arrays.fill(cells, 0, width, "");
+            width = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            lastRow = rowNum;
+            if (width > 0) handler.row(rowNum, Arrays.copyOf(cells, width));
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = new CellReference(cellReference).getCol();
+            if (column >= cells.length) {
+                int previous = cells.length;
+                cells = Arrays.copyOf(cells, Math.max(column + 1, previous * 2));
+                Arrays.fill(cells, previous, cells.length, "");
+            }
+            for (int c = width; c < column; c++) cells[c] = "";
+            cells[column] = formattedValue != null ? formattedValue.trim() : "";
+            width = Math.max(width, column + 1);
+        }
+    }
+
+    /** Leaves date/time-formatted numbers as their serial value instead of formatting them. */
+    private static final class SerialDateFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            if (DateUtil.isADateFormat(formatIndex, formatString)) {
+                return BigDecimal.valueOf(value).toPlainString();
+            }
+            return super.formatRawCellContents(value, formatIndex, formatString);
+        }
+    }
+}
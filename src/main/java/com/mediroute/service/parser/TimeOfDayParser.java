@@ -0,0 +1,168 @@
+package com.mediroute.service.parser;
+
+import java.time.LocalTime;
+
+/**
+ * Pickup times as they appear in ride uploads, parsed by hand in one pass without exceptions:
+ * <ul>
+ *   <li>{@link Format#CLOCK}: {@code 8:30}, {@code 08:30}, {@code 8:30:15}, {@code 8:30 PM}, {@code 8.30}</li>
+ *   <li>{@link Format#COMPACT}: {@code 0830}, {@code 830}, {@code 8}, {@code 830PM}, {@code 8 am}</li>
+ *   <li>{@link Format#EXCEL_SERIAL}: a date/time cell's serial such as {@code 0.3541666} or
+ *       {@code 45123.5}; the fraction of the day is the time. A value shaped like a dotted clock time
+ *       ({@code 8.30}, {@code 10.15}) is never read as a serial</li>
+ * </ul>
+ * An optional leading {@code at} or {@code @} is ignored. Use one instance per column of an upload: it
+ * tries the format that last worked first, since a column almost always sticks to one format. Safe to
+ * share between threads.
+ */
+public final class TimeOfDayParser {
+
+    public enum Format { CLOCK, COMPACT, EXCEL_SERIAL }
+
+    private static final Format[] FORMATS = Format.values();
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+    private static final int NO_MATCH = -1;
+
+    private volatile Format last = Format.CLOCK;
+
+    /** The time in {@code text}, or null if it is blank or in none of the formats. */
+    public LocalTime parse(CharSequence text) {
+        if (text == null) return null;
+        int start = skipPrefix(text);
+        int end = text.length();
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+        if (start >= end) return null;
+
+        Format first = last;
+        int seconds = parse(first, text, start, end);
+        if (seconds == NO_MATCH) {
+            for (Format format : FORMATS) {
+                if (format == first) continue;
+                seconds = parse(format, text, start, end);
+                if (seconds != NO_MATCH) {
+                    last = format;
+                    break;
+                }
+            }
+        }
+        return seconds == NO_MATCH ? null : LocalTime.ofSecondOfDay(seconds);
+    }
+
+    /** The format that last parsed successfully. */
+    public Format lastFormat() {
+        return last;
+    }
+
+    private static int parse(Format format, CharSequence text, int start, int end) {
+        return switch (format) {
+            case CLOCK -> clock(text, start, end);
+            case COMPACT -> compact(text, start, end);
+            case EXCEL_SERIAL -> serial(text, start, end);
+        };
+    }
+
+    /** {@code H:mm[:ss][ ][AM|PM]}, or the same with {@code .} as the separator */
+    private static int clock(CharSequence text, int start, int end) {
+        int i = start;
+        int hour = 0, digits = 0;
+        while (i < end && isDigit(text.charAt(i)) && digits < 2) {
+            hour = hour * 10 + (text.charAt(i++) - '0');
+            digits++;
+        }
+        if (digits == 0 || i >= end || (text.charAt(i) != ':' && text.charAt(i) != '.')) return NO_MATCH;
+        char separator = text.charAt(i);
+        int minute = twoDigits(text, i + 1, end);
+        if (minute < 0) return NO_MATCH;
+        i += 3;
+        int second = 0;
+        if (i < end && text.charAt(i) == separator) {
+            second = twoDigits(text, i + 1, end);
+            if (second < 0) return NO_MATCH;
+            i += 3;
+        }
+        return withMeridiem(hour, minute, second, text, i, end);
+    }
+
+    /** {@code HHmm}, {@code Hmm} or {@code H}/{@code HH}, each with an optional AM/PM */
+    private static int compact(CharSequence text, int start, int end) {
+        int i = start;
+        int value = 0, digits = 0;
+        while (i < end && isDigit(text.charAt(i))) {
+            if (++digits > 4) return NO_MATCH;
+            value = value * 10 + (text.charAt(i++) - '0');
+        }
+        if (digits == 0) return NO_MATCH;
+        int hour = digits <= 2 ? value : value / 100;
+        int minute = digits <= 2 ? 0 : value % 100;
+        return withMeridiem(hour, minute, 0, text, i, end);
+    }
+
+    /**
+     * {@code days.fraction}; the fraction of the day is the time, rounded to the second. One or two
+     * non-zero day digits with at most two fraction digits look like {@code H.mm} and are left to the
+     * clock format.
+     */
+    private static int serial(CharSequence text, int start, int end) {
+        int i = start;
+        boolean zeroDays = true;
+        while (i < end && isDigit(text.charAt(i))) {
+            if (text.charAt(i++) != '0') zeroDays = false;
+        }
+        int dayDigits = i - start;
+        if (i >= end || text.charAt(i) != '.') return NO_MATCH;
+        i++;
+        if (!zeroDays && dayDigits <= 2 && end - i <= 2) return NO_MATCH;
+        double fraction = 0, scale = 0.1;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) return NO_MATCH;
+            fraction += (c - '0') * scale;
+            scale /= 10;
+        }
+        return (int) Math.round(fraction * SECONDS_PER_DAY) % SECONDS_PER_DAY;
+    }
+
+    /**
+     * Apply an optional AM/PM suffix at {@code i} (with optional space and dots) and validate.
+     */
+    private static int withMeridiem(int hour, int minute, int second, CharSequence text, int i, int end) {
+        while (i < end && text.charAt(i) == ' ') i++;
+        if (i < end) {
+            char m = Character.toUpperCase(text.charAt(i++));
+            if (m != 'A' && m != 'P') return NO_MATCH;
+            if (i < end && text.charAt(i) == '.') i++;
+            if (i < end && Character.toUpperCase(text.charAt(i)) == 'M') i++;
+            if (i < end && text.charAt(i) == '.') i++;
+            if (i != end || hour < 1 || hour > 12) return NO_MATCH;
+            if (m == 'P' && hour != 12) hour += 12;
+            if (m == 'A' && hour == 12) hour = 0;
+        }
+        if (hour > 23 || minute > 59 || second > 59) return NO_MATCH;
+        return hour * 3600 + minute * 60 + second;
+    }
+
+    private static int twoDigits(CharSequence text, int i, int end) {
+        if (i + 1 >= end || !isDigit(text.charAt(i)) || !isDigit(text.charAt(i + 1))) return NO_MATCH;
+        return (text.charAt(i) - '0') * 10 + (text.charAt(i + 1) - '0');
+    }
+
+    /** Index after an optional {@code at} / {@code @} prefix and surrounding spaces. */
+    private static int skipPrefix(CharSequence text) {
+        int i = 0;
+        int end = text.length();
+        while (i < end && text.charAt(i) <= ' ') i++;
+        if (i < end && text.charAt(i) == '@') {
+            i++;
+        } else if (i + 1 < end && Character.toUpperCase(text.charAt(i)) == 'A'
+                && Character.toUpperCase(text.charAt(i + 1)) == 'T'
+                && (i + 2 == end || !Character.isLetter(text.charAt(i + 2)))) {
+            i += 2;
+        }
+        while (i < end && text.charAt(i) <= ' ') i++;
+        return i;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
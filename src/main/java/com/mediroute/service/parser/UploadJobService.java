@@ -0,0 +1,296 @@
+package com.mediroute.service.parser;
+
+import com.mediroute.dto.ParseResult;
+import com.mediroute.dto.UploadJobDto;
+import com.mediroute.entity.UploadJob;
+import com.mediroute.repository.UploadJobRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.mediroute.config.SecurityBeans.currentOrgId;
+
+/**
+ * Runs ride uploads as background jobs. The request only spools the file to disk and records an
+ * {@link UploadJob}; a virtual thread then runs the phases (parse, geocode, distance, persist and,
+ * if asked, optimize) under the submitter's security context. Only parse and persist hold a database
+ * transaction; geocoding and OSRM calls run without one.
+ * <p>
+ * Live progress is kept in memory on the node running the job and the job row is updated when the
+ * job starts and finishes, so status reads work from any node.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UploadJobService {
+
+    /** Finished jobs keep their live progress and row errors in memory this long. */
+    private static final Duration RETENTION = Duration.ofMinutes(30);
+    /** How often waiting status requests look for new progress. */
+    private static final long POLL_MILLIS = 200;
+    private static final Duration SSE_TIMEOUT = Duration.ofMinutes(30);
+    private static final Duration SSE_INTERVAL = Duration.ofMillis(500);
+    private static final Duration SSE_KEEP_ALIVE = Duration.ofSeconds(15);
+
+    private final UploadJobRepository jobs;
+    private final ExcelParserService excelParserService;
+
+    private final Map<Long, Tracked> tracked = new ConcurrentHashMap<>();
+    private final ExecutorService jobExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private static final class Tracked {
+        final UploadProgress progress = new UploadProgress();
+        volatile ParseResult result;
+        volatile Instant finishedAt;
+    }
+
+    /**
+     * Accept an upload and start it in the background.
+     *
+     * @return the PENDING job
+     */
+    public UploadJob submit(MultipartFile file, LocalDate assignmentDate, boolean runOptimization) throws IOException {
+        evictFinished();
+        String filename = file.getOriginalFilename();
+        // The multipart temp file is removed when the request ends, so the job reads its own copy
+        Path upload = Files.createTempFile("upload-", suffix(filename));
+        try {
+            file.transferTo(upload);
+
+            UploadJob job = new UploadJob();
+            job.setOrgId(currentOrgId());
+            job.setFilename(filename);
+            job.setAssignmentDate(assignmentDate);
+            job.setRunOptimization(runOptimization);
+            job.setStatus(UploadJob.JobStatus.PENDING);
+            job.setSubmittedAt(LocalDateTime.now());
+            job = jobs.save(job);
+
+            Long jobId = job.getId();
+            Tracked state = new Tracked();
+            tracked.put(jobId, state);
+            jobExecutor.execute(new DelegatingSecurityContextRunnable(() -> run(jobId, upload, state)));
+            log.info("📥 Upload job {} accepted: {}", jobId, filename);
+            return job;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(upload);
+            throw e;
+        }
+    }
+
+    /**
+     * Jobs only run in the process that accepted them, so PENDING and RUNNING rows left by a previous
+     * run of the application will never finish. Mark them FAILED once it has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void failInterruptedJobs() {
+        List<UploadJob> interrupted = jobs.findByStatusIn(
+                List.of(UploadJob.JobStatus.PENDING, UploadJob.JobStatus.RUNNING));
+        if (interrupted.isEmpty()) return;
+        LocalDateTime now = LocalDateTime.now();
+        for (UploadJob job : interrupted) {
+            job.setStatus(UploadJob.JobStatus.FAILED);
+            job.setError("Interrupted by a server restart; upload the file again");
+            job.setCompletedAt(now);
+        }
+        jobs.saveAll(interrupted);
+        log.warn("⚠️ Marked {} upload jobs interrupted by a restart as failed", interrupted.size());
+    }
+
+    private void run(Long jobId, Path upload, Tracked state) {
+        UploadProgress progress = state.progress;
+        UploadJob job = jobs.findById(jobId).orElseThrow();
+        try {
+            job.setStatus(UploadJob.JobStatus.RUNNING);
+            job.setStartedAt(LocalDateTime.now());
+            job = jobs.save(job);
+
+            ParseResult result = excelParserService.parseUpload(job.getFilename(), new FileSystemResource(upload),
+                    job.getAssignmentDate(), progress);
+            excelParserService.enrichUpload(result.getRides(), progress);
+            excelParserService.persistUpload(result, progress);
+            if (job.isRunOptimization()) {
+                excelParserService.optimizeUpload(result, progress);
+            }
+
+            state.result = result;
+            job.setTotalRows(result.getTotalRows());
+            job.setSuccessfulRows(result.getSuccessfulRows());
+            job.setSkippedRows(result.getSkippedRows());
+            if (result.getOptimizationResult() != null) {
+                job.setOptimizationBatchId(result.getOptimizationResult().getBatchId());
+            }
+            job.setError(result.getOptimizationError());
+            job.setStatus(UploadJob.JobStatus.COMPLETED);
+            log.info("✅ Upload job {} complete: {} rides, {} skipped", jobId,
+                    result.getSuccessfulRows(), result.getSkippedRows());
+        } catch (Exception e) {
+            log.error("❌ Upload job {} failed in {}: {}", jobId, progress.phase(), e.getMessage(), e);
+            job.setStatus(UploadJob.JobStatus.FAILED);
+            job.setError(e.getMessage() != null ? e.getMessage() : e.toString());
+        } finally {
+            job.setPhase(progress.phase());
+            job.setCompletedAt(LocalDateTime.now());
+            try {
+                jobs.save(job);
+            } catch (Exception e) {
+                log.error("❌ Failed to record the outcome of upload job {}: {}", jobId, e.getMessage());
+            }
+            state.finishedAt = Instant.now();
+            progress.finish(job.getStatus());
+            try {
+                Files.deleteIfExists(upload);
+            } catch (IOException e) {
+                log.warn("⚠️ Failed to delete upload file {}: {}", upload, e.getMessage());
+            }
+        }
+    }
+
+    /** Current status of a job of the caller's organization; jobs without one only to callers without one. */
+    public Optional<UploadJobDto> status(Long jobId) {
+        return jobs.findById(jobId)
+                .filter(job -> Objects.equals(job.getOrgId(), currentOrgId()))
+                .map(job -> toDto(job, tracked.get(jobId)));
+    }
+
+    /**
+     * Long poll: the job's status once its progress version is past {@code since}, it has finished, or
+     * {@code timeout} has passed, whichever comes first. Waits on a virtual thread, not the caller's.
+     */
+    public CompletableFuture<Optional<UploadJobDto>> awaitStatus(Long jobId, long since, Duration timeout) {
+        Optional<UploadJobDto> current = status(jobId);
+        Tracked state = tracked.get(jobId);
+        if (current.isEmpty() || state == null || hasNews(state, since) || timeout.isZero()) {
+            return CompletableFuture.completedFuture(current);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            waitForNews(state, since, timeout);
+            return jobs.findById(jobId).map(job -> toDto(job, state));
+        }, jobExecutor);
+    }
+
+    /**
+     * Server-sent events for a job: a {@code progress} event with the job's status whenever it changes
+     * (at most every {@code SSE_INTERVAL}), comments as keep-alives, and completion once it has finished.
+     */
+    public Optional<SseEmitter> subscribe(Long jobId) {
+        Optional<UploadJobDto> current = status(jobId);
+        if (current.isEmpty()) return Optional.empty();
+
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT.toMillis());
+        Tracked state = tracked.get(jobId);
+        jobExecutor.execute(() -> {
+            try {
+                UploadJobDto dto = current.get();
+                long since = Long.MIN_VALUE;
+                while (true) {
+                    if (dto.getVersion() == since) {
+                        emitter.send(SseEmitter.event().comment("keep-alive"));
+                    } else {
+                        emitter.send(SseEmitter.event().name("progress").id(String.valueOf(dto.getVersion())).data(dto));
+                        since = dto.getVersion();
+                    }
+                    if (state == null || dto.getStatus() == UploadJob.JobStatus.COMPLETED
+                            || dto.getStatus() == UploadJob.JobStatus.FAILED) {
+                        break;
+                    }
+                    // Coalesce bursts of progress into one event per interval
+                    Thread.sleep(SSE_INTERVAL.toMillis());
+                    waitForNews(state, since, SSE_KEEP_ALIVE);
+                    dto = jobs.findById(jobId).map(job -> toDto(job, state)).orElseThrow();
+                }
+                emitter.complete();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                emitter.complete();
+            } catch (Exception e) {
+                // Client went away or the emitter timed out
+                log.debug("Upload job {} event stream closed: {}", jobId, e.getMessage());
+                emitter.completeWithError(e);
+            }
+        });
+        return Optional.of(emitter);
+    }
+
+    private static boolean hasNews(Tracked state, long since) {
+        return state.progress.version() > since || state.progress.isFinished();
+    }
+
+    private static void waitForNews(Tracked state, long since, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            while (!hasNews(state, since) && System.nanoTime() < deadline) {
+                Thread.sleep(POLL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private UploadJobDto toDto(UploadJob job, Tracked state) {
+        UploadJobDto.UploadJobDtoBuilder dto = UploadJobDto.builder()
+                .jobId(job.getId())
+                .status(job.getStatus())
+                .phase(job.getPhase())
+                .filename(job.getFilename())
+                .assignmentDate(job.getAssignmentDate())
+                .runOptimization(job.isRunOptimization())
+                .totalRows(job.getTotalRows())
+                .successfulRows(job.getSuccessfulRows())
+                .skippedRows(job.getSkippedRows())
+                .optimizationBatchId(job.getOptimizationBatchId())
+                .error(job.getError())
+                .submittedAt(job.getSubmittedAt())
+                .startedAt(job.getStartedAt())
+                .completedAt(job.getCompletedAt());
+        if (state != null) {
+            UploadProgress.Snapshot snapshot = state.progress.snapshot();
+            dto.version(snapshot.version()).phases(snapshot.phases());
+            // The row only changes at start and finish; live progress is ahead of it in between
+            if (snapshot.status() != UploadJob.JobStatus.PENDING && job.getCompletedAt() == null) {
+                dto.status(snapshot.status()).phase(snapshot.phase());
+            }
+            ParseResult result = state.result;
+            if (result != null) dto.rowErrors(result.getRowErrors());
+        }
+        return dto.build();
+    }
+
+    private void evictFinished() {
+        Instant cutoff = Instant.now().minus(RETENTION);
+        tracked.values().removeIf(state -> state.finishedAt != null && state.finishedAt.isBefore(cutoff));
+    }
+
+    private static String suffix(String filename) {
+        int dot = filename != null ? filename.lastIndexOf('.') : -1;
+        return dot >= 0 ? filename.substring(dot).toLowerCase() : ".upload";
+    }
+
+    @PreDestroy
+    void shutdownJobExecutor() {
+        jobExecutor.shutdownNow();
+    }
+}
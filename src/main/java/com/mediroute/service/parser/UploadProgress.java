@@ -0,0 +1,84 @@
+package com.mediroute.service.parser;
+
+import com.mediroute.entity.UploadJob;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live progress of one upload: the current phase and a done/total counter per phase. Updated by the
+ * upload pipeline from any thread and read by status requests; every change bumps {@link #version()}
+ * so pollers can tell whether anything moved since they last looked. A total of 0 means not known yet.
+ */
+public final class UploadProgress {
+
+    public record PhaseCount(int done, int total) {}
+
+    public record Snapshot(long version, UploadJob.JobStatus status, UploadJob.Phase phase,
+                           Map<UploadJob.Phase, PhaseCount> phases) {}
+
+    private final Map<UploadJob.Phase, AtomicInteger> done = new EnumMap<>(UploadJob.Phase.class);
+    private final Map<UploadJob.Phase, AtomicInteger> total = new EnumMap<>(UploadJob.Phase.class);
+    private final AtomicLong version = new AtomicLong();
+    private volatile UploadJob.JobStatus status = UploadJob.JobStatus.PENDING;
+    private volatile UploadJob.Phase phase;
+
+    public UploadProgress() {
+        for (UploadJob.Phase p : UploadJob.Phase.values()) {
+            done.put(p, new AtomicInteger());
+            total.put(p, new AtomicInteger());
+        }
+    }
+
+    /** Enter {@code phase}, with {@code total} units of work if already known. */
+    public void start(UploadJob.Phase phase, int total) {
+        this.phase = phase;
+        this.status = UploadJob.JobStatus.RUNNING;
+        this.total.get(phase).set(total);
+        version.incrementAndGet();
+    }
+
+    public void advance(UploadJob.Phase phase, int units) {
+        done.get(phase).addAndGet(units);
+        version.incrementAndGet();
+    }
+
+    public void update(UploadJob.Phase phase, int done, int total) {
+        this.done.get(phase).set(done);
+        this.total.get(phase).set(total);
+        version.incrementAndGet();
+    }
+
+    public void finish(UploadJob.JobStatus status) {
+        this.status = status;
+        version.incrementAndGet();
+    }
+
+    public long version() {
+        return version.get();
+    }
+
+    public UploadJob.JobStatus status() {
+        return status;
+    }
+
+    public UploadJob.Phase phase() {
+        return phase;
+    }
+
+    public boolean isFinished() {
+        return status == UploadJob.JobStatus.COMPLETED || status == UploadJob.JobStatus.FAILED;
+    }
+
+    public Snapshot snapshot() {
+        // Version first, so a change racing with this read shows up as a newer version next time
+        long seen = version.get();
+        Map<UploadJob.Phase, PhaseCount> phases = new EnumMap<>(UploadJob.Phase.class);
+        for (UploadJob.Phase p : UploadJob.Phase.values()) {
+            phases.put(p, new PhaseCount(done.get(p).get(), total.get(p).get()));
+        }
+        return new Snapshot(seen, status, phase, phases);
+    }
+}
@@ -6,22 +6,50 @@ import com.mediroute.entity.AssignmentAudit;
 import com.mediroute.entity.Driver;
 import com.mediroute.entity.Patient;
 import com.mediroute.entity.Ride;
+import com.mediroute.entity.Schedule;
+import com.mediroute.entity.embeddable.Location;
 import com.mediroute.repository.AssignmentAuditRepository;
 import com.mediroute.repository.DriverRepository;
 import com.mediroute.repository.RideRepository;
+import com.mediroute.repository.ScheduleRepository;
 import com.mediroute.service.distance.OsrmDistanceService;
+import com.mediroute.service.distance.OsrmMatrixCache;
+import com.mediroute.service.distance.RoadEstimator;
+import com.mediroute.service.distance.RoadMatrix;
+import com.mediroute.service.ride.routing.DriverSpatialIndex;
+import com.mediroute.service.ride.routing.OptimizationSnapshot;
+import com.mediroute.service.ride.routing.RouteBuilder;
+import com.mediroute.service.ride.routing.RouteImprover;
+import com.mediroute.service.ride.routing.RoutePlan;
+import com.mediroute.service.ride.routing.RoutingProblem;
+import com.mediroute.service.ride.routing.TravelMatrix;
+import com.mediroute.service.ride.routing.VrptwRouteSolver;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Hibernate;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import static com.mediroute.config.SecurityBeans.currentOrgId;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Slf4j
 @Service
@@ -30,16 +58,39 @@ public class EnhancedMedicalTransportOptimizer {
 
     private final RideRepository rideRepository;
     private final DriverRepository driverRepository;
-    private final OsrmDistanceService distanceService; // reserved for future distance-based scoring enhancements
+    private final OsrmDistanceService distanceService; // exact pickup distances for shortlisted drivers
+    private final RoadEstimator roadEstimator;
     private final AssignmentAuditRepository assignmentAuditRepository;
     private final AppProps appProps;
+    private final VrptwRouteSolver vrptwRouteSolver;
+    private final RouteBuilder routeBuilder;
+    private final ScheduleRepository scheduleRepository;
+    private final RouteImprover routeImprover;
+    private final ImprovementStatusService improvementStatusService;
+    private final OsrmMatrixCache matrixCache; // cached road durations for emergency insertion
+    private final TransactionTemplate transactionTemplate; // applies improved plans after the run has committed
+
+    /** Solves vehicle-type partitions concurrently; created on first use by {@link #partitionPool()}. */
+    private volatile ForkJoinPool partitionPool;
+    /** Runs route improvements once the optimization that started them has committed. */
+    private final ExecutorService improvementExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    /** Qualified fleet and its spatial index per organization, reused by emergency insertions. */
+    private final Map<Optional<Long>, FleetView> emergencyFleets = new ConcurrentHashMap<>();
 
     // Medical transport constants
     private static final int SHORT_APPOINTMENT_THRESHOLD = 15;
     // private static final int OPTIMIZATION_TIMEOUT_SECONDS = 45; // reserved
-    private static final double EARTH_RADIUS_KM = 6371.0;
-    private static final double MAX_PICKUP_DISTANCE_KM = 50.0;
     private static final double PREFERRED_PICKUP_DISTANCE_KM = 15.0;
+    private static final double SPATIAL_CELL_KM = 5.0;
+    /** Best-estimated drivers per ride whose pickup distance is confirmed with OSRM. */
+    private static final int EXACT_SHORTLIST = 3;
+    /** Hour for travel times of routes that span a day; skips the peak-hour factor. */
+    private static final int ANY_HOUR = -1;
+    /** Rides a driver has started or finished; a repair leaves them where they are. */
+    private static final Set<RideStatus> IN_SERVICE = EnumSet.of(RideStatus.EN_ROUTE_PICKUP, RideStatus.ARRIVED_PICKUP,
+            RideStatus.EN_ROUTE_DROPOFF, RideStatus.ARRIVED_DROPOFF, RideStatus.COMPLETED, RideStatus.NO_SHOW);
+    /** Rides that no longer take a place on a route. */
+    private static final Set<RideStatus> CLOSED = EnumSet.of(RideStatus.CANCELLED, RideStatus.COMPLETED, RideStatus.NO_SHOW);
 
     /**
      * Main optimization entry point
@@ -149,48 +200,927 @@ public class EnhancedMedicalTransportOptimizer {
      */
     @Transactional
     public OptimizationResult performMedicalTransportOptimization(List<Ride> rides, List<Driver> drivers, String batchId) {
-        RideCategorization categorization = categorizeRides(rides);
-        OptimizationResult totalResult = OptimizationResult.create(batchId, rides.size());
+        AppProps.Optimizer.Engine engine = appProps.getOptimizer().getEngine();
+        if (engine == AppProps.Optimizer.Engine.VRPTW) {
+            if (vrptwRouteSolver.isAvailable()) {
+                try {
+                    return performVrptwOptimization(rides, drivers, batchId);
+                } catch (Exception e) {
+                    log.error("❌ VRPTW engine failed, falling back to route building: {}", e.getMessage(), e);
+                }
+            } else {
+                log.warn("⚠️ VRPTW engine requested but OR-Tools is unavailable, using route building");
+            }
+            return performRouteBuildingOptimization(rides, drivers, batchId);
+        }
+        if (engine == AppProps.Optimizer.Engine.ROUTES) {
+            return performRouteBuildingOptimization(rides, drivers, batchId);
+        }
 
-        // Phase 1: Handle emergency rides first
-        totalResult.merge(optimizeEmergencyRides(categorization.getEmergencyRides(), drivers, batchId));
-        drivers = getAvailableDriversAfterAssignment(drivers, totalResult.getAssignedDriverIds());
+        OptimizationResult totalResult = OptimizationResult.create(batchId, rides.size());
+        AssignmentContext ctx = new AssignmentContext(rides, drivers, snapshotOf(rides, drivers));
 
-        // Phase 2: Optimize round-trip rides by vehicle type
-        for (Map.Entry<String, List<Ride>> entry : categorization.getRoundTripRidesByVehicleType().entrySet()) {
-            totalResult.merge(optimizeRidesForVehicleType(entry.getValue(), drivers, batchId, true, entry.getKey()));
-            drivers = getAvailableDriversAfterAssignment(drivers, totalResult.getAssignedDriverIds());
+        // Warm start: recurring rides keep their earlier driver where that route still works
+        List<Ride> toSolve = rides;
+        if (appProps.getOptimizer().isWarmStart() && seedFromPreviousDrivers(ctx, batchId, totalResult) > 0) {
+            toSolve = rides.stream().filter(ride -> !ctx.isAssigned(ctx.rideIndex.get(ride))).toList();
         }
+        RideCategorization categorization = categorizeRides(toSolve);
+
+        // Phase 1: Handle emergency rides first
+        totalResult.merge(optimizeEmergencyRides(ctx, ctx.indicesOf(categorization.getEmergencyRides()),
+                ctx.driversUnderCap(), batchId));
+
+        if (appProps.getOptimizer().isParallelPartitions()) {
+            // Phases 2 and 3 at once, one task per vehicle-type partition
+            totalResult.merge(optimizeVehicleTypePartitions(ctx, categorization, batchId));
+        } else {
+            // Phase 2: Optimize round-trip rides by vehicle type
+            for (Map.Entry<String, List<Ride>> entry : categorization.getRoundTripRidesByVehicleType().entrySet()) {
+                totalResult.merge(optimizeRidesForVehicleType(ctx, ctx.indicesOf(entry.getValue()), ctx.driversUnderCap(),
+                        batchId, true, entry.getKey()));
+            }
 
-        // Phase 3: Optimize one-way rides by vehicle type
-        for (Map.Entry<String, List<Ride>> entry : categorization.getOneWayRidesByVehicleType().entrySet()) {
-            totalResult.merge(optimizeRidesForVehicleType(entry.getValue(), drivers, batchId, false, entry.getKey()));
-            drivers = getAvailableDriversAfterAssignment(drivers, totalResult.getAssignedDriverIds());
+            // Phase 3: Optimize one-way rides by vehicle type
+            for (Map.Entry<String, List<Ride>> entry : categorization.getOneWayRidesByVehicleType().entrySet()) {
+                totalResult.merge(optimizeRidesForVehicleType(ctx, ctx.indicesOf(entry.getValue()), ctx.driversUnderCap(),
+                        batchId, false, entry.getKey()));
+            }
         }
 
         // Optional relaxed second pass for remaining unassigned rides
         if (Boolean.TRUE.equals(appProps.getOptimizer().isRelaxForUnassigned())) {
-            Set<Long> alreadyAssigned = totalResult.getDriverAssignments().values().stream()
-                    .flatMap(java.util.Collection::stream)
-                    .collect(java.util.stream.Collectors.toSet());
-            List<Ride> remaining = rides.stream()
-                    .filter(r -> r.getId() != null && !alreadyAssigned.contains(r.getId()))
-                    .toList();
-            if (!remaining.isEmpty()) {
-                log.info("🟡 Relaxed second pass enabled. Attempting to assign {} remaining rides", remaining.size());
-                OptimizationResult relaxed = performRelaxedAssignment(remaining, drivers, batchId,
+            int[] remaining = IntStream.range(0, ctx.snapshot.rideCount())
+                    .filter(r -> ctx.snapshot.rideId(r) != null && !ctx.isAssigned(r))
+                    .toArray();
+            if (remaining.length > 0) {
+                log.info("🟡 Relaxed second pass enabled. Attempting to assign {} remaining rides", remaining.length);
+                OptimizationResult relaxed = performRelaxedAssignment(ctx, remaining, ctx.driversUnderCap(), batchId,
                         appProps.getOptimizer().getRelaxMaxPerDriver());
                 totalResult.merge(relaxed);
-                drivers = getAvailableDriversAfterAssignment(drivers, totalResult.getAssignedDriverIds());
             }
         }
 
-        createDetailedAuditRecord(rides, totalResult, categorization, batchId);
+        // Optional time-boxed improvement of the routes the phases produced, once they are committed
+        if (appProps.getOptimizer().getImprovementSeconds() > 0) {
+            improveAfterCommit(ctx, batchId);
+        }
+
+        createDetailedAuditRecord(rides, totalResult, toSolve == rides ? categorization : categorizeRides(rides), batchId);
         logOptimizationResults(batchId, totalResult, rides.size());
 
         return totalResult;
     }
 
+    /**
+     * Assign rides that repeat an earlier optimized ride to that ride's driver, after checking the
+     * resulting routes with {@link RouteBuilder#warmStart}; rides that do not fit are left to the phases.
+     *
+     * @return number of rides assigned
+     */
+    private int seedFromPreviousDrivers(AssignmentContext ctx, String batchId, OptimizationResult result) {
+        int[] previous = previousDrivers(ctx.rides, ctx.drivers);
+        List<Ride> recurring = new ArrayList<>();
+        List<Integer> recurringIndex = new ArrayList<>();
+        for (int r = 0; r < previous.length; r++) {
+            if (previous[r] < 0) continue;
+            recurring.add(ctx.rides.get(r));
+            recurringIndex.add(r);
+        }
+        if (recurring.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, Integer> rideIndex = new HashMap<>();
+        for (int r : recurringIndex) rideIndex.put(ctx.snapshot.rideId(r), r);
+        RoutePlan plan = new RoutePlan();
+        ridesByPickupDay(recurring).forEach((day, dayRides) -> plan.addAll(routeBuilder.warmStart(
+                snapshotOf(dayRides, ctx.drivers), routingDay(day),
+                dayRides.stream().mapToInt(ride -> previous[rideIndex.get(ride.getId())]).toArray(),
+                cachedTravelTimes(ANY_HOUR))));
+        Map<Long, Integer> driverIndex = new HashMap<>();
+        for (int d = 0; d < ctx.snapshot.driverCount(); d++) driverIndex.put(ctx.snapshot.driverId(d), d);
+
+        int seeded = 0;
+        for (Map.Entry<Long, List<RoutePlan.Stop>> route : plan.getRoutes().entrySet()) {
+            int driver = driverIndex.get(route.getKey());
+            for (RoutePlan.Stop stop : route.getValue()) {
+                Integer ride = rideIndex.get(stop.rideId());
+                if (ride == null || previous[ride] != driver) continue;
+                ctx.assign(ride, driver, driver, batchId, "WARM_START", result);
+                seeded++;
+            }
+        }
+        log.info("♻️ Warm start: {} of {} recurring rides kept their earlier driver, {} rides left to optimize",
+                seeded, recurring.size(), ctx.rides.size() - seeded);
+        return seeded;
+    }
+
+    /**
+     * For each ride, the index in {@code drivers} of the driver an earlier occurrence of it had, or -1.
+     * An occurrence is an optimized, not cancelled ride of the last {@code warmStartLookbackDays} days
+     * before the first ride's day, for the same patient, pickup time of day and pickup and dropoff
+     * places; the latest one counts.
+     */
+    private int[] previousDrivers(List<Ride> rides, List<Driver> drivers) {
+        int[] previous = new int[rides.size()];
+        Arrays.fill(previous, -1);
+        Set<Long> patientIds = rides.stream()
+                .map(Ride::getPatient)
+                .filter(Objects::nonNull)
+                .map(Patient::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Optional<LocalDate> firstDay = rides.stream()
+                .map(Ride::getPickupTime)
+                .filter(Objects::nonNull)
+                .min(Comparator.naturalOrder())
+                .map(LocalDateTime::toLocalDate);
+        if (patientIds.isEmpty() || firstDay.isEmpty()) {
+            return previous;
+        }
+
+        LocalDateTime from = firstDay.get().minusDays(appProps.getOptimizer().getWarmStartLookbackDays()).atStartOfDay();
+        LocalDateTime to = firstDay.get().atStartOfDay().minusNanos(1);
+        Map<String, Long> driverOf = new HashMap<>();
+        for (Ride earlier : rideRepository.findOptimizedByPatientIdInAndPickupTimeBetween(patientIds, from, to)) {
+            String key = recurrenceKey(earlier);
+            if (key != null && earlier.getStatus() != RideStatus.CANCELLED) {
+                driverOf.putIfAbsent(key, earlier.getPickupDriver().getId());
+            }
+        }
+        Map<Long, Integer> driverIndex = new HashMap<>();
+        for (int d = 0; d < drivers.size(); d++) driverIndex.put(drivers.get(d).getId(), d);
+        for (int r = 0; r < rides.size(); r++) {
+            String key = recurrenceKey(rides.get(r));
+            Integer driver = key != null ? driverIndex.get(driverOf.get(key)) : null;
+            if (driver != null) previous[r] = driver;
+        }
+        return previous;
+    }
+
+    /** Patient, pickup time of day and places of a ride; null if it has no patient or time. */
+    private static String recurrenceKey(Ride ride) {
+        if (ride.getPatient() == null || ride.getPatient().getId() == null || ride.getPickupTime() == null) {
+            return null;
+        }
+        return ride.getPatient().getId() + "|" + ride.getPickupTime().toLocalTime().withSecond(0).withNano(0)
+                + "|" + place(ride.getPickupLocation()) + "|" + place(ride.getDropoffLocation());
+    }
+
+    /** Coordinates to about 10 m, else the normalized address. */
+    private static String place(Location location) {
+        if (location == null) return "";
+        if (location.getLatitude() != null && location.getLongitude() != null) {
+            return String.format(Locale.ROOT, "%.4f,%.4f", location.getLatitude(), location.getLongitude());
+        }
+        return location.getAddress() == null ? "" : location.getAddress().trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Round-trip and one-way rides of every vehicle type solved concurrently on the partition pool.
+     * <p>
+     * Each (trip kind, vehicle type) partition gets its compatible drivers up front, from the drivers
+     * under their daily cap when the phase starts. Partitions with disjoint drivers cannot conflict;
+     * overlapping ones (sedan rides can use any vehicle) may pick the same driver. Workers only propose
+     * drivers, all against the load at the start. The proposals are applied on this thread in a fixed
+     * order: round-trip before one-way, vehicle types alphabetically, rides by priority and pickup time.
+     * A proposal whose driver has reached the daily cap by then is rejected, and the rejected rides are
+     * solved again in the same order against the drivers left. The outcome therefore does not depend on
+     * thread timing. The sequential phases instead solve each partition against the load the earlier ones
+     * left, so the two modes may pick different drivers.
+     */
+    private OptimizationResult optimizeVehicleTypePartitions(AssignmentContext ctx, RideCategorization categorization,
+                                                             String batchId) {
+        long startedAt = System.currentTimeMillis();
+        BitSet underCap = ctx.driversUnderCap();
+        List<Partition> partitions = new ArrayList<>();
+        addPartitions(ctx, categorization.getRoundTripRidesByVehicleType(), true, underCap, partitions);
+        addPartitions(ctx, categorization.getOneWayRidesByVehicleType(), false, underCap, partitions);
+
+        int[] startLoad = ctx.load.clone();
+        List<Future<List<Proposal>>> proposed = new ArrayList<>(partitions.size());
+        for (Partition partition : partitions) {
+            if (partition.drivers().isEmpty()) {
+                proposed.add(null);
+                continue;
+            }
+            proposed.add(partitionPool().submit(() -> proposeAssignments(ctx, partition.rides(), partition.drivers(),
+                    partition.roundTrip(), new int[ctx.snapshot.driverCount()], startLoad.clone())));
+        }
+
+        OptimizationResult result = OptimizationResult.create(batchId, 0);
+        Map<Partition, int[]> rejected = new LinkedHashMap<>();
+        for (int i = 0; i < partitions.size(); i++) {
+            Partition partition = partitions.get(i);
+            if (proposed.get(i) == null) {
+                // No compatible driver: reported like the sequential phases do
+                result.merge(optimizeRidesForVehicleType(ctx, partition.rides(), partition.drivers(), batchId,
+                        partition.roundTrip(), partition.vehicleType()));
+                continue;
+            }
+            int[] conflicts = new int[partition.rides().length];
+            int conflictCount = 0;
+            for (Proposal proposal : awaitProposals(proposed, i, partition, ctx)) {
+                if (proposal.pickupDriver() >= 0 && !ctx.isUnderCap(proposal.pickupDriver())) {
+                    conflicts[conflictCount++] = proposal.ride();
+                } else {
+                    applyProposals(ctx, List.of(proposal), batchId, partition.roundTrip(), result);
+                }
+            }
+            if (conflictCount > 0) rejected.put(partition, Arrays.copyOf(conflicts, conflictCount));
+        }
+
+        int conflicts = rejected.values().stream().mapToInt(r -> r.length).sum();
+        for (Map.Entry<Partition, int[]> entry : rejected.entrySet()) {
+            Partition partition = entry.getKey();
+            result.merge(optimizeRidesForVehicleType(ctx, entry.getValue(), ctx.driversUnderCap(), batchId,
+                    partition.roundTrip(), partition.vehicleType()));
+        }
+        log.info("🧩 Solved {} vehicle-type partitions in parallel in {} ms; {} rides re-solved after driver cap conflicts",
+                partitions.size(), System.currentTimeMillis() - startedAt, conflicts);
+        return result;
+    }
+
+    private void addPartitions(AssignmentContext ctx, Map<String, List<Ride>> ridesByVehicleType, boolean roundTrip,
+                               BitSet drivers, List<Partition> partitions) {
+        new TreeMap<>(ridesByVehicleType).forEach((vehicleType, rides) -> partitions.add(new Partition(
+                vehicleType, roundTrip, ctx.indicesOf(rides), compatibleDrivers(ctx, drivers, vehicleType))));
+    }
+
+    /** The partition pool, sized to the cores; only runs with {@code parallelPartitions} on create it. */
+    private ForkJoinPool partitionPool() {
+        ForkJoinPool pool = partitionPool;
+        if (pool == null) {
+            synchronized (this) {
+                pool = partitionPool;
+                if (pool == null) {
+                    pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+                    partitionPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /** A partition's proposals; if its task failed, it is solved on this thread instead. */
+    private List<Proposal> awaitProposals(List<Future<List<Proposal>>> proposed, int index, Partition partition,
+                                          AssignmentContext ctx) {
+        try {
+            return proposed.get(index).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            proposed.forEach(future -> {
+                if (future != null) future.cancel(true);
+            });
+            throw new IllegalStateException("Interrupted while solving vehicle-type partitions", e);
+        } catch (ExecutionException e) {
+            log.warn("⚠️ Partition {} {} failed in parallel, solving it sequentially: {}", partition.vehicleType(),
+                    partition.roundTrip() ? "round-trip" : "one-way", e.getCause().getMessage());
+            return proposeAssignments(ctx, partition.rides(), partition.drivers(), partition.roundTrip(), ctx.buffer,
+                    ctx.load.clone());
+        }
+    }
+
+    /** Rides of one trip kind and vehicle type, and the drivers whose vehicle can take them. */
+    private record Partition(String vehicleType, boolean roundTrip, int[] rides, BitSet drivers) {}
+
+    /**
+     * Improve the assignment by local search over routes for {@code improvementSeconds}, on the
+     * improvement executor once the current transaction has committed, so the search holds no
+     * connection or locks. The best plan so far is published to {@link ImprovementStatusService} as it
+     * goes, and the final one is applied in a transaction of its own.
+     */
+    private void improveAfterCommit(AssignmentContext ctx, String batchId) {
+        OptimizationSnapshot snapshot = ctx.snapshot;
+        int[] routeOf = ctx.pickupDriverOf.clone();
+        Runnable improve = new DelegatingSecurityContextRunnable(() -> {
+            try {
+                RoutePlan plan = routeImprover.improve(snapshot, routeOf, cachedTravelTimes(ANY_HOUR),
+                        Duration.ofSeconds(appProps.getOptimizer().getImprovementSeconds()), Integer.MAX_VALUE,
+                        (best, progress) -> improvementStatusService.publish(batchId, best, progress));
+                transactionTemplate.executeWithoutResult(status -> applyImprovedPlan(snapshot, routeOf, plan, batchId));
+            } catch (Exception e) {
+                log.error("❌ Improvement of batch {} failed: {}", batchId, e.getMessage(), e);
+            }
+        });
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    improvementExecutor.execute(improve);
+                }
+            });
+        } else {
+            improvementExecutor.execute(improve);
+        }
+    }
+
+    /**
+     * Move rides the improved plan routes on another driver there, with one driver for both legs, and
+     * assign unassigned rides it routes. Rides are read again, and one whose driver or status changed
+     * since the run committed is left as it is.
+     */
+    private void applyImprovedPlan(OptimizationSnapshot snapshot, int[] routeOf, RoutePlan plan, String batchId) {
+        Map<Long, Integer> rideIndex = new HashMap<>();
+        for (int r = 0; r < snapshot.rideCount(); r++) {
+            if (snapshot.rideId(r) != null) rideIndex.put(snapshot.rideId(r), r);
+        }
+        Map<Long, Long> newDriver = new HashMap<>();
+        plan.getRoutes().forEach((driverId, stops) -> stops.forEach(stop -> {
+            Integer ride = rideIndex.get(stop.rideId());
+            if (ride != null && (routeOf[ride] < 0 || !snapshot.driverId(routeOf[ride]).equals(driverId))) {
+                newDriver.put(stop.rideId(), driverId);
+            }
+        }));
+        if (newDriver.isEmpty()) {
+            log.info("🔁 Improvement of batch {} kept every assignment", batchId);
+            return;
+        }
+
+        Map<Long, Driver> drivers = driverRepository.findAllById(new HashSet<>(newDriver.values())).stream()
+                .collect(Collectors.toMap(Driver::getId, d -> d));
+        int moved = 0, added = 0, skipped = 0;
+        for (Ride ride : rideRepository.findByIdInWithPatient(new ArrayList<>(newDriver.keySet()))) {
+            int r = rideIndex.get(ride.getId());
+            Long committedDriver = routeOf[r] >= 0 ? snapshot.driverId(routeOf[r]) : null;
+            Long currentDriver = ride.getPickupDriver() != null ? ride.getPickupDriver().getId() : null;
+            Driver driver = drivers.get(newDriver.get(ride.getId()));
+            if (driver == null || !Objects.equals(committedDriver, currentDriver)
+                    || IN_SERVICE.contains(ride.getStatus()) || CLOSED.contains(ride.getStatus())) {
+                skipped++;
+                continue;
+            }
+            assignRideToDriver(ride, driver, driver, batchId, "LNS_IMPROVEMENT");
+            if (committedDriver == null) added++;
+            else moved++;
+        }
+        log.info("🔁 Improvement of batch {} moved {} rides to other drivers and assigned {} more; {} changed meanwhile",
+                batchId, moved, added, skipped);
+    }
+
+    /**
+     * Route all rides of each day at once with the OR-Tools VRPTW engine: pickup/dropoff pairs, time
+     * windows, driver shifts, vehicle capacity and daily ride caps are modelled as hard constraints.
+     */
+    @Transactional
+    public OptimizationResult performVrptwOptimization(List<Ride> rides, List<Driver> drivers, String batchId) {
+        RoutePlan plan = new RoutePlan();
+        ridesByPickupDay(rides).forEach((day, dayRides) ->
+                plan.addAll(vrptwRouteSolver.solve(snapshotOf(dayRides, drivers), routingDay(day),
+                        cachedTravelTimes(ANY_HOUR))));
+        return applyRoutePlan(rides, drivers, plan, batchId, "VRPTW_ROUTE",
+                "OR-Tools VRPTW pickup-and-delivery with time windows and capacity");
+    }
+
+    /**
+     * Build ordered multi-ride routes per driver and day by cheapest feasible insertion, checking
+     * travel-time feasibility between consecutive rides, driver shifts and {@code maxDailyRides}. With
+     * warm starts on, recurring rides start on their earlier driver and only the rest are inserted.
+     */
+    @Transactional
+    public OptimizationResult performRouteBuildingOptimization(List<Ride> rides, List<Driver> drivers, String batchId) {
+        RoutePlan plan = new RoutePlan();
+        ridesByPickupDay(rides).forEach((day, dayRides) -> {
+            OptimizationSnapshot snapshot = snapshotOf(dayRides, drivers);
+            int[] previous = appProps.getOptimizer().isWarmStart() ? previousDrivers(dayRides, drivers) : null;
+            plan.addAll(previous != null && Arrays.stream(previous).anyMatch(d -> d >= 0)
+                    ? routeBuilder.warmStart(snapshot, routingDay(day), previous, cachedTravelTimes(ANY_HOUR))
+                    : routeBuilder.build(snapshot, routingDay(day), cachedTravelTimes(ANY_HOUR)));
+        });
+        return applyRoutePlan(rides, drivers, plan, batchId, "ROUTE_INSERTION",
+                "Route building with time-window feasibility and daily ride caps");
+    }
+
+    /**
+     * The rides of each pickup day, earliest day first. A routing problem places driver shifts and daily
+     * ride caps on a single day, so the route engines solve a batch one day at a time. Rides without a
+     * pickup time are keyed {@link LocalDate#MIN}, where the engines report them as unroutable.
+     */
+    private static Map<LocalDate, List<Ride>> ridesByPickupDay(List<Ride> rides) {
+        return rides.stream()
+                .collect(Collectors.groupingBy(ride -> ride.getPickupTime() != null
+                        ? ride.getPickupTime().toLocalDate() : LocalDate.MIN, TreeMap::new, Collectors.toList()));
+    }
+
+    /** The day a routing problem counts time from; none for the rides without a pickup time. */
+    private static LocalDate routingDay(LocalDate pickupDay) {
+        return LocalDate.MIN.equals(pickupDay) ? null : pickupDay;
+    }
+
+    /**
+     * Primitive view of the batch that every engine scores against; entities are only touched again
+     * when assignments are written back.
+     */
+    private OptimizationSnapshot snapshotOf(List<Ride> rides, List<Driver> drivers) {
+        return OptimizationSnapshot.of(rides, drivers, this::determineRequiredVehicleType);
+    }
+
+    /**
+     * Write a route plan back: assign rides, persist each driver's sequence as schedules, audit.
+     */
+    private OptimizationResult applyRoutePlan(List<Ride> rides, List<Driver> drivers, RoutePlan plan,
+                                              String batchId, String method, String strategy) {
+        RideCategorization categorization = categorizeRides(rides);
+        OptimizationResult result = OptimizationResult.create(batchId, rides.size());
+
+        Map<Long, Ride> ridesById = rides.stream()
+                .filter(r -> r.getId() != null)
+                .collect(Collectors.toMap(Ride::getId, r -> r, (a, b) -> a));
+        Map<Long, Driver> driversById = drivers.stream()
+                .collect(Collectors.toMap(Driver::getId, d -> d, (a, b) -> a));
+
+        for (Map.Entry<Long, List<RoutePlan.Stop>> route : plan.getRoutes().entrySet()) {
+            Driver driver = driversById.get(route.getKey());
+            for (RoutePlan.Stop stop : route.getValue()) {
+                Ride ride = ridesById.get(stop.rideId());
+                if (ride == null) continue;
+                assignRideToDriver(ride, driver, driver, batchId, method);
+                result.addAssignedRide(driver.getId(), ride.getId());
+            }
+            log.debug("🧭 Driver {} routed {} rides", driver.getName(), route.getValue().size());
+        }
+        plan.getUnassigned().forEach(result::addUnassignedRide);
+
+        persistRouteSchedules(plan, ridesById, driversById, batchId);
+        createDetailedAuditRecord(rides, result, categorization, batchId, strategy);
+        logOptimizationResults(batchId, result, rides.size());
+        return result;
+    }
+
+    /**
+     * Upsert one schedule row per routed ride (unique per ride and date) carrying the driver's
+     * visiting order and estimated pickup/dropoff times.
+     */
+    private void persistRouteSchedules(RoutePlan plan, Map<Long, Ride> ridesById,
+                                       Map<Long, Driver> driversById, String batchId) {
+        Map<Long, Map<LocalDate, Schedule>> existing = scheduleRepository.findByRideIdIn(ridesById.keySet()).stream()
+                .collect(Collectors.groupingBy(s -> s.getRide().getId(),
+                        Collectors.toMap(Schedule::getDate, s -> s, (a, b) -> a)));
+
+        List<Schedule> schedules = new ArrayList<>();
+        for (Map.Entry<Long, List<RoutePlan.Stop>> route : plan.getRoutes().entrySet()) {
+            Driver driver = driversById.get(route.getKey());
+            LocalDate routeDate = null;
+            int sequence = 1;
+            for (RoutePlan.Stop stop : route.getValue()) {
+                Ride ride = ridesById.get(stop.rideId());
+                if (ride == null) continue;
+                LocalDate date = stop.pickupEta().toLocalDate();
+                if (!date.equals(routeDate)) {
+                    // Each day's route is numbered from 1
+                    routeDate = date;
+                    sequence = 1;
+                }
+                Schedule schedule = existing.getOrDefault(ride.getId(), Map.of()).get(date);
+                if (schedule == null) {
+                    schedule = Schedule.builder().ride(ride).date(date).createdBy("ENHANCED_MEDICAL_OPTIMIZER").build();
+                }
+                schedule.setAssignedDriver(driver);
+                schedule.setSequenceNumber(sequence++);
+                schedule.setEstimatedStartTime(stop.pickupEta());
+                schedule.setEstimatedEndTime(stop.dropoffEta());
+                schedule.setOptimizationBatchId(batchId);
+                schedules.add(schedule);
+            }
+        }
+        scheduleRepository.saveAll(schedules);
+        log.info("🗓️ Persisted {} route schedule entries for batch {}", schedules.size(), batchId);
+    }
+
+    // ========== INCREMENTAL REPAIR ==========
+
+    /**
+     * Apply a change to already optimized days by repairing only the routes it touches. Cancelled and
+     * changed rides come off their routes, as do the day's rides of deactivated drivers; changed, added
+     * and displaced rides are then inserted into the routes of their nearest compatible drivers, whose
+     * rides keep their driver and order. All other assignments stay as they are, so the work grows with
+     * the size of the change, not of the day. A caller with an organization only changes its own rides,
+     * and naming another organization's driver is rejected.
+     */
+    @Transactional
+    public OptimizationResult repairSchedule(ScheduleDelta delta) {
+        return repairSchedule(delta, "MEDICAL", "INCREMENTAL_REPAIR");
+    }
+
+    /**
+     * {@link #repairSchedule(ScheduleDelta)} under a batch id starting with {@code batchPrefix}, recording
+     * {@code method} for the rides it places.
+     */
+    @Transactional
+    public OptimizationResult repairSchedule(ScheduleDelta delta, String batchPrefix, String method) {
+        String batchId = generateBatchId(batchPrefix);
+        OptimizationResult result = OptimizationResult.create(batchId, 0);
+        if (delta == null || delta.isEmpty()) {
+            return result;
+        }
+        long startedAt = System.currentTimeMillis();
+        Long org = currentOrgId();
+
+        Set<Long> cancelled = idSet(delta.getCancelledRideIds());
+        Set<Long> deactivated = idSet(delta.getDeactivatedDriverIds());
+        if (org != null) {
+            for (Long driverId : deactivated) {
+                if (driverRepository.findByIdAndOrgId(driverId, org).isEmpty()) {
+                    throw new IllegalArgumentException("Driver not found: " + driverId);
+                }
+            }
+        }
+        Set<Long> named = new LinkedHashSet<>(cancelled);
+        named.addAll(idSet(delta.getChangedRideIds()));
+        named.addAll(idSet(delta.getAddedRideIds()));
+
+        LocalDate deactivationDay = delta.getDate() != null ? delta.getDate() : LocalDate.now();
+        Map<LocalDate, List<Ride>> ridesByDay = new TreeMap<>();
+        if (!named.isEmpty()) {
+            for (Ride ride : rideRepository.findByIdInWithPatient(new ArrayList<>(named))) {
+                if (!inOrg(org, ride)) {
+                    log.warn("⚠️ Ride {} belongs to another organization and is left alone", ride.getId());
+                    continue;
+                }
+                LocalDate day = ride.getPickupTime() != null ? ride.getPickupTime().toLocalDate() : deactivationDay;
+                ridesByDay.computeIfAbsent(day, d -> new ArrayList<>()).add(ride);
+            }
+        }
+        if (!deactivated.isEmpty()) {
+            ridesByDay.computeIfAbsent(deactivationDay, d -> new ArrayList<>());
+        }
+
+        int toPlace = 0;
+        for (Map.Entry<LocalDate, List<Ride>> day : ridesByDay.entrySet()) {
+            toPlace += repairDay(day.getKey(), day.getValue(), cancelled, deactivated,
+                    day.getKey().equals(deactivationDay), batchId, method, result);
+        }
+        result.setTotalRides(toPlace);
+
+        log.info("🩹 Schedule repair {} finished in {} ms: {} of {} rides placed, {} cancelled, {} drivers deactivated",
+                batchId, System.currentTimeMillis() - startedAt, result.getAssignedRideCount(), toPlace,
+                cancelled.size(), deactivated.size());
+        return result;
+    }
+
+    /**
+     * Repair one day's routes.
+     *
+     * @return number of rides that needed a place
+     */
+    private int repairDay(LocalDate day, List<Ride> named, Set<Long> cancelled, Set<Long> deactivated,
+                          boolean moveDeactivated, String batchId, String method, OptimizationResult total) {
+        LocalDateTime from = day.atStartOfDay();
+        LocalDateTime to = day.plusDays(1).atStartOfDay().minusNanos(1);
+        OptimizationResult result = OptimizationResult.create(batchId, 0);
+
+        // Take cancelled, changed and displaced rides off their routes
+        List<Ride> affected = new ArrayList<>(named);
+        if (moveDeactivated) {
+            Long org = currentOrgId();
+            for (Long driverId : deactivated) {
+                rideRepository.findByAnyDriverAndPickupTimeBetweenWithPatient(driverId, from, to).stream()
+                        .filter(ride -> inOrg(org, ride))
+                        .forEach(affected::add);
+            }
+        }
+        Set<Long> seen = new HashSet<>();
+        Set<Long> released = new HashSet<>();
+        Set<Long> touchedDrivers = new HashSet<>();
+        Map<Long, Ride> pending = new LinkedHashMap<>();
+        List<Ride> changedRides = new ArrayList<>();
+        for (Ride ride : affected) {
+            if (!seen.add(ride.getId())) continue;
+            if (IN_SERVICE.contains(ride.getStatus())) {
+                log.warn("⚠️ Ride {} is {} and keeps its driver", ride.getId(), ride.getStatus());
+                if (!cancelled.contains(ride.getId())) {
+                    result.addUnassignedRide(ride.getId(), "Ride is " + ride.getStatus() + " and cannot be moved");
+                }
+                continue;
+            }
+            if (ride.getPickupDriver() != null) touchedDrivers.add(ride.getPickupDriver().getId());
+            ride.setPickupDriver(null);
+            ride.setDropoffDriver(null);
+            ride.setDriver(null);
+            if (cancelled.contains(ride.getId()) || ride.getStatus() == RideStatus.CANCELLED) {
+                ride.setStatus(RideStatus.CANCELLED);
+            } else {
+                ride.setStatus(RideStatus.SCHEDULED);
+                pending.put(ride.getId(), ride);
+            }
+            released.add(ride.getId());
+            changedRides.add(ride);
+        }
+        rideRepository.saveAll(changedRides);
+        scheduleRepository.deleteAll(scheduleRepository.findByRideIdIn(released).stream()
+                .filter(schedule -> day.equals(schedule.getDate()))
+                .toList());
+        touchedDrivers.removeAll(deactivated);
+
+        // Routes open to the rides: each ride's nearest compatible drivers, plus routes that lost a ride
+        List<Driver> fleet = getQualifiedDrivers().stream()
+                .filter(driver -> !deactivated.contains(driver.getId()))
+                .toList();
+        List<Ride> toPlace = new ArrayList<>(pending.values());
+        List<Driver> routeDrivers = repairCandidates(toPlace, fleet, touchedDrivers);
+
+        // Rides already on those routes keep their driver and order
+        Map<Long, Integer> routeOfDriver = new HashMap<>();
+        for (int d = 0; d < routeDrivers.size(); d++) routeOfDriver.put(routeDrivers.get(d).getId(), d);
+        List<Ride> batch = new ArrayList<>();
+        if (!routeOfDriver.isEmpty()) {
+            rideRepository.findByPickupDriverIdInAndPickupTimeBetweenWithPatient(routeOfDriver.keySet(), from, to).stream()
+                    .filter(ride -> !released.contains(ride.getId()) && !CLOSED.contains(ride.getStatus()))
+                    .forEach(batch::add);
+        }
+        int[] routeOf = new int[batch.size() + toPlace.size()];
+        Arrays.fill(routeOf, -1);
+        for (int r = 0; r < batch.size(); r++) routeOf[r] = routeOfDriver.get(batch.get(r).getPickupDriver().getId());
+        batch.addAll(toPlace);
+
+        RoutePlan plan;
+        if (routeDrivers.isEmpty()) {
+            plan = new RoutePlan();
+            String reason = String.format(Locale.US, "No compatible driver within %.0f km of pickup",
+                    appProps.getOptimizer().getMaxPickupDistanceKm());
+            toPlace.forEach(ride -> plan.addUnassigned(ride.getId(), reason));
+        } else {
+            plan = routeBuilder.repair(snapshotOf(batch, routeDrivers), day, routeOf, cachedTravelTimes(ANY_HOUR));
+        }
+
+        // Assign the placed rides and re-time every route that gained or lost one
+        Map<Long, Ride> ridesById = batch.stream().collect(Collectors.toMap(Ride::getId, r -> r, (a, b) -> a));
+        Map<Long, Driver> driversById = routeDrivers.stream().collect(Collectors.toMap(Driver::getId, d -> d));
+        RoutePlan changedRoutes = new RoutePlan();
+        for (Map.Entry<Long, List<RoutePlan.Stop>> route : plan.getRoutes().entrySet()) {
+            Driver driver = driversById.get(route.getKey());
+            boolean changed = touchedDrivers.contains(driver.getId());
+            for (RoutePlan.Stop stop : route.getValue()) {
+                Ride ride = pending.get(stop.rideId());
+                if (ride == null) continue;
+                assignRideToDriver(ride, driver, driver, batchId, method);
+                result.addAssignedRide(driver.getId(), ride.getId());
+                changed = true;
+            }
+            if (changed) route.getValue().forEach(stop -> changedRoutes.addStop(driver.getId(), stop));
+        }
+        plan.getUnassigned().forEach((rideId, reason) -> {
+            if (pending.containsKey(rideId)) result.addUnassignedRide(rideId, reason);
+        });
+        if (!changedRoutes.getRoutes().isEmpty()) {
+            persistRouteSchedules(changedRoutes, ridesById, driversById, batchId);
+        }
+
+        result.setTotalRides(toPlace.size());
+        if (!toPlace.isEmpty()) {
+            createDetailedAuditRecord(toPlace, result, categorizeRides(toPlace), batchId, "Incremental route repair");
+        }
+        log.info("🩹 {}: {} rides off their routes, {} to place on {} candidate routes, {} routes re-timed",
+                day, released.size(), toPlace.size(), routeDrivers.size(), changedRoutes.getRoutes().size());
+        total.merge(result);
+        return toPlace.size();
+    }
+
+    /** Whether {@code ride} is visible to a caller of organization {@code org}; callers without one see all rides. */
+    private static boolean inOrg(Long org, Ride ride) {
+        return org == null || org.equals(ride.getOrgId());
+    }
+
+    /**
+     * Drivers whose routes a repair may change: up to {@code repairCandidateDrivers} nearest compatible
+     * drivers within the pickup radius of each ride, and the given drivers that lost rides.
+     */
+    private List<Driver> repairCandidates(List<Ride> rides, List<Driver> fleet, Set<Long> touchedDrivers) {
+        BitSet chosen = new BitSet(fleet.size());
+        for (int d = 0; d < fleet.size(); d++) {
+            if (touchedDrivers.contains(fleet.get(d).getId())) chosen.set(d);
+        }
+        if (!rides.isEmpty()) {
+            OptimizationSnapshot snapshot = snapshotOf(rides, fleet);
+            DriverSpatialIndex index = DriverSpatialIndex.build(snapshot, SPATIAL_CELL_KM);
+            int perRide = appProps.getOptimizer().getRepairCandidateDrivers();
+            int[] buffer = new int[snapshot.driverCount()];
+            for (int r = 0; r < snapshot.rideCount(); r++) {
+                if (!snapshot.hasPickup(r)) continue;
+                int found = index.withinRadius(snapshot.pickupLat(r), snapshot.pickupLng(r),
+                        appProps.getOptimizer().getMaxPickupDistanceKm(), buffer);
+                int compatible = 0;
+                for (int i = 0; i < found; i++) {
+                    if (snapshot.canServe(buffer[i], r)) buffer[compatible++] = buffer[i];
+                }
+                // Partial selection sort: only the nearest perRide need ordering
+                for (int i = 0; i < Math.min(perRide, compatible); i++) {
+                    int nearest = i;
+                    for (int j = i + 1; j < compatible; j++) {
+                        if (snapshot.pickupDistanceKm(buffer[j], r) < snapshot.pickupDistanceKm(buffer[nearest], r)) {
+                            nearest = j;
+                        }
+                    }
+                    int driver = buffer[nearest];
+                    buffer[nearest] = buffer[i];
+                    buffer[i] = driver;
+                    chosen.set(driver);
+                }
+            }
+        }
+        return chosen.stream().mapToObj(fleet::get).toList();
+    }
+
+    // ========== EMERGENCY INSERTION ==========
+
+    /**
+     * Commit one urgent ride to the live route where it adds the least travel, without a batch run. Only
+     * the routes of the ride's nearest compatible drivers (found through the spatial index) are evaluated,
+     * rides on them keep their driver and order, and travel times come from OSRM durations cached in this
+     * process with calibrated estimates for the rest, so no routing request is made. A ride that already
+     * has a driver may stay on that route or move to a cheaper one. The fleet is looked up in an index
+     * kept for {@code emergencyFleetCacheSeconds}, and only the drivers it finds are read again.
+     */
+    @Transactional
+    public EmergencyInsertionResult insertEmergencyRide(Long rideId) {
+        long startedAt = System.nanoTime();
+        Long org = currentOrgId();
+        Ride ride = rideRepository.findByIdInWithPatient(List.of(rideId)).stream()
+                .filter(r -> inOrg(org, r))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Ride not found: " + rideId));
+        if (IN_SERVICE.contains(ride.getStatus()) || CLOSED.contains(ride.getStatus())) {
+            return notInserted(rideId, "Ride is " + ride.getStatus() + " and cannot be moved", 0, startedAt);
+        }
+
+        // Routes open to the ride: its nearest compatible drivers, plus the route it is already on
+        Driver previous = ride.getPickupDriver();
+        Set<Long> current = previous != null ? Set.of(previous.getId()) : Set.of();
+        List<Driver> routeDrivers = repairCandidates(List.of(ride), driversNear(ride, org), current);
+        if (routeDrivers.isEmpty()) {
+            return notInserted(rideId, String.format(Locale.US, "No compatible driver within %.0f km of pickup",
+                    appProps.getOptimizer().getMaxPickupDistanceKm()), 0, startedAt);
+        }
+
+        LocalDate day = ride.getPickupTime() != null ? ride.getPickupTime().toLocalDate() : LocalDate.now();
+        Map<Long, Integer> routeOfDriver = new HashMap<>();
+        for (int d = 0; d < routeDrivers.size(); d++) routeOfDriver.put(routeDrivers.get(d).getId(), d);
+        List<Ride> batch = rideRepository.findByPickupDriverIdInAndPickupTimeBetweenWithPatient(routeOfDriver.keySet(),
+                        day.atStartOfDay(), day.plusDays(1).atStartOfDay().minusNanos(1)).stream()
+                .filter(r -> !r.getId().equals(rideId) && !CLOSED.contains(r.getStatus()))
+                .collect(Collectors.toCollection(ArrayList::new));
+        int[] routeOf = new int[batch.size() + 1];
+        for (int r = 0; r < batch.size(); r++) routeOf[r] = routeOfDriver.get(batch.get(r).getPickupDriver().getId());
+        routeOf[batch.size()] = -1;
+        batch.add(ride);
+
+        int hour = ride.getPickupTime() != null ? ride.getPickupTime().getHour() : -1;
+        RoutePlan plan = routeBuilder.repair(snapshotOf(batch, routeDrivers), day, routeOf, cachedTravelTimes(hour));
+
+        Map<Long, Driver> driversById = routeDrivers.stream().collect(Collectors.toMap(Driver::getId, d -> d));
+        Driver chosen = null;
+        int sequence = 0;
+        RoutePlan.Stop inserted = null;
+        for (Map.Entry<Long, List<RoutePlan.Stop>> route : plan.getRoutes().entrySet()) {
+            List<RoutePlan.Stop> stops = route.getValue();
+            for (int i = 0; i < stops.size() && inserted == null; i++) {
+                if (rideId.equals(stops.get(i).rideId())) {
+                    chosen = driversById.get(route.getKey());
+                    sequence = i + 1;
+                    inserted = stops.get(i);
+                }
+            }
+        }
+        if (inserted == null) {
+            return notInserted(rideId, plan.getUnassigned().getOrDefault(rideId, "No feasible insertion"),
+                    routeDrivers.size(), startedAt);
+        }
+
+        // Commit, and re-time the route that gained the ride and the one it left
+        String batchId = generateBatchId("EMERGENCY");
+        assignRideToDriver(ride, chosen, chosen, batchId, "EMERGENCY_INSERTION");
+        RoutePlan changedRoutes = new RoutePlan();
+        for (Long driverId : previous != null && !previous.getId().equals(chosen.getId())
+                ? List.of(chosen.getId(), previous.getId()) : List.of(chosen.getId())) {
+            plan.getRoutes().getOrDefault(driverId, List.of()).forEach(stop -> changedRoutes.addStop(driverId, stop));
+        }
+        Map<Long, Ride> ridesById = batch.stream().collect(Collectors.toMap(Ride::getId, r -> r, (a, b) -> a));
+        persistRouteSchedules(changedRoutes, ridesById, driversById, batchId);
+        OptimizationResult result = OptimizationResult.create(batchId, 1);
+        result.addAssignedRide(chosen.getId(), rideId);
+        createDetailedAuditRecord(List.of(ride), result, categorizeRides(List.of(ride)), batchId, "Emergency insertion");
+
+        long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000;
+        log.info("🚑 Emergency ride {} inserted as stop {} of driver {} ({} routes evaluated) in {} ms",
+                rideId, sequence, chosen.getName(), routeDrivers.size(), elapsedMs);
+        return EmergencyInsertionResult.builder()
+                .rideId(rideId)
+                .assigned(true)
+                .batchId(batchId)
+                .driverId(chosen.getId())
+                .driverName(chosen.getName())
+                .sequenceNumber(sequence)
+                .pickupEta(inserted.pickupEta())
+                .dropoffEta(inserted.dropoffEta())
+                .candidateRoutes(routeDrivers.size())
+                .elapsedMs(elapsedMs)
+                .overBudget(overBudget(rideId, elapsedMs))
+                .build();
+    }
+
+    /** Qualified drivers of {@code org} with a spatial index over their bases, as of {@code loadedAt}. */
+    private record FleetView(List<Driver> drivers, DriverSpatialIndex index, long loadedAt) {}
+
+    /**
+     * Qualified drivers based within the pickup radius of {@code ride}, plus its current driver, found
+     * through the cached fleet index and read again so a driver deactivated since is left out.
+     */
+    private List<Driver> driversNear(Ride ride, Long org) {
+        Set<Long> ids = new HashSet<>();
+        if (ride.getPickupDriver() != null) ids.add(ride.getPickupDriver().getId());
+        Location pickup = ride.getPickupLocation();
+        if (pickup != null && pickup.isValid()) {
+            FleetView fleet = emergencyFleet(org);
+            int[] found = new int[fleet.drivers().size()];
+            int count = fleet.index().withinRadius(pickup.getLatitude(), pickup.getLongitude(),
+                    appProps.getOptimizer().getMaxPickupDistanceKm(), found);
+            for (int i = 0; i < count; i++) ids.add(fleet.drivers().get(found[i]).getId());
+        }
+        if (ids.isEmpty()) return List.of();
+        return driverRepository.findAllById(ids).stream()
+                .filter(driver -> Objects.equals(driver.getOrgId(), org)
+                        && Boolean.TRUE.equals(driver.getActive())
+                        && Boolean.TRUE.equals(driver.getIsTrainingComplete())
+                        && !isLicenseExpiringSoon(driver))
+                .toList();
+    }
+
+    /**
+     * The cached fleet of {@code org}, loaded again once older than {@code emergencyFleetCacheSeconds}.
+     * The drivers are read outside the map so no query runs under its lock; when two loads race, the
+     * newer one is kept.
+     */
+    private FleetView emergencyFleet(Long org) {
+        long now = System.currentTimeMillis();
+        long ttlMs = appProps.getOptimizer().getEmergencyFleetCacheSeconds() * 1000L;
+        Optional<Long> key = Optional.ofNullable(org);
+        FleetView cached = emergencyFleets.get(key);
+        if (cached != null && now - cached.loadedAt() < ttlMs) return cached;
+
+        List<Driver> drivers = getQualifiedDrivers();
+        DriverSpatialIndex index = DriverSpatialIndex.build(snapshotOf(List.of(), drivers), SPATIAL_CELL_KM);
+        FleetView loaded = new FleetView(drivers, index, now);
+        log.debug("🚑 Emergency fleet of organization {} loaded: {} drivers", org, drivers.size());
+        return emergencyFleets.compute(key, (k, current) ->
+                current != null && current.loadedAt() > loaded.loadedAt() ? current : loaded);
+    }
+
+    private EmergencyInsertionResult notInserted(Long rideId, String reason, int candidateRoutes, long startedAt) {
+        long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000;
+        log.warn("🚑 Emergency ride {} not inserted ({} routes evaluated): {}", rideId, candidateRoutes, reason);
+        return EmergencyInsertionResult.builder()
+                .rideId(rideId)
+                .assigned(false)
+                .reason(reason)
+                .candidateRoutes(candidateRoutes)
+                .elapsedMs(elapsedMs)
+                .overBudget(overBudget(rideId, elapsedMs))
+                .build();
+    }
+
+    /** True, and logged, when an insertion took longer than {@code emergencyLatencyBudgetMs}. */
+    private boolean overBudget(Long rideId, long elapsedMs) {
+        int budget = appProps.getOptimizer().getEmergencyLatencyBudgetMs();
+        if (elapsedMs <= budget) return false;
+        log.warn("⏱️ Emergency insertion of ride {} took {} ms, over the {} ms budget", rideId, elapsedMs, budget);
+        return true;
+    }
+
+    /**
+     * Travel times from OSRM durations already cached in this process, scaled for peak hours like the
+     * estimates, and from calibrated road estimates for cells never fetched. Every route engine prices
+     * its routes with these; {@link #ANY_HOUR} skips the peak-hour factor for routes spanning a day.
+     */
+    private RoutingProblem.TravelTimes cachedTravelTimes(int hourOfDay) {
+        return (lat, lng) -> {
+            int n = lat.length;
+            List<String> points = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) points.add(lng[i] + "," + lat[i]);
+            RoadMatrix cached = matrixCache.peekSeconds(points, points);
+            double peak = roadEstimator.peakFactor(hourOfDay);
+            int[] seconds = new int[n * n];
+            int known = 0;
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (i == j) continue;
+                    float osrm = cached.seconds(i, j);
+                    if (!Float.isNaN(osrm)) known++;
+                    seconds[i * n + j] = (int) Math.round(!Float.isNaN(osrm) ? osrm * peak
+                            : roadEstimator.travelSeconds(lat[i], lng[i], lat[j], lng[j], hourOfDay));
+                }
+            }
+            log.debug("🗺️ {} of {} travel times from the OSRM cache", known, n * (n - 1));
+            return new TravelMatrix(n, seconds);
+        };
+    }
+
+    private static Set<Long> idSet(List<Long> ids) {
+        Set<Long> set = new LinkedHashSet<>();
+        if (ids != null) ids.stream().filter(Objects::nonNull).forEach(set::add);
+        return set;
+    }
+
     /**
      * Safe categorization that handles potential null patients
      */
@@ -261,65 +1191,35 @@ public class EnhancedMedicalTransportOptimizer {
         }
     }
 
-    /**
-     * Safe patient capability checking with null safety
-     */
-    private boolean canDriverHandlePatient(Driver driver, Patient patient) {
-        try {
-            if (patient == null) return true;
-
-            // Check each requirement safely
-            if (Boolean.TRUE.equals(patient.getRequiresWheelchair()) &&
-                    !Boolean.TRUE.equals(driver.getWheelchairAccessible())) {
-                return false;
-            }
-
-            if (Boolean.TRUE.equals(patient.getRequiresStretcher()) &&
-                    !Boolean.TRUE.equals(driver.getStretcherCapable())) {
-                return false;
-            }
-
-            if (Boolean.TRUE.equals(patient.getRequiresOxygen()) &&
-                    !Boolean.TRUE.equals(driver.getOxygenEquipped())) {
-                return false;
-            }
-
-            return true;
-
-        } catch (Exception e) {
-            log.warn("Error checking driver-patient compatibility: {}", e.getMessage());
-            return false; // Err on the side of caution
-        }
-    }
-
     /**
      * Optimize emergency rides with highest priority
      */
-    @Transactional
-    public OptimizationResult optimizeEmergencyRides(List<Ride> emergencyRides, List<Driver> drivers, String batchId) {
-        if (emergencyRides.isEmpty()) {
+    private OptimizationResult optimizeEmergencyRides(AssignmentContext ctx, int[] emergencyRides, BitSet drivers,
+                                                      String batchId) {
+        if (emergencyRides.length == 0) {
             return OptimizationResult.empty();
         }
 
-        log.info("🚨 Optimizing {} EMERGENCY rides first", emergencyRides.size());
+        log.info("🚨 Optimizing {} EMERGENCY rides first", emergencyRides.length);
         OptimizationResult result = new OptimizationResult();
         result.setBatchId(batchId);
-        result.setTotalRides(emergencyRides.size());
+        result.setTotalRides(emergencyRides.length);
+        DriverSpatialIndex candidates = ctx.index.restrictTo(drivers);
 
-        for (Ride ride : emergencyRides) {
+        for (int ride : emergencyRides) {
             try {
-                Driver bestDriver = findBestEmergencyDriver(ride, drivers);
-                if (bestDriver != null) {
-                    assignRideToDriver(ride, bestDriver, bestDriver, batchId, "EMERGENCY_ASSIGNMENT");
-                    result.addAssignedRide(bestDriver.getId(), ride.getId());
-                    log.info("🚨 Emergency ride {} assigned to driver {}", ride.getId(), bestDriver.getName());
+                int bestDriver = findBestEmergencyDriver(ctx, ride, drivers, candidates);
+                if (bestDriver >= 0) {
+                    ctx.assign(ride, bestDriver, bestDriver, batchId, "EMERGENCY_ASSIGNMENT", result);
+                    log.info("🚨 Emergency ride {} assigned to driver {}", ctx.snapshot.rideId(ride),
+                            ctx.drivers.get(bestDriver).getName());
                 } else {
-                    log.warn("❌ No qualified driver found for emergency ride {}", ride.getId());
-                    result.addUnassignedRide(ride.getId(), "No qualified emergency driver available");
+                    log.warn("❌ No qualified driver found for emergency ride {}", ctx.snapshot.rideId(ride));
+                    result.addUnassignedRide(ctx.snapshot.rideId(ride), "No qualified emergency driver available");
                 }
             } catch (Exception e) {
-                log.error("Error assigning emergency ride {}: {}", ride.getId(), e.getMessage());
-                result.addUnassignedRide(ride.getId(), "Error during emergency assignment: " + e.getMessage());
+                log.error("Error assigning emergency ride {}: {}", ctx.snapshot.rideId(ride), e.getMessage());
+                result.addUnassignedRide(ctx.snapshot.rideId(ride), "Error during emergency assignment: " + e.getMessage());
             }
         }
 
@@ -329,48 +1229,104 @@ public class EnhancedMedicalTransportOptimizer {
     /**
      * Intelligent assignment algorithm with proper error handling
      */
-    @Transactional
-    public OptimizationResult performIntelligentAssignment(List<Ride> rides, List<Driver> drivers,
-                                                           String batchId, boolean isRoundTrip) {
+    private OptimizationResult performIntelligentAssignment(AssignmentContext ctx, int[] rides, BitSet drivers,
+                                                            String batchId, boolean isRoundTrip) {
         OptimizationResult result = new OptimizationResult();
         result.setBatchId(batchId);
-        result.setTotalRides(rides.size());
+        result.setTotalRides(rides.length);
+        applyProposals(ctx, proposeAssignments(ctx, rides, drivers, isRoundTrip, ctx.buffer, ctx.load.clone()), batchId,
+                isRoundTrip, result);
+        return result;
+    }
+
+    /**
+     * Pick drivers for rides without assigning anything, so it can run off the request thread. Reads
+     * only the snapshot and spatial index; {@code buffer} is the caller's scratch space. {@code load} is
+     * the caller's copy of each driver's ride count; it grows with every proposal, and a driver who
+     * reaches the daily ride cap is not proposed again.
+     */
+    private List<Proposal> proposeAssignments(AssignmentContext ctx, int[] rides, BitSet drivers,
+                                              boolean isRoundTrip, int[] buffer, int[] load) {
+        OptimizationSnapshot snapshot = ctx.snapshot;
+        DriverSpatialIndex candidates = ctx.index.restrictTo(drivers);
 
         // Sort rides by priority and time
-        List<Ride> sortedRides = rides.stream()
-                .sorted(Comparator
-                        .comparing((Ride r) -> r.getPriority() == Priority.EMERGENCY ? 0 :
-                                r.getPriority() == Priority.URGENT ? 1 : 2)
-                        .thenComparing(Ride::getPickupTime))
-                .collect(Collectors.toList());
+        int[] sortedRides = Arrays.stream(rides)
+                .boxed()
+                .sorted(Comparator.comparingInt((Integer r) -> snapshot.priority(r))
+                        .thenComparingInt(snapshot::pickupMinute))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        // Shortlist every ride on road estimates, then confirm all shortlists with one OSRM request
+        IntPredicate hasRoom = driver -> ctx.hasRoom(driver, load);
+        Shortlists shortlists = new Shortlists(sortedRides.length);
+        for (int i = 0; i < sortedRides.length; i++) {
+            shortlistDrivers(ctx, sortedRides[i], candidates, buffer, hasRoom, shortlists, i);
+        }
+        if (ctx.exactDistances) {
+            rescoreWithExactDistances(ctx, sortedRides, shortlists);
+        }
 
-        for (Ride ride : sortedRides) {
+        Shortlists retry = new Shortlists(1);
+        List<Proposal> proposals = new ArrayList<>(sortedRides.length);
+        for (int i = 0; i < sortedRides.length; i++) {
+            int ride = sortedRides[i];
             try {
-                Driver bestDriver = findBestDriverForRide(ride, drivers);
-
-                if (bestDriver != null) {
-                    if (isRoundTrip) {
-                        assignRideToDriver(ride, bestDriver, bestDriver, batchId, "INTELLIGENT_ROUND_TRIP");
-                    } else {
-                        Driver dropoffDriver = findBestDriverForDropoff(ride, drivers, bestDriver);
-                        assignRideToDriver(ride, bestDriver, dropoffDriver != null ? dropoffDriver : bestDriver,
-                                batchId, "INTELLIGENT_ONE_WAY");
-                    }
-                    result.addAssignedRide(bestDriver.getId(), ride.getId());
-                    log.debug("✅ Ride {} assigned to driver {} ({})", ride.getId(), bestDriver.getName(),
-                            isRoundTrip ? "round-trip" : "one-way");
+                int bestDriver = shortlists.best(i, hasRoom);
+                if (bestDriver < 0 && shortlists.listed(i) > 0) {
+                    // Earlier rides filled every shortlisted driver: shortlist again among those with room
+                    retry.clear(0);
+                    shortlistDrivers(ctx, ride, candidates, buffer, hasRoom, retry, 0);
+                    bestDriver = retry.best(0, hasRoom);
+                }
+                if (bestDriver >= 0) load[bestDriver]++;
+
+                if (bestDriver < 0 && shortlists.listed(i) > 0) {
+                    proposals.add(Proposal.unassigned(ride, "All nearby drivers have reached their daily ride cap"));
+                } else if (bestDriver < 0) {
+                    proposals.add(Proposal.unassigned(ride, buildUnassignedReason(ctx, ride, drivers, candidates, buffer)));
+                } else if (isRoundTrip) {
+                    proposals.add(new Proposal(ride, bestDriver, bestDriver, "INTELLIGENT_ROUND_TRIP", null));
                 } else {
-                    String reason = buildUnassignedReason(ride, drivers);
-                    result.addUnassignedRide(ride.getId(), reason);
-                    log.warn("❌ Could not assign ride {}. Reason: {}", ride.getId(), reason);
+                    int dropoffDriver = findBestDriverForDropoff(ctx, ride, drivers, candidates, bestDriver);
+                    proposals.add(new Proposal(ride, bestDriver, dropoffDriver >= 0 ? dropoffDriver : bestDriver,
+                            "INTELLIGENT_ONE_WAY", null));
                 }
             } catch (Exception e) {
-                log.error("Error assigning ride {}: {}", ride.getId(), e.getMessage());
-                result.addUnassignedRide(ride.getId(), "Assignment error: " + e.getMessage());
+                log.error("Error assigning ride {}: {}", snapshot.rideId(ride), e.getMessage());
+                proposals.add(Proposal.unassigned(ride, "Assignment error: " + e.getMessage()));
             }
         }
+        return proposals;
+    }
 
-        return result;
+    private void applyProposals(AssignmentContext ctx, List<Proposal> proposals, String batchId, boolean isRoundTrip,
+                                OptimizationResult result) {
+        for (Proposal proposal : proposals) {
+            Long rideId = ctx.snapshot.rideId(proposal.ride());
+            if (proposal.pickupDriver() < 0) {
+                result.addUnassignedRide(rideId, proposal.reason());
+                log.warn("❌ Could not assign ride {}. Reason: {}", rideId, proposal.reason());
+                continue;
+            }
+            try {
+                ctx.assign(proposal.ride(), proposal.pickupDriver(), proposal.dropoffDriver(), batchId,
+                        proposal.method(), result);
+                log.debug("✅ Ride {} assigned to driver {} ({})", rideId, ctx.drivers.get(proposal.pickupDriver()).getName(),
+                        isRoundTrip ? "round-trip" : "one-way");
+            } catch (Exception e) {
+                log.error("Error assigning ride {}: {}", rideId, e.getMessage());
+                result.addUnassignedRide(rideId, "Assignment error: " + e.getMessage());
+            }
+        }
+    }
+
+    /** A ride's chosen pickup and dropoff drivers, or the reason it has none (drivers -1). */
+    private record Proposal(int ride, int pickupDriver, int dropoffDriver, String method, String reason) {
+        static Proposal unassigned(int ride, String reason) {
+            return new Proposal(ride, -1, -1, null, reason);
+        }
     }
 
     // ========== HELPER METHODS ==========
@@ -381,45 +1337,36 @@ public class EnhancedMedicalTransportOptimizer {
                 ride.getRideType() == RideType.ROUND_TRIP;
     }
 
-    private OptimizationResult optimizeRidesForVehicleType(List<Ride> rides, List<Driver> drivers,
+    private OptimizationResult optimizeRidesForVehicleType(AssignmentContext ctx, int[] rides, BitSet drivers,
                                                            String batchId, boolean isRoundTrip, String vehicleType) {
-        if (rides.isEmpty()) {
+        if (rides.length == 0) {
             return OptimizationResult.empty();
         }
 
         String rideTypeLabel = isRoundTrip ? "round-trip" : "one-way";
-        log.info("🔄 Optimizing {} {} rides for vehicle type: {}", rides.size(), rideTypeLabel, vehicleType);
+        log.info("🔄 Optimizing {} {} rides for vehicle type: {}", rides.length, rideTypeLabel, vehicleType);
 
-        List<Driver> compatibleDrivers = getDriversForVehicleType(drivers, vehicleType);
+        BitSet compatibleDrivers = compatibleDrivers(ctx, drivers, vehicleType);
         if (compatibleDrivers.isEmpty()) {
             log.warn("❌ No compatible drivers for vehicle type: {}", vehicleType);
-            return createUnassignedResult(rides, "No compatible " + vehicleType + " drivers available");
+            OptimizationResult result = new OptimizationResult();
+            result.setTotalRides(rides.length);
+            for (int ride : rides) {
+                result.addUnassignedRide(ctx.snapshot.rideId(ride), "No compatible " + vehicleType + " drivers available");
+            }
+            return result;
         }
 
-        return performIntelligentAssignment(rides, compatibleDrivers, batchId, isRoundTrip);
-    }
-
-    private List<Driver> getDriversForVehicleType(List<Driver> drivers, String vehicleType) {
-        return drivers.stream()
-                .filter(driver -> isDriverCompatibleWithVehicleType(driver, vehicleType))
-                .collect(Collectors.toList());
+        return performIntelligentAssignment(ctx, rides, compatibleDrivers, batchId, isRoundTrip);
     }
 
-    private boolean isDriverCompatibleWithVehicleType(Driver driver, String vehicleType) {
-        if (vehicleType == null || vehicleType.isEmpty()) return true;
-
-        return switch (vehicleType.toLowerCase()) {
-            case "wheelchair_van" -> Boolean.TRUE.equals(driver.getWheelchairAccessible());
-            case "stretcher_van" -> Boolean.TRUE.equals(driver.getStretcherCapable());
-            case "ambulance" -> Boolean.TRUE.equals(driver.getStretcherCapable()) &&
-                    Boolean.TRUE.equals(driver.getOxygenEquipped());
-            case "van" -> driver.getVehicleType() != null && driver.getVehicleType().name().contains("VAN");
-            case "sedan" -> true;
-            default -> {
-                log.warn("Unknown vehicle type: {}, allowing any driver", vehicleType);
-                yield true;
-            }
-        };
+    private static BitSet compatibleDrivers(AssignmentContext ctx, BitSet drivers, String vehicleType) {
+        int caps = OptimizationSnapshot.vehicleTypeCaps(vehicleType);
+        BitSet compatible = new BitSet(ctx.snapshot.driverCount());
+        for (int d = drivers.nextSetBit(0); d >= 0; d = drivers.nextSetBit(d + 1)) {
+            if (ctx.snapshot.matchesVehicleCaps(d, caps)) compatible.set(d);
+        }
+        return compatible;
     }
 
     @Transactional(readOnly = true)
@@ -437,38 +1384,169 @@ public class EnhancedMedicalTransportOptimizer {
                 (driver.getInsuranceExpiry() != null && driver.getInsuranceExpiry().isBefore(thirtyDaysFromNow));
     }
 
-    private Driver findBestEmergencyDriver(Ride ride, List<Driver> drivers) {
-        return drivers.stream()
-                .filter(driver -> canDriverHandlePatient(driver, ride.getPatient()))
-                .filter(driver -> hasRequiredSkills(driver, ride.getRequiredSkills()))
-                .min(Comparator.comparingDouble(driver -> calculateDistanceToPickup(driver, ride)))
-                .orElse(null);
+    private int findBestEmergencyDriver(AssignmentContext ctx, int ride, BitSet drivers, DriverSpatialIndex candidates) {
+        OptimizationSnapshot snapshot = ctx.snapshot;
+        IntPredicate qualified = driver -> snapshot.canHandlePatient(driver, ride)
+                && snapshot.hasRequiredSkills(driver, ride);
+        if (!snapshot.hasPickup(ride)) {
+            return firstMatching(drivers, qualified);
+        }
+        return nearestMatching(snapshot, candidates, drivers, snapshot.pickupLat(ride), snapshot.pickupLng(ride),
+                qualified);
+    }
+
+    /**
+     * Score the {@code open} drivers near {@code ride} on the calibrated road estimate and keep the best
+     * few as shortlist {@code slot}.
+     */
+    private void shortlistDrivers(AssignmentContext ctx, int ride, DriverSpatialIndex candidates, int[] buffer,
+                                  IntPredicate open, Shortlists shortlists, int slot) {
+        OptimizationSnapshot snapshot = ctx.snapshot;
+        if (!snapshot.hasPickup(ride)) {
+            return;
+        }
+        int found = candidates.withinRadius(snapshot.pickupLat(ride), snapshot.pickupLng(ride),
+                appProps.getOptimizer().getMaxPickupDistanceKm(), buffer);
+        for (int i = 0; i < found; i++) {
+            int driver = buffer[i];
+            if (!open.test(driver)
+                    || !snapshot.isAvailable(driver)
+                    || !snapshot.canHandlePatient(driver, ride)
+                    || !snapshot.hasRequiredSkills(driver, ride)) {
+                continue;
+            }
+            double roadKm = roadEstimator.roadKm(snapshot.baseLat(driver), snapshot.baseLng(driver),
+                    snapshot.pickupLat(ride), snapshot.pickupLng(ride));
+            shortlists.offer(slot, driver, calculateDriverScore(snapshot, driver, ride, roadKm));
+        }
     }
 
-    private Driver findBestDriverForRide(Ride ride, List<Driver> drivers) {
-        return drivers.stream()
-                .filter(driver -> canDriverHandlePatient(driver, ride.getPatient()))
-                .filter(driver -> hasRequiredSkills(driver, ride.getRequiredSkills()))
-                .filter(driver -> isDriverAvailableForRide(driver, ride))
-                .filter(driver -> calculateDistanceToPickup(driver, ride) <= appProps.getOptimizer().getMaxPickupDistanceKm())
-                .min(Comparator.comparingDouble(driver -> calculateDriverScore(driver, ride)))
-                .orElse(null);
+    /**
+     * Replace estimated scores with ones based on OSRM pickup distances. The bases and pickups of all
+     * shortlists with a choice to make go out in a single matrix request, whose repeated pairs are
+     * served from the matrix cache.
+     */
+    private void rescoreWithExactDistances(AssignmentContext ctx, int[] rides, Shortlists shortlists) {
+        OptimizationSnapshot snapshot = ctx.snapshot;
+        int[] baseRow = new int[snapshot.driverCount()];
+        Arrays.fill(baseRow, -1);
+        int[] pickupCol = new int[rides.length];
+        List<String> bases = new ArrayList<>();
+        List<String> pickups = new ArrayList<>();
+        for (int i = 0; i < rides.length; i++) {
+            pickupCol[i] = -1;
+            if (shortlists.listed(i) < 2) continue;
+            pickupCol[i] = pickups.size();
+            pickups.add(snapshot.pickupLng(rides[i]) + "," + snapshot.pickupLat(rides[i]));
+            for (int k = 0; k < shortlists.listed(i); k++) {
+                int driver = shortlists.driver(i, k);
+                if (baseRow[driver] >= 0) continue;
+                baseRow[driver] = bases.size();
+                bases.add(snapshot.baseLng(driver) + "," + snapshot.baseLat(driver));
+            }
+        }
+        if (pickups.isEmpty()) {
+            return;
+        }
+
+        try {
+            RoadMatrix exact = distanceService.getRoadMatrix(bases, pickups);
+            for (int i = 0; i < rides.length; i++) {
+                if (pickupCol[i] < 0) continue;
+                for (int k = 0; k < shortlists.listed(i); k++) {
+                    int driver = shortlists.driver(i, k);
+                    float meters = exact.meters(baseRow[driver], pickupCol[i]);
+                    if (!Float.isNaN(meters)) {
+                        shortlists.rescore(i, k, calculateDriverScore(snapshot, driver, rides[i], meters / 1000.0));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Exact pickup distances unavailable, scoring on estimates for the rest of the run: {}",
+                    e.getMessage());
+            ctx.exactDistances = false;
+        }
+    }
+
+    /**
+     * The {@link #EXACT_SHORTLIST} best-scored drivers of each ride of a phase, sorted by score, in flat
+     * arrays allocated once per phase.
+     */
+    private static final class Shortlists {
+        private final int[] drivers;
+        private final double[] scores;
+        private final int[] listed;
+
+        Shortlists(int rides) {
+            this.drivers = new int[rides * EXACT_SHORTLIST];
+            this.scores = new double[rides * EXACT_SHORTLIST];
+            this.listed = new int[rides];
+        }
+
+        int listed(int slot) {
+            return listed[slot];
+        }
+
+        int driver(int slot, int k) {
+            return drivers[slot * EXACT_SHORTLIST + k];
+        }
+
+        void offer(int slot, int driver, double score) {
+            int base = slot * EXACT_SHORTLIST;
+            int count = listed[slot];
+            if (count == EXACT_SHORTLIST && score >= scores[base + count - 1]) return;
+            int at = Math.min(count, EXACT_SHORTLIST - 1);
+            while (at > 0 && scores[base + at - 1] > score) {
+                drivers[base + at] = drivers[base + at - 1];
+                scores[base + at] = scores[base + at - 1];
+                at--;
+            }
+            drivers[base + at] = driver;
+            scores[base + at] = score;
+            listed[slot] = Math.min(count + 1, EXACT_SHORTLIST);
+        }
+
+        void rescore(int slot, int k, double score) {
+            scores[slot * EXACT_SHORTLIST + k] = score;
+        }
+
+        void clear(int slot) {
+            listed[slot] = 0;
+        }
+
+        /** Best-scored {@code open} driver of the shortlist, -1 if there is none. */
+        int best(int slot, IntPredicate open) {
+            int base = slot * EXACT_SHORTLIST;
+            int best = -1;
+            double bestScore = Double.MAX_VALUE;
+            for (int k = 0; k < listed[slot]; k++) {
+                if (!open.test(drivers[base + k])) continue;
+                if (best < 0 || scores[base + k] < bestScore) {
+                    bestScore = scores[base + k];
+                    best = drivers[base + k];
+                }
+            }
+            return best;
+        }
     }
 
-    private Driver findBestDriverForDropoff(Ride ride, List<Driver> drivers, Driver pickupDriver) {
-        return drivers.stream()
-                .filter(driver -> !driver.equals(pickupDriver)) // Different driver for dropoff
-                .filter(driver -> canDriverHandlePatient(driver, ride.getPatient()))
-                .filter(driver -> isDriverAvailableForDropoff(driver, ride))
-                .min(Comparator.comparingDouble(driver -> calculateDropoffScore(driver, ride)))
-                .orElse(null);
+    private int findBestDriverForDropoff(AssignmentContext ctx, int ride, BitSet drivers, DriverSpatialIndex candidates,
+                                         int pickupDriver) {
+        OptimizationSnapshot snapshot = ctx.snapshot;
+        IntPredicate eligible = driver -> driver != pickupDriver // Different driver for dropoff
+                && snapshot.canHandlePatient(driver, ride)
+                && snapshot.isAvailable(driver);
+        if (!snapshot.hasDropoff(ride)) {
+            return firstMatching(drivers, eligible);
+        }
+        return nearestMatching(snapshot, candidates, drivers, snapshot.dropoffLat(ride), snapshot.dropoffLng(ride),
+                eligible);
     }
 
-    private double calculateDriverScore(Driver driver, Ride ride) {
+    private double calculateDriverScore(OptimizationSnapshot snapshot, int driver, int ride, double distance) {
         double score = 0.0;
 
         // Distance factor (lower is better)
-        double distance = calculateDistanceToPickup(driver, ride);
         score += distance * 100; // Weight distance heavily
 
         // Bonus for being within preferred distance
@@ -477,145 +1555,108 @@ public class EnhancedMedicalTransportOptimizer {
         }
 
         // Capability bonus (exact match is better)
-        if (hasExactVehicleMatch(driver, ride)) {
+        if (snapshot.hasExactVehicleMatch(driver, ride)) {
             score -= 50;
         }
 
         // Experience bonus
-        if (driver.getMaxDailyRides() != null) {
-            score -= driver.getMaxDailyRides() * 5;
+        if (snapshot.maxDailyRides(driver) >= 0) {
+            score -= snapshot.maxDailyRides(driver) * 5;
         }
 
         // Training completion bonus
-        if (Boolean.TRUE.equals(driver.getIsTrainingComplete())) {
+        if (snapshot.isTrained(driver)) {
             score -= 25;
         }
 
         return score;
     }
 
-    private double calculateDropoffScore(Driver driver, Ride ride) {
-        // For dropoff, prioritize drivers closer to the dropoff location
-        if (ride.getDropoffLocation() != null && ride.getDropoffLocation().isValid()) {
-            return calculateDistance(
-                    driver.getBaseLat(), driver.getBaseLng(),
-                    ride.getDropoffLocation().getLatitude(), ride.getDropoffLocation().getLongitude()
-            );
+    private static int firstMatching(BitSet drivers, IntPredicate filter) {
+        for (int d = drivers.nextSetBit(0); d >= 0; d = drivers.nextSetBit(d + 1)) {
+            if (filter.test(d)) return d;
         }
-        return 999.0; // High score if no valid dropoff location
+        return -1;
     }
 
-    private boolean hasExactVehicleMatch(Driver driver, Ride ride) {
-        String requiredType = determineRequiredVehicleType(ride);
-        return switch (requiredType.toLowerCase()) {
-            case "wheelchair_van" -> Boolean.TRUE.equals(driver.getWheelchairAccessible());
-            case "stretcher_van" -> Boolean.TRUE.equals(driver.getStretcherCapable());
-            case "ambulance" -> Boolean.TRUE.equals(driver.getStretcherCapable()) &&
-                    Boolean.TRUE.equals(driver.getOxygenEquipped());
-            default -> true;
-        };
-    }
-
-    private boolean isDriverAvailableForRide(Driver driver, Ride ride) {
-        return driver.getActive() && Boolean.TRUE.equals(driver.getIsTrainingComplete());
-    }
-
-    private boolean isDriverAvailableForDropoff(Driver driver, Ride ride) {
-        return isDriverAvailableForRide(driver, ride);
-    }
-
-    private boolean hasRequiredSkills(Driver driver, List<String> requiredSkills) {
-        if (requiredSkills == null || requiredSkills.isEmpty()) return true;
-        if (driver.getSkills() == null) return false;
-
-        return requiredSkills.stream()
-                .allMatch(skill -> Boolean.TRUE.equals(driver.getSkills().get(skill)));
-    }
-
-    private double calculateDistanceToPickup(Driver driver, Ride ride) {
-        if (ride.getPickupLocation() == null || !ride.getPickupLocation().isValid()) {
-            return Double.MAX_VALUE;
+    /**
+     * Closest {@code filter}-accepted driver of {@code drivers} to a point. The index is searched within
+     * the pickup radius; only when nobody qualifies there are all {@code drivers} scanned.
+     */
+    private int nearestMatching(OptimizationSnapshot snapshot, DriverSpatialIndex candidates, BitSet drivers,
+                                double lat, double lng, IntPredicate filter) {
+        int near = candidates.nearest(lat, lng, appProps.getOptimizer().getMaxPickupDistanceKm(), filter);
+        if (near >= 0) return near;
+
+        int best = -1;
+        double bestKm = Double.MAX_VALUE;
+        for (int d = drivers.nextSetBit(0); d >= 0; d = drivers.nextSetBit(d + 1)) {
+            double km = snapshot.baseDistanceKm(d, lat, lng);
+            if ((best < 0 || km < bestKm) && filter.test(d)) {
+                best = d;
+                bestKm = km;
+            }
         }
-
-        return calculateDistance(
-                driver.getBaseLat(), driver.getBaseLng(),
-                ride.getPickupLocation().getLatitude(), ride.getPickupLocation().getLongitude()
-        );
+        return best;
     }
 
-    private double calculateDistance(double lat1, double lng1, double lat2, double lng2) {
-        double lat1Rad = Math.toRadians(lat1);
-        double lon1Rad = Math.toRadians(lng1);
-        double lat2Rad = Math.toRadians(lat2);
-        double lon2Rad = Math.toRadians(lng2);
-
-        double dlat = lat2Rad - lat1Rad;
-        double dlon = lon2Rad - lon1Rad;
-
-        double a = Math.sin(dlat/2) * Math.sin(dlat/2) +
-                Math.cos(lat1Rad) * Math.cos(lat2Rad) * Math.sin(dlon/2) * Math.sin(dlon/2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1-a));
-
-        return EARTH_RADIUS_KM * c;
-    }
-
-    private List<Driver> getAvailableDriversAfterAssignment(List<Driver> allDrivers, Set<Long> assignedDriverIds) {
-        return allDrivers.stream()
-                .filter(driver -> !assignedDriverIds.contains(driver.getId()))
-                .collect(Collectors.toList());
-    }
-
-    private OptimizationResult performRelaxedAssignment(List<Ride> rides, List<Driver> drivers, String batchId, int maxPerDriver) {
+    private OptimizationResult performRelaxedAssignment(AssignmentContext ctx, int[] rides, BitSet drivers,
+                                                        String batchId, int maxPerDriver) {
+        OptimizationSnapshot snapshot = ctx.snapshot;
         OptimizationResult res = new OptimizationResult();
         res.setBatchId(batchId);
-        res.setTotalRides(rides.size());
+        res.setTotalRides(rides.length);
+        DriverSpatialIndex candidates = ctx.index.restrictTo(drivers);
 
-        Map<Long, Integer> driverRelaxedCounts = new HashMap<>();
+        int[] driverRelaxedCounts = new int[snapshot.driverCount()];
 
-        for (Ride ride : rides) {
+        for (int ride : rides) {
+            Long rideId = snapshot.rideId(ride);
             try {
-                Driver best = drivers.stream()
-                        .filter(d -> canDriverHandlePatient(d, ride.getPatient()))
-                        .filter(d -> hasRequiredSkills(d, ride.getRequiredSkills()))
-                        .filter(d -> isDriverAvailableForRide(d, ride))
-                        // Ignore MAX_PICKUP_DISTANCE_KM constraint in relaxed mode
-                        .min(Comparator.comparingDouble(d -> calculateDistanceToPickup(d, ride)))
-                        .orElse(null);
-
-                if (best != null) {
-                    int used = driverRelaxedCounts.getOrDefault(best.getId(), 0);
-                    if (used < Math.max(0, maxPerDriver)) {
-                        assignRideToDriver(ride, best, best, batchId, "RELAXED_LONG_DEADHEAD");
-                        res.addAssignedRide(best.getId(), ride.getId());
-                        driverRelaxedCounts.put(best.getId(), used + 1);
+                IntPredicate eligible = d -> snapshot.canHandlePatient(d, ride)
+                        && snapshot.hasRequiredSkills(d, ride)
+                        && snapshot.isAvailable(d);
+                // Ignore the max pickup distance in relaxed mode: nearest eligible driver wins
+                int best = snapshot.hasPickup(ride)
+                        ? nearestMatching(snapshot, candidates, drivers, snapshot.pickupLat(ride),
+                                snapshot.pickupLng(ride), eligible)
+                        : firstMatching(drivers, eligible);
+
+                if (best >= 0) {
+                    if (driverRelaxedCounts[best] < Math.max(0, maxPerDriver)) {
+                        ctx.assign(ride, best, best, batchId, "RELAXED_LONG_DEADHEAD", res);
+                        driverRelaxedCounts[best]++;
                         log.info("🟡 Relaxed assign ride {} -> driver {} (deadhead ~{:.1f}km)",
-                                ride.getId(), best.getName(), calculateDistanceToPickup(best, ride));
+                                rideId, ctx.drivers.get(best).getName(), snapshot.pickupDistanceKm(best, ride));
                     } else {
-                        res.addUnassignedRide(ride.getId(), "Relaxed cap reached for driver");
+                        res.addUnassignedRide(rideId, "Relaxed cap reached for driver");
                     }
                 } else {
-                    res.addUnassignedRide(ride.getId(), "No feasible driver under relaxed rules");
+                    res.addUnassignedRide(rideId, "No feasible driver under relaxed rules");
                 }
             } catch (Exception e) {
-                log.warn("Relaxed assignment error for ride {}: {}", ride.getId(), e.getMessage());
-                res.addUnassignedRide(ride.getId(), "Relaxed assignment error: " + e.getMessage());
+                log.warn("Relaxed assignment error for ride {}: {}", rideId, e.getMessage());
+                res.addUnassignedRide(rideId, "Relaxed assignment error: " + e.getMessage());
             }
         }
         return res;
     }
 
-    private String buildUnassignedReason(Ride ride, List<Driver> drivers) {
+    private String buildUnassignedReason(AssignmentContext ctx, int ride, BitSet drivers, DriverSpatialIndex candidates,
+                                         int[] buffer) {
+        OptimizationSnapshot snapshot = ctx.snapshot;
         List<String> reasons = new ArrayList<>();
-        long compatibleByPatient = drivers.stream().filter(d -> canDriverHandlePatient(d, ride.getPatient())).count();
-        if (compatibleByPatient == 0) reasons.add("No driver matches patient medical needs");
-
-        long withinShift = drivers.stream().filter(d -> isDriverAvailableForRide(d, ride)).count();
-        if (withinShift == 0) reasons.add("No driver available (inactive/training/shift)");
+        if (firstMatching(drivers, d -> snapshot.canHandlePatient(d, ride)) < 0) {
+            reasons.add("No driver matches patient medical needs");
+        }
+        if (firstMatching(drivers, snapshot::isAvailable) < 0) {
+            reasons.add("No driver available (inactive/training/shift)");
+        }
 
-        long withinDistance = drivers.stream()
-                .filter(d -> calculateDistanceToPickup(d, ride) <= MAX_PICKUP_DISTANCE_KM)
-                .count();
-        if (withinDistance == 0) reasons.add("All drivers too far from pickup");
+        boolean anyWithinDistance = snapshot.hasPickup(ride)
+                && candidates.withinRadius(snapshot.pickupLat(ride), snapshot.pickupLng(ride),
+                        appProps.getOptimizer().getMaxPickupDistanceKm(), buffer) > 0;
+        if (!anyWithinDistance) reasons.add("All drivers too far from pickup");
 
         if (reasons.isEmpty()) reasons.add("No compatible driver available");
         return String.join("; ", reasons);
@@ -642,7 +1683,9 @@ public class EnhancedMedicalTransportOptimizer {
     @Transactional
     public OptimizationResult performIntelligentFallback(List<Ride> rides, List<Driver> drivers, String batchId) {
         log.warn("⚠️ Running intelligent medical transport fallback for {} rides", rides.size());
-        return performIntelligentAssignment(rides, drivers, batchId, false);
+        AssignmentContext ctx = new AssignmentContext(rides, drivers, snapshotOf(rides, drivers));
+        int[] all = IntStream.range(0, rides.size()).toArray();
+        return performIntelligentAssignment(ctx, all, ctx.driversUnderCap(), batchId, false);
     }
 
     private OptimizationResult createUnassignedResult(List<Ride> rides, String reason) {
@@ -653,7 +1696,11 @@ public class EnhancedMedicalTransportOptimizer {
     }
 
     private String generateBatchId() {
-        return "MEDICAL_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) +
+        return generateBatchId("MEDICAL");
+    }
+
+    private String generateBatchId(String prefix) {
+        return prefix + "_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")) +
                 "_" + UUID.randomUUID().toString().substring(0, 8);
     }
 
@@ -674,6 +1721,12 @@ public class EnhancedMedicalTransportOptimizer {
     @Transactional
     public void createDetailedAuditRecord(List<Ride> rides, OptimizationResult result,
                                           RideCategorization categorization, String batchId) {
+        createDetailedAuditRecord(rides, result, categorization, batchId,
+                "Intelligent fallback algorithm with medical transport constraints");
+    }
+
+    private void createDetailedAuditRecord(List<Ride> rides, OptimizationResult result,
+                                           RideCategorization categorization, String batchId, String strategy) {
         try {
             AssignmentAudit audit = new AssignmentAudit();
             audit.setAssignmentTime(LocalDateTime.now());
@@ -687,7 +1740,7 @@ public class EnhancedMedicalTransportOptimizer {
 //            audit.setAssignedDriverCount(result.getAssignedDriverCount());
             audit.setSuccessRate(result.getSuccessRate());
             audit.setTriggeredBy("ENHANCED_MEDICAL_OPTIMIZER");
-            audit.setOptimizationStrategy("Intelligent fallback algorithm with medical transport constraints");
+            audit.setOptimizationStrategy(strategy);
 
             // Medical transport specific statistics
             audit.setWheelchairRides(categorization.getWheelchairRideCount());
@@ -705,6 +1758,13 @@ public class EnhancedMedicalTransportOptimizer {
         }
     }
 
+    @PreDestroy
+    void shutdownPartitionPool() {
+        ForkJoinPool pool = partitionPool;
+        if (pool != null) pool.shutdownNow();
+        improvementExecutor.shutdownNow();
+    }
+
     // Supporting Classes
     public static class OptimizationResult {
         private String batchId;
@@ -806,4 +1866,76 @@ public class EnhancedMedicalTransportOptimizer {
         public Map<String, List<Ride>> getRoundTripRidesByVehicleType() { return roundTripRidesByVehicleType; }
         public Map<String, List<Ride>> getOneWayRidesByVehicleType() { return oneWayRidesByVehicleType; }
     }
-}
\ No newline at end of file
+
+    /**
+     * State of one greedy run: the snapshot and spatial index built once up front, per-driver load
+     * for the daily ride cap, and the source entities for write-back.
+     */
+    private final class AssignmentContext {
+        private final List<Ride> rides;
+        private final List<Driver> drivers;
+        private final OptimizationSnapshot snapshot;
+        private final DriverSpatialIndex index;
+        private final Map<Ride, Integer> rideIndex = new IdentityHashMap<>();
+        private final int[] load;
+        private final boolean[] assigned;
+        /** Pickup driver of each assigned ride, -1 for the others. */
+        private final int[] pickupDriverOf;
+        /** Scratch space for spatial queries. */
+        private final int[] buffer;
+        /** Confirm shortlisted pickup distances with OSRM; cleared after the first failure. */
+        private volatile boolean exactDistances;
+
+        private AssignmentContext(List<Ride> rides, List<Driver> drivers, OptimizationSnapshot snapshot) {
+            this.rides = rides;
+            this.drivers = drivers;
+            this.snapshot = snapshot;
+            this.index = DriverSpatialIndex.build(snapshot, SPATIAL_CELL_KM);
+            for (int r = 0; r < rides.size(); r++) {
+                rideIndex.put(rides.get(r), r);
+            }
+            this.load = new int[snapshot.driverCount()];
+            this.assigned = new boolean[snapshot.rideCount()];
+            this.pickupDriverOf = new int[snapshot.rideCount()];
+            Arrays.fill(pickupDriverOf, -1);
+            this.buffer = new int[snapshot.driverCount()];
+            this.exactDistances = distanceService.isOsrmHealthy();
+        }
+
+        int[] indicesOf(List<Ride> subset) {
+            return subset.stream().mapToInt(rideIndex::get).toArray();
+        }
+
+        /** Drivers stay available across phases until they reach their daily ride cap. */
+        BitSet driversUnderCap() {
+            BitSet mask = new BitSet(snapshot.driverCount());
+            for (int d = 0; d < snapshot.driverCount(); d++) {
+                if (isUnderCap(d)) mask.set(d);
+            }
+            return mask;
+        }
+
+        boolean isUnderCap(int driver) {
+            return hasRoom(driver, load);
+        }
+
+        /** Whether {@code driver} is under the daily ride cap with {@code counts} rides per driver. */
+        boolean hasRoom(int driver, int[] counts) {
+            int cap = snapshot.maxDailyRides(driver);
+            return cap < 0 || counts[driver] < cap;
+        }
+
+        boolean isAssigned(int ride) {
+            return assigned[ride];
+        }
+
+        void assign(int ride, int pickupDriver, int dropoffDriver, String batchId, String method,
+                    OptimizationResult result) {
+            assignRideToDriver(rides.get(ride), drivers.get(pickupDriver), drivers.get(dropoffDriver), batchId, method);
+            result.addAssignedRide(snapshot.driverId(pickupDriver), snapshot.rideId(ride));
+            load[pickupDriver]++;
+            assigned[ride] = true;
+            pickupDriverOf[ride] = pickupDriver;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.mediroute.service.ride;
+
+import com.mediroute.dto.ImprovementStatusDto;
+import com.mediroute.service.ride.routing.RouteImprover;
+import com.mediroute.service.ride.routing.RoutePlan;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.mediroute.config.SecurityBeans.currentOrgId;
+
+/**
+ * Best plans published by running route improvements, so dispatchers can use a plan before the run
+ * ends. Kept in memory per batch, scoped to the organization that started the run, and dropped
+ * {@value #RETENTION_MINUTES} minutes after the last publish.
+ */
+@Service
+@Slf4j
+public class ImprovementStatusService {
+
+    private static final int RETENTION_MINUTES = 15;
+
+    private record Entry(Long orgId, ImprovementStatusDto status) {}
+
+    private final Map<String, Entry> statuses = new ConcurrentHashMap<>();
+
+    /** Record {@code plan} as the best so far of batch {@code batchId}; call on the thread running it. */
+    public void publish(String batchId, RoutePlan plan, RouteImprover.Progress progress) {
+        LocalDateTime now = LocalDateTime.now();
+        Entry previous = statuses.get(batchId);
+        ImprovementStatusDto status = ImprovementStatusDto.builder()
+                .batchId(batchId)
+                .finished(progress.finished())
+                .iterations(progress.iterations())
+                .elapsedMs(progress.elapsedMs())
+                .travelMinutes(progress.travelSeconds() / 60)
+                .assignedRideCount(plan.getAssignedRideCount())
+                .routes(plan.getRoutes())
+                .unassignedReasons(plan.getUnassigned())
+                .startedAt(previous != null ? previous.status().getStartedAt() : now)
+                .publishedAt(now)
+                .build();
+        statuses.put(batchId, new Entry(previous != null ? previous.orgId() : currentOrgId(), status));
+        log.debug("📣 Batch {} published a plan: {} rides routed, {} min travel{}", batchId,
+                status.getAssignedRideCount(), status.getTravelMinutes(), progress.finished() ? " (final)" : "");
+        evictStale(now);
+    }
+
+    public Optional<ImprovementStatusDto> get(String batchId) {
+        return Optional.ofNullable(statuses.get(batchId))
+                .filter(ImprovementStatusService::visible)
+                .map(Entry::status);
+    }
+
+    /** Runs of the caller's organization, most recently started first. */
+    public List<ImprovementStatusDto> list() {
+        return statuses.values().stream()
+                .filter(ImprovementStatusService::visible)
+                .map(Entry::status)
+                .sorted(Comparator.comparing(ImprovementStatusDto::getStartedAt).reversed())
+                .toList();
+    }
+
+    /** Runs without an organization are only visible to callers without one. */
+    private static boolean visible(Entry entry) {
+        return Objects.equals(entry.orgId(), currentOrgId());
+    }
+
+    private void evictStale(LocalDateTime now) {
+        LocalDateTime cutoff = now.minusMinutes(RETENTION_MINUTES);
+        statuses.values().removeIf(entry -> entry.status().getPublishedAt().isBefore(cutoff));
+    }
+}
@@ -127,17 +127,8 @@ public class OptimizationIntegrationService {
         log.info("🔄 Optimizing rides between {} and {}", start, end);
 
         try {
-            // Find rides for optimization with proper entity initialization
-            LocalDate date = start.toLocalDate();
-            List<Ride> rides = rideService.findRidesForOptimization(date);
-
-            // Filter by time range
-            List<Ride> ridesInRange = rides.stream()
-                    .filter(ride -> !ride.getPickupTime().isBefore(start) &&
-                            !ride.getPickupTime().isAfter(end))
-                    .filter(ride -> ride.getPickupDriver() == null &&
-                            ride.getDropoffDriver() == null) // Only unassigned
-                    .toList();
+            // Only the range's unassigned rides are loaded, with proper entity initialization
+            List<Ride> ridesInRange = rideService.findUnassignedRidesForOptimization(start, end);
 
             if (ridesInRange.isEmpty()) {
                 log.info("No unassigned rides found in time range {} to {}", start, end);
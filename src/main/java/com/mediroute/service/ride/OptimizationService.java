@@ -1,7 +1,10 @@
 package com.mediroute.service.ride;
 
+import com.mediroute.dto.EmergencyInsertionResult;
 import com.mediroute.dto.OptimizationResult;
+import com.mediroute.dto.ScheduleDelta;
 import com.mediroute.entity.Ride;
+import com.mediroute.repository.RideRepository;
 import com.mediroute.service.ride.EnhancedMedicalTransportOptimizer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -10,12 +13,16 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import static com.mediroute.config.SecurityBeans.currentOrgId;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class OptimizationService {
 
     private final EnhancedMedicalTransportOptimizer enhancedOptimizer;
+    private final RideRepository rideRepository;
+    private final RollingHorizonDispatcher rollingHorizonDispatcher;
 
     /**
      * Main optimization entry point - wraps your existing implementation
@@ -26,34 +33,77 @@ public class OptimizationService {
         var result = enhancedOptimizer.optimizeSchedule(rides);
 
         // Convert to our DTO format
-        return OptimizationResult.builder()
-                .batchId(result.getBatchId())
-                .totalRides(result.getTotalRides())
-                .driverAssignments(result.getDriverAssignments())
-                .unassignedReasons(result.getUnassignedReasons())
-                .optimizationTime(result.getOptimizationTime())
-                .successRate(result.getSuccessRate())
-                .optimizationRan(true)
-                .build();
+        return toDto(result);
     }
 
     /**
-     * Optimize unassigned rides in time range
+     * Optimize unassigned rides in time range: late additions are inserted into the existing
+     * routes rather than re-optimizing the day.
      */
     public OptimizationResult optimizeUnassignedRides(LocalDateTime start, LocalDateTime end) {
         log.info("🔄 Optimizing unassigned rides between {} and {}", start, end);
 
-        // Your existing implementation would go here
-        // For now, delegate to the main optimizer
-        return OptimizationResult.empty();
+        Long org = currentOrgId();
+        List<Long> rideIds = rideRepository.findUnassignedRidesInTimeRangeWithPatient(start, end).stream()
+                .filter(ride -> org == null || org.equals(ride.getOrgId()))
+                .map(Ride::getId)
+                .toList();
+        if (rideIds.isEmpty()) {
+            return OptimizationResult.empty();
+        }
+        return reOptimize(ScheduleDelta.builder().addedRideIds(rideIds).build());
     }
+
     /**
-     * Re-optimize affected rides
+     * Re-optimize affected rides: each is taken off its route and placed again, leaving other
+     * assignments alone.
      */
     public OptimizationResult reOptimizeAffectedRides(List<Long> affectedRideIds) {
         log.info("🔄 Re-optimizing {} affected rides", affectedRideIds.size());
 
-        // Your existing implementation would go here
-        return OptimizationResult.empty();
+        return reOptimize(ScheduleDelta.builder().changedRideIds(affectedRideIds).build());
+    }
+
+    /**
+     * Repair the routes a schedule change touches; see {@link EnhancedMedicalTransportOptimizer#repairSchedule}.
+     */
+    public OptimizationResult reOptimize(ScheduleDelta delta) {
+        if (delta == null || delta.isEmpty()) {
+            return OptimizationResult.empty();
+        }
+        OptimizationResult result = toDto(enhancedOptimizer.repairSchedule(delta));
+        result.setOptimizationStrategy("INCREMENTAL_REPAIR");
+        return result;
+    }
+
+    /**
+     * Run a rolling-horizon tick now; see {@link RollingHorizonDispatcher#dispatch}.
+     */
+    public OptimizationResult dispatchHorizon(LocalDateTime now) {
+        OptimizationResult result = toDto(rollingHorizonDispatcher.dispatch(now));
+        result.setOptimizationStrategy("ROLLING_HORIZON");
+        return result;
+    }
+
+    /**
+     * Insert one urgent ride into the live routes; see {@link EnhancedMedicalTransportOptimizer#insertEmergencyRide}.
+     */
+    public EmergencyInsertionResult insertEmergencyRide(Long rideId) {
+        return enhancedOptimizer.insertEmergencyRide(rideId);
+    }
+
+    private static OptimizationResult toDto(EnhancedMedicalTransportOptimizer.OptimizationResult result) {
+        return OptimizationResult.builder()
+                .batchId(result.getBatchId())
+                .totalRides(result.getTotalRides())
+                .assignedRideCount(result.getAssignedRideCount())
+                .unassignedRideCount(result.getTotalRides() - result.getAssignedRideCount())
+                .assignedDriverCount(result.getAssignedDriverCount())
+                .driverAssignments(result.getDriverAssignments())
+                .unassignedReasons(result.getUnassignedReasons())
+                .optimizationTime(result.getOptimizationTime())
+                .successRate(result.getSuccessRate())
+                .optimizationRan(true)
+                .build();
     }
-}
\ No newline at end of file
+}
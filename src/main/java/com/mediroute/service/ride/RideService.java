@@ -403,4 +403,17 @@ public class RideService {
         log.info("Found {} rides with valid coordinates for optimization on {}", rides.size(), date);
         return rides;
     }
+
+    /**
+     * Get unassigned rides with valid coordinates whose pickup falls in a time range
+     */
+    @Transactional(readOnly = true)
+    public List<Ride> findUnassignedRidesForOptimization(LocalDateTime start, LocalDateTime end) {
+        List<Ride> rides = rideRepository.findUnassignedRidesWithValidCoordinatesAndPatient(start, end);
+
+        rides.forEach(this::initializeRideEntities);
+
+        log.info("Found {} unassigned rides with valid coordinates between {} and {}", rides.size(), start, end);
+        return rides;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+package com.mediroute.service.ride;
+
+import com.mediroute.config.AppProps;
+import com.mediroute.dto.RideStatus;
+import com.mediroute.dto.ScheduleDelta;
+import com.mediroute.entity.Ride;
+import com.mediroute.repository.RideRepository;
+import com.mediroute.service.ride.EnhancedMedicalTransportOptimizer.OptimizationResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import static com.mediroute.config.SecurityBeans.currentOrgId;
+
+/**
+ * Rolling-horizon dispatch for same-day operations. Each tick plans only the rides picked up in the next
+ * {@code horizonHours}: unassigned rides are inserted into the drivers' current routes, and rides an
+ * earlier tick placed are planned again with them, until they come within {@code horizonCommitMinutes}
+ * of pickup and keep their driver. A tick is as large as the horizon, not the day.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RollingHorizonDispatcher {
+
+    /** Batch id prefix of tick assignments; rides still carrying it past the commit point stay open. */
+    static final String BATCH_PREFIX = "HORIZON";
+
+    private final RideRepository rideRepository;
+    private final EnhancedMedicalTransportOptimizer enhancedOptimizer;
+    private final AppProps appProps;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Scheduled(fixedDelayString = "${app.optimizer.horizon-cadence-minutes:5}",
+            initialDelayString = "${app.optimizer.horizon-cadence-minutes:5}", timeUnit = TimeUnit.MINUTES)
+    public void scheduledTick() {
+        if (!appProps.getOptimizer().isRollingHorizon()) return;
+        try {
+            dispatch(LocalDateTime.now());
+        } catch (IllegalStateException e) {
+            log.info("⏭️ Scheduled rolling-horizon tick skipped: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Run one tick for the horizon starting at {@code now}. A caller with an organization plans only its
+     * rides; otherwise, as on the scheduler, every organization's rides are planned on its own drivers.
+     * Unassigned rides whose pickup passed less than {@code horizonGraceMinutes} ago are still planned.
+     *
+     * @throws IllegalStateException if another tick is still running
+     */
+    public OptimizationResult dispatch(LocalDateTime now) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A rolling-horizon tick is already running; try again shortly");
+        }
+        try {
+            OptimizationResult total = OptimizationResult.empty();
+            long startedAt = System.currentTimeMillis();
+            LocalDateTime openFrom = now.minusMinutes(appProps.getOptimizer().getHorizonGraceMinutes());
+            LocalDateTime horizonEnd = now.plusHours(appProps.getOptimizer().getHorizonHours());
+            LocalDateTime commitUntil = now.plusMinutes(appProps.getOptimizer().getHorizonCommitMinutes());
+            Long callerOrg = currentOrgId();
+
+            Map<Long, ScheduleDelta> deltas = new HashMap<>();
+            int open = 0;
+            int provisional = 0;
+            for (Ride ride : rideRepository.findUnassignedRidesInTimeRangeWithPatient(openFrom, horizonEnd)) {
+                if (callerOrg != null && !callerOrg.equals(ride.getOrgId())) continue;
+                deltaOf(deltas, ride).getAddedRideIds().add(ride.getId());
+                open++;
+            }
+            if (commitUntil.isBefore(horizonEnd)) {
+                for (Ride ride : rideRepository.findByStatusAndOptimizationBatchIdStartingWithAndPickupTimeBetween(
+                        RideStatus.ASSIGNED, BATCH_PREFIX + "_", commitUntil, horizonEnd)) {
+                    if (callerOrg != null && !callerOrg.equals(ride.getOrgId())) continue;
+                    deltaOf(deltas, ride).getChangedRideIds().add(ride.getId());
+                    provisional++;
+                }
+            }
+
+            for (Map.Entry<Long, ScheduleDelta> org : deltas.entrySet()) {
+                Supplier<OptimizationResult> tick = () -> enhancedOptimizer.repairSchedule(org.getValue(),
+                        BATCH_PREFIX, "ROLLING_HORIZON");
+                OptimizationResult result = callerOrg != null ? tick.get() : asOrg(org.getKey(), tick);
+                total.merge(result);
+                if (deltas.size() == 1) total.setBatchId(result.getBatchId());
+            }
+            total.setTotalRides(open + provisional);
+
+            log.info("🕒 Rolling-horizon tick {} to {} finished in {} ms: {} new and {} provisional rides, "
+                            + "{} placed, rides before {} committed", now, horizonEnd,
+                    System.currentTimeMillis() - startedAt, open, provisional, total.getAssignedRideCount(),
+                    commitUntil);
+            return total;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private static ScheduleDelta deltaOf(Map<Long, ScheduleDelta> deltas, Ride ride) {
+        return deltas.computeIfAbsent(ride.getOrgId(), org -> ScheduleDelta.builder().build());
+    }
+
+    /** Run {@code work} as {@code orgId}, so the optimizer only sees that organization's drivers. */
+    private static <T> T asOrg(Long orgId, Supplier<T> work) {
+        SecurityContext previous = SecurityContextHolder.getContext();
+        SecurityContext context = SecurityContextHolder.createEmptyContext();
+        if (orgId != null) {
+            var authentication = new UsernamePasswordAuthenticationToken("rolling-horizon", null, List.of());
+            authentication.setDetails(Map.of("orgId", orgId));
+            context.setAuthentication(authentication);
+        }
+        SecurityContextHolder.setContext(context);
+        try {
+            return work.get();
+        } finally {
+            SecurityContextHolder.setContext(previous);
+        }
+    }
+}
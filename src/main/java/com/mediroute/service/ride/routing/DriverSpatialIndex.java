@@ -0,0 +1,286 @@
+package com.mediroute.service.ride.routing;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+/**
+ * Uniform lat/lng grid over driver base locations of an {@link OptimizationSnapshot}, built once
+ * per optimization run. Queries return snapshot driver indices.
+ * <p>
+ * Drivers are sorted by cell so each cell is a contiguous slice; lookups binary-search the
+ * occupied cells. {@link #restrictTo(BitSet)} returns a view over a subset of drivers (e.g. one
+ * optimization phase) that shares the grid with the full index. Queries write into
+ * caller-provided buffers and do not allocate.
+ */
+public final class DriverSpatialIndex {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double KM_PER_DEGREE = 111.32;
+
+    private final int[] drivers;          // snapshot driver index, in cell order
+    private final int[] positionOf;       // snapshot driver index -> position in `drivers`, -1 if unlocated
+    private final double[] latRad;
+    private final double[] lngRad;
+    private final double[] cosLat;
+    private final long[] cellKeys;        // occupied cells, ascending
+    private final int[] cellStart;        // cellStart[c]..cellStart[c + 1] are the drivers of cellKeys[c]
+
+    private final double minLat;
+    private final double minLng;
+    private final double latStep;
+    private final double lngStep;
+    private final int rows;
+    private final int cols;
+    /** Smallest ground width of one cell, used to bound ring searches. */
+    private final double minCellKm;
+
+    private final BitSet active;          // snapshot driver indices; null when every driver is active
+
+    private DriverSpatialIndex(DriverSpatialIndex base, BitSet active) {
+        this.drivers = base.drivers;
+        this.positionOf = base.positionOf;
+        this.latRad = base.latRad;
+        this.lngRad = base.lngRad;
+        this.cosLat = base.cosLat;
+        this.cellKeys = base.cellKeys;
+        this.cellStart = base.cellStart;
+        this.minLat = base.minLat;
+        this.minLng = base.minLng;
+        this.latStep = base.latStep;
+        this.lngStep = base.lngStep;
+        this.rows = base.rows;
+        this.cols = base.cols;
+        this.minCellKm = base.minCellKm;
+        this.active = active;
+    }
+
+    private DriverSpatialIndex(OptimizationSnapshot snapshot, double cellKm) {
+        int n = 0;
+        int[] located = new int[snapshot.driverCount()];
+        double loLat = Double.MAX_VALUE, hiLat = -Double.MAX_VALUE;
+        double loLng = Double.MAX_VALUE, hiLng = -Double.MAX_VALUE;
+        for (int d = 0; d < snapshot.driverCount(); d++) {
+            if (!snapshot.hasBase(d)) continue;
+            located[n++] = d;
+            loLat = Math.min(loLat, snapshot.baseLat(d));
+            hiLat = Math.max(hiLat, snapshot.baseLat(d));
+            loLng = Math.min(loLng, snapshot.baseLng(d));
+            hiLng = Math.max(hiLng, snapshot.baseLng(d));
+        }
+        if (n == 0) {
+            loLat = hiLat = loLng = hiLng = 0;
+        }
+
+        double widestCos = Math.cos(Math.toRadians(Math.max(Math.abs(loLat), Math.abs(hiLat))));
+        double midCos = Math.cos(Math.toRadians((loLat + hiLat) / 2));
+        this.minLat = loLat;
+        this.minLng = loLng;
+        this.latStep = cellKm / KM_PER_DEGREE;
+        this.lngStep = cellKm / (KM_PER_DEGREE * Math.max(midCos, 0.01));
+        this.rows = (int) ((hiLat - loLat) / latStep) + 1;
+        this.cols = (int) ((hiLng - loLng) / lngStep) + 1;
+        this.minCellKm = Math.min(cellKm, lngStep * KM_PER_DEGREE * widestCos);
+
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            int d = located[i];
+            keys[i] = cellKey(row(snapshot.baseLat(d)), col(snapshot.baseLng(d)));
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+        this.drivers = new int[n];
+        this.positionOf = new int[snapshot.driverCount()];
+        Arrays.fill(positionOf, -1);
+        this.latRad = new double[n];
+        this.lngRad = new double[n];
+        this.cosLat = new double[n];
+        long[] occupied = new long[n];
+        int[] starts = new int[n + 1];
+        int cells = 0;
+        for (int i = 0; i < n; i++) {
+            int d = located[order[i]];
+            drivers[i] = d;
+            positionOf[d] = i;
+            latRad[i] = Math.toRadians(snapshot.baseLat(d));
+            lngRad[i] = Math.toRadians(snapshot.baseLng(d));
+            cosLat[i] = Math.cos(latRad[i]);
+            long key = keys[order[i]];
+            if (cells == 0 || occupied[cells - 1] != key) {
+                occupied[cells] = key;
+                starts[cells] = i;
+                cells++;
+            }
+        }
+        starts[cells] = n;
+        this.cellKeys = Arrays.copyOf(occupied, cells);
+        this.cellStart = Arrays.copyOf(starts, cells + 1);
+        this.active = null;
+    }
+
+    public static DriverSpatialIndex build(OptimizationSnapshot snapshot, double cellKm) {
+        return new DriverSpatialIndex(snapshot, cellKm);
+    }
+
+    /**
+     * View of this index that only returns drivers set in {@code driverMask}.
+     */
+    public DriverSpatialIndex restrictTo(BitSet driverMask) {
+        BitSet mask = (BitSet) driverMask.clone();
+        if (active != null) mask.and(active);
+        return new DriverSpatialIndex(this, mask);
+    }
+
+    /**
+     * Drivers whose base is within {@code radiusKm} of the point, in no particular order.
+     *
+     * @param out receives driver indices; must hold at least as many entries as there are drivers
+     * @return number of drivers written
+     */
+    public int withinRadius(double lat, double lng, double radiusKm, int[] out) {
+        if (drivers.length == 0) return 0;
+
+        double qLat = Math.toRadians(lat);
+        double qLng = Math.toRadians(lng);
+        double qCos = Math.cos(qLat);
+        double latSpan = radiusKm / KM_PER_DEGREE;
+        double edgeCos = Math.cos(Math.toRadians(Math.min(89.0, Math.abs(lat) + latSpan)));
+        double lngSpan = radiusKm / (KM_PER_DEGREE * Math.max(edgeCos, 0.01));
+
+        int r0 = Math.max(0, row(lat - latSpan));
+        int r1 = Math.min(rows - 1, row(lat + latSpan));
+        int c0 = Math.max(0, col(lng - lngSpan));
+        int c1 = Math.min(cols - 1, col(lng + lngSpan));
+        int count = 0;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = Arrays.binarySearch(cellKeys, cellKey(r, c));
+                if (cell < 0) continue;
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    if (isActive(i) && distanceKm(i, qLat, qLng, qCos) <= radiusKm) {
+                        out[count++] = drivers[i];
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Up to {@code k} nearest drivers within {@code maxKm}, closest first.
+     *
+     * @param out receives driver indices; must hold at least as many entries as there are drivers
+     * @return number of drivers written (at most {@code k})
+     */
+    public int nearest(double lat, double lng, int k, double maxKm, int[] out) {
+        int count = withinRadius(lat, lng, maxKm, out);
+        double qLat = Math.toRadians(lat);
+        double qLng = Math.toRadians(lng);
+        double qCos = Math.cos(qLat);
+        int limit = Math.min(k, count);
+        // Partial selection sort: only the first k slots need ordering
+        for (int i = 0; i < limit; i++) {
+            int best = i;
+            double bestKm = distanceToDriver(out[i], qLat, qLng, qCos);
+            for (int j = i + 1; j < count; j++) {
+                double km = distanceToDriver(out[j], qLat, qLng, qCos);
+                if (km < bestKm) {
+                    bestKm = km;
+                    best = j;
+                }
+            }
+            int tmp = out[i];
+            out[i] = out[best];
+            out[best] = tmp;
+        }
+        return limit;
+    }
+
+    /**
+     * Closest driver within {@code maxKm} accepted by {@code filter}, searching outward ring by ring
+     * and stopping at the last ring that can hold a driver that close. Callers wanting a driver at any
+     * distance fall back to a scan of their own when this finds none.
+     *
+     * @return driver index, or -1 when no driver within {@code maxKm} qualifies
+     */
+    public int nearest(double lat, double lng, double maxKm, IntPredicate filter) {
+        if (drivers.length == 0) return -1;
+
+        double qLat = Math.toRadians(lat);
+        double qLng = Math.toRadians(lng);
+        double qCos = Math.cos(qLat);
+        int qRow = row(lat);
+        int qCol = col(lng);
+        double ringKm = Math.min(minCellKm, lngStep * KM_PER_DEGREE * qCos);
+        int gridRings = Math.max(Math.max(qRow, rows - 1 - qRow), Math.max(qCol, cols - 1 - qCol));
+        // A ring holds no driver closer than ring - 1 full cells, so rings past maxKm / ringKm + 1 are skipped
+        int maxRing = (int) Math.min(gridRings, Math.ceil(maxKm / ringKm) + 1);
+
+        int best = -1;
+        double bestKm = Double.MAX_VALUE;
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Drivers in this ring or beyond are at least ring - 1 full cells away
+            if (best >= 0 && bestKm <= (ring - 1) * ringKm) break;
+            for (int r = qRow - ring; r <= qRow + ring; r++) {
+                if (r < 0 || r >= rows) continue;
+                boolean edgeRow = r == qRow - ring || r == qRow + ring;
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int c = qCol - ring; c <= qCol + ring; c += Math.max(step, 1)) {
+                    if (c < 0 || c >= cols) continue;
+                    int cell = Arrays.binarySearch(cellKeys, cellKey(r, c));
+                    if (cell < 0) continue;
+                    for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                        if (!isActive(i)) continue;
+                        double km = distanceKm(i, qLat, qLng, qCos);
+                        if (km < bestKm && km <= maxKm && filter.test(drivers[i])) {
+                            bestKm = km;
+                            best = drivers[i];
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    public int size() {
+        if (active == null) return drivers.length;
+        int count = 0;
+        for (int driver : drivers) {
+            if (active.get(driver)) count++;
+        }
+        return count;
+    }
+
+    // ========== INTERNALS ==========
+
+    private boolean isActive(int position) {
+        return active == null || active.get(drivers[position]);
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor((lat - minLat) / latStep);
+    }
+
+    private int col(double lng) {
+        return (int) Math.floor((lng - minLng) / lngStep);
+    }
+
+    private static long cellKey(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    private double distanceKm(int position, double qLat, double qLng, double qCos) {
+        double sinLat = Math.sin((latRad[position] - qLat) / 2);
+        double sinLng = Math.sin((lngRad[position] - qLng) / 2);
+        double a = sinLat * sinLat + cosLat[position] * qCos * sinLng * sinLng;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    private double distanceToDriver(int driver, double qLat, double qLng, double qCos) {
+        int position = positionOf[driver];
+        return position < 0 ? Double.MAX_VALUE : distanceKm(position, qLat, qLng, qCos);
+    }
+}
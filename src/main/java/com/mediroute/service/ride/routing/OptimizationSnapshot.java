@@ -0,0 +1,360 @@
+package com.mediroute.service.ride.routing;
+
+import com.mediroute.dto.Priority;
+import com.mediroute.entity.Driver;
+import com.mediroute.entity.Patient;
+import com.mediroute.entity.Ride;
+import com.mediroute.entity.embeddable.Location;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Immutable struct-of-arrays view of one optimization batch, built once from the JPA entities.
+ * <p>
+ * Drivers and rides are addressed by their position in the source lists; entity ids are only
+ * looked up ({@link #driverId(int)}, {@link #rideId(int)}) when results are written back.
+ * Capabilities are bitmasks, skills are bitsets over the skills the batch's rides require,
+ * and ride times are epoch minutes of the (zone-less) local date-time. Scoring and
+ * feasibility checks read primitives only and never allocate.
+ */
+public final class OptimizationSnapshot {
+
+    public static final int WHEELCHAIR = 1;
+    public static final int STRETCHER = 1 << 1;
+    public static final int OXYGEN = 1 << 2;
+    public static final int VAN = 1 << 3;
+    /** Equipment bits (excludes body type). */
+    public static final int MEDICAL_EQUIPMENT = WHEELCHAIR | STRETCHER | OXYGEN;
+
+    /** Marker for an absent time. */
+    public static final int NO_TIME = Integer.MIN_VALUE;
+    /** Pickup slack used when a ride has a pickup time but no explicit window. */
+    public static final int DEFAULT_PICKUP_WINDOW_MINUTES = 15;
+
+    public static final byte EMERGENCY = 0;
+    public static final byte URGENT = 1;
+    public static final byte ROUTINE = 2;
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final long NO_ID = Long.MIN_VALUE;
+
+    // ---- drivers ----
+    private final int driverCount;
+    private final long[] driverIds;
+    private final double[] baseLat;
+    private final double[] baseLng;
+    private final double[] baseLatRad;
+    private final double[] baseLngRad;
+    private final double[] baseCosLat;
+    private final int[] driverCaps;
+    private final boolean[] driverAvailable;
+    private final boolean[] driverTrained;
+    private final int[] maxDailyRides;        // -1 when not set
+    private final int[] vehicleCapacity;      // -1 when not set
+    private final int[] shiftStartMinute;     // minute of day, -1 when not set
+    private final int[] shiftEndMinute;       // minute of day, -1 when not set
+
+    // ---- rides ----
+    private final int rideCount;
+    private final long[] rideIds;
+    private final double[] pickupLat;
+    private final double[] pickupLng;
+    private final double[] pickupLatRad;
+    private final double[] pickupLngRad;
+    private final double[] pickupCosLat;
+    private final double[] dropoffLat;
+    private final double[] dropoffLng;
+    private final int[] patientNeeds;
+    private final int[] vehicleNeeds;
+    private final byte[] priority;
+    private final int[] pickupMinute;
+    private final int[] pickupEarliest;
+    private final int[] pickupLatest;
+    private final int[] dropoffEarliest;
+    private final int[] dropoffLatest;
+
+    // ---- skills: `skillWords` longs per driver / ride ----
+    private final int skillWords;
+    private final long[] driverSkills;
+    private final long[] rideSkills;
+
+    private OptimizationSnapshot(List<Ride> rides, List<Driver> drivers, Function<Ride, String> vehicleTypeOf) {
+        // Dictionary of skills any ride requires; driver skills outside it are irrelevant
+        Map<String, Integer> skillIndex = new HashMap<>();
+        for (Ride ride : rides) {
+            if (ride.getRequiredSkills() == null) continue;
+            for (String skill : ride.getRequiredSkills()) {
+                skillIndex.putIfAbsent(skill, skillIndex.size());
+            }
+        }
+        this.skillWords = Math.max(1, (skillIndex.size() + 63) >>> 6);
+
+        this.driverCount = drivers.size();
+        this.driverIds = new long[driverCount];
+        this.baseLat = new double[driverCount];
+        this.baseLng = new double[driverCount];
+        this.baseLatRad = new double[driverCount];
+        this.baseLngRad = new double[driverCount];
+        this.baseCosLat = new double[driverCount];
+        this.driverCaps = new int[driverCount];
+        this.driverAvailable = new boolean[driverCount];
+        this.driverTrained = new boolean[driverCount];
+        this.maxDailyRides = new int[driverCount];
+        this.vehicleCapacity = new int[driverCount];
+        this.shiftStartMinute = new int[driverCount];
+        this.shiftEndMinute = new int[driverCount];
+        this.driverSkills = new long[driverCount * skillWords];
+
+        for (int d = 0; d < driverCount; d++) {
+            Driver driver = drivers.get(d);
+            driverIds[d] = driver.getId() != null ? driver.getId() : NO_ID;
+            baseLat[d] = driver.getBaseLat() != null ? driver.getBaseLat() : Double.NaN;
+            baseLng[d] = driver.getBaseLng() != null ? driver.getBaseLng() : Double.NaN;
+            baseLatRad[d] = Math.toRadians(baseLat[d]);
+            baseLngRad[d] = Math.toRadians(baseLng[d]);
+            baseCosLat[d] = Math.cos(baseLatRad[d]);
+
+            int caps = 0;
+            if (Boolean.TRUE.equals(driver.getWheelchairAccessible())) caps |= WHEELCHAIR;
+            if (Boolean.TRUE.equals(driver.getStretcherCapable())) caps |= STRETCHER;
+            if (Boolean.TRUE.equals(driver.getOxygenEquipped())) caps |= OXYGEN;
+            if (driver.getVehicleType() != null && driver.getVehicleType().name().contains("VAN")) caps |= VAN;
+            driverCaps[d] = caps;
+
+            driverTrained[d] = Boolean.TRUE.equals(driver.getIsTrainingComplete());
+            driverAvailable[d] = Boolean.TRUE.equals(driver.getActive()) && driverTrained[d];
+            maxDailyRides[d] = driver.getMaxDailyRides() != null ? driver.getMaxDailyRides() : -1;
+            vehicleCapacity[d] = driver.getVehicleCapacity() != null ? driver.getVehicleCapacity() : -1;
+            shiftStartMinute[d] = minuteOfDay(driver.getShiftStart());
+            shiftEndMinute[d] = minuteOfDay(driver.getShiftEnd());
+
+            if (driver.getSkills() != null) {
+                for (Map.Entry<String, Boolean> skill : driver.getSkills().entrySet()) {
+                    Integer bit = skillIndex.get(skill.getKey());
+                    if (bit != null && Boolean.TRUE.equals(skill.getValue())) {
+                        driverSkills[d * skillWords + (bit >>> 6)] |= 1L << (bit & 63);
+                    }
+                }
+            }
+        }
+
+        this.rideCount = rides.size();
+        this.rideIds = new long[rideCount];
+        this.pickupLat = new double[rideCount];
+        this.pickupLng = new double[rideCount];
+        this.pickupLatRad = new double[rideCount];
+        this.pickupLngRad = new double[rideCount];
+        this.pickupCosLat = new double[rideCount];
+        this.dropoffLat = new double[rideCount];
+        this.dropoffLng = new double[rideCount];
+        this.patientNeeds = new int[rideCount];
+        this.vehicleNeeds = new int[rideCount];
+        this.priority = new byte[rideCount];
+        this.pickupMinute = new int[rideCount];
+        this.pickupEarliest = new int[rideCount];
+        this.pickupLatest = new int[rideCount];
+        this.dropoffEarliest = new int[rideCount];
+        this.dropoffLatest = new int[rideCount];
+        this.rideSkills = new long[rideCount * skillWords];
+
+        for (int r = 0; r < rideCount; r++) {
+            Ride ride = rides.get(r);
+            rideIds[r] = ride.getId() != null ? ride.getId() : NO_ID;
+
+            Location pickup = ride.getPickupLocation();
+            boolean pickupValid = pickup != null && pickup.isValid();
+            pickupLat[r] = pickupValid ? pickup.getLatitude() : Double.NaN;
+            pickupLng[r] = pickupValid ? pickup.getLongitude() : Double.NaN;
+            pickupLatRad[r] = Math.toRadians(pickupLat[r]);
+            pickupLngRad[r] = Math.toRadians(pickupLng[r]);
+            pickupCosLat[r] = Math.cos(pickupLatRad[r]);
+
+            Location dropoff = ride.getDropoffLocation();
+            boolean dropoffValid = dropoff != null && dropoff.isValid();
+            dropoffLat[r] = dropoffValid ? dropoff.getLatitude() : Double.NaN;
+            dropoffLng[r] = dropoffValid ? dropoff.getLongitude() : Double.NaN;
+
+            Patient patient = ride.getPatient();
+            int needs = 0;
+            if (patient != null) {
+                if (Boolean.TRUE.equals(patient.getRequiresWheelchair())) needs |= WHEELCHAIR;
+                if (Boolean.TRUE.equals(patient.getRequiresStretcher())) needs |= STRETCHER;
+                if (Boolean.TRUE.equals(patient.getRequiresOxygen())) needs |= OXYGEN;
+            }
+            patientNeeds[r] = needs;
+            vehicleNeeds[r] = vehicleTypeCaps(vehicleTypeOf.apply(ride));
+
+            priority[r] = ride.getPriority() == Priority.EMERGENCY ? EMERGENCY
+                    : ride.getPriority() == Priority.URGENT ? URGENT : ROUTINE;
+
+            pickupMinute[r] = epochMinute(ride.getPickupTime());
+            LocalDateTime anchor = ride.getPickupTime() != null ? ride.getPickupTime() : ride.getPickupWindowStart();
+            pickupEarliest[r] = ride.getPickupWindowStart() != null ? epochMinute(ride.getPickupWindowStart())
+                    : anchor != null ? epochMinute(anchor) - DEFAULT_PICKUP_WINDOW_MINUTES : NO_TIME;
+            pickupLatest[r] = ride.getPickupWindowEnd() != null ? epochMinute(ride.getPickupWindowEnd())
+                    : anchor != null ? epochMinute(anchor) + DEFAULT_PICKUP_WINDOW_MINUTES : NO_TIME;
+            dropoffEarliest[r] = epochMinute(ride.getDropoffWindowStart());
+            dropoffLatest[r] = ride.getDropoffWindowEnd() != null ? epochMinute(ride.getDropoffWindowEnd())
+                    : epochMinute(ride.getDropoffTime());
+
+            if (ride.getRequiredSkills() != null) {
+                for (String skill : ride.getRequiredSkills()) {
+                    int bit = skillIndex.get(skill);
+                    rideSkills[r * skillWords + (bit >>> 6)] |= 1L << (bit & 63);
+                }
+            }
+        }
+    }
+
+    /**
+     * Snapshot the batch. {@code vehicleTypeOf} resolves the vehicle type a ride requires
+     * ("sedan", "van", "wheelchair_van", "stretcher_van", "ambulance").
+     */
+    public static OptimizationSnapshot of(List<Ride> rides, List<Driver> drivers, Function<Ride, String> vehicleTypeOf) {
+        return new OptimizationSnapshot(rides, drivers, vehicleTypeOf);
+    }
+
+    /**
+     * Capability bits a vehicle type requires of the driver.
+     */
+    public static int vehicleTypeCaps(String vehicleType) {
+        if (vehicleType == null) return 0;
+        return switch (vehicleType.toLowerCase()) {
+            case "wheelchair_van" -> WHEELCHAIR;
+            case "stretcher_van" -> STRETCHER;
+            case "ambulance" -> STRETCHER | OXYGEN;
+            case "van" -> VAN;
+            default -> 0;
+        };
+    }
+
+    // ========== FEASIBILITY ==========
+
+    /** Driver carries the equipment the patient needs. */
+    public boolean canHandlePatient(int driver, int ride) {
+        return (driverCaps[driver] & patientNeeds[ride]) == patientNeeds[ride];
+    }
+
+    /** Driver's vehicle satisfies the ride's required vehicle type. */
+    public boolean matchesVehicleType(int driver, int ride) {
+        return (driverCaps[driver] & vehicleNeeds[ride]) == vehicleNeeds[ride];
+    }
+
+    /** Driver's vehicle satisfies the given vehicle-type bits. */
+    public boolean matchesVehicleCaps(int driver, int caps) {
+        return (driverCaps[driver] & caps) == caps;
+    }
+
+    /** Driver has the equipment for the ride's vehicle type, ignoring body type. */
+    public boolean hasExactVehicleMatch(int driver, int ride) {
+        int needed = vehicleNeeds[ride] & MEDICAL_EQUIPMENT;
+        return (driverCaps[driver] & needed) == needed;
+    }
+
+    public boolean hasRequiredSkills(int driver, int ride) {
+        int d = driver * skillWords;
+        int r = ride * skillWords;
+        for (int w = 0; w < skillWords; w++) {
+            if ((driverSkills[d + w] & rideSkills[r + w]) != rideSkills[r + w]) return false;
+        }
+        return true;
+    }
+
+    public boolean isAvailable(int driver) {
+        return driverAvailable[driver];
+    }
+
+    /** Every hard constraint between a driver and a ride. */
+    public boolean canServe(int driver, int ride) {
+        return driverAvailable[driver]
+                && canHandlePatient(driver, ride)
+                && matchesVehicleType(driver, ride)
+                && hasRequiredSkills(driver, ride);
+    }
+
+    // ========== GEOMETRY ==========
+
+    public boolean hasBase(int driver) {
+        return !Double.isNaN(baseLat[driver]) && !Double.isNaN(baseLng[driver]);
+    }
+
+    public boolean hasPickup(int ride) {
+        return !Double.isNaN(pickupLat[ride]);
+    }
+
+    public boolean hasDropoff(int ride) {
+        return !Double.isNaN(dropoffLat[ride]);
+    }
+
+    /** Great-circle km from driver base to ride pickup; {@link Double#MAX_VALUE} if either is unknown. */
+    public double pickupDistanceKm(int driver, int ride) {
+        if (!hasBase(driver) || !hasPickup(ride)) return Double.MAX_VALUE;
+        double sinLat = Math.sin((pickupLatRad[ride] - baseLatRad[driver]) / 2);
+        double sinLng = Math.sin((pickupLngRad[ride] - baseLngRad[driver]) / 2);
+        double a = sinLat * sinLat + baseCosLat[driver] * pickupCosLat[ride] * sinLng * sinLng;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /** Great-circle km from driver base to a point; {@link Double#MAX_VALUE} if the base is unknown. */
+    public double baseDistanceKm(int driver, double lat, double lng) {
+        if (!hasBase(driver)) return Double.MAX_VALUE;
+        double latRad = Math.toRadians(lat);
+        double sinLat = Math.sin((latRad - baseLatRad[driver]) / 2);
+        double sinLng = Math.sin((Math.toRadians(lng) - baseLngRad[driver]) / 2);
+        double a = sinLat * sinLat + baseCosLat[driver] * Math.cos(latRad) * sinLng * sinLng;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    // ========== ACCESSORS ==========
+
+    public int driverCount() { return driverCount; }
+    public int rideCount() { return rideCount; }
+
+    /** Entity id for write-back, or null for an unsaved driver. */
+    public Long driverId(int driver) { return driverIds[driver] == NO_ID ? null : driverIds[driver]; }
+    /** Entity id for write-back, or null for an unsaved ride. */
+    public Long rideId(int ride) { return rideIds[ride] == NO_ID ? null : rideIds[ride]; }
+
+    public double baseLat(int driver) { return baseLat[driver]; }
+    public double baseLng(int driver) { return baseLng[driver]; }
+    public double pickupLat(int ride) { return pickupLat[ride]; }
+    public double pickupLng(int ride) { return pickupLng[ride]; }
+    public double dropoffLat(int ride) { return dropoffLat[ride]; }
+    public double dropoffLng(int ride) { return dropoffLng[ride]; }
+
+    public boolean isTrained(int driver) { return driverTrained[driver]; }
+    /** Daily ride cap, or -1 when the driver has none configured. */
+    public int maxDailyRides(int driver) { return maxDailyRides[driver]; }
+    /** Seats, or -1 when the driver has none configured. */
+    public int vehicleCapacity(int driver) { return vehicleCapacity[driver]; }
+    /** Minute of day, or -1 when the driver has no shift configured. */
+    public int shiftStartMinute(int driver) { return shiftStartMinute[driver]; }
+    public int shiftEndMinute(int driver) { return shiftEndMinute[driver]; }
+
+    public byte priority(int ride) { return priority[ride]; }
+    public int pickupMinute(int ride) { return pickupMinute[ride]; }
+    public int pickupEarliest(int ride) { return pickupEarliest[ride]; }
+    public int pickupLatest(int ride) { return pickupLatest[ride]; }
+    public int dropoffEarliest(int ride) { return dropoffEarliest[ride]; }
+    public int dropoffLatest(int ride) { return dropoffLatest[ride]; }
+
+    /** Local date-time of an epoch minute produced by this snapshot. */
+    public static LocalDateTime toDateTime(long epochMinute) {
+        return LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC);
+    }
+
+    private static int epochMinute(LocalDateTime time) {
+        if (time == null) return NO_TIME;
+        return (int) Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    private static int minuteOfDay(LocalTime time) {
+        return time == null ? -1 : time.getHour() * 60 + time.getMinute();
+    }
+}
@@ -0,0 +1,409 @@
+package com.mediroute.service.ride.routing;
+
+import com.mediroute.config.AppProps;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Builds ordered multi-ride driver routes by cheapest feasible insertion.
+ * <p>
+ * Each driver serves one ride at a time (pickup then dropoff). A ride is inserted at the
+ * position, across all compatible drivers, that adds the least travel time while keeping
+ * every ride on the route inside its pickup/dropoff windows, the route inside the driver's
+ * shift, and the ride count within {@code maxDailyRides}. Rides are placed in priority order,
+ * then by earliest pickup.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RouteBuilder {
+
+    static final long INFEASIBLE = Long.MAX_VALUE;
+    static final String NO_SLOT = "No driver has a feasible slot (time windows, shift or daily ride cap)";
+
+    private final AppProps appProps;
+
+    public RoutePlan build(OptimizationSnapshot snapshot) {
+        return build(snapshot, null, RoutingProblem.TravelTimes.straightLine(appProps.getOptimizer()));
+    }
+
+    /**
+     * {@link #build(OptimizationSnapshot)} for the rides of pickup {@code day} (null for the day of the
+     * earliest pickup time), with travel times from {@code travelTimes}.
+     */
+    public RoutePlan build(OptimizationSnapshot snapshot, LocalDate day, RoutingProblem.TravelTimes travelTimes) {
+        RoutePlan plan = new RoutePlan();
+        RoutingProblem problem = RoutingProblem.build(snapshot, day, appProps.getOptimizer(), plan, travelTimes);
+        if (problem.isEmpty()) {
+            return plan;
+        }
+
+        long startedAt = System.currentTimeMillis();
+        Routes routes = new Routes(problem, Routes.limits(problem));
+        for (int r : routes.insertAll(IntStream.range(0, problem.rideCount()).toArray())) {
+            plan.addUnassigned(problem.rideId(r), NO_SLOT);
+        }
+        routes.emit(plan);
+
+        log.info("🧭 Route building finished in {} ms: {} of {} rides placed on {} drivers",
+                System.currentTimeMillis() - startedAt, plan.getAssignedRideCount(), problem.rideCount(),
+                routes.usedVehicles());
+        return plan;
+    }
+
+    /**
+     * Insert rides into existing routes without reordering what is already on them.
+     * <p>
+     * {@code routeOf[r]} is the snapshot driver whose route snapshot ride {@code r} is already on, or
+     * -1 for a ride to place. Rides already on a route keep their driver and are visited in pickup
+     * order; the others are placed by cheapest feasible insertion as in {@link #build}. A route that
+     * is already infeasible, or whose driver has no base, is left out and takes no new rides. The plan holds every feasible
+     * route, re-timed, and the rides that could not be placed (including routed rides the problem
+     * could not model, e.g. missing coordinates).
+     */
+    public RoutePlan repair(OptimizationSnapshot snapshot, int[] routeOf) {
+        return repair(snapshot, routeOf, RoutingProblem.TravelTimes.straightLine(appProps.getOptimizer()));
+    }
+
+    /**
+     * {@link #repair(OptimizationSnapshot, int[])} with travel times from {@code travelTimes}.
+     */
+    public RoutePlan repair(OptimizationSnapshot snapshot, int[] routeOf, RoutingProblem.TravelTimes travelTimes) {
+        return repair(snapshot, null, routeOf, travelTimes);
+    }
+
+    /**
+     * {@link #repair(OptimizationSnapshot, int[], RoutingProblem.TravelTimes)} for the routes of pickup
+     * {@code day}.
+     */
+    public RoutePlan repair(OptimizationSnapshot snapshot, LocalDate day, int[] routeOf,
+                            RoutingProblem.TravelTimes travelTimes) {
+        RoutePlan plan = new RoutePlan();
+        int[] all = IntStream.range(0, snapshot.rideCount()).toArray();
+        RoutingProblem problem = RoutingProblem.build(snapshot, all, day, appProps.getOptimizer(), plan, travelTimes);
+        if (problem.isEmpty()) {
+            return plan;
+        }
+
+        int[] vehicleOf = vehiclesByDriver(problem);
+        int[] fixedCount = new int[problem.vehicleCount()];
+        int[] pending = new int[problem.rideCount()];
+        int pendingCount = 0;
+        for (int r = 0; r < problem.rideCount(); r++) {
+            int driver = routeOf[problem.rideIndex(r)];
+            if (driver < 0) pending[pendingCount++] = r;
+            else if (vehicleOf[driver] >= 0) fixedCount[vehicleOf[driver]]++;
+        }
+        int[] limits = Routes.limits(problem);
+        for (int v = 0; v < limits.length; v++) limits[v] = Math.max(limits[v], fixedCount[v]);
+        Routes routes = new Routes(problem, limits);
+        for (int r : byPickup(problem)) {
+            int driver = routeOf[problem.rideIndex(r)];
+            if (driver >= 0 && vehicleOf[driver] >= 0) routes.append(vehicleOf[driver], r);
+        }
+        routes.price();
+
+        for (int r : routes.insertAll(Arrays.copyOf(pending, pendingCount))) {
+            plan.addUnassigned(problem.rideId(r), NO_SLOT);
+        }
+        routes.emit(plan);
+        return plan;
+    }
+
+    /**
+     * Start from the drivers rides had before, e.g. the same standing orders on an earlier day, and
+     * only place what does not fit.
+     * <p>
+     * {@code routeOf[r]} is the snapshot driver snapshot ride {@code r} had, or -1 for a ride without
+     * one. Each driver's rides are checked in pickup order against compatibility, the daily ride cap,
+     * time windows and the shift; rides that break them come off (for windows, the one whose removal
+     * leaves the cheapest route first). Those and the rides without a driver are then placed by
+     * cheapest insertion as in {@link #build}.
+     */
+    public RoutePlan warmStart(OptimizationSnapshot snapshot, int[] routeOf) {
+        return warmStart(snapshot, null, routeOf, RoutingProblem.TravelTimes.straightLine(appProps.getOptimizer()));
+    }
+
+    /**
+     * {@link #warmStart(OptimizationSnapshot, int[])} for the rides of pickup {@code day}, with travel
+     * times from {@code travelTimes}.
+     */
+    public RoutePlan warmStart(OptimizationSnapshot snapshot, LocalDate day, int[] routeOf,
+                               RoutingProblem.TravelTimes travelTimes) {
+        RoutePlan plan = new RoutePlan();
+        RoutingProblem problem = RoutingProblem.build(snapshot, day, appProps.getOptimizer(), plan, travelTimes);
+        if (problem.isEmpty()) {
+            return plan;
+        }
+
+        long startedAt = System.currentTimeMillis();
+        int[] vehicleOf = vehiclesByDriver(problem);
+        Routes routes = new Routes(problem, Routes.limits(problem));
+        int[] pending = new int[problem.rideCount()];
+        int pendingCount = 0;
+        for (int r : byPickup(problem)) {
+            int driver = routeOf[problem.rideIndex(r)];
+            int v = driver >= 0 ? vehicleOf[driver] : -1;
+            if (v >= 0 && routes.lengths[v] < routes.rides[v].length
+                    && Arrays.binarySearch(problem.allowedVehicles(r), v) >= 0) {
+                routes.append(v, r);
+            } else {
+                pending[pendingCount++] = r;
+            }
+        }
+        routes.price();
+        for (int v = 0; v < problem.vehicleCount(); v++) {
+            for (int r : routes.shed(v)) pending[pendingCount++] = r;
+        }
+        int kept = problem.rideCount() - pendingCount;
+
+        for (int r : routes.insertAll(Arrays.copyOf(pending, pendingCount))) {
+            plan.addUnassigned(problem.rideId(r), NO_SLOT);
+        }
+        routes.emit(plan);
+        log.info("🧭 Warm start finished in {} ms: {} rides kept their driver, {} of {} others placed",
+                System.currentTimeMillis() - startedAt, kept, plan.getAssignedRideCount() - kept, pendingCount);
+        return plan;
+    }
+
+    /** Problem vehicle of each snapshot driver, -1 for drivers without a base. */
+    static int[] vehiclesByDriver(RoutingProblem problem) {
+        int[] vehicleOf = new int[problem.snapshot().driverCount()];
+        Arrays.fill(vehicleOf, -1);
+        for (int v = 0; v < problem.vehicleCount(); v++) vehicleOf[problem.driverIndex(v)] = v;
+        return vehicleOf;
+    }
+
+    /** The problem's rides by earliest pickup. */
+    static int[] byPickup(RoutingProblem problem) {
+        return IntStream.range(0, problem.rideCount())
+                .boxed()
+                .sorted(Comparator.comparingLong(problem::pickupEarliest))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * Working routes of one problem: rides per vehicle in visiting order, and each route's cost. A
+     * route holds at most its row's length of rides.
+     */
+    static final class Routes {
+        final RoutingProblem problem;
+        final int[][] rides;
+        final int[] lengths;
+        final long[] costs;
+
+        Routes(RoutingProblem problem, int[] limits) {
+            this.problem = problem;
+            int vehicles = problem.vehicleCount();
+            this.rides = new int[vehicles][];
+            this.lengths = new int[vehicles];
+            this.costs = new long[vehicles];
+            for (int v = 0; v < vehicles; v++) {
+                rides[v] = new int[limits[v]];
+            }
+        }
+
+        /** Each vehicle's ride limit: its daily cap, bounded by the number of rides. */
+        static int[] limits(RoutingProblem problem) {
+            int[] limits = new int[problem.vehicleCount()];
+            for (int v = 0; v < limits.length; v++) limits[v] = Math.min(problem.maxRides(v), problem.rideCount());
+            return limits;
+        }
+
+        Routes copy() {
+            Routes copy = new Routes(problem, new int[rides.length]);
+            copy.copyFrom(this);
+            return copy;
+        }
+
+        /** Become a copy of {@code other}, a solution of the same problem. */
+        void copyFrom(Routes other) {
+            for (int v = 0; v < rides.length; v++) {
+                if (rides[v].length != other.rides[v].length) rides[v] = new int[other.rides[v].length];
+                System.arraycopy(other.rides[v], 0, rides[v], 0, other.lengths[v]);
+            }
+            System.arraycopy(other.lengths, 0, lengths, 0, lengths.length);
+            System.arraycopy(other.costs, 0, costs, 0, costs.length);
+        }
+
+        void append(int vehicle, int ride) {
+            rides[vehicle][lengths[vehicle]++] = ride;
+        }
+
+        /** Take the ride at {@code position} off the route and re-cost it. */
+        void removeAt(int vehicle, int position) {
+            System.arraycopy(rides[vehicle], position + 1, rides[vehicle], position, lengths[vehicle] - position - 1);
+            lengths[vehicle]--;
+            costs[vehicle] = simulate(problem, vehicle, rides[vehicle], lengths[vehicle], -1, -1, null, null);
+        }
+
+        /**
+         * Take rides off an infeasible route until it is feasible: each time the one whose removal
+         * leaves the cheapest route, or the last one if no single removal helps.
+         *
+         * @return the rides taken off
+         */
+        int[] shed(int vehicle) {
+            int[] shed = new int[lengths[vehicle]];
+            int count = 0;
+            int[] rest = new int[Math.max(0, lengths[vehicle] - 1)];
+            while (costs[vehicle] == INFEASIBLE && lengths[vehicle] > 0) {
+                int length = lengths[vehicle];
+                int position = length - 1;
+                long cheapest = INFEASIBLE;
+                for (int k = 0; k < length; k++) {
+                    int n = 0;
+                    for (int i = 0; i < length; i++) {
+                        if (i != k) rest[n++] = rides[vehicle][i];
+                    }
+                    long cost = simulate(problem, vehicle, rest, n, -1, -1, null, null);
+                    if (cost < cheapest) {
+                        cheapest = cost;
+                        position = k;
+                    }
+                }
+                shed[count++] = rides[vehicle][position];
+                removeAt(vehicle, position);
+            }
+            return Arrays.copyOf(shed, count);
+        }
+
+        /** Total travel time of the feasible routes. */
+        long travel() {
+            long total = 0;
+            for (long cost : costs) {
+                if (cost != INFEASIBLE) total += cost;
+            }
+            return total;
+        }
+
+        /** Cost the routes as they stand; infeasible ones stay closed to insertion. */
+        void price() {
+            for (int v = 0; v < rides.length; v++) {
+                costs[v] = simulate(problem, v, rides[v], lengths[v], -1, -1, null, null);
+            }
+        }
+
+        /**
+         * Place {@code pending} rides, in priority then earliest-pickup order, at their cheapest slots.
+         *
+         * @return the rides no route had a feasible slot for, in that order
+         */
+        int[] insertAll(int[] pending) {
+            int[] order = Arrays.stream(pending)
+                    .boxed()
+                    .sorted(Comparator.comparingInt((Integer r) -> problem.priority(r))
+                            .thenComparingLong(problem::pickupEarliest))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+
+            int[] unplaced = new int[order.length];
+            int unplacedCount = 0;
+            for (int r : order) {
+                int bestVehicle = -1;
+                int bestPosition = -1;
+                long bestDelta = INFEASIBLE;
+                long bestCost = 0;
+
+                for (int v : problem.allowedVehicles(r)) {
+                    if (lengths[v] >= rides[v].length || costs[v] == INFEASIBLE) continue;
+                    for (int pos = 0; pos <= lengths[v]; pos++) {
+                        long cost = simulate(problem, v, rides[v], lengths[v], r, pos, null, null);
+                        if (cost == INFEASIBLE) continue;
+                        long delta = cost - costs[v];
+                        if (delta < bestDelta) {
+                            bestDelta = delta;
+                            bestVehicle = v;
+                            bestPosition = pos;
+                            bestCost = cost;
+                        }
+                    }
+                }
+
+                if (bestVehicle < 0) {
+                    unplaced[unplacedCount++] = r;
+                    continue;
+                }
+                int[] route = rides[bestVehicle];
+                System.arraycopy(route, bestPosition, route, bestPosition + 1, lengths[bestVehicle] - bestPosition);
+                route[bestPosition] = r;
+                lengths[bestVehicle]++;
+                costs[bestVehicle] = bestCost;
+            }
+            return Arrays.copyOf(unplaced, unplacedCount);
+        }
+
+        /** Add every feasible, non-empty route to the plan with its estimated times. */
+        void emit(RoutePlan plan) {
+            long[] pickupAt = new long[problem.rideCount()];
+            long[] dropoffAt = new long[problem.rideCount()];
+            for (int v = 0; v < rides.length; v++) {
+                if (lengths[v] == 0 || costs[v] == INFEASIBLE) continue;
+                simulate(problem, v, rides[v], lengths[v], -1, -1, pickupAt, dropoffAt);
+                for (int k = 0; k < lengths[v]; k++) {
+                    int r = rides[v][k];
+                    plan.addStop(problem.driverId(v), new RoutePlan.Stop(
+                            problem.rideId(r), problem.at(pickupAt[r]), problem.at(dropoffAt[r])));
+                }
+            }
+        }
+
+        long usedVehicles() {
+            return Arrays.stream(lengths).filter(l -> l > 0).count();
+        }
+    }
+
+    /**
+     * Walk a route (optionally with {@code insertRide} placed at {@code insertPos}) and return its
+     * total travel time, or {@link #INFEASIBLE} if any window, or the shift end, is violated.
+     * When {@code pickupAt}/{@code dropoffAt} are given, service start times are written into them.
+     */
+    static long simulate(RoutingProblem problem, int vehicle, int[] route, int length,
+                         int insertRide, int insertPos, long[] pickupAt, long[] dropoffAt) {
+        int service = problem.serviceSeconds();
+        int total = insertRide >= 0 ? length + 1 : length;
+        long t = problem.shiftStart(vehicle);
+        int location = vehicle;
+        long cost = 0;
+
+        for (int k = 0; k < total; k++) {
+            int r;
+            if (insertRide < 0 || k < insertPos) {
+                r = route[k];
+            } else if (k == insertPos) {
+                r = insertRide;
+            } else {
+                r = route[k - 1];
+            }
+
+            int pickup = problem.pickupNode(r);
+            int dropoff = problem.dropoffNode(r);
+
+            int leg = problem.travel(location, pickup);
+            cost += leg;
+            long start = Math.max(t + leg, problem.pickupEarliest(r));
+            if (start > problem.pickupLatest(r)) return INFEASIBLE;
+            if (pickupAt != null) pickupAt[r] = start;
+
+            leg = problem.travel(pickup, dropoff);
+            cost += leg;
+            long arrive = Math.max(start + service + leg, problem.dropoffEarliest(r));
+            if (arrive > problem.dropoffLatest(r)) return INFEASIBLE;
+            if (dropoffAt != null) dropoffAt[r] = arrive;
+
+            t = arrive + service;
+            location = dropoff;
+        }
+
+        int back = problem.travel(location, vehicle);
+        if (t + back > problem.shiftEnd(vehicle)) return INFEASIBLE;
+        return cost + back;
+    }
+}
@@ -0,0 +1,482 @@
+package com.mediroute.service.ride.routing;
+
+import com.mediroute.config.AppProps;
+import com.mediroute.service.ride.routing.RouteBuilder.Routes;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.BiConsumer;
+
+import static com.mediroute.service.ride.routing.RouteBuilder.INFEASIBLE;
+import static com.mediroute.service.ride.routing.RouteBuilder.NO_SLOT;
+import static com.mediroute.service.ride.routing.RouteBuilder.simulate;
+
+/**
+ * Time-boxed large neighbourhood search over driver routes, started from an existing assignment.
+ * <p>
+ * Each iteration changes the current routes with one move:
+ * <ul>
+ *   <li>relocate: one ride to its cheapest slot on any route</li>
+ *   <li>swap: two rides on different routes trade places, each at its cheapest slot</li>
+ *   <li>2-opt*: two routes trade their tails</li>
+ *   <li>ruin and recreate: a few rides, picked at random or close in place and time to a random one,
+ *       come off their routes and go back by cheapest insertion together with the unplaced rides</li>
+ * </ul>
+ * Solutions are compared by unplaced rides, then total travel time. A move is kept if it is within a
+ * threshold of the best solution that shrinks to zero as the budget runs out (record-to-record travel).
+ * Rides that start on a route are never left without one; a ride that does not fit the route it starts
+ * on is kept out of the search and its slot stays held on that route.
+ * <p>
+ * The listener gets the starting solution at once, then the best solution whenever it has improved and
+ * the publish interval has passed. Runs on the calling thread and stops early if it is interrupted.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RouteImprover {
+
+    /** Travel time an accepted move may add over the best solution, as a share of its travel time. */
+    private static final double MAX_DEVIATION = 0.02;
+    /** Most rides one ruin move takes out. */
+    private static final int MAX_RUIN = 24;
+    /** Weight of an unplaced ride; above any day's travel seconds, so placing rides always wins. */
+    private static final long UNPLACED = 1L << 32;
+    private static final long SEED = 0x5DEECE66DL;
+    private static final String HELD = "Kept on its current route, which it does not fit in time";
+
+    private final AppProps appProps;
+
+    /** Where a search stood when it published a solution; the final one is published as finished. */
+    public record Progress(int iterations, long elapsedMs, long travelSeconds, boolean finished) {}
+
+    /**
+     * Improve routes for the snapshot's rides within {@code budget}.
+     *
+     * @param routeOf  per snapshot ride, the snapshot driver whose route it is on, or -1 for a ride to place
+     * @param listener receives the best solution so far while the search runs, and the final one; may be null
+     * @return the best solution found, with the rides it could not route or keeps out of the search
+     */
+    public RoutePlan improve(OptimizationSnapshot snapshot, int[] routeOf, Duration budget,
+                             BiConsumer<RoutePlan, Progress> listener) {
+        return improve(snapshot, routeOf, budget, Integer.MAX_VALUE, listener);
+    }
+
+    /**
+     * {@link #improve(OptimizationSnapshot, int[], Duration, BiConsumer)} stopping after at most
+     * {@code maxIterations} moves. The acceptance threshold shrinks with whichever of the two budgets is
+     * used up faster, so a run that the iteration budget ends gives the same plan every time.
+     */
+    public RoutePlan improve(OptimizationSnapshot snapshot, int[] routeOf, Duration budget, int maxIterations,
+                             BiConsumer<RoutePlan, Progress> listener) {
+        return improve(snapshot, routeOf, RoutingProblem.TravelTimes.straightLine(appProps.getOptimizer()), budget,
+                maxIterations, listener);
+    }
+
+    /**
+     * {@link #improve(OptimizationSnapshot, int[], Duration, int, BiConsumer)} with travel times from
+     * {@code travelTimes}.
+     */
+    public RoutePlan improve(OptimizationSnapshot snapshot, int[] routeOf, RoutingProblem.TravelTimes travelTimes,
+                             Duration budget, int maxIterations, BiConsumer<RoutePlan, Progress> listener) {
+        RoutePlan unroutable = new RoutePlan();
+        RoutingProblem problem = RoutingProblem.build(snapshot, null, appProps.getOptimizer(), unroutable, travelTimes);
+        if (problem.isEmpty()) {
+            return unroutable;
+        }
+
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + budget.toNanos();
+        long publishEvery = Duration.ofSeconds(Math.max(1, appProps.getOptimizer().getImprovementPublishSeconds())).toNanos();
+        Search search = new Search(problem, routeOf);
+        long startTravel = search.best.routes.travel();
+        int startUnplaced = search.best.unplacedCount;
+
+        int iterations = 0;
+        if (listener != null) {
+            listener.accept(search.toPlan(search.best, unroutable), new Progress(0, 0, startTravel, false));
+        }
+        long lastPublished = System.nanoTime();
+        boolean improvedSincePublish = false;
+        long now;
+        while (iterations < maxIterations && (now = System.nanoTime()) < deadline
+                && !Thread.currentThread().isInterrupted()) {
+            double remaining = Math.min((double) (deadline - now) / budget.toNanos(),
+                    1 - (double) iterations / maxIterations);
+            if (search.step(remaining)) improvedSincePublish = true;
+            iterations++;
+            if (listener != null && improvedSincePublish && now - lastPublished >= publishEvery) {
+                listener.accept(search.toPlan(search.best, unroutable), new Progress(iterations,
+                        Duration.ofNanos(now - startedAt).toMillis(), search.best.routes.travel(), false));
+                lastPublished = now;
+                improvedSincePublish = false;
+            }
+        }
+
+        long elapsedMs = Duration.ofNanos(System.nanoTime() - startedAt).toMillis();
+        long travel = search.best.routes.travel();
+        log.info("🔁 Route improvement ran {} iterations in {} ms: travel {} -> {} min, unplaced rides {} -> {}",
+                iterations, elapsedMs, startTravel / 60, travel / 60, startUnplaced, search.best.unplacedCount);
+        RoutePlan plan = search.toPlan(search.best, unroutable);
+        if (listener != null) listener.accept(plan, new Progress(iterations, elapsedMs, travel, true));
+        return plan;
+    }
+
+    /** Routes plus the rides of the problem that are on none of them. */
+    private static final class Solution {
+        final Routes routes;
+        final int[] unplaced;
+        int unplacedCount;
+
+        Solution(Routes routes) {
+            this.routes = routes;
+            this.unplaced = new int[routes.problem.rideCount()];
+        }
+
+        long score() {
+            return unplacedCount * UNPLACED + routes.travel();
+        }
+
+        void setUnplaced(int[] rides) {
+            System.arraycopy(rides, 0, unplaced, 0, rides.length);
+            unplacedCount = rides.length;
+        }
+
+        void copyFrom(Solution other) {
+            routes.copyFrom(other.routes);
+            System.arraycopy(other.unplaced, 0, unplaced, 0, other.unplacedCount);
+            unplacedCount = other.unplacedCount;
+        }
+    }
+
+    /** Search state over one problem; the scratch arrays are shared by the moves. */
+    private static final class Search {
+        private final RoutingProblem problem;
+        private final SplittableRandom random = new SplittableRandom(SEED);
+        /** Rides that started on a route; a move that leaves one unplaced is rejected. */
+        private final boolean[] required;
+        /** Rides that did not fit the route they started on and stay out of the search. */
+        private final boolean[] held;
+        private final Solution current;
+        private final Solution trial;
+        private final Solution best;
+
+        private final int[] placed;
+        private final int[] vehicleOf;
+        private final boolean[] removed;
+        private final long[] keys;
+        private final int[] first;
+        private final int[] second;
+
+        Search(RoutingProblem problem, int[] routeOf) {
+            this.problem = problem;
+            int rides = problem.rideCount();
+            this.required = new boolean[rides];
+            this.held = new boolean[rides];
+            this.placed = new int[rides];
+            this.vehicleOf = new int[rides];
+            this.removed = new boolean[rides];
+            this.keys = new long[rides];
+            int longest = rides + 1;
+            this.first = new int[longest];
+            this.second = new int[longest];
+
+            Routes routes = seed(routeOf);
+            this.current = new Solution(routes);
+            current.setUnplaced(routes.insertAll(pending(routeOf)));
+            this.trial = new Solution(routes.copy());
+            trial.copyFrom(current);
+            this.best = new Solution(routes.copy());
+            best.copyFrom(current);
+        }
+
+        /**
+         * Start routes from {@code routeOf}, each in pickup order, holding out rides until every route
+         * is feasible; the cheapest remaining route is kept each time.
+         */
+        private Routes seed(int[] routeOf) {
+            int[] vehicleOfDriver = RouteBuilder.vehiclesByDriver(problem);
+            int[] limits = Routes.limits(problem);
+            int[] seeded = new int[problem.vehicleCount()];
+            for (int r = 0; r < problem.rideCount(); r++) {
+                int driver = routeOf[problem.rideIndex(r)];
+                if (driver < 0) continue;
+                required[r] = true;
+                // On a route this problem cannot model (driver without a base): leave it there
+                if (vehicleOfDriver[driver] < 0) held[r] = true;
+                else seeded[vehicleOfDriver[driver]]++;
+            }
+            for (int v = 0; v < limits.length; v++) limits[v] = Math.max(limits[v], seeded[v]);
+
+            Routes routes = new Routes(problem, limits);
+            for (int r : RouteBuilder.byPickup(problem)) {
+                int driver = routeOf[problem.rideIndex(r)];
+                if (driver >= 0 && !held[r]) routes.append(vehicleOfDriver[driver], r);
+            }
+            routes.price();
+
+            for (int v = 0; v < problem.vehicleCount(); v++) {
+                int[] shed = routes.shed(v);
+                for (int r : shed) held[r] = true;
+                // Their slots stay taken
+                if (shed.length > 0) routes.rides[v] = Arrays.copyOf(routes.rides[v], routes.rides[v].length - shed.length);
+            }
+            return routes;
+        }
+
+        private int[] pending(int[] routeOf) {
+            int[] pending = new int[problem.rideCount()];
+            int count = 0;
+            for (int r = 0; r < problem.rideCount(); r++) {
+                if (routeOf[problem.rideIndex(r)] < 0) pending[count++] = r;
+            }
+            return Arrays.copyOf(pending, count);
+        }
+
+        /**
+         * One move on a copy of the current solution, kept if within the threshold of the best.
+         *
+         * @param remaining share of the budget left, 1 to 0
+         * @return whether the best solution improved
+         */
+        boolean step(double remaining) {
+            trial.copyFrom(current);
+            int placedCount = locate(trial.routes);
+            if (placedCount == 0) return false;
+
+            boolean changed = switch (random.nextInt(5)) {
+                case 0 -> ruin(randomRides(1, placedCount));
+                case 1 -> swap(placedCount);
+                case 2 -> twoOptStar();
+                case 3 -> ruin(randomRides(ruinSize(placedCount), placedCount));
+                default -> ruin(relatedRides(ruinSize(placedCount), placedCount));
+            };
+            if (!changed) return false;
+
+            long score = trial.score();
+            long threshold = (long) (MAX_DEVIATION * remaining * best.routes.travel());
+            if (score > best.score() + threshold) return false;
+            current.copyFrom(trial);
+            if (score >= best.score()) return false;
+            best.copyFrom(trial);
+            return true;
+        }
+
+        /** Fill {@link #placed} and {@link #vehicleOf} from the trial routes. */
+        private int locate(Routes routes) {
+            int count = 0;
+            for (int v = 0; v < problem.vehicleCount(); v++) {
+                for (int k = 0; k < routes.lengths[v]; k++) {
+                    int r = routes.rides[v][k];
+                    placed[count++] = r;
+                    vehicleOf[r] = v;
+                }
+            }
+            return count;
+        }
+
+        private int ruinSize(int placedCount) {
+            return 1 + random.nextInt(Math.min(MAX_RUIN, placedCount));
+        }
+
+        /** {@code count} placed rides at random, moved to the front of {@link #placed}. */
+        private int randomRides(int count, int placedCount) {
+            for (int i = 0; i < count; i++) {
+                int j = i + random.nextInt(placedCount - i);
+                int r = placed[j];
+                placed[j] = placed[i];
+                placed[i] = r;
+            }
+            return count;
+        }
+
+        /** A random placed ride and the {@code count - 1} closest to it in pickup place and time. */
+        private int relatedRides(int count, int placedCount) {
+            int seed = placed[random.nextInt(placedCount)];
+            for (int i = 0; i < placedCount; i++) {
+                int r = placed[i];
+                long relatedness = Math.abs(problem.pickupEarliest(r) - problem.pickupEarliest(seed))
+                        + problem.travel(problem.pickupNode(seed), problem.pickupNode(r));
+                // Relatedness in the high bits, ride in the low ones: sorting orders by both
+                keys[i] = relatedness << 20 | r;
+            }
+            Arrays.sort(keys, 0, placedCount);
+            for (int i = 0; i < count; i++) placed[i] = (int) (keys[i] & 0xFFFFF);
+            return count;
+        }
+
+        /** Take the first {@code count} rides of {@link #placed} off the trial and re-insert them with the unplaced. */
+        private boolean ruin(int count) {
+            Routes routes = trial.routes;
+            for (int i = 0; i < count; i++) removed[placed[i]] = true;
+            boolean feasible = true;
+            for (int v = 0; v < problem.vehicleCount(); v++) {
+                int length = routes.lengths[v];
+                int kept = 0;
+                for (int k = 0; k < length; k++) {
+                    int r = routes.rides[v][k];
+                    if (!removed[r]) routes.rides[v][kept++] = r;
+                }
+                if (kept == length) continue;
+                routes.lengths[v] = kept;
+                routes.costs[v] = simulate(problem, v, routes.rides[v], kept, -1, -1, null, null);
+                feasible &= routes.costs[v] != INFEASIBLE;
+            }
+            int[] toPlace = Arrays.copyOf(placed, count + trial.unplacedCount);
+            System.arraycopy(trial.unplaced, 0, toPlace, count, trial.unplacedCount);
+            for (int i = 0; i < count; i++) removed[placed[i]] = false;
+            if (!feasible) return false;
+
+            int[] unplaced = routes.insertAll(toPlace);
+            for (int r : unplaced) {
+                if (required[r]) return false;
+            }
+            trial.setUnplaced(unplaced);
+            return true;
+        }
+
+        /** Trade a random ride with the ride on another of its allowed routes that saves the most. */
+        private boolean swap(int placedCount) {
+            Routes routes = trial.routes;
+            int a = placed[random.nextInt(placedCount)];
+            int va = vehicleOf[a];
+            int[] allowed = problem.allowedVehicles(a);
+            int vb = allowed[random.nextInt(allowed.length)];
+            if (vb == va || routes.lengths[vb] == 0) return false;
+
+            long before = routes.costs[va] + routes.costs[vb];
+            long bestSaving = 0;
+            int bestB = -1;
+            for (int k = 0; k < routes.lengths[vb]; k++) {
+                int b = routes.rides[vb][k];
+                if (Arrays.binarySearch(problem.allowedVehicles(b), va) < 0) continue;
+                long costA = exchangeCost(routes, va, a, b, first);
+                if (costA == INFEASIBLE) continue;
+                long costB = exchangeCost(routes, vb, b, a, second);
+                if (costB == INFEASIBLE) continue;
+                if (before - (costA + costB) > bestSaving) {
+                    bestSaving = before - (costA + costB);
+                    bestB = b;
+                }
+            }
+            if (bestB < 0) return false;
+            applyExchange(routes, va, a, bestB);
+            applyExchange(routes, vb, bestB, a);
+            return true;
+        }
+
+        /** Cost of route {@code v} with {@code out} replaced by {@code in} at its cheapest slot; route left in {@code scratch}. */
+        private long exchangeCost(Routes routes, int v, int out, int in, int[] scratch) {
+            int n = 0;
+            for (int k = 0; k < routes.lengths[v]; k++) {
+                if (routes.rides[v][k] != out) scratch[n++] = routes.rides[v][k];
+            }
+            long bestCost = INFEASIBLE;
+            for (int position = 0; position <= n; position++) {
+                bestCost = Math.min(bestCost, simulate(problem, v, scratch, n, in, position, null, null));
+            }
+            return bestCost;
+        }
+
+        private void applyExchange(Routes routes, int v, int out, int in) {
+            int n = 0;
+            for (int k = 0; k < routes.lengths[v]; k++) {
+                if (routes.rides[v][k] != out) first[n++] = routes.rides[v][k];
+            }
+            int bestPosition = 0;
+            long bestCost = INFEASIBLE;
+            for (int position = 0; position <= n; position++) {
+                long cost = simulate(problem, v, first, n, in, position, null, null);
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestPosition = position;
+                }
+            }
+            System.arraycopy(first, 0, routes.rides[v], 0, bestPosition);
+            routes.rides[v][bestPosition] = in;
+            System.arraycopy(first, bestPosition, routes.rides[v], bestPosition + 1, n - bestPosition);
+            routes.lengths[v] = n + 1;
+            routes.costs[v] = bestCost;
+        }
+
+        /** Exchange the tails of two random routes at the cut points that save the most. */
+        private boolean twoOptStar() {
+            Routes routes = trial.routes;
+            int vehicles = problem.vehicleCount();
+            if (vehicles < 2) return false;
+            int v1 = random.nextInt(vehicles);
+            int v2 = random.nextInt(vehicles - 1);
+            if (v2 >= v1) v2++;
+            int n1 = routes.lengths[v1];
+            int n2 = routes.lengths[v2];
+            if (n1 + n2 == 0) return false;
+
+            long before = routes.costs[v1] + routes.costs[v2];
+            long bestSaving = 0;
+            int bestI = -1, bestJ = -1;
+            for (int i = 0; i <= n1; i++) {
+                if (!tailAllowed(routes, v1, i, v2)) continue;
+                for (int j = 0; j <= n2; j++) {
+                    if ((i == n1 && j == n2) || !tailAllowed(routes, v2, j, v1)) continue;
+                    int length1 = i + n2 - j;
+                    int length2 = j + n1 - i;
+                    if (length1 > routes.rides[v1].length || length2 > routes.rides[v2].length) continue;
+                    splice(routes.rides[v1], i, routes.rides[v2], j, n2, first);
+                    splice(routes.rides[v2], j, routes.rides[v1], i, n1, second);
+                    long cost1 = simulate(problem, v1, first, length1, -1, -1, null, null);
+                    if (cost1 == INFEASIBLE) continue;
+                    long cost2 = simulate(problem, v2, second, length2, -1, -1, null, null);
+                    if (cost2 == INFEASIBLE) continue;
+                    if (before - (cost1 + cost2) > bestSaving) {
+                        bestSaving = before - (cost1 + cost2);
+                        bestI = i;
+                        bestJ = j;
+                    }
+                }
+            }
+            if (bestI < 0) return false;
+
+            int length1 = bestI + n2 - bestJ;
+            int length2 = bestJ + n1 - bestI;
+            splice(routes.rides[v1], bestI, routes.rides[v2], bestJ, n2, first);
+            splice(routes.rides[v2], bestJ, routes.rides[v1], bestI, n1, second);
+            System.arraycopy(first, 0, routes.rides[v1], 0, length1);
+            System.arraycopy(second, 0, routes.rides[v2], 0, length2);
+            routes.lengths[v1] = length1;
+            routes.lengths[v2] = length2;
+            routes.costs[v1] = simulate(problem, v1, routes.rides[v1], length1, -1, -1, null, null);
+            routes.costs[v2] = simulate(problem, v2, routes.rides[v2], length2, -1, -1, null, null);
+            return true;
+        }
+
+        /** Whether every ride from {@code from} onwards on {@code v} may ride with {@code target}. */
+        private boolean tailAllowed(Routes routes, int v, int from, int target) {
+            for (int k = from; k < routes.lengths[v]; k++) {
+                if (Arrays.binarySearch(problem.allowedVehicles(routes.rides[v][k]), target) < 0) return false;
+            }
+            return true;
+        }
+
+        /** {@code head[0, cut)} followed by {@code tail[from, tailLength)} into {@code out}. */
+        private static void splice(int[] head, int cut, int[] tail, int from, int tailLength, int[] out) {
+            System.arraycopy(head, 0, out, 0, cut);
+            System.arraycopy(tail, from, out, cut, tailLength - from);
+        }
+
+        RoutePlan toPlan(Solution solution, RoutePlan unroutable) {
+            RoutePlan plan = new RoutePlan();
+            unroutable.getUnassigned().forEach(plan::addUnassigned);
+            solution.routes.emit(plan);
+            for (int i = 0; i < solution.unplacedCount; i++) {
+                plan.addUnassigned(problem.rideId(solution.unplaced[i]), NO_SLOT);
+            }
+            for (int r = 0; r < held.length; r++) {
+                if (held[r]) plan.addUnassigned(problem.rideId(r), HELD);
+            }
+            return plan;
+        }
+    }
+}
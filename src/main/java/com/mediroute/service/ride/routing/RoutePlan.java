@@ -0,0 +1,41 @@
+package com.mediroute.service.ride.routing;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of a routing run: each driver's rides in visiting order with estimated times,
+ * plus rides that could not be placed and why.
+ */
+public class RoutePlan {
+
+    /** A ride on a driver's route, ordered by pickup. */
+    public record Stop(Long rideId, LocalDateTime pickupEta, LocalDateTime dropoffEta) {}
+
+    private final Map<Long, List<Stop>> routes = new LinkedHashMap<>();
+    private final Map<Long, String> unassigned = new LinkedHashMap<>();
+
+    public void addStop(Long driverId, Stop stop) {
+        routes.computeIfAbsent(driverId, k -> new ArrayList<>()).add(stop);
+    }
+
+    public void addUnassigned(Long rideId, String reason) {
+        unassigned.put(rideId, reason);
+    }
+
+    /** Append {@code other}'s stops to the routes of the same drivers and take over its unplaced rides. */
+    public void addAll(RoutePlan other) {
+        other.routes.forEach((driverId, stops) -> stops.forEach(stop -> addStop(driverId, stop)));
+        unassigned.putAll(other.unassigned);
+    }
+
+    public int getAssignedRideCount() {
+        return routes.values().stream().mapToInt(List::size).sum();
+    }
+
+    public Map<Long, List<Stop>> getRoutes() { return routes; }
+    public Map<Long, String> getUnassigned() { return unassigned; }
+}
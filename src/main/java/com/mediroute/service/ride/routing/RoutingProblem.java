@@ -0,0 +1,248 @@
+package com.mediroute.service.ride.routing;
+
+import com.mediroute.config.AppProps;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static com.mediroute.service.ride.routing.OptimizationSnapshot.NO_TIME;
+
+/**
+ * Routing input shared by the route engines, derived from an {@link OptimizationSnapshot}.
+ * <p>
+ * Node layout: one depot per driver (its base, start and end of the route), then a
+ * pickup/dropoff node pair per ride. Times are seconds from midnight of the routing day: the pickup
+ * day the rides were grouped by, or when none is given the day of the earliest pickup time. Driver
+ * shifts and daily ride caps are placed on that day only, so a problem holds one day's rides.
+ * Vehicles and rides here are positions in this problem; {@link #driverIndex(int)} and
+ * {@link #rideIndex(int)} map them back to snapshot indices.
+ */
+public final class RoutingProblem {
+
+    /** Extra ride time allowed on top of twice the direct trip when no dropoff window is given. */
+    private static final int MAX_RIDE_SLACK_MINUTES = 30;
+    private static final int DEFAULT_VEHICLE_CAPACITY = 4;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final OptimizationSnapshot snapshot;
+    private final int[] vehicleDriver;
+    private final int[] rides;
+    private final int[][] allowedVehicles;
+    private final int originMinute;
+    private final TravelMatrix matrix;
+    private final int serviceSeconds;
+
+    private final long[] pickupEarliest;
+    private final long[] pickupLatest;
+    private final long[] dropoffEarliest;
+    private final long[] dropoffLatest;
+    private final long[] shiftStart;
+    private final long[] shiftEnd;
+    private final long horizon;
+
+    /** Travel times between routing nodes, given the nodes' coordinates. */
+    @FunctionalInterface
+    public interface TravelTimes {
+        TravelMatrix between(double[] lat, double[] lng);
+
+        /** Straight-line estimates at the configured average speed; what the engines use when given none. */
+        static TravelTimes straightLine(AppProps.Optimizer settings) {
+            return (lat, lng) -> TravelMatrix.haversine(lat, lng, settings.getAverageSpeedKmh());
+        }
+    }
+
+    private RoutingProblem(OptimizationSnapshot snapshot, int[] vehicleDriver, int[] rides, int[][] allowedVehicles,
+                           LocalDate day, AppProps.Optimizer settings, TravelTimes travelTimes) {
+        this.snapshot = snapshot;
+        this.vehicleDriver = vehicleDriver;
+        this.rides = rides;
+        this.allowedVehicles = allowedVehicles;
+        this.serviceSeconds = settings.getServiceMinutes() * 60;
+
+        int vehicles = vehicleDriver.length;
+        int n = rides.length;
+        this.originMinute = day != null ? Math.toIntExact(day.toEpochDay() * MINUTES_PER_DAY) : originOf(snapshot, rides);
+
+        int nodes = vehicles + 2 * n;
+        double[] lat = new double[nodes];
+        double[] lng = new double[nodes];
+        for (int v = 0; v < vehicles; v++) {
+            lat[v] = snapshot.baseLat(vehicleDriver[v]);
+            lng[v] = snapshot.baseLng(vehicleDriver[v]);
+        }
+        for (int r = 0; r < n; r++) {
+            lat[pickupNode(r)] = snapshot.pickupLat(rides[r]);
+            lng[pickupNode(r)] = snapshot.pickupLng(rides[r]);
+            lat[dropoffNode(r)] = snapshot.dropoffLat(rides[r]);
+            lng[dropoffNode(r)] = snapshot.dropoffLng(rides[r]);
+        }
+        this.matrix = travelTimes.between(lat, lng);
+
+        this.pickupEarliest = new long[n];
+        this.pickupLatest = new long[n];
+        this.dropoffEarliest = new long[n];
+        this.dropoffLatest = new long[n];
+        long maxTime = 0;
+        for (int r = 0; r < n; r++) {
+            int ride = rides[r];
+            pickupEarliest[r] = offset(snapshot.pickupEarliest(ride));
+            pickupLatest[r] = Math.max(pickupEarliest[r], offset(snapshot.pickupLatest(ride)));
+            dropoffEarliest[r] = snapshot.dropoffEarliest(ride) != NO_TIME ? offset(snapshot.dropoffEarliest(ride)) : 0;
+            long latest = snapshot.dropoffLatest(ride) != NO_TIME
+                    ? offset(snapshot.dropoffLatest(ride))
+                    : pickupLatest[r] + 2L * matrix.seconds(pickupNode(r), dropoffNode(r)) + MAX_RIDE_SLACK_MINUTES * 60L;
+            dropoffLatest[r] = Math.max(dropoffEarliest[r], latest);
+            maxTime = Math.max(maxTime, Math.max(pickupLatest[r], dropoffLatest[r]));
+        }
+        this.horizon = maxTime + MINUTES_PER_DAY * 60L;
+
+        this.shiftStart = new long[vehicles];
+        this.shiftEnd = new long[vehicles];
+        for (int v = 0; v < vehicles; v++) {
+            int from = snapshot.shiftStartMinute(vehicleDriver[v]);
+            int to = snapshot.shiftEndMinute(vehicleDriver[v]);
+            if (from < 0 || to < 0) {
+                shiftStart[v] = 0;
+                shiftEnd[v] = horizon;
+                continue;
+            }
+            if (to <= from) {
+                to += MINUTES_PER_DAY; // overnight shift
+            }
+            shiftStart[v] = from * 60L;
+            shiftEnd[v] = Math.min(to * 60L, horizon);
+        }
+    }
+
+    /**
+     * Build the problem for every ride in the snapshot. Rides that can never be routed (missing
+     * coordinates or time, no compatible driver) are recorded on {@code plan} and left out.
+     */
+    public static RoutingProblem build(OptimizationSnapshot snapshot, AppProps.Optimizer settings, RoutePlan plan) {
+        return build(snapshot, null, settings, plan, TravelTimes.straightLine(settings));
+    }
+
+    /**
+     * Build the problem for every ride in the snapshot, with times counted from midnight of {@code day}
+     * (null for the day of the earliest pickup time) and travel times from {@code travelTimes}.
+     */
+    public static RoutingProblem build(OptimizationSnapshot snapshot, LocalDate day, AppProps.Optimizer settings,
+                                       RoutePlan plan, TravelTimes travelTimes) {
+        int[] all = new int[snapshot.rideCount()];
+        Arrays.setAll(all, i -> i);
+        return build(snapshot, all, day, settings, plan, travelTimes);
+    }
+
+    /**
+     * Build the problem for a subset of snapshot rides on {@code day} (null for the day of the earliest
+     * pickup time), with travel times from {@code travelTimes}.
+     */
+    public static RoutingProblem build(OptimizationSnapshot snapshot, int[] rideSubset, LocalDate day,
+                                       AppProps.Optimizer settings, RoutePlan plan, TravelTimes travelTimes) {
+        int[] fleet = new int[snapshot.driverCount()];
+        int vehicles = 0;
+        for (int d = 0; d < snapshot.driverCount(); d++) {
+            if (snapshot.hasBase(d)) fleet[vehicles++] = d;
+        }
+        fleet = Arrays.copyOf(fleet, vehicles);
+
+        int[] routable = new int[rideSubset.length];
+        int[][] allowed = new int[rideSubset.length][];
+        int count = 0;
+        int[] buffer = new int[vehicles];
+        for (int ride : rideSubset) {
+            String reason = checkRoutable(snapshot, ride);
+            if (reason == null && vehicles == 0) {
+                reason = "No drivers with a known base location";
+            }
+            if (reason != null) {
+                plan.addUnassigned(snapshot.rideId(ride), reason);
+                continue;
+            }
+            int matches = 0;
+            for (int v = 0; v < vehicles; v++) {
+                if (snapshot.canServe(fleet[v], ride)) buffer[matches++] = v;
+            }
+            if (matches == 0) {
+                plan.addUnassigned(snapshot.rideId(ride), "No driver matches patient medical needs or vehicle type");
+                continue;
+            }
+            routable[count] = ride;
+            allowed[count] = Arrays.copyOf(buffer, matches);
+            count++;
+        }
+        return new RoutingProblem(snapshot, fleet, Arrays.copyOf(routable, count),
+                Arrays.copyOf(allowed, count), day, settings, travelTimes);
+    }
+
+    // ========== NODES ==========
+
+    public int vehicleCount() { return vehicleDriver.length; }
+    public int rideCount() { return rides.length; }
+    public int nodeCount() { return vehicleDriver.length + 2 * rides.length; }
+    public boolean isEmpty() { return rides.length == 0; }
+
+    public int pickupNode(int ride) { return vehicleDriver.length + 2 * ride; }
+    public int dropoffNode(int ride) { return vehicleDriver.length + 2 * ride + 1; }
+    public boolean isDepotNode(int node) { return node < vehicleDriver.length; }
+    public boolean isPickupNode(int node) { return node >= vehicleDriver.length && ((node - vehicleDriver.length) & 1) == 0; }
+    public int rideOfNode(int node) { return (node - vehicleDriver.length) >> 1; }
+
+    // ========== DATA ==========
+
+    public OptimizationSnapshot snapshot() { return snapshot; }
+    public int driverIndex(int vehicle) { return vehicleDriver[vehicle]; }
+    public int rideIndex(int ride) { return rides[ride]; }
+    public Long driverId(int vehicle) { return snapshot.driverId(vehicleDriver[vehicle]); }
+    public Long rideId(int ride) { return snapshot.rideId(rides[ride]); }
+    public byte priority(int ride) { return snapshot.priority(rides[ride]); }
+    public int[] allowedVehicles(int ride) { return allowedVehicles[ride]; }
+    public TravelMatrix matrix() { return matrix; }
+    public int travel(int from, int to) { return matrix.seconds(from, to); }
+    public int serviceSeconds() { return serviceSeconds; }
+    public long pickupEarliest(int ride) { return pickupEarliest[ride]; }
+    public long pickupLatest(int ride) { return pickupLatest[ride]; }
+    public long dropoffEarliest(int ride) { return dropoffEarliest[ride]; }
+    public long dropoffLatest(int ride) { return dropoffLatest[ride]; }
+    public long shiftStart(int vehicle) { return shiftStart[vehicle]; }
+    public long shiftEnd(int vehicle) { return shiftEnd[vehicle]; }
+    public long horizon() { return horizon; }
+
+    public int capacity(int vehicle) {
+        int seats = snapshot.vehicleCapacity(vehicleDriver[vehicle]);
+        return seats >= 0 ? seats : DEFAULT_VEHICLE_CAPACITY;
+    }
+
+    public int maxRides(int vehicle) {
+        int max = snapshot.maxDailyRides(vehicleDriver[vehicle]);
+        return max >= 0 ? max : rides.length;
+    }
+
+    public LocalDateTime at(long seconds) {
+        return OptimizationSnapshot.toDateTime(originMinute).plusSeconds(seconds);
+    }
+
+    // ========== HELPERS ==========
+
+    private static String checkRoutable(OptimizationSnapshot snapshot, int ride) {
+        if (!snapshot.hasPickup(ride)) return "Missing pickup coordinates";
+        if (!snapshot.hasDropoff(ride)) return "Missing dropoff coordinates";
+        if (snapshot.pickupEarliest(ride) == NO_TIME) return "Missing pickup time";
+        return null;
+    }
+
+    /** Midnight of the earliest pickup time; the window start only counts for a ride without one. */
+    private static int originOf(OptimizationSnapshot snapshot, int[] rides) {
+        int earliest = Integer.MAX_VALUE;
+        for (int ride : rides) {
+            int pickup = snapshot.pickupMinute(ride);
+            earliest = Math.min(earliest, pickup != NO_TIME ? pickup : snapshot.pickupEarliest(ride));
+        }
+        return rides.length == 0 ? 0 : Math.floorDiv(earliest, MINUTES_PER_DAY) * MINUTES_PER_DAY;
+    }
+
+    private long offset(int epochMinute) {
+        return Math.max(0, (long) (epochMinute - originMinute) * 60);
+    }
+}
@@ -0,0 +1,61 @@
+package com.mediroute.service.ride.routing;
+
+/**
+ * Square travel-time matrix (seconds) over routing nodes, stored row-major in a flat array
+ * so solver callbacks can read it without boxing.
+ */
+public final class TravelMatrix {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    /** Typical road-network detour over great-circle distance in urban areas. */
+    private static final double ROAD_CIRCUITY = 1.3;
+
+    private final int size;
+    private final int[] seconds;
+
+    public TravelMatrix(int size, int[] seconds) {
+        if (seconds.length != size * size) {
+            throw new IllegalArgumentException("Matrix data does not match size " + size);
+        }
+        this.size = size;
+        this.seconds = seconds;
+    }
+
+    /**
+     * Estimate travel times from straight-line distance, inflated by road circuity, at a fixed average speed.
+     */
+    public static TravelMatrix haversine(double[] lat, double[] lng, double speedKmh) {
+        int n = lat.length;
+        double[] latRad = new double[n];
+        double[] cosLat = new double[n];
+        double[] lngRad = new double[n];
+        for (int i = 0; i < n; i++) {
+            latRad[i] = Math.toRadians(lat[i]);
+            lngRad[i] = Math.toRadians(lng[i]);
+            cosLat[i] = Math.cos(latRad[i]);
+        }
+
+        double secondsPerKm = 3600.0 * ROAD_CIRCUITY / speedKmh;
+        int[] data = new int[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double sinLat = Math.sin((latRad[j] - latRad[i]) / 2);
+                double sinLng = Math.sin((lngRad[j] - lngRad[i]) / 2);
+                double a = sinLat * sinLat + cosLat[i] * cosLat[j] * sinLng * sinLng;
+                double km = 2 * EARTH_RADIUS_KM * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+                int t = (int) Math.round(km * secondsPerKm);
+                data[i * n + j] = t;
+                data[j * n + i] = t;
+            }
+        }
+        return new TravelMatrix(n, data);
+    }
+
+    public int seconds(int from, int to) {
+        return seconds[from * size + to];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,207 @@
+package com.mediroute.service.ride.routing;
+
+import com.google.ortools.Loader;
+import com.google.ortools.constraintsolver.Assignment;
+import com.google.ortools.constraintsolver.IntVar;
+import com.google.ortools.constraintsolver.Solver;
+import com.google.ortools.routing.FirstSolutionStrategy;
+import com.google.ortools.routing.Globals;
+import com.google.ortools.routing.LocalSearchMetaheuristic;
+import com.google.ortools.routing.RoutingDimension;
+import com.google.ortools.routing.RoutingIndexManager;
+import com.google.ortools.routing.RoutingModel;
+import com.google.ortools.routing.RoutingSearchParameters;
+import com.google.protobuf.Duration;
+import com.mediroute.config.AppProps;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Capacitated pickup-and-delivery VRP with time windows on OR-Tools.
+ * See {@link RoutingProblem} for the node layout and time units.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VrptwRouteSolver {
+
+    private static final String TIME = "Time";
+    private static final String LOAD = "Load";
+    private static final String RIDES = "Rides";
+
+    // Drop penalties in cost units (seconds of travel); large enough that the solver
+    // always prefers serving a ride over any realistic detour.
+    private static final long ROUTINE_DROP_PENALTY = 10_000_000L;
+    private static final long URGENT_DROP_PENALTY = 100_000_000L;
+    private static final long EMERGENCY_DROP_PENALTY = 1_000_000_000L;
+
+    private final AppProps appProps;
+
+    /**
+     * True when the OR-Tools native libraries could be loaded on this host.
+     */
+    public boolean isAvailable() {
+        return NativeLibraries.LOADED;
+    }
+
+    /**
+     * Route every ride of the snapshot over its drivers. Compatibility (equipment, skills, vehicle
+     * type) comes from {@link OptimizationSnapshot#canServe(int, int)}.
+     */
+    public RoutePlan solve(OptimizationSnapshot snapshot) {
+        return solve(snapshot, null, RoutingProblem.TravelTimes.straightLine(appProps.getOptimizer()));
+    }
+
+    /**
+     * {@link #solve(OptimizationSnapshot)} for the rides of pickup {@code day} (null for the day of the
+     * earliest pickup time), with travel times from {@code travelTimes}.
+     */
+    public RoutePlan solve(OptimizationSnapshot snapshot, LocalDate day, RoutingProblem.TravelTimes travelTimes) {
+        RoutePlan plan = new RoutePlan();
+        RoutingProblem problem = RoutingProblem.build(snapshot, day, appProps.getOptimizer(), plan, travelTimes);
+        if (problem.isEmpty()) {
+            return plan;
+        }
+
+        int vehicles = problem.vehicleCount();
+        int[] depots = new int[vehicles];
+        for (int v = 0; v < vehicles; v++) depots[v] = v;
+        RoutingIndexManager manager = new RoutingIndexManager(problem.nodeCount(), vehicles, depots, depots);
+        RoutingModel routing = new RoutingModel(manager);
+
+        int serviceSeconds = problem.serviceSeconds();
+        int transit = routing.registerTransitCallback((fromIndex, toIndex) -> {
+            int from = manager.indexToNode(fromIndex);
+            int to = manager.indexToNode(toIndex);
+            return problem.travel(from, to) + (problem.isDepotNode(from) ? 0 : serviceSeconds);
+        });
+        routing.setArcCostEvaluatorOfAllVehicles(transit);
+        routing.addDimension(transit, problem.horizon(), problem.horizon(), false, TIME);
+        RoutingDimension time = routing.getMutableDimension(TIME);
+
+        int load = routing.registerUnaryTransitCallback(index -> {
+            int node = manager.indexToNode(index);
+            if (problem.isDepotNode(node)) return 0;
+            return problem.isPickupNode(node) ? 1 : -1;
+        });
+        int rideCount = routing.registerUnaryTransitCallback(index ->
+                problem.isPickupNode(manager.indexToNode(index)) ? 1 : 0);
+        long[] capacities = new long[vehicles];
+        long[] maxRides = new long[vehicles];
+        for (int v = 0; v < vehicles; v++) {
+            capacities[v] = problem.capacity(v);
+            maxRides[v] = problem.maxRides(v);
+        }
+        routing.addDimensionWithVehicleCapacity(load, 0, capacities, true, LOAD);
+        routing.addDimensionWithVehicleCapacity(rideCount, 0, maxRides, true, RIDES);
+
+        Solver solver = routing.solver();
+        for (int r = 0; r < problem.rideCount(); r++) {
+            long pickupIndex = manager.nodeToIndex(problem.pickupNode(r));
+            long dropoffIndex = manager.nodeToIndex(problem.dropoffNode(r));
+
+            routing.addPickupAndDelivery(pickupIndex, dropoffIndex);
+            solver.addConstraint(solver.makeEquality(routing.vehicleVar(pickupIndex), routing.vehicleVar(dropoffIndex)));
+            solver.addConstraint(solver.makeEquality(routing.activeVar(pickupIndex), routing.activeVar(dropoffIndex)));
+            solver.addConstraint(solver.makeLessOrEqual(time.cumulVar(pickupIndex), time.cumulVar(dropoffIndex)));
+
+            time.cumulVar(pickupIndex).setRange(problem.pickupEarliest(r), problem.pickupLatest(r));
+            time.cumulVar(dropoffIndex).setRange(problem.dropoffEarliest(r), problem.dropoffLatest(r));
+
+            routing.setAllowedVehiclesForIndex(problem.allowedVehicles(r), pickupIndex);
+            routing.setAllowedVehiclesForIndex(problem.allowedVehicles(r), dropoffIndex);
+
+            long penalty = dropPenalty(problem.priority(r));
+            routing.addDisjunction(new long[]{pickupIndex}, penalty);
+            routing.addDisjunction(new long[]{dropoffIndex}, penalty);
+        }
+
+        for (int v = 0; v < vehicles; v++) {
+            IntVar start = time.cumulVar(routing.start(v));
+            IntVar end = time.cumulVar(routing.end(v));
+            start.setRange(problem.shiftStart(v), problem.shiftEnd(v));
+            end.setRange(problem.shiftStart(v), problem.shiftEnd(v));
+            routing.addVariableMaximizedByFinalizer(start);
+            routing.addVariableMinimizedByFinalizer(end);
+        }
+
+        RoutingSearchParameters parameters = Globals.defaultRoutingSearchParameters().toBuilder()
+                .setFirstSolutionStrategy(FirstSolutionStrategy.Value.PARALLEL_CHEAPEST_INSERTION)
+                .setLocalSearchMetaheuristic(LocalSearchMetaheuristic.Value.GUIDED_LOCAL_SEARCH)
+                .setTimeLimit(Duration.newBuilder().setSeconds(appProps.getOptimizer().getSolveTimeLimitSeconds()).build())
+                .build();
+
+        long startedAt = System.currentTimeMillis();
+        Assignment solution = routing.solveWithParameters(parameters);
+        log.info("🧭 VRPTW solve finished in {} ms ({} rides, {} drivers, solution found: {})",
+                System.currentTimeMillis() - startedAt, problem.rideCount(), vehicles, solution != null);
+
+        if (solution == null) {
+            for (int r = 0; r < problem.rideCount(); r++) {
+                plan.addUnassigned(problem.rideId(r), "No feasible route found within solve time limit");
+            }
+            return plan;
+        }
+
+        boolean[] served = new boolean[problem.rideCount()];
+        long[] pickupAt = new long[problem.rideCount()];
+        long[] dropoffAt = new long[problem.rideCount()];
+        for (int v = 0; v < vehicles; v++) {
+            List<Integer> order = new ArrayList<>();
+            long index = solution.value(routing.nextVar(routing.start(v)));
+            while (!routing.isEnd(index)) {
+                int node = manager.indexToNode(index);
+                int r = problem.rideOfNode(node);
+                long at = solution.min(time.cumulVar(index));
+                if (problem.isPickupNode(node)) {
+                    order.add(r);
+                    pickupAt[r] = at;
+                } else {
+                    dropoffAt[r] = at;
+                }
+                index = solution.value(routing.nextVar(index));
+            }
+            for (int r : order) {
+                served[r] = true;
+                plan.addStop(problem.driverId(v), new RoutePlan.Stop(
+                        problem.rideId(r), problem.at(pickupAt[r]), problem.at(dropoffAt[r])));
+            }
+        }
+        for (int r = 0; r < problem.rideCount(); r++) {
+            if (!served[r]) {
+                plan.addUnassigned(problem.rideId(r),
+                        "Could not fit into any driver route (time windows, shift or capacity)");
+            }
+        }
+        return plan;
+    }
+
+    private static long dropPenalty(byte priority) {
+        if (priority == OptimizationSnapshot.EMERGENCY) return EMERGENCY_DROP_PENALTY;
+        if (priority == OptimizationSnapshot.URGENT) return URGENT_DROP_PENALTY;
+        return ROUTINE_DROP_PENALTY;
+    }
+
+    /**
+     * Loads the OR-Tools JNI bundle once, on first use.
+     */
+    private static final class NativeLibraries {
+        static final boolean LOADED = load();
+
+        private static boolean load() {
+            try {
+                Loader.loadNativeLibraries();
+                log.info("✅ OR-Tools native libraries loaded");
+                return true;
+            } catch (Throwable e) {
+                log.warn("⚠️ OR-Tools native libraries not available: {}", e.getMessage());
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.mediroute.benchmark;
+
+import com.mediroute.service.parser.CsvTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the fields of a ride upload CSV the way the parser uses them: the required columns as
+ * strings and the cancelled flag as a yes/no test. Compares the previous line splitting with a
+ * per-character StringBuilder plus per-field header map lookups against {@link CsvTokenizer} with a
+ * column plan resolved once.
+ * <p>
+ * Run from the IDE via {@link #main(String[])}, or after {@code mvn test-compile} with the test
+ * classpath: {@code java -cp <test-classpath> org.openjdk.jmh.Main CsvTokenizerBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvTokenizerBenchmark {
+
+    private static final String HEADER = "NAME,PHONE,PICK UP,DROP OFF,PURPOSE,TIME,CANCELLED,RETURN,NOTE,DISTANCE,RUN ID";
+    private static final String[] READ = {"NAME", "PHONE", "PICK UP", "DROP OFF", "TIME"};
+
+    @Param({"100000"})
+    public int rows;
+
+    private String csv;
+
+    @Setup
+    public void setUp() {
+        Random rnd = new Random(42);
+        StringBuilder out = new StringBuilder(HEADER).append('\n');
+        for (int i = 0; i < rows; i++) {
+            out.append("Patient ").append(i).append(',')
+                    .append("303-555-").append(1000 + rnd.nextInt(9000)).append(',')
+                    .append(100 + rnd.nextInt(9900)).append(" Main St Denver CO,")
+                    .append("\"Clinic ").append(rnd.nextInt(200)).append(", Suite ").append(rnd.nextInt(50)).append("\",")
+                    .append(i % 7 == 0 ? "Dialysis" : "Checkup").append(',')
+                    .append(7 + rnd.nextInt(10)).append(':').append(rnd.nextBoolean() ? "00" : "30").append(',')
+                    .append(i % 50 == 0 ? "yes" : "").append(',')
+                    .append(rnd.nextBoolean() ? "Y" : "N").append(',')
+                    .append(i % 5 == 0 ? "wheelchair, needs \"\"assist\"\"" : "").append(',')
+                    .append(rnd.nextInt(30)).append(".5,")
+                    .append("RUN-").append(i / 100).append('\n');
+        }
+        csv = out.toString();
+    }
+
+    @Benchmark
+    public long splitAndLookup() throws IOException {
+        BufferedReader reader = new BufferedReader(new StringReader(csv));
+        String[] headers = reader.readLine().split(",");
+        Map<String, Integer> headerMap = new HashMap<>();
+        for (int i = 0; i < headers.length; i++) headerMap.put(headers[i].trim().toUpperCase(), i);
+
+        long checksum = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            String[] values = splitLine(line);
+            for (String key : READ) checksum += value(values, headerMap, key).length();
+            String cancelled = value(values, headerMap, "CANCELLED");
+            if (!cancelled.isBlank() && "yes".equals(cancelled.toLowerCase().trim())) checksum++;
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public long tokenizerWithPlan() throws IOException {
+        CsvTokenizer csv = new CsvTokenizer(new StringReader(this.csv));
+        csv.next();
+        Map<String, Integer> headerMap = new HashMap<>();
+        for (int i = 0; i < csv.fieldCount(); i++) headerMap.put(csv.field(i).toUpperCase(), i);
+        int[] plan = new int[READ.length];
+        for (int i = 0; i < READ.length; i++) plan[i] = headerMap.getOrDefault(READ[i], -1);
+        int cancelledColumn = headerMap.getOrDefault("CANCELLED", -1);
+
+        long checksum = 0;
+        CsvTokenizer.Records records = new CsvTokenizer.Records(500);
+        while (csv.next()) {
+            csv.appendTo(records);
+            if (records.size() == 500) {
+                checksum += read(records, plan, cancelledColumn);
+                records = new CsvTokenizer.Records(500);
+            }
+        }
+        return checksum + read(records, plan, cancelledColumn);
+    }
+
+    private static long read(CsvTokenizer.Records records, int[] plan, int cancelledColumn) {
+        long checksum = 0;
+        for (int r = 0; r < records.size(); r++) {
+            for (int column : plan) checksum += records.string(r, column).length();
+            if (records.equalsAnyIgnoreCase(r, cancelledColumn, "yes")) checksum++;
+        }
+        return checksum;
+    }
+
+    /** The parser's previous line splitting. */
+    private static String[] splitLine(String line) {
+        List<String> values = new ArrayList<>();
+        boolean inQuotes = false;
+        StringBuilder current = new StringBuilder();
+        for (char c : line.toCharArray()) {
+            if (c == '"') {
+                inQuotes = !inQuotes;
+            } else if (c == ',' && !inQuotes) {
+                values.add(current.toString().trim());
+                current = new StringBuilder();
+            } else {
+                current.append(c);
+            }
+        }
+        values.add(current.toString().trim());
+        return values.toArray(new String[0]);
+    }
+
+    private static String value(String[] values, Map<String, Integer> headerMap, String key) {
+        Integer index = headerMap.get(key);
+        if (index == null || index >= values.length) return "";
+        return values[index] != null ? values[index].trim() : "";
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CsvTokenizerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,121 @@
+package com.mediroute.benchmark;
+
+import com.mediroute.entity.Driver;
+import com.mediroute.service.ride.routing.DriverSpatialIndex;
+import com.mediroute.service.ride.routing.OptimizationSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Driver candidate lookup for a full day: every ride asks for drivers within the max pickup distance.
+ * Compares the optimizer's previous all-drivers haversine scan with {@link DriverSpatialIndex}.
+ * <p>
+ * Run from the IDE via {@link #main(String[])}, or after {@code mvn test-compile} with the test
+ * classpath: {@code java -cp <test-classpath> org.openjdk.jmh.Main DriverSpatialIndexBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DriverSpatialIndexBenchmark {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double MAX_PICKUP_DISTANCE_KM = 50.0;
+
+    @Param({"5000"})
+    public int drivers;
+
+    @Param({"20000"})
+    public int rides;
+
+    private List<Driver> fleet;
+    private OptimizationSnapshot snapshot;
+    private double[] rideLat;
+    private double[] rideLng;
+
+    @Setup
+    public void setUp() {
+        Random rnd = new Random(42);
+        fleet = new ArrayList<>(drivers);
+        for (int i = 0; i < drivers; i++) {
+            Driver d = new Driver();
+            d.setId((long) i);
+            // Colorado Front Range, roughly 250 km x 250 km
+            d.setBaseLat(38.0 + rnd.nextDouble() * 2.3);
+            d.setBaseLng(-106.0 + rnd.nextDouble() * 2.9);
+            fleet.add(d);
+        }
+        snapshot = OptimizationSnapshot.of(List.of(), fleet, ride -> "sedan");
+        rideLat = new double[rides];
+        rideLng = new double[rides];
+        for (int i = 0; i < rides; i++) {
+            rideLat[i] = 38.0 + rnd.nextDouble() * 2.3;
+            rideLng[i] = -106.0 + rnd.nextDouble() * 2.9;
+        }
+    }
+
+    @Benchmark
+    public long fullScan() {
+        long found = 0;
+        for (int r = 0; r < rides; r++) {
+            for (Driver d : fleet) {
+                if (haversine(d.getBaseLat(), d.getBaseLng(), rideLat[r], rideLng[r]) <= MAX_PICKUP_DISTANCE_KM) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public long gridIndex() {
+        DriverSpatialIndex index = DriverSpatialIndex.build(snapshot, 5.0);
+        int[] out = new int[drivers];
+        long found = 0;
+        for (int r = 0; r < rides; r++) {
+            found += index.withinRadius(rideLat[r], rideLng[r], MAX_PICKUP_DISTANCE_KM, out);
+        }
+        return found;
+    }
+
+    @Benchmark
+    public long gridIndexNearest() {
+        DriverSpatialIndex index = DriverSpatialIndex.build(snapshot, 5.0);
+        long found = 0;
+        for (int r = 0; r < rides; r++) {
+            if (index.nearest(rideLat[r], rideLng[r], MAX_PICKUP_DISTANCE_KM, d -> true) >= 0) found++;
+        }
+        return found;
+    }
+
+    private static double haversine(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DriverSpatialIndexBenchmark.class.getSimpleName()).build()).run();
+    }
+}
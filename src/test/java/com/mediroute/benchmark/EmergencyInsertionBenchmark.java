@@ -0,0 +1,169 @@
+package com.mediroute.benchmark;
+
+import com.mediroute.config.AppProps;
+import com.mediroute.dto.EmergencyInsertionResult;
+import com.mediroute.dto.Priority;
+import com.mediroute.dto.RideStatus;
+import com.mediroute.entity.Driver;
+import com.mediroute.entity.Patient;
+import com.mediroute.entity.Ride;
+import com.mediroute.entity.embeddable.Location;
+import com.mediroute.repository.AssignmentAuditRepository;
+import com.mediroute.repository.DriverRepository;
+import com.mediroute.repository.RideRepository;
+import com.mediroute.repository.ScheduleRepository;
+import com.mediroute.service.distance.OsrmDistanceService;
+import com.mediroute.service.distance.OsrmMatrixCache;
+import com.mediroute.service.distance.RoadEstimator;
+import com.mediroute.service.ride.EnhancedMedicalTransportOptimizer;
+import com.mediroute.service.ride.ImprovementStatusService;
+import com.mediroute.service.ride.routing.RouteBuilder;
+import com.mediroute.service.ride.routing.RouteImprover;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * One emergency insertion into a full day of live routes, with repositories answering from memory so
+ * only the optimizer's own work is timed. Sample mode reports the p99 to hold against
+ * {@code emergencyLatencyBudgetMs}; {@code fleetCacheSeconds = 0} loads and indexes the fleet on every
+ * call as before the fleet cache.
+ * <p>
+ * Run from the IDE via {@link #main(String[])}, or after {@code mvn test-compile} with the test
+ * classpath: {@code java -cp <test-classpath> org.openjdk.jmh.Main EmergencyInsertionBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmergencyInsertionBenchmark {
+
+    private static final Long EMERGENCY_RIDE_ID = 1L;
+    private static final LocalDateTime DAY = LocalDateTime.of(2025, 3, 4, 0, 0);
+
+    @Param({"5000"})
+    public int drivers;
+
+    @Param({"8"})
+    public int ridesPerDriver;
+
+    @Param({"0", "60"})
+    public int fleetCacheSeconds;
+
+    private EnhancedMedicalTransportOptimizer optimizer;
+    private Ride emergency;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Random rnd = new Random(42);
+        List<Driver> fleet = new ArrayList<>(drivers);
+        Map<Long, Driver> driversById = new HashMap<>();
+        Map<Long, List<Ride>> ridesByDriver = new HashMap<>();
+        long rideId = EMERGENCY_RIDE_ID + 1;
+        for (int i = 0; i < drivers; i++) {
+            Driver d = new Driver();
+            d.setId((long) i + 1);
+            d.setName("Driver " + d.getId());
+            // Colorado Front Range, roughly 250 km x 250 km
+            d.setBaseLat(38.0 + rnd.nextDouble() * 2.3);
+            d.setBaseLng(-106.0 + rnd.nextDouble() * 2.9);
+            d.setActive(true);
+            d.setIsTrainingComplete(true);
+            d.setMaxDailyRides(ridesPerDriver + 2);
+            fleet.add(d);
+            driversById.put(d.getId(), d);
+            List<Ride> route = new ArrayList<>(ridesPerDriver);
+            for (int k = 0; k < ridesPerDriver; k++) {
+                Ride ride = ride(rideId++, DAY.plusHours(7 + k), d.getBaseLat() + rnd.nextGaussian() * 0.02,
+                        d.getBaseLng() + rnd.nextGaussian() * 0.02);
+                ride.setStatus(RideStatus.ASSIGNED);
+                ride.setPickupDriver(d);
+                ride.setDropoffDriver(d);
+                ride.setDriver(d);
+                route.add(ride);
+            }
+            ridesByDriver.put(d.getId(), route);
+        }
+        emergency = ride(EMERGENCY_RIDE_ID, DAY.plusHours(12).plusMinutes(30), 39.75, -104.85);
+        emergency.setPriority(Priority.EMERGENCY);
+
+        RideRepository rideRepository = mock(RideRepository.class);
+        when(rideRepository.findByIdInWithPatient(any())).thenReturn(List.of(emergency));
+        when(rideRepository.findByPickupDriverIdInAndPickupTimeBetweenWithPatient(any(), any(), any()))
+                .thenAnswer(call -> ((Collection<Long>) call.getArgument(0)).stream()
+                        .flatMap(id -> ridesByDriver.getOrDefault(id, List.of()).stream())
+                        .toList());
+        DriverRepository driverRepository = mock(DriverRepository.class);
+        when(driverRepository.findByOrgIdAndActiveTrueAndIsTrainingCompleteTrue(any())).thenReturn(fleet);
+        when(driverRepository.findAllById(any()))
+                .thenAnswer(call -> {
+                    List<Driver> found = new ArrayList<>();
+                    ((Iterable<Long>) call.getArgument(0)).forEach(id -> found.add(driversById.get(id)));
+                    return found;
+                });
+
+        AppProps props = new AppProps();
+        props.getOptimizer().setEmergencyFleetCacheSeconds(fleetCacheSeconds);
+        RoadEstimator roadEstimator = new RoadEstimator(props);
+        optimizer = new EnhancedMedicalTransportOptimizer(rideRepository, driverRepository,
+                mock(OsrmDistanceService.class), roadEstimator, mock(AssignmentAuditRepository.class), props,
+                null, new RouteBuilder(props), mock(ScheduleRepository.class), new RouteImprover(props),
+                new ImprovementStatusService(), new OsrmMatrixCache(new ConcurrentMapCacheManager(), props, roadEstimator),
+                null);
+    }
+
+    @Benchmark
+    public EmergencyInsertionResult insertEmergencyRide() {
+        emergency.setStatus(RideStatus.SCHEDULED);
+        emergency.setPickupDriver(null);
+        emergency.setDropoffDriver(null);
+        emergency.setDriver(null);
+        return optimizer.insertEmergencyRide(EMERGENCY_RIDE_ID);
+    }
+
+    private static Ride ride(Long id, LocalDateTime pickupTime, double lat, double lng) {
+        Ride ride = new Ride();
+        ride.setId(id);
+        ride.setPickupTime(pickupTime);
+        ride.setPickupLocation(new Location("pickup " + id, lat, lng));
+        ride.setDropoffLocation(new Location("dropoff " + id, lat + 0.01, lng));
+        ride.setPriority(Priority.ROUTINE);
+        ride.setStatus(RideStatus.SCHEDULED);
+        Patient patient = new Patient();
+        patient.setId(id);
+        ride.setPatient(patient);
+        return ride;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EmergencyInsertionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
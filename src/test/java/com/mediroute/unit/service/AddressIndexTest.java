@@ -0,0 +1,47 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.service.distance.offline.AddressIndex;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class AddressIndexTest {
+
+    private final AddressIndex index = AddressIndex.builder()
+            .add("1500 Larimer Street, Denver, CO 80202", 39.7490, -104.9990)
+            .add("1550 Larimer Street, Denver, CO 80202", 39.7495, -104.9985)
+            .add("1500 Lawrence Street, Denver, CO 80202", 39.7480, -104.9970)
+            .add("1635 Aurora Court, Aurora, CO 80045", 39.7450, -104.8370)
+            .add("777 Bannock St, Denver, CO 80204", 39.7280, -104.9910)
+            .build();
+
+    @Test
+    void matchesAbbreviationsPunctuationAndCase() {
+        AddressIndex.Match match = index.lookup("1500 LARIMER ST. denver colorado 80202 USA", 0.8);
+
+        assertThat(match).isNotNull();
+        assertThat(match.lat()).isCloseTo(39.7490, within(1e-4));
+        assertThat(match.score()).isCloseTo(1.0, within(1e-6));
+    }
+
+    @Test
+    void toleratesTyposInStreetNames() {
+        AddressIndex.Match match = index.lookup("1635 Arora Ct, Aurora CO 80045", 0.8);
+
+        assertThat(match).isNotNull();
+        assertThat(match.lng()).isCloseTo(-104.8370, within(1e-4));
+    }
+
+    @Test
+    void houseNumbersMustMatchExactly() {
+        assertThat(index.lookup("1550 Lawrence St Denver CO 80202", 0.8)).isNull();
+        assertThat(index.lookup("1550 Larimer St Denver CO 80202", 0.8).lat()).isCloseTo(39.7495, within(1e-4));
+    }
+
+    @Test
+    void unrelatedAddressesDoNotMatch() {
+        assertThat(index.lookup("42 Wallaby Way, Sydney", 0.8)).isNull();
+        assertThat(index.lookup("", 0.8)).isNull();
+    }
+}
@@ -0,0 +1,81 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.service.parser.CsvTokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CsvTokenizerTest {
+
+    private static final String CSV = "a, b ,\"c,d\"\r\n"
+            + "\"he said \"\"hi\"\"\",X, \"two\nlines\"\n"
+            + "\n"
+            + "last,YES";
+
+    @Test
+    void handlesQuotingLineBreaksAndLineNumbers() throws IOException {
+        List<String> records = read(new StringReader(CSV));
+
+        assertThat(records).containsExactly(
+                "1:[a, b, c,d]",
+                "2:[he said \"hi\", X, two\nlines]",
+                "4:[]",
+                "5:[last, YES]");
+    }
+
+    @Test
+    void recordsSurviveBufferRefillsAtAnyPoint() throws IOException {
+        List<String> expected = read(new StringReader(CSV));
+        for (int step = 1; step <= 7; step++) {
+            assertThat(read(trickle(CSV, step))).as("read %d chars at a time", step).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void copiedRecordsAreAddressedByRecordAndColumn() throws IOException {
+        CsvTokenizer csv = new CsvTokenizer(new StringReader(CSV));
+        CsvTokenizer.Records records = new CsvTokenizer.Records(1);
+        while (csv.next()) csv.appendTo(records);
+
+        assertThat(records.size()).isEqualTo(4);
+        assertThat(records.line(1)).isEqualTo(2);
+        assertThat(records.string(0, 2)).isEqualTo("c,d");
+        assertThat(records.string(1, 0)).isEqualTo("he said \"hi\"");
+        assertThat(records.slice(3, 0).toString()).isEqualTo("last");
+        assertThat(records.isBlank(0, 7)).isTrue();
+        assertThat(records.isBlank(0, -1)).isTrue();
+        assertThat(records.equalsAnyIgnoreCase(3, 1, "no", "yes")).isTrue();
+        assertThat(records.equalsAnyIgnoreCase(1, 1, "y")).isFalse();
+    }
+
+    private static List<String> read(Reader in) throws IOException {
+        CsvTokenizer csv = new CsvTokenizer(in);
+        List<String> records = new ArrayList<>();
+        while (csv.next()) {
+            List<String> fields = new ArrayList<>();
+            for (int i = 0; i < csv.fieldCount(); i++) fields.add(csv.field(i));
+            records.add(csv.line() + ":" + fields);
+        }
+        return records;
+    }
+
+    private static Reader trickle(String text, int step) {
+        StringReader source = new StringReader(text);
+        return new Reader() {
+            @Override
+            public int read(char[] buf, int off, int len) throws IOException {
+                return source.read(buf, off, Math.min(len, step));
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,126 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.entity.Driver;
+import com.mediroute.service.ride.routing.DriverSpatialIndex;
+import com.mediroute.service.ride.routing.OptimizationSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DriverSpatialIndexTest {
+
+    private static final Random RNG = new Random(7);
+
+    @Test
+    void radiusQueryMatchesFullScan() {
+        List<Driver> drivers = randomDrivers(500);
+        DriverSpatialIndex index = DriverSpatialIndex.build(snapshotOf(drivers), 5.0);
+        int[] out = new int[drivers.size()];
+
+        for (int i = 0; i < 200; i++) {
+            double lat = 39.5 + RNG.nextDouble() * 0.8;
+            double lng = -105.2 + RNG.nextDouble() * 0.8;
+            Set<Integer> expected = IntStream.range(0, drivers.size())
+                    .filter(d -> haversine(drivers.get(d), lat, lng) <= 15.0)
+                    .boxed()
+                    .collect(Collectors.toSet());
+
+            int found = index.withinRadius(lat, lng, 15.0, out);
+            Set<Integer> actual = Arrays.stream(out, 0, found).boxed().collect(Collectors.toSet());
+
+            assertThat(actual).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void nearestMatchesFullScanAndHonoursFilter() {
+        List<Driver> drivers = randomDrivers(300);
+        DriverSpatialIndex index = DriverSpatialIndex.build(snapshotOf(drivers), 2.0);
+
+        for (int i = 0; i < 200; i++) {
+            // include points well outside the fleet's bounding box
+            double lat = 39.0 + RNG.nextDouble() * 2.0;
+            double lng = -106.0 + RNG.nextDouble() * 2.0;
+            int expected = IntStream.range(0, drivers.size())
+                    .filter(d -> d % 3 == 0)
+                    .boxed()
+                    .min(Comparator.comparingDouble(d -> haversine(drivers.get(d), lat, lng)))
+                    .orElseThrow();
+
+            int actual = index.nearest(lat, lng, 500.0, d -> d % 3 == 0);
+
+            assertThat(actual).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void nearestFindsNobodyBeyondMaxKm() {
+        List<Driver> drivers = randomDrivers(300);
+        DriverSpatialIndex index = DriverSpatialIndex.build(snapshotOf(drivers), 2.0);
+
+        for (int i = 0; i < 200; i++) {
+            // about half of these points have no driver within 5 km
+            double lat = 39.0 + RNG.nextDouble() * 2.0;
+            double lng = -106.0 + RNG.nextDouble() * 2.0;
+            int expected = IntStream.range(0, drivers.size())
+                    .filter(d -> d % 3 == 0 && haversine(drivers.get(d), lat, lng) <= 5.0)
+                    .boxed()
+                    .min(Comparator.comparingDouble(d -> haversine(drivers.get(d), lat, lng)))
+                    .orElse(-1);
+
+            int actual = index.nearest(lat, lng, 5.0, d -> d % 3 == 0);
+
+            assertThat(actual).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void restrictedViewOnlyReturnsSubset() {
+        List<Driver> drivers = randomDrivers(100);
+        BitSet subset = new BitSet();
+        subset.set(0, 10);
+        DriverSpatialIndex view = DriverSpatialIndex.build(snapshotOf(drivers), 5.0).restrictTo(subset);
+        int[] out = new int[drivers.size()];
+
+        assertThat(view.size()).isEqualTo(10);
+        int found = view.withinRadius(39.9, -104.8, 500.0, out);
+        assertThat(Arrays.copyOf(out, found)).containsExactlyInAnyOrder(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+        found = view.nearest(39.9, -104.8, 3, 500.0, out);
+        assertThat(Arrays.copyOf(out, found)).hasSize(3).allMatch(subset::get);
+    }
+
+    private static List<Driver> randomDrivers(int count) {
+        List<Driver> drivers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Driver d = new Driver();
+            d.setId((long) i);
+            d.setBaseLat(39.5 + RNG.nextDouble() * 0.8);
+            d.setBaseLng(-105.2 + RNG.nextDouble() * 0.8);
+            drivers.add(d);
+        }
+        return drivers;
+    }
+
+    private static OptimizationSnapshot snapshotOf(List<Driver> drivers) {
+        return OptimizationSnapshot.of(List.of(), drivers, ride -> "sedan");
+    }
+
+    private static double haversine(Driver d, double lat, double lng) {
+        double dLat = Math.toRadians(lat - d.getBaseLat());
+        double dLng = Math.toRadians(lng - d.getBaseLng());
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(d.getBaseLat())) * Math.cos(Math.toRadians(lat))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 6371.0 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
@@ -0,0 +1,64 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.config.AppProps;
+import com.mediroute.service.distance.RoadMatrix;
+import com.mediroute.service.distance.offline.EmbeddedRouter;
+import com.mediroute.service.distance.offline.RoadGraph;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class EmbeddedRouterTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * A -> B -> C along a street (1 km legs, 100 s each), plus a one-way shortcut C -> A that is
+     * long in meters but fast.
+     */
+    private EmbeddedRouter router() throws Exception {
+        Path file = dir.resolve("road-graph.bin");
+        RoadGraph.write(file,
+                new float[]{39.7000f, 39.7090f, 39.7180f},
+                new float[]{-104.9900f, -104.9900f, -104.9900f},
+                new int[]{0, 1, 3, 5},
+                new int[]{1, 0, 2, 1, 0},
+                new float[]{1000, 1000, 1000, 1000, 2500},
+                new float[]{100, 100, 100, 100, 60});
+        EmbeddedRouter router = new EmbeddedRouter(new AppProps());
+        router.use(RoadGraph.load(file));
+        return router;
+    }
+
+    @Test
+    void fillsUnknownCellsWithFastestPathAndKeepsKnownOnes() throws Exception {
+        EmbeddedRouter router = router();
+        List<String> points = List.of("-104.99000,39.70000", "-104.99000,39.70900", "-104.99000,39.71800");
+        RoadMatrix matrix = new RoadMatrix(3, 3);
+        matrix.setMeters(0, 1, 1234);
+        matrix.setSeconds(0, 1, 99);
+
+        int filled = router.fill(matrix, points, points);
+
+        assertThat(filled).isEqualTo(8);
+        assertThat(matrix.meters(0, 1)).isEqualTo(1234);
+        assertThat(matrix.meters(0, 2)).isCloseTo(2000f, within(1f));
+        assertThat(matrix.seconds(0, 2)).isCloseTo(200f, within(1f));
+        // The fast one-way shortcut wins on time even though it is longer
+        assertThat(matrix.meters(2, 0)).isCloseTo(2500f, within(1f));
+        assertThat(matrix.seconds(2, 0)).isCloseTo(60f, within(1f));
+        assertThat(matrix.meters(1, 1)).isCloseTo(0f, within(1f));
+    }
+
+    @Test
+    void pointsFarFromTheGraphStayUnknown() throws Exception {
+        assertThat(router().distanceMeters("-104.99000,39.70000", "-100.00000,35.00000")).isNaN();
+        assertThat(new EmbeddedRouter(new AppProps()).distanceMeters("-104.99,39.70", "-104.99,39.709")).isNaN();
+    }
+}
@@ -0,0 +1,294 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.config.AppProps;
+import com.mediroute.dto.Priority;
+import com.mediroute.dto.RideStatus;
+import com.mediroute.dto.ScheduleDelta;
+import com.mediroute.dto.VehicleTypeEnum;
+import com.mediroute.entity.Driver;
+import com.mediroute.entity.Patient;
+import com.mediroute.entity.Ride;
+import com.mediroute.repository.AssignmentAuditRepository;
+import com.mediroute.repository.DriverRepository;
+import com.mediroute.repository.RideRepository;
+import com.mediroute.repository.ScheduleRepository;
+import com.mediroute.service.distance.OsrmDistanceService;
+import com.mediroute.service.distance.OsrmMatrixCache;
+import com.mediroute.service.distance.RoadEstimator;
+import com.mediroute.service.ride.EnhancedMedicalTransportOptimizer;
+import com.mediroute.service.ride.EnhancedMedicalTransportOptimizer.OptimizationResult;
+import com.mediroute.service.ride.ImprovementStatusService;
+import com.mediroute.service.ride.routing.RouteBuilder;
+import com.mediroute.service.ride.routing.RouteImprover;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static com.mediroute.unit.service.RoutingFixtures.DAY;
+import static com.mediroute.unit.service.RoutingFixtures.driver;
+import static com.mediroute.unit.service.RoutingFixtures.ride;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EnhancedMedicalTransportOptimizerTest {
+
+    private static final int DAILY_CAP = 4;
+
+    @Test
+    void parallelPartitionsAssignTheSameWayOnEveryRun() {
+        // Sedan rides can go to any vehicle, so the sedan partitions overlap the wheelchair ones
+        Map<Long, Long> first = driverOfEachRide(true);
+        for (int run = 0; run < 3; run++) {
+            assertThat(driverOfEachRide(true)).isEqualTo(first);
+        }
+    }
+
+    @Test
+    void sequentialPartitionsAssignTheSameWayOnEveryRun() {
+        Map<Long, Long> first = driverOfEachRide(false);
+
+        assertThat(driverOfEachRide(false)).isEqualTo(first);
+    }
+
+    @Test
+    void noDriverGoesOverTheDailyCapInEitherMode() {
+        for (boolean parallel : new boolean[]{false, true}) {
+            Map<Long, Integer> load = new TreeMap<>();
+            driverOfEachRide(parallel).values().forEach(driver -> load.merge(driver, 1, Integer::sum));
+
+            assertThat(Collections.max(load.values())).isLessThanOrEqualTo(DAILY_CAP);
+            // 12 drivers at the cap take 48 of the 60 rides
+            assertThat(load.values().stream().mapToInt(Integer::intValue).sum()).isEqualTo(12 * DAILY_CAP);
+        }
+    }
+
+    // ========== INCREMENTAL REPAIR ==========
+
+    @Test
+    void repairTakesCancelledRidesOffTheirRoutes() {
+        Repair repair = new Repair();
+
+        OptimizationResult result = repair.optimizer.repairSchedule(ScheduleDelta.builder()
+                .cancelledRideIds(List.of(10L)).build());
+
+        Ride cancelled = repair.find(10L);
+        assertThat(cancelled.getStatus()).isEqualTo(RideStatus.CANCELLED);
+        assertThat(cancelled.getPickupDriver()).isNull();
+        assertThat(cancelled.getDropoffDriver()).isNull();
+        assertThat(result.getAssignedRideCount()).isZero();
+        assertThat(repair.driverOfEachRide()).isEqualTo(Map.of(11L, 1L, 12L, 2L, 13L, 3L, 20L, 4L));
+    }
+
+    @Test
+    void repairMovesTheRidesOfADeactivatedDriverToOtherRoutes() {
+        Repair repair = new Repair();
+
+        OptimizationResult result = repair.optimizer.repairSchedule(ScheduleDelta.builder()
+                .date(DAY.toLocalDate()).deactivatedDriverIds(List.of(1L)).build());
+
+        assertThat(result.getAssignedRideCount()).isEqualTo(2);
+        assertThat(repair.find(10L).getPickupDriver().getId()).isIn(2L, 3L);
+        assertThat(repair.find(11L).getPickupDriver().getId()).isIn(2L, 3L);
+        assertThat(repair.find(12L).getPickupDriver().getId()).isEqualTo(2L);
+        assertThat(repair.find(13L).getPickupDriver().getId()).isEqualTo(3L);
+    }
+
+    @Test
+    void repairLeavesAssignmentsOutsideTheChangeAlone() {
+        Repair repair = new Repair();
+        Ride added = repair.add(ride(14L, 11, 39.712, -104.90), null);
+        Map<Long, Long> before = repair.driverOfEachRide();
+
+        OptimizationResult result = repair.optimizer.repairSchedule(ScheduleDelta.builder()
+                .addedRideIds(List.of(14L)).build());
+
+        assertThat(result.getDriverAssignments().values().stream().flatMap(List::stream).toList()).containsExactly(14L);
+        assertThat(added.getStatus()).isEqualTo(RideStatus.ASSIGNED);
+        Map<Long, Long> after = repair.driverOfEachRide();
+        after.remove(14L);
+        assertThat(after).isEqualTo(before);
+        for (Long rideId : before.keySet()) {
+            assertThat(repair.find(rideId).getStatus()).isEqualTo(RideStatus.ASSIGNED);
+        }
+    }
+
+    @Test
+    void repairOnlyChangesTheCallersOrganization() {
+        Repair repair = new Repair();
+
+        repair.optimizer.repairSchedule(ScheduleDelta.builder().cancelledRideIds(List.of(10L, 20L)).build());
+
+        assertThat(repair.find(10L).getStatus()).isEqualTo(RideStatus.CANCELLED);
+        assertThat(repair.find(20L).getStatus()).isEqualTo(RideStatus.ASSIGNED);
+        assertThat(repair.find(20L).getPickupDriver().getId()).isEqualTo(4L);
+        assertThatThrownBy(() -> repair.optimizer.repairSchedule(ScheduleDelta.builder()
+                .date(DAY.toLocalDate()).deactivatedDriverIds(List.of(4L)).build()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Driver not found: 4");
+        assertThat(repair.find(20L).getPickupDriver().getId()).isEqualTo(4L);
+    }
+
+    @AfterEach
+    void signOut() {
+        SecurityContextHolder.clearContext();
+    }
+
+    /**
+     * A repaired day of organization 1: drivers 1-3 a kilometre apart, with rides 10 and 11 on driver 1,
+     * 12 on driver 2 and 13 on driver 3. Ride 20 sits on driver 4 of organization 2. Repositories answer
+     * from these lists, and the caller is signed in to organization 1.
+     */
+    private static final class Repair {
+        final List<Driver> drivers = new ArrayList<>();
+        final List<Ride> rides = new ArrayList<>();
+        final EnhancedMedicalTransportOptimizer optimizer;
+
+        Repair() {
+            for (long id = 1; id <= 4; id++) {
+                Driver driver = driver(id, 39.70 + (id - 1) * 0.01, -104.90);
+                driver.setName("Driver " + id);
+                driver.setOrgId(id == 4 ? 2L : 1L);
+                drivers.add(driver);
+            }
+            add(ride(10L, 9, 39.701, -104.90), drivers.get(0));
+            add(ride(11L, 13, 39.702, -104.90), drivers.get(0));
+            add(ride(12L, 10, 39.711, -104.90), drivers.get(1));
+            add(ride(13L, 15, 39.721, -104.90), drivers.get(2));
+            add(ride(20L, 9, 39.731, -104.90), drivers.get(3)).setOrgId(2L);
+
+            RideRepository rideRepository = mock(RideRepository.class);
+            when(rideRepository.findByIdInWithPatient(any())).thenAnswer(invocation -> {
+                List<Long> ids = invocation.getArgument(0);
+                return rides.stream().filter(ride -> ids.contains(ride.getId())).toList();
+            });
+            when(rideRepository.findByAnyDriverAndPickupTimeBetweenWithPatient(any(), any(), any()))
+                    .thenAnswer(invocation -> {
+                        Long driverId = invocation.getArgument(0);
+                        return rides.stream().filter(ride -> driverId.equals(idOf(ride.getPickupDriver()))
+                                || driverId.equals(idOf(ride.getDropoffDriver()))).toList();
+                    });
+            when(rideRepository.findByPickupDriverIdInAndPickupTimeBetweenWithPatient(any(), any(), any()))
+                    .thenAnswer(invocation -> {
+                        Collection<Long> driverIds = invocation.getArgument(0);
+                        return rides.stream().filter(ride -> driverIds.contains(idOf(ride.getPickupDriver()))).toList();
+                    });
+            DriverRepository driverRepository = mock(DriverRepository.class);
+            when(driverRepository.findByOrgIdAndActiveTrueAndIsTrainingCompleteTrue(any())).thenAnswer(invocation ->
+                    drivers.stream().filter(driver -> Objects.equals(driver.getOrgId(), invocation.getArgument(0))).toList());
+            when(driverRepository.findByIdAndOrgId(any(), any())).thenAnswer(invocation -> drivers.stream()
+                    .filter(driver -> driver.getId().equals(invocation.getArgument(0))
+                            && Objects.equals(driver.getOrgId(), invocation.getArgument(1)))
+                    .findFirst());
+
+            AppProps props = new AppProps();
+            RoadEstimator roadEstimator = new RoadEstimator(props);
+            optimizer = new EnhancedMedicalTransportOptimizer(rideRepository, driverRepository,
+                    mock(OsrmDistanceService.class), roadEstimator, mock(AssignmentAuditRepository.class), props,
+                    null, new RouteBuilder(props), mock(ScheduleRepository.class), new RouteImprover(props),
+                    new ImprovementStatusService(),
+                    new OsrmMatrixCache(new ConcurrentMapCacheManager(), props, roadEstimator), null);
+            signInTo(1L);
+        }
+
+        Ride add(Ride ride, Driver driver) {
+            ride.setOrgId(1L);
+            ride.setStatus(driver != null ? RideStatus.ASSIGNED : RideStatus.SCHEDULED);
+            ride.setPickupDriver(driver);
+            ride.setDropoffDriver(driver);
+            rides.add(ride);
+            return ride;
+        }
+
+        Ride find(Long id) {
+            return rides.stream().filter(ride -> ride.getId().equals(id)).findFirst().orElseThrow();
+        }
+
+        Map<Long, Long> driverOfEachRide() {
+            Map<Long, Long> driverOf = new TreeMap<>();
+            rides.stream().filter(ride -> ride.getPickupDriver() != null)
+                    .forEach(ride -> driverOf.put(ride.getId(), ride.getPickupDriver().getId()));
+            return driverOf;
+        }
+
+        private static Long idOf(Driver driver) {
+            return driver != null ? driver.getId() : null;
+        }
+    }
+
+    private static void signInTo(Long orgId) {
+        UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken("dispatcher", null,
+                List.of());
+        auth.setDetails(Map.of("orgId", orgId));
+        SecurityContextHolder.getContext().setAuthentication(auth);
+    }
+
+    /** Optimize a fresh copy of the fixture and return each assigned ride's pickup driver. */
+    private static Map<Long, Long> driverOfEachRide(boolean parallel) {
+        List<Driver> drivers = drivers();
+        List<Ride> rides = rides();
+        RideRepository rideRepository = mock(RideRepository.class);
+        when(rideRepository.findByIdInWithPatient(any())).thenReturn(rides);
+        DriverRepository driverRepository = mock(DriverRepository.class);
+        when(driverRepository.findByOrgIdAndActiveTrueAndIsTrainingCompleteTrue(any())).thenReturn(drivers);
+
+        AppProps props = new AppProps();
+        props.getOptimizer().setParallelPartitions(parallel);
+        EnhancedMedicalTransportOptimizer optimizer = new EnhancedMedicalTransportOptimizer(rideRepository,
+                driverRepository, mock(OsrmDistanceService.class), new RoadEstimator(props),
+                mock(AssignmentAuditRepository.class), props, null, new RouteBuilder(props),
+                mock(ScheduleRepository.class), new RouteImprover(props), new ImprovementStatusService(), null, null);
+
+        OptimizationResult result = optimizer.optimizeSchedule(rides);
+
+        Map<Long, Long> driverOf = new TreeMap<>();
+        result.getDriverAssignments().forEach((driver, rideIds) -> rideIds.forEach(ride -> driverOf.put(ride, driver)));
+        return driverOf;
+    }
+
+    private static List<Driver> drivers() {
+        List<Driver> drivers = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Driver driver = driver(i + 1L, 39.60 + i * 0.02, -104.90 + i * 0.01);
+            driver.setName("Driver " + (i + 1));
+            driver.setMaxDailyRides(DAILY_CAP);
+            if (i % 3 == 0) {
+                driver.setVehicleType(VehicleTypeEnum.WHEELCHAIR_VAN);
+                driver.setWheelchairAccessible(true);
+            }
+            drivers.add(driver);
+        }
+        return drivers;
+    }
+
+    private static List<Ride> rides() {
+        Random random = new Random(7);
+        List<Ride> rides = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            Ride ride = ride(100L + i, DAY.withHour(7 + random.nextInt(10)).withMinute(random.nextInt(4) * 15),
+                    39.60 + random.nextDouble() * 0.25, -104.90 + random.nextDouble() * 0.12);
+            ride.setPriority(Priority.ROUTINE);
+            ride.setStatus(RideStatus.SCHEDULED);
+            ride.setIsRoundTrip(i % 5 == 0);
+            Patient patient = new Patient();
+            patient.setId((long) i);
+            patient.setRequiresWheelchair(i % 4 == 0);
+            ride.setPatient(patient);
+            rides.add(ride);
+        }
+        return rides;
+    }
+}
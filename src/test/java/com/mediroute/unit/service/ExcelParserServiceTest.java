@@ -0,0 +1,103 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.dto.BulkRideUploadResultDto;
+import com.mediroute.dto.ParseResult;
+import com.mediroute.entity.Patient;
+import com.mediroute.entity.Ride;
+import com.mediroute.repository.PatientRepository;
+import com.mediroute.repository.RideRepository;
+import com.mediroute.service.distance.GeocodingService;
+import com.mediroute.service.distance.OsrmDistanceService;
+import com.mediroute.service.parser.ExcelParserService;
+import com.mediroute.service.ride.EnhancedMedicalTransportOptimizer;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ExcelParserServiceTest {
+
+    private final PatientRepository patientRepository = mock(PatientRepository.class);
+    private final RideRepository rideRepository = mock(RideRepository.class);
+    private final ExcelParserService parser = new ExcelParserService(patientRepository, rideRepository,
+            mock(GeocodingService.class), mock(OsrmDistanceService.class), mock(EnhancedMedicalTransportOptimizer.class));
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void uploadResolvesPatientsInOneQueryAndSavesInBulk() throws Exception {
+        Patient known = Patient.builder().id(7L).name("Ann Known").phone("555-0001").isActive(true).build();
+        when(patientRepository.findByPhoneIn(any())).thenReturn(List.of(known));
+
+        String csv = """
+                NAME,PHONE,PICK UP,DROP OFF,TIME
+                Ann Known,555-0001,1 Main St,Clinic 1,9:00
+                Bob New,555-0002,2 Main St,Clinic 2,9:30
+                Bob New,555-0002,Clinic 2,2 Main St,13:00
+                Cy Broken,555-0003,3 Main St,Clinic 3,
+                """;
+        ParseResult result = parser.parseExcelWithMedicalFeatures(
+                new MockMultipartFile("file", "rides.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8)),
+                LocalDate.of(2025, 3, 4), false);
+
+        assertThat(result.getSuccessfulRows()).isEqualTo(3);
+        assertThat(result.getSkippedRows()).isEqualTo(1);
+
+        ArgumentCaptor<Collection<String>> phones = ArgumentCaptor.forClass(Collection.class);
+        verify(patientRepository, times(1)).findByPhoneIn(phones.capture());
+        assertThat(phones.getValue()).containsExactlyInAnyOrder("555-0001", "555-0002");
+        assertThat(result.getRowErrors()).extracting(BulkRideUploadResultDto.ProcessingError::getLineNumber)
+                .containsExactly(5);
+
+        // Bob's two rides share one new patient; Cy's row is rejected before a patient is needed
+        ArgumentCaptor<Iterable<Patient>> newPatients = ArgumentCaptor.forClass(Iterable.class);
+        verify(patientRepository).saveAll(newPatients.capture());
+        assertThat(newPatients.getValue()).extracting(Patient::getName).containsExactly("Bob New");
+
+        ArgumentCaptor<Iterable<Ride>> rides = ArgumentCaptor.forClass(Iterable.class);
+        verify(rideRepository).saveAll(rides.capture());
+        assertThat(rides.getValue()).hasSize(3);
+        assertThat(rides.getValue()).first().extracting(Ride::getPatient).isSameAs(known);
+
+        verify(patientRepository, never()).findByPhone(anyString());
+        verify(patientRepository, never()).save(any());
+        verify(rideRepository, never()).save(any());
+    }
+
+    @Test
+    void rowErrorsAreReportedInFileOrderAcrossParseChunks() throws Exception {
+        when(patientRepository.findByPhoneIn(any())).thenReturn(List.of());
+
+        StringBuilder csv = new StringBuilder("NAME,PHONE,PICK UP,DROP OFF,TIME\n");
+        for (int line = 2; line <= 2_400; line++) {
+            String time = switch (line % 700) {
+                case 0 -> "";
+                case 1 -> "not a time";
+                default -> "9:00";
+            };
+            csv.append("P").append(line).append(",555-").append(line).append(",1 Main St,Clinic,").append(time).append('\n');
+        }
+        ParseResult result = parser.parseExcelWithMedicalFeatures(
+                new MockMultipartFile("file", "rides.csv", "text/csv", csv.toString().getBytes(StandardCharsets.UTF_8)),
+                LocalDate.of(2025, 3, 4), false);
+
+        assertThat(result.getTotalRows()).isEqualTo(2_400);
+        assertThat(result.getRowErrors()).extracting(BulkRideUploadResultDto.ProcessingError::getLineNumber)
+                .containsExactly(700, 701, 1400, 1401, 2100, 2101);
+        assertThat(result.getRowErrors().get(0).getMessage()).isEqualTo("Missing required TIME");
+        assertThat(result.getRowErrors().get(1).getMessage()).startsWith("Invalid time format");
+        assertThat(result.getSuccessfulRows()).isEqualTo(2_399 - 6);
+    }
+}
@@ -0,0 +1,64 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.config.AppProps;
+import com.mediroute.entity.GeocodedAddress;
+import com.mediroute.repository.GeocodedAddressRepository;
+import com.mediroute.service.distance.GeocodeStore;
+import com.mediroute.service.distance.GeocodingService;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GeocodeStoreTest {
+
+    @Test
+    void servesSeededRowsAndLiveNegativesButNotExpiredOnes() {
+        GeocodedAddressRepository repository = mock(GeocodedAddressRepository.class);
+        when(repository.findAllById(any())).thenReturn(List.of(
+                row("clinic 1", 39.74, -104.99, null),
+                row("nowhere", null, null, LocalDateTime.now().plusMinutes(30)),
+                row("old typo", null, null, LocalDateTime.now().minusMinutes(1))));
+        GeocodeStore store = new GeocodeStore(repository, new AppProps());
+
+        Map<String, GeocodeStore.Known> known = store.findAll(List.of("clinic 1", "nowhere", "old typo", "new"));
+
+        assertThat(known.get("clinic 1").point()).isEqualTo(new GeocodingService.GeoPoint(39.74, -104.99));
+        assertThat(known.get("nowhere").point()).isNull();
+        assertThat(known).doesNotContainKeys("old typo", "new");
+    }
+
+    @Test
+    void rememberedAddressesAreServedFromMemory() {
+        GeocodedAddressRepository repository = mock(GeocodedAddressRepository.class);
+        GeocodeStore store = new GeocodeStore(repository, new AppProps());
+
+        store.remember("clinic 2", "Clinic 2", new GeocodingService.GeoPoint(39.7, -105.0), GeocodedAddress.Source.GOOGLE);
+        store.rememberFailure("bad", "bad");
+
+        assertThat(store.find("clinic 2").point().lat()).isEqualTo(39.7);
+        assertThat(store.find("bad").point()).isNull();
+        verify(repository, never()).findAllById(any());
+        verify(repository, times(2)).save(any());
+    }
+
+    private static GeocodedAddress row(String key, Double lat, Double lng, LocalDateTime retryAfter) {
+        GeocodedAddress row = new GeocodedAddress();
+        row.setAddressKey(key);
+        row.setAddress(key);
+        row.setLatitude(lat);
+        row.setLongitude(lng);
+        row.setSource(GeocodedAddress.Source.RIDE);
+        row.setRetryAfter(retryAfter);
+        return row;
+    }
+}
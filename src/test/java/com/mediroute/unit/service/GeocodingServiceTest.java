@@ -0,0 +1,104 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.config.AppProps;
+import com.mediroute.repository.GeocodedAddressRepository;
+import com.mediroute.service.distance.GeocodeStore;
+import com.mediroute.service.distance.GeocodingService;
+import com.mediroute.service.distance.offline.LocalGeocoder;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class GeocodingServiceTest {
+
+    /** Answers every lookup with a point derived from the clinic number; "nowhere" has no result. */
+    private static final class FakeGoogle extends RestTemplate {
+        final AtomicInteger calls = new AtomicInteger();
+        final Map<String, AtomicInteger> perAddress = new ConcurrentHashMap<>();
+        final long latencyMillis;
+
+        FakeGoogle(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getForObject(String url, Class<T> responseType, Object... uriVariables) {
+            calls.incrementAndGet();
+            String address = URLDecoder.decode(url.replaceAll(".*address=([^&]*).*", "$1"), StandardCharsets.UTF_8);
+            perAddress.computeIfAbsent(address.trim().toLowerCase(), k -> new AtomicInteger()).incrementAndGet();
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (address.contains("nowhere")) return (T) Map.of("results", List.of());
+            double n = Double.parseDouble(address.replaceAll("\\D+", ""));
+            return (T) Map.of("results", List.of(Map.of("geometry",
+                    Map.of("location", Map.of("lat", 39.0 + n / 100, "lng", -105.0)))));
+        }
+    }
+
+    private static GeocodingService service(FakeGoogle google) {
+        AppProps appProps = new AppProps();
+        GeocodedAddressRepository repository = mock(GeocodedAddressRepository.class);
+        return new GeocodingService(google, new GeocodeStore(repository, appProps),
+                new LocalGeocoder(appProps, repository), appProps, RateLimiterRegistry.ofDefaults());
+    }
+
+    @Test
+    void batchCollapsesDuplicateAddressesAndServesRepeatsLocally() {
+        FakeGoogle google = new FakeGoogle(20);
+        GeocodingService geocoding = service(google);
+        List<String> upload = new ArrayList<>();
+        for (int row = 0; row < 200; row++) {
+            int clinic = row % 10;
+            upload.add((row / 10) % 2 == 0 ? "Clinic " + clinic : "  CLINIC " + clinic + " ");
+        }
+        upload.add("nowhere");
+
+        Map<String, GeocodingService.GeoPoint> points = geocoding.geocodeAll(upload);
+
+        assertThat(google.calls).hasValue(11);
+        assertThat(points.get("Clinic 3").lat()).isEqualTo(39.03);
+        assertThat(points.get("  CLINIC 3 ")).isEqualTo(points.get("Clinic 3"));
+        assertThat(points).doesNotContainKey("nowhere");
+
+        // Known points and the known failure are both answered without Google
+        geocoding.geocodeAll(List.of("clinic 3", "Clinic 7", "Nowhere "));
+        assertThat(geocoding.geocode("NOWHERE")).isNull();
+        assertThat(google.calls).hasValue(11);
+    }
+
+    @Test
+    void concurrentLookupsOfOneAddressShareARequest() throws Exception {
+        FakeGoogle google = new FakeGoogle(500);
+        GeocodingService geocoding = service(google);
+
+        List<CompletableFuture<GeocodingService.GeoPoint>> callers = new ArrayList<>();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 8; i++) {
+                callers.add(CompletableFuture.supplyAsync(() -> geocoding.geocode(" clinic 5"), threads));
+            }
+            CompletableFuture.allOf(callers.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(google.perAddress.get("clinic 5")).hasValue(1);
+        assertThat(callers).allSatisfy(caller -> assertThat(caller.join().lat()).isEqualTo(39.05));
+    }
+}
@@ -0,0 +1,192 @@
+package com.mediroute.unit.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mediroute.config.AppProps;
+import com.mediroute.service.distance.GeocodingService;
+import com.mediroute.service.distance.OsrmDistanceService;
+import com.mediroute.service.distance.OsrmMatrixCache;
+import com.mediroute.service.distance.RoadEstimator;
+import com.mediroute.service.distance.RoadMatrix;
+import com.mediroute.service.distance.offline.EmbeddedRouter;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class OsrmDistanceServiceTest {
+
+    @Test
+    void blocksOfALargeTableLandAtTheirOffsets() {
+        StubOsrm osrm = new StubOsrm((source, destination) -> false);
+        // 250 x 150 splits into 3 x 2 blocks of at most 100 x 100
+        List<String> origins = points(0, 250);
+        List<String> destinations = points(300, 150);
+
+        RoadMatrix matrix = service(osrm).getRoadMatrix(origins, destinations);
+
+        assertThat(osrm.calls.get()).isEqualTo(6);
+        for (int r = 0; r < origins.size(); r++) {
+            for (int c = 0; c < destinations.size(); c++) {
+                assertThat(matrix.meters(r, c)).isEqualTo(meters(r, 300 + c));
+                assertThat(matrix.seconds(r, c)).isEqualTo(meters(r, 300 + c) / 10);
+            }
+        }
+    }
+
+    @Test
+    void aFailedBlockFallsBackWithoutLosingTheOthers() {
+        // 2 x 2 blocks; the one from points 100-149 to points 0-99 fails
+        StubOsrm osrm = new StubOsrm((source, destination) -> source == 100 && destination == 0);
+        List<String> locations = points(0, 150);
+
+        double[][] distances = service(osrm).getDistanceMatrix(locations);
+
+        assertThat(osrm.calls.get()).isEqualTo(4);
+        for (int r = 0; r < locations.size(); r++) {
+            for (int c = 0; c < locations.size(); c++) {
+                double expected = r >= 100 && c < 100 ? 10_000.0 : meters(r, c);
+                assertThat(distances[r][c]).isEqualTo(expected);
+            }
+        }
+    }
+
+    private static OsrmDistanceService service(RestTemplate osrm) {
+        AppProps props = new AppProps();
+        RoadEstimator roadEstimator = new RoadEstimator(props);
+        BulkheadRegistry bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(3)
+                .maxWaitDuration(Duration.ofSeconds(2))
+                .build());
+        return new OsrmDistanceService(osrm, new ObjectMapper(), mock(GeocodingService.class),
+                new OsrmMatrixCache(new ConcurrentMapCacheManager(), props, roadEstimator), bulkheads,
+                CircuitBreakerRegistry.ofDefaults(), new EmbeddedRouter(props), roadEstimator);
+    }
+
+    /** {@code count} points from point {@code first} on; point k sits at lng -105 + k/1000. */
+    private static List<String> points(int first, int count) {
+        List<String> points = new ArrayList<>(count);
+        for (int k = first; k < first + count; k++) {
+            points.add(String.format(Locale.ROOT, "%.3f,%.3f", -105 + k / 1000.0, 39 + k / 1000.0));
+        }
+        return points;
+    }
+
+    private static float meters(int from, int to) {
+        return from == to ? 0f : 1000f * from + to;
+    }
+
+    /**
+     * OSRM table endpoint answering {@link #meters} for every requested cell, and failing the blocks
+     * whose first source and destination {@code fail}.
+     */
+    private static final class StubOsrm extends RestTemplate {
+        final AtomicInteger calls = new AtomicInteger();
+        private final BiPredicate<Integer, Integer> fail;
+
+        StubOsrm(BiPredicate<Integer, Integer> fail) {
+            this.fail = fail;
+        }
+
+        @Override
+        public <T> T execute(String url, HttpMethod method, RequestCallback requestCallback,
+                             ResponseExtractor<T> responseExtractor, Object... uriVariables) {
+            calls.incrementAndGet();
+            String[] coordinates = url.substring(url.indexOf("/driving/") + 9, url.indexOf('?')).split(";");
+            int[] points = new int[coordinates.length];
+            for (int i = 0; i < coordinates.length; i++) {
+                points[i] = (int) Math.round((Double.parseDouble(coordinates[i].split(",")[0]) + 105) * 1000);
+            }
+            int[] sources = positions(url, "sources", points);
+            int[] destinations = positions(url, "destinations", points);
+            if (fail.test(sources[0], destinations[0])) {
+                throw new ResourceAccessException("Connection reset");
+            }
+
+            StringJoiner distances = new StringJoiner(",", "[", "]");
+            StringJoiner durations = new StringJoiner(",", "[", "]");
+            for (int source : sources) {
+                StringJoiner distanceRow = new StringJoiner(",", "[", "]");
+                StringJoiner durationRow = new StringJoiner(",", "[", "]");
+                for (int destination : destinations) {
+                    distanceRow.add(String.valueOf(meters(source, destination)));
+                    durationRow.add(String.valueOf(meters(source, destination) / 10));
+                }
+                distances.add(distanceRow.toString());
+                durations.add(durationRow.toString());
+            }
+            String body = "{\"code\":\"Ok\",\"distances\":" + distances + ",\"durations\":" + durations + "}";
+            try {
+                return responseExtractor.extractData(response(body));
+            } catch (IOException e) {
+                throw new ResourceAccessException(e.getMessage(), e);
+            }
+        }
+
+        /** Points named by the {@code name} query parameter, which lists positions in the coordinates. */
+        private static int[] positions(String url, String name, int[] points) {
+            String query = url.substring(url.indexOf('?') + 1);
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith(name + "=")) {
+                    String[] indices = parameter.substring(name.length() + 1).split(";");
+                    int[] named = new int[indices.length];
+                    for (int i = 0; i < indices.length; i++) named[i] = points[Integer.parseInt(indices[i])];
+                    return named;
+                }
+            }
+            throw new IllegalArgumentException("No " + name + " in " + url);
+        }
+
+        private static ClientHttpResponse response(String body) {
+            return new ClientHttpResponse() {
+                @Override
+                public HttpStatusCode getStatusCode() {
+                    return HttpStatus.OK;
+                }
+
+                @Override
+                public String getStatusText() {
+                    return "OK";
+                }
+
+                @Override
+                public void close() {
+                }
+
+                @Override
+                public InputStream getBody() {
+                    return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+                }
+
+                @Override
+                public HttpHeaders getHeaders() {
+                    return new HttpHeaders();
+                }
+            };
+        }
+    }
+}
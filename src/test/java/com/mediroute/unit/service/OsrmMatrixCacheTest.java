@@ -0,0 +1,144 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.config.AppProps;
+import com.mediroute.service.distance.OsrmMatrixCache;
+import com.mediroute.service.distance.RoadEstimator;
+import com.mediroute.service.distance.RoadMatrix;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class OsrmMatrixCacheTest {
+
+    private static final List<String> CLINICS = List.of("-104.99030,39.73920", "-104.95000,39.70000");
+    private static final List<String> HOMES = List.of("-105.01000,39.75000", "-104.90000,39.68000");
+
+    @Test
+    void unknownCellsAreNaNAndStoredCellsAreServed() {
+        OsrmMatrixCache cache = cache(new ConcurrentMapCacheManager(OsrmMatrixCache.CACHE_NAME), new AppProps());
+
+        cache.store(CLINICS, HOMES.subList(0, 1), matrix(new float[][]{{1200}, {3400}}, new float[][]{{90}, {240}}));
+        RoadMatrix matrix = cache.lookup(CLINICS, HOMES);
+
+        assertThat(matrix.meters(0, 0)).isEqualTo(1200);
+        assertThat(matrix.seconds(1, 0)).isEqualTo(240);
+        assertThat(matrix.isKnown(0, 0)).isTrue();
+        assertThat(matrix.meters(0, 1)).isNaN();
+        assertThat(matrix.isKnown(1, 1)).isFalse();
+    }
+
+    @Test
+    void sharedTierIsReusedAcrossInstancesAndCoordinatesAreNormalized() {
+        ConcurrentMapCacheManager shared = new ConcurrentMapCacheManager(OsrmMatrixCache.CACHE_NAME);
+        cache(shared, new AppProps())
+                .store(CLINICS, HOMES, matrix(new float[][]{{1, 2}, {3, Float.NaN}}, new float[][]{{10, 20}, {30, Float.NaN}}));
+
+        OsrmMatrixCache other = cache(shared, new AppProps());
+        RoadMatrix matrix = other.lookup(List.of("-104.9903,39.7392"), List.of("-105.01,39.75", "-104.9,39.68"));
+
+        assertThat(matrix.meters(0, 0)).isEqualTo(1);
+        assertThat(matrix.seconds(0, 1)).isEqualTo(20);
+        assertThat(other.lookup(CLINICS.subList(1, 2), HOMES).isKnown(0, 1)).isFalse();
+    }
+
+    @Test
+    void aNewCellRewritesOnlyItsTile() {
+        ConcurrentMapCacheManager shared = new ConcurrentMapCacheManager(OsrmMatrixCache.CACHE_NAME);
+        OsrmMatrixCache cache = cache(shared, new AppProps());
+        List<String> homes = homes(200);
+        cache.store(CLINICS.subList(0, 1), homes, uniform(homes.size(), 1000, 60));
+        Map<Object, Object> entries = nativeCache(shared);
+        Map<Object, Object> before = new HashMap<>(entries);
+
+        cache.store(CLINICS.subList(0, 1), List.of("-104.80000,39.60000"), uniform(1, 2000, 120));
+
+        long rewritten = entries.entrySet().stream().filter(e -> before.get(e.getKey()) != e.getValue()).count();
+        assertThat(rewritten).isEqualTo(2); // the distance and duration entries of one tile
+        assertThat(cache.lookup(CLINICS.subList(0, 1), homes).isKnown(0, 199)).isTrue();
+    }
+
+    @Test
+    void rowsStopGrowingAtTheColumnCap() {
+        AppProps props = new AppProps();
+        props.getOsrm().setMatrixCacheRowColumns(64);
+        ConcurrentMapCacheManager shared = new ConcurrentMapCacheManager(OsrmMatrixCache.CACHE_NAME);
+        OsrmMatrixCache cache = cache(shared, props);
+        List<String> homes = homes(500);
+
+        cache.store(CLINICS.subList(0, 1), homes, uniform(homes.size(), 1000, 60));
+
+        RoadMatrix fresh = cache(shared, props).lookup(CLINICS.subList(0, 1), homes);
+        long known = IntStream.range(0, homes.size()).filter(j -> fresh.isKnown(0, j)).count();
+        assertThat(known).isPositive().isLessThanOrEqualTo(64);
+        assertThat(nativeCache(shared).values()).allSatisfy(tile -> assertThat(((Map<?, ?>) tile).size()).isLessThanOrEqualTo(4));
+    }
+
+    @Test
+    void cellsFirstReadFromTheSharedTierCalibrateTheEstimator() {
+        ConcurrentMapCacheManager shared = new ConcurrentMapCacheManager(OsrmMatrixCache.CACHE_NAME);
+        // 40 clinic -> home legs in Denver, all 1.5x the straight line, cached before a restart
+        List<String> clinics = new ArrayList<>();
+        RoadMatrix legs = new RoadMatrix(40, 1);
+        for (int i = 0; i < 40; i++) {
+            double km = (0.03 + i * 0.001) * 111.195;
+            clinics.add(String.format(Locale.US, "%.5f,%.5f", -104.99, 39.70 - (0.03 + i * 0.001)));
+            legs.setMeters(i, 0, (float) (km * 1500));
+            legs.setSeconds(i, 0, (float) (km * 1.5 * 100));
+        }
+        List<String> home = List.of("-104.99000,39.70000");
+        cache(shared, new AppProps()).store(clinics, home, legs);
+
+        RoadEstimator estimator = new RoadEstimator(new AppProps());
+        OsrmMatrixCache restarted = new OsrmMatrixCache(shared, new AppProps(), estimator);
+        double straightKm = 0.05 * 111.195;
+        assertThat(estimator.roadKm(39.70, -104.99, 39.75, -104.99)).isCloseTo(straightKm * 1.3, within(0.01));
+
+        restarted.lookup(clinics, home);
+
+        assertThat(estimator.roadKm(39.70, -104.99, 39.75, -104.99)).isCloseTo(straightKm * 1.5, within(0.01));
+    }
+
+    private static List<String> homes(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> String.format(Locale.US, "%.5f,%.5f", -105.0 + i * 0.001, 39.7))
+                .toList();
+    }
+
+    private static OsrmMatrixCache cache(ConcurrentMapCacheManager shared, AppProps props) {
+        return new OsrmMatrixCache(shared, props, null);
+    }
+
+    private static RoadMatrix uniform(int columns, float meters, float seconds) {
+        RoadMatrix matrix = new RoadMatrix(1, columns);
+        for (int j = 0; j < columns; j++) {
+            matrix.setMeters(0, j, meters);
+            matrix.setSeconds(0, j, seconds);
+        }
+        return matrix;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> nativeCache(ConcurrentMapCacheManager manager) {
+        return (Map<Object, Object>) manager.getCache(OsrmMatrixCache.CACHE_NAME).getNativeCache();
+    }
+
+    private static RoadMatrix matrix(float[][] meters, float[][] seconds) {
+        RoadMatrix matrix = new RoadMatrix(meters.length, meters[0].length);
+        for (int i = 0; i < meters.length; i++) {
+            for (int j = 0; j < meters[i].length; j++) {
+                matrix.setMeters(i, j, meters[i][j]);
+                matrix.setSeconds(i, j, seconds[i][j]);
+            }
+        }
+        return matrix;
+    }
+}
@@ -0,0 +1,51 @@
+package com.mediroute.unit.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.mediroute.service.distance.OsrmTableDecoder;
+import com.mediroute.service.distance.RoadMatrix;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OsrmTableDecoderTest {
+
+    private static final String BODY = """
+            {"code":"Ok",
+             "sources":[{"location":[-104.99,39.74],"name":"Main"}],
+             "durations":[[0,95.5,null],[101.2,0,40]],
+             "destinations":[{"location":[-105.01,39.75]}],
+             "distances":[[0,1200.4,null],[1310,0,520]]}
+            """;
+
+    @Test
+    void readsDistancesAndDurationsAtTheBlockOffset() throws Exception {
+        RoadMatrix matrix = new RoadMatrix(4, 5);
+
+        boolean decoded = OsrmTableDecoder.decode(new JsonFactory(), stream(BODY), matrix, 2, 1, 2, 3);
+
+        assertThat(decoded).isTrue();
+        assertThat(matrix.meters(2, 2)).isEqualTo(1200.4f);
+        assertThat(matrix.seconds(2, 2)).isEqualTo(95.5f);
+        assertThat(matrix.meters(3, 3)).isEqualTo(520f);
+        assertThat(matrix.isKnown(2, 3)).isFalse();
+        assertThat(matrix.isKnown(0, 0)).isFalse();
+    }
+
+    @Test
+    void ignoresCellsOutsideTheBlockAndReportsMissingDistances() throws Exception {
+        RoadMatrix matrix = new RoadMatrix(1, 2);
+
+        assertThat(OsrmTableDecoder.decode(new JsonFactory(), stream(BODY), matrix, 0, 0, 1, 2)).isTrue();
+        assertThat(matrix.meters(0, 1)).isEqualTo(1200.4f);
+
+        assertThat(OsrmTableDecoder.decode(new JsonFactory(),
+                stream("{\"code\":\"NoTable\",\"message\":\"x\"}"), new RoadMatrix(1, 1), 0, 0, 1, 1)).isFalse();
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,54 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.config.AppProps;
+import com.mediroute.service.distance.RoadEstimator;
+import com.mediroute.service.distance.RoadMatrix;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RoadEstimatorTest {
+
+    private static final double KM_PER_DEGREE_LAT = 111.195;
+
+    @Test
+    void usesDefaultCircuityUntilEnoughSamplesThenTheFittedOne() {
+        RoadEstimator estimator = new RoadEstimator(new AppProps());
+        double straightKm = 0.05 * KM_PER_DEGREE_LAT;
+        assertThat(estimator.roadKm(39.70, -104.99, 39.75, -104.99)).isCloseTo(straightKm * 1.3, within(0.01));
+
+        // 40 clinic -> home legs in Denver, all 1.5x the straight line at 36 km/h
+        List<String> clinics = new ArrayList<>();
+        List<String> homes = new ArrayList<>();
+        RoadMatrix observed = new RoadMatrix(40, 1);
+        for (int i = 0; i < 40; i++) {
+            double km = (0.03 + i * 0.001) * KM_PER_DEGREE_LAT;
+            clinics.add(String.format(Locale.US, "%.6f,%.6f", -104.99, 39.70 - (0.03 + i * 0.001)));
+            observed.setMeters(i, 0, (float) (km * 1500));
+            observed.setSeconds(i, 0, (float) (km * 1.5 * 100));
+        }
+        homes.add("-104.990000,39.700000");
+        estimator.observe(clinics, homes, observed);
+
+        assertThat(estimator.roadKm(39.70, -104.99, 39.75, -104.99)).isCloseTo(straightKm * 1.5, within(0.01));
+        assertThat(estimator.travelSeconds(39.70, -104.99, 39.75, -104.99, 12))
+                .isCloseTo(straightKm * 1.5 * 100, within(1.0));
+    }
+
+    @Test
+    void peakHoursScaleTravelTime() {
+        AppProps props = new AppProps();
+        props.getOsrm().setPeakHours(List.of(8));
+        props.getOsrm().setPeakTravelFactor(1.5);
+        RoadEstimator estimator = new RoadEstimator(props);
+
+        double offPeak = estimator.travelSeconds(39.70, -104.99, 39.75, -104.99, 12);
+        assertThat(estimator.travelSeconds(39.70, -104.99, 39.75, -104.99, 8)).isCloseTo(offPeak * 1.5, within(0.01));
+        assertThat(estimator.travelSeconds(39.70, -104.99, 39.75, -104.99, -1)).isEqualTo(offPeak);
+    }
+}
@@ -0,0 +1,108 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.config.AppProps;
+import com.mediroute.dto.RideStatus;
+import com.mediroute.dto.ScheduleDelta;
+import com.mediroute.entity.Ride;
+import com.mediroute.repository.RideRepository;
+import com.mediroute.service.ride.EnhancedMedicalTransportOptimizer;
+import com.mediroute.service.ride.EnhancedMedicalTransportOptimizer.OptimizationResult;
+import com.mediroute.service.ride.RollingHorizonDispatcher;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.mediroute.unit.service.RoutingFixtures.DAY;
+import static com.mediroute.unit.service.RoutingFixtures.ride;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RollingHorizonDispatcherTest {
+
+    private static final LocalDateTime NOW = DAY.plusHours(10);
+
+    private final AppProps props = new AppProps();
+    private final RideRepository rideRepository = mock(RideRepository.class);
+    private final RecordingOptimizer optimizer = new RecordingOptimizer();
+    private final RollingHorizonDispatcher dispatcher = new RollingHorizonDispatcher(rideRepository, optimizer, props);
+
+    @Test
+    void plansOpenRidesAndReplansProvisionalOnesPastTheCommitPoint() {
+        when(rideRepository.findUnassignedRidesInTimeRangeWithPatient(NOW.minusMinutes(15), NOW.plusHours(3)))
+                .thenReturn(List.of(ride(10L, NOW.plusHours(1), 39.70, -104.90)));
+        when(rideRepository.findByStatusAndOptimizationBatchIdStartingWithAndPickupTimeBetween(RideStatus.ASSIGNED,
+                "HORIZON_", NOW.plusMinutes(45), NOW.plusHours(3)))
+                .thenReturn(List.of(ride(20L, NOW.plusHours(2), 39.70, -104.90)));
+
+        OptimizationResult result = dispatcher.dispatch(NOW);
+
+        assertThat(optimizer.deltas).hasSize(1);
+        assertThat(optimizer.deltas.get(0).getAddedRideIds()).containsExactly(10L);
+        assertThat(optimizer.deltas.get(0).getChangedRideIds()).containsExactly(20L);
+        assertThat(result.getTotalRides()).isEqualTo(2);
+    }
+
+    @Test
+    void plansUnassignedRidesWhosePickupJustPassed() {
+        Ride late = ride(10L, NOW.minusMinutes(5), 39.70, -104.90);
+        when(rideRepository.findUnassignedRidesInTimeRangeWithPatient(NOW.minusMinutes(15), NOW.plusHours(3)))
+                .thenReturn(List.of(late));
+
+        OptimizationResult result = dispatcher.dispatch(NOW);
+
+        assertThat(optimizer.deltas).hasSize(1);
+        assertThat(optimizer.deltas.get(0).getAddedRideIds()).containsExactly(10L);
+        assertThat(result.getTotalRides()).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsATickWhileAnotherIsRunning() throws Exception {
+        when(rideRepository.findUnassignedRidesInTimeRangeWithPatient(NOW.minusMinutes(15), NOW.plusHours(3)))
+                .thenReturn(List.of(ride(10L, NOW.plusHours(1), 39.70, -104.90)));
+        optimizer.blockUntil = new CountDownLatch(1);
+        Thread first = new Thread(() -> dispatcher.dispatch(NOW));
+        first.start();
+        assertThat(optimizer.entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> dispatcher.dispatch(NOW)).isInstanceOf(IllegalStateException.class);
+
+        optimizer.blockUntil.countDown();
+        first.join();
+        optimizer.blockUntil = null;
+        dispatcher.dispatch(NOW);
+        assertThat(optimizer.deltas).hasSize(2);
+    }
+
+    /** Records the deltas a tick hands over, optionally holding the tick until released. */
+    private static class RecordingOptimizer extends EnhancedMedicalTransportOptimizer {
+
+        final List<ScheduleDelta> deltas = new CopyOnWriteArrayList<>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        volatile CountDownLatch blockUntil;
+
+        RecordingOptimizer() {
+            super(null, null, null, null, null, null, null, null, null, null, null, null, null);
+        }
+
+        @Override
+        public OptimizationResult repairSchedule(ScheduleDelta delta, String batchPrefix, String method) {
+            deltas.add(delta);
+            entered.countDown();
+            CountDownLatch latch = blockUntil;
+            if (latch != null) {
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return OptimizationResult.create(batchPrefix + "_TEST", 0);
+        }
+    }
+}
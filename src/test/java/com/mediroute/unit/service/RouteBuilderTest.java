@@ -0,0 +1,156 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.config.AppProps;
+import com.mediroute.entity.Driver;
+import com.mediroute.entity.Patient;
+import com.mediroute.entity.Ride;
+import com.mediroute.service.ride.routing.OptimizationSnapshot;
+import com.mediroute.service.ride.routing.RouteBuilder;
+import com.mediroute.service.ride.routing.RoutePlan;
+import com.mediroute.service.ride.routing.RoutingProblem;
+import com.mediroute.service.ride.routing.TravelMatrix;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.List;
+
+import static com.mediroute.unit.service.RoutingFixtures.DAY;
+import static com.mediroute.unit.service.RoutingFixtures.driver;
+import static com.mediroute.unit.service.RoutingFixtures.ride;
+import static com.mediroute.unit.service.RoutingFixtures.rideIds;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RouteBuilderTest {
+
+    private final RouteBuilder routeBuilder = new RouteBuilder(new AppProps());
+
+    private final List<Driver> drivers = List.of(
+            driver(1L, 39.70, -104.90),
+            driver(2L, 39.80, -104.80));
+
+    @Test
+    void buildKeepsEveryPickupInsideItsWindow() {
+        // One driver cannot make both 9:00 pickups, 11 km apart, within 15 minutes of the time
+        List<Ride> rides = List.of(ride(10L, 9, 39.701, -104.901), ride(11L, 9, 39.801, -104.801));
+
+        RoutePlan plan = routeBuilder.build(RoutingFixtures.snapshotOf(rides, List.of(drivers.get(0))));
+
+        assertThat(rideIds(plan, 1L)).containsExactly(10L);
+        assertThat(plan.getUnassigned()).containsOnlyKeys(11L);
+        RoutePlan.Stop stop = plan.getRoutes().get(1L).get(0);
+        assertThat(stop.pickupEta()).isBetween(DAY.withHour(8).withMinute(45), DAY.withHour(9).withMinute(15));
+        assertThat(stop.dropoffEta()).isAfter(stop.pickupEta());
+    }
+
+    @Test
+    void buildKeepsRoutesInsideDriverShifts() {
+        drivers.get(0).setShiftStart(LocalTime.of(8, 0));
+        drivers.get(0).setShiftEnd(LocalTime.of(12, 0));
+        List<Ride> rides = List.of(ride(10L, 9, 39.701, -104.901), ride(11L, 14, 39.702, -104.902));
+
+        RoutePlan plan = routeBuilder.build(snapshotOf(rides));
+
+        assertThat(rideIds(plan, 1L)).containsExactly(10L);
+        assertThat(rideIds(plan, 2L)).containsExactly(11L);
+    }
+
+    @Test
+    void buildStopsGivingDriversRidesAtTheirDailyCap() {
+        drivers.get(0).setMaxDailyRides(2);
+        List<Ride> rides = List.of(ride(10L, 9, 39.701, -104.901), ride(11L, 11, 39.702, -104.902),
+                ride(12L, 13, 39.703, -104.903));
+
+        RoutePlan plan = routeBuilder.build(snapshotOf(rides));
+
+        assertThat(rideIds(plan, 1L)).hasSize(2);
+        assertThat(rideIds(plan, 2L)).hasSize(1);
+        assertThat(plan.getUnassigned()).isEmpty();
+    }
+
+    @Test
+    void repairInsertsNewRidesWithoutMovingRoutedOnes() {
+        List<Ride> rides = List.of(
+                ride(10L, 9, 39.701, -104.901),
+                ride(11L, 11, 39.702, -104.902),
+                // Closer to driver 1, but already on driver 2's route
+                ride(12L, 9, 39.703, -104.903),
+                ride(13L, 10, 39.701, -104.899));
+        int[] routeOf = {0, 0, 1, -1};
+
+        RoutePlan plan = routeBuilder.repair(snapshotOf(rides), routeOf);
+
+        assertThat(rideIds(plan, 1L)).containsExactly(10L, 13L, 11L);
+        assertThat(rideIds(plan, 2L)).containsExactly(12L);
+        assertThat(plan.getUnassigned()).isEmpty();
+    }
+
+    @Test
+    void repairReportsRidesNoRouteCanTake() {
+        Ride wheelchair = ride(14L, 10, 39.701, -104.899);
+        Patient patient = new Patient();
+        patient.setRequiresWheelchair(true);
+        wheelchair.setPatient(patient);
+        List<Ride> rides = List.of(ride(10L, 9, 39.701, -104.901), wheelchair);
+
+        RoutePlan plan = routeBuilder.repair(snapshotOf(rides), new int[]{0, -1});
+
+        assertThat(rideIds(plan, 1L)).containsExactly(10L);
+        assertThat(plan.getUnassigned()).containsOnlyKeys(14L);
+    }
+
+    @Test
+    void repairPricesInsertionsWithTheGivenTravelTimes() {
+        List<Ride> rides = List.of(ride(10L, 9, 39.701, -104.901));
+
+        assertThat(rideIds(routeBuilder.repair(snapshotOf(rides), new int[]{-1}), 1L)).containsExactly(10L);
+        RoutePlan plan = routeBuilder.repair(snapshotOf(rides), new int[]{-1}, slowFromDriverOne());
+
+        assertThat(rideIds(plan, 2L)).containsExactly(10L);
+        assertThat(rideIds(plan, 1L)).isEmpty();
+    }
+
+    @Test
+    void buildPricesRoutesWithTheGivenTravelTimes() {
+        List<Ride> rides = List.of(ride(10L, 9, 39.701, -104.901));
+
+        RoutePlan plan = routeBuilder.build(snapshotOf(rides), DAY.toLocalDate(), slowFromDriverOne());
+
+        assertThat(rideIds(plan, 2L)).containsExactly(10L);
+        assertThat(rideIds(plan, 1L)).isEmpty();
+    }
+
+    @Test
+    void warmStartKeepsEarlierDriversWhereTheyStillFit() {
+        List<Ride> rides = List.of(
+                ride(10L, 11, 39.801, -104.801),
+                // Driver 2 had this and 12; it cannot be at both pickups at 9:00
+                ride(11L, 9, 39.802, -104.802),
+                ride(12L, 9, 39.702, -104.902),
+                ride(13L, 10, 39.701, -104.899),
+                // Closer to driver 1, but driver 2 had it and still can take it
+                ride(14L, 15, 39.703, -104.903));
+
+        RoutePlan plan = routeBuilder.warmStart(snapshotOf(rides), new int[]{1, 1, 1, -1, 1});
+
+        assertThat(rideIds(plan, 1L)).containsExactly(12L, 13L);
+        assertThat(rideIds(plan, 2L)).containsExactly(11L, 10L, 14L);
+        assertThat(plan.getUnassigned()).isEmpty();
+    }
+
+    /** Driver 1's base is next to the first pickup, but its roads out are slow. */
+    private static RoutingProblem.TravelTimes slowFromDriverOne() {
+        return (lat, lng) -> {
+            TravelMatrix estimate = TravelMatrix.haversine(lat, lng, 25);
+            int n = lat.length;
+            int[] seconds = new int[n * n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) seconds[i * n + j] = i == 0 && j != 0 ? 3 * 3600 : estimate.seconds(i, j);
+            }
+            return new TravelMatrix(n, seconds);
+        };
+    }
+
+    private OptimizationSnapshot snapshotOf(List<Ride> rides) {
+        return RoutingFixtures.snapshotOf(rides, drivers);
+    }
+}
@@ -0,0 +1,66 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.config.AppProps;
+import com.mediroute.entity.Driver;
+import com.mediroute.entity.Ride;
+import com.mediroute.service.ride.routing.OptimizationSnapshot;
+import com.mediroute.service.ride.routing.RouteImprover;
+import com.mediroute.service.ride.routing.RoutePlan;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.mediroute.unit.service.RoutingFixtures.driver;
+import static com.mediroute.unit.service.RoutingFixtures.ride;
+import static com.mediroute.unit.service.RoutingFixtures.rideIds;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RouteImproverTest {
+
+    // The iteration budget ends every run long before the time budget, so results do not depend on timing
+    private static final Duration BUDGET = Duration.ofMinutes(1);
+    private static final int ITERATIONS = 2_000;
+
+    private final RouteImprover routeImprover = new RouteImprover(new AppProps());
+
+    private final List<Driver> drivers = List.of(
+            driver(1L, 39.70, -104.90),
+            driver(2L, 39.76, -104.84));
+
+    @Test
+    void movesRidesToTheDriverThatServesThemCheaper() {
+        List<Ride> rides = List.of(
+                ride(10L, 9, 39.701, -104.901),
+                // Next to driver 2 but starting on driver 1's route
+                ride(11L, 11, 39.761, -104.841),
+                ride(12L, 13, 39.762, -104.842));
+
+        RoutePlan plan = routeImprover.improve(snapshotOf(rides), new int[]{0, 0, 0}, BUDGET, ITERATIONS, null);
+
+        assertThat(rideIds(plan, 1L)).containsExactly(10L);
+        assertThat(rideIds(plan, 2L)).containsExactly(11L, 12L);
+        assertThat(plan.getUnassigned()).isEmpty();
+    }
+
+    @Test
+    void placesRidesTheStartLeftOutAndPublishesAsItGoes() {
+        List<Ride> rides = List.of(
+                ride(10L, 9, 39.701, -104.901),
+                ride(11L, 10, 39.761, -104.841));
+        List<RouteImprover.Progress> published = new ArrayList<>();
+
+        RoutePlan plan = routeImprover.improve(snapshotOf(rides), new int[]{0, -1}, BUDGET, ITERATIONS,
+                (best, progress) -> published.add(progress));
+
+        assertThat(rideIds(plan, 1L)).containsExactly(10L);
+        assertThat(rideIds(plan, 2L)).containsExactly(11L);
+        assertThat(published.get(0).finished()).isFalse();
+        assertThat(published.get(published.size() - 1).finished()).isTrue();
+    }
+
+    private OptimizationSnapshot snapshotOf(List<Ride> rides) {
+        return RoutingFixtures.snapshotOf(rides, drivers);
+    }
+}
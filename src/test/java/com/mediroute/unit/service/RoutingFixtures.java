@@ -0,0 +1,53 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.entity.Driver;
+import com.mediroute.entity.Ride;
+import com.mediroute.entity.embeddable.Location;
+import com.mediroute.service.ride.routing.OptimizationSnapshot;
+import com.mediroute.service.ride.routing.RoutePlan;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Drivers, rides and plan helpers shared by the routing engine tests. Rides are sedan rides on
+ * {@link #DAY} whose dropoff is about 1 km north of the pickup.
+ */
+final class RoutingFixtures {
+
+    static final LocalDateTime DAY = LocalDateTime.of(2025, 3, 4, 0, 0);
+
+    private RoutingFixtures() {
+    }
+
+    static OptimizationSnapshot snapshotOf(List<Ride> rides, List<Driver> drivers) {
+        return OptimizationSnapshot.of(rides, drivers, ride -> "sedan");
+    }
+
+    static List<Long> rideIds(RoutePlan plan, Long driverId) {
+        return plan.getRoutes().getOrDefault(driverId, List.of()).stream().map(RoutePlan.Stop::rideId).toList();
+    }
+
+    static Driver driver(Long id, double lat, double lng) {
+        Driver driver = new Driver();
+        driver.setId(id);
+        driver.setBaseLat(lat);
+        driver.setBaseLng(lng);
+        driver.setActive(true);
+        driver.setIsTrainingComplete(true);
+        return driver;
+    }
+
+    static Ride ride(Long id, int hour, double lat, double lng) {
+        return ride(id, DAY.withHour(hour), lat, lng);
+    }
+
+    static Ride ride(Long id, LocalDateTime pickupTime, double lat, double lng) {
+        Ride ride = new Ride();
+        ride.setId(id);
+        ride.setPickupTime(pickupTime);
+        ride.setPickupLocation(new Location("pickup " + id, lat, lng));
+        ride.setDropoffLocation(new Location("dropoff " + id, lat + 0.01, lng));
+        return ride;
+    }
+}
@@ -0,0 +1,116 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.config.AppProps;
+import com.mediroute.entity.Driver;
+import com.mediroute.entity.Ride;
+import com.mediroute.service.ride.routing.OptimizationSnapshot;
+import com.mediroute.service.ride.routing.RoutePlan;
+import com.mediroute.service.ride.routing.RoutingProblem;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.List;
+
+import static com.mediroute.unit.service.RoutingFixtures.DAY;
+import static com.mediroute.unit.service.RoutingFixtures.driver;
+import static com.mediroute.unit.service.RoutingFixtures.ride;
+import static com.mediroute.unit.service.RoutingFixtures.snapshotOf;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoutingProblemTest {
+
+    private final AppProps.Optimizer settings = new AppProps().getOptimizer();
+
+    @Test
+    void timeWindowsAreSecondsFromMidnightOfTheFirstRideDay() {
+        Ride late = ride(11L, DAY.plusDays(1).withHour(10), 39.71, -104.91);
+        late.setPickupWindowStart(DAY.plusDays(1).withHour(9));
+        late.setPickupWindowEnd(DAY.plusDays(1).withHour(11));
+        List<Ride> rides = List.of(ride(10L, DAY.plusDays(1).withHour(8), 39.70, -104.90), late);
+
+        RoutingProblem problem = build(rides, List.of(driver(1L, 39.70, -104.90)));
+
+        // A pickup time without a window gets 15 minutes either side
+        assertThat(problem.pickupEarliest(0)).isEqualTo((8 * 60 - 15) * 60L);
+        assertThat(problem.pickupLatest(0)).isEqualTo((8 * 60 + 15) * 60L);
+        assertThat(problem.pickupEarliest(1)).isEqualTo(9 * 3600L);
+        assertThat(problem.pickupLatest(1)).isEqualTo(11 * 3600L);
+        assertThat(problem.dropoffLatest(1)).isGreaterThan(problem.pickupLatest(1));
+        assertThat(problem.at(problem.pickupEarliest(1))).isEqualTo(DAY.plusDays(1).withHour(9));
+    }
+
+    @Test
+    void anchorsTimesOnThePickupDayWhenTheWindowOpensTheDayBefore() {
+        // The default window of a 00:05 pickup opens at 23:50 the day before
+        Driver early = driver(1L, 39.70, -104.90);
+        early.setShiftStart(LocalTime.of(0, 0));
+        early.setShiftEnd(LocalTime.of(8, 0));
+        OptimizationSnapshot snapshot = snapshotOf(List.of(ride(10L, DAY.withMinute(5), 39.70, -104.90)), List.of(early));
+
+        for (RoutingProblem problem : List.of(
+                RoutingProblem.build(snapshot, DAY.toLocalDate(), settings, new RoutePlan(),
+                        RoutingProblem.TravelTimes.straightLine(settings)),
+                RoutingProblem.build(snapshot, settings, new RoutePlan()))) {
+            assertThat(problem.pickupEarliest(0)).isZero();
+            assertThat(problem.pickupLatest(0)).isEqualTo(20 * 60L);
+            assertThat(problem.at(problem.pickupLatest(0))).isEqualTo(DAY.withMinute(20));
+            assertThat(problem.shiftStart(0)).isZero();
+            assertThat(problem.shiftEnd(0)).isEqualTo(8 * 3600L);
+        }
+    }
+
+    @Test
+    void shiftsArePlacedOnTheRideDay() {
+        Driver day = driver(1L, 39.70, -104.90);
+        day.setShiftStart(LocalTime.of(8, 0));
+        day.setShiftEnd(LocalTime.of(16, 0));
+        Driver overnight = driver(2L, 39.70, -104.90);
+        overnight.setShiftStart(LocalTime.of(22, 0));
+        overnight.setShiftEnd(LocalTime.of(6, 0));
+        Driver anytime = driver(3L, 39.70, -104.90);
+
+        RoutingProblem problem = build(List.of(ride(10L, 9, 39.70, -104.90)), List.of(day, overnight, anytime));
+
+        assertThat(problem.shiftStart(0)).isEqualTo(8 * 3600L);
+        assertThat(problem.shiftEnd(0)).isEqualTo(16 * 3600L);
+        assertThat(problem.shiftStart(1)).isEqualTo(22 * 3600L);
+        assertThat(problem.shiftEnd(1)).isEqualTo(30 * 3600L);
+        assertThat(problem.shiftStart(2)).isZero();
+        assertThat(problem.shiftEnd(2)).isEqualTo(problem.horizon());
+    }
+
+    @Test
+    void capsRidesPerVehicleAtTheDriversDailyLimit() {
+        Driver capped = driver(1L, 39.70, -104.90);
+        capped.setMaxDailyRides(2);
+        Driver uncapped = driver(2L, 39.70, -104.90);
+        uncapped.setMaxDailyRides(null);
+        List<Ride> rides = List.of(ride(10L, 9, 39.70, -104.90), ride(11L, 10, 39.70, -104.90),
+                ride(12L, 11, 39.70, -104.90));
+
+        RoutingProblem problem = build(rides, List.of(capped, uncapped));
+
+        assertThat(problem.maxRides(0)).isEqualTo(2);
+        assertThat(problem.maxRides(1)).isEqualTo(3);
+    }
+
+    @Test
+    void leavesOutRidesThatCannotBeRouted() {
+        Ride noPickup = ride(11L, 9, 39.70, -104.90);
+        noPickup.getPickupLocation().setLatitude(null);
+        Ride noTime = ride(12L, 9, 39.70, -104.90);
+        noTime.setPickupTime(null);
+        RoutePlan plan = new RoutePlan();
+
+        RoutingProblem problem = RoutingProblem.build(snapshotOf(List.of(ride(10L, 9, 39.70, -104.90), noPickup,
+                noTime), List.of(driver(1L, 39.70, -104.90))), settings, plan);
+
+        assertThat(problem.rideCount()).isEqualTo(1);
+        assertThat(problem.rideId(0)).isEqualTo(10L);
+        assertThat(plan.getUnassigned()).containsOnlyKeys(11L, 12L);
+    }
+
+    private RoutingProblem build(List<Ride> rides, List<Driver> drivers) {
+        return RoutingProblem.build(snapshotOf(rides, drivers), settings, new RoutePlan());
+    }
+}
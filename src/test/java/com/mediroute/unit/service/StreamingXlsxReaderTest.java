@@ -0,0 +1,63 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.service.parser.StreamingXlsxReader;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingXlsxReaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void streamsRowsWithGapsAndKeepsTimeSerials() throws Exception {
+        Path file = dir.resolve("rides.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("Rides");
+            CellStyle timeStyle = workbook.createCellStyle();
+            timeStyle.setDataFormat(workbook.createDataFormat().getFormat("h:mm AM/PM"));
+
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("NAME");
+            header.createCell(1).setCellValue("PHONE");
+            header.createCell(2).setCellValue("TIME");
+
+            Row first = sheet.createRow(1);
+            first.createCell(0).setCellValue("Jane Doe");
+            first.createCell(1).setCellValue(3035551234d);
+            first.createCell(2).setCellValue(0.375); // 9:00 AM
+            first.getCell(2).setCellStyle(timeStyle);
+
+            // Row 2 is missing entirely; row 3 has no PHONE cell
+            Row third = sheet.createRow(3);
+            third.createCell(0).setCellValue("John Roe");
+            third.createCell(2).setCellValue("2:15 PM");
+            workbook.write(out);
+        }
+
+        List<Integer> indices = new ArrayList<>();
+        List<String[]> rows = new ArrayList<>();
+        int total = StreamingXlsxReader.read(file, (rowIndex, cells) -> {
+            indices.add(rowIndex);
+            rows.add(cells);
+        });
+
+        assertThat(total).isEqualTo(4);
+        assertThat(indices).containsExactly(0, 1, 3);
+        assertThat(rows.get(0)).containsExactly("NAME", "PHONE", "TIME");
+        assertThat(rows.get(1)).containsExactly("Jane Doe", "3035551234", "0.375");
+        assertThat(rows.get(2)).containsExactly("John Roe", "", "2:15 PM");
+    }
+}
@@ -0,0 +1,62 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.service.parser.TimeOfDayParser;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeOfDayParserTest {
+
+    private final TimeOfDayParser parser = new TimeOfDayParser();
+
+    @Test
+    void parsesTheFormatsUploadsUse() {
+        assertThat(parser.parse("08:30")).isEqualTo(LocalTime.of(8, 30));
+        assertThat(parser.parse("8:30")).isEqualTo(LocalTime.of(8, 30));
+        assertThat(parser.parse("13:05:30")).isEqualTo(LocalTime.of(13, 5, 30));
+        assertThat(parser.parse("8:30 PM")).isEqualTo(LocalTime.of(20, 30));
+        assertThat(parser.parse("12:15 a.m.")).isEqualTo(LocalTime.of(0, 15));
+        assertThat(parser.parse("0830")).isEqualTo(LocalTime.of(8, 30));
+        assertThat(parser.parse("830pm")).isEqualTo(LocalTime.of(20, 30));
+        assertThat(parser.parse("9 AM")).isEqualTo(LocalTime.of(9, 0));
+        assertThat(parser.parse("at 7:45")).isEqualTo(LocalTime.of(7, 45));
+        assertThat(parser.parse("@ 0700")).isEqualTo(LocalTime.of(7, 0));
+        assertThat(parser.parse("8.30")).isEqualTo(LocalTime.of(8, 30));
+        assertThat(parser.parse("10.15")).isEqualTo(LocalTime.of(10, 15));
+        assertThat(parser.parse("08.45")).isEqualTo(LocalTime.of(8, 45));
+        assertThat(parser.parse("8.30 PM")).isEqualTo(LocalTime.of(20, 30));
+        // Excel serials: the fraction of the day is the time
+        assertThat(parser.parse("0.3541666666666667")).isEqualTo(LocalTime.of(8, 30));
+        assertThat(parser.parse("45123.75")).isEqualTo(LocalTime.of(18, 0));
+    }
+
+    @Test
+    void rejectsWhatIsNotATime() {
+        assertThat(parser.parse("")).isNull();
+        assertThat(parser.parse("   ")).isNull();
+        assertThat(parser.parse(null)).isNull();
+        assertThat(parser.parse("not a time")).isNull();
+        assertThat(parser.parse("25:00")).isNull();
+        assertThat(parser.parse("8:75")).isNull();
+        assertThat(parser.parse("13:00 PM")).isNull();
+        assertThat(parser.parse("12345")).isNull();
+        assertThat(parser.parse("8:3")).isNull();
+    }
+
+    @Test
+    void remembersTheLastFormatThatWorked() {
+        assertThat(parser.parse("0830")).isEqualTo(LocalTime.of(8, 30));
+        assertThat(parser.lastFormat()).isEqualTo(TimeOfDayParser.Format.COMPACT);
+        assertThat(parser.parse("not a time")).isNull();
+        assertThat(parser.lastFormat()).isEqualTo(TimeOfDayParser.Format.COMPACT);
+        assertThat(parser.parse("0.5")).isEqualTo(LocalTime.NOON);
+        assertThat(parser.lastFormat()).isEqualTo(TimeOfDayParser.Format.EXCEL_SERIAL);
+        // Dotted clock times are not serials, even right after one
+        assertThat(parser.parse("8.30")).isEqualTo(LocalTime.of(8, 30));
+        assertThat(parser.parse("10.15")).isEqualTo(LocalTime.of(10, 15));
+        assertThat(parser.lastFormat()).isEqualTo(TimeOfDayParser.Format.CLOCK);
+        assertThat(parser.parse("45123.75")).isEqualTo(LocalTime.of(18, 0));
+    }
+}
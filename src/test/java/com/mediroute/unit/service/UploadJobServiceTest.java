@@ -0,0 +1,190 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.dto.ParseResult;
+import com.mediroute.dto.UploadJobDto;
+import com.mediroute.entity.UploadJob;
+import com.mediroute.repository.UploadJobRepository;
+import com.mediroute.service.parser.ExcelParserService;
+import com.mediroute.service.parser.UploadJobService;
+import com.mediroute.service.parser.UploadProgress;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UploadJobServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 4);
+
+    /** Job rows by id, standing in for the table. */
+    private final Map<Long, UploadJob> rows = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final ExcelParserService parser = mock(ExcelParserService.class);
+    private final UploadJobService service = new UploadJobService(jobRepository(), parser);
+
+    @AfterEach
+    void signOut() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void submittedUploadRunsInTheBackgroundAndRecordsItsOutcome() throws Exception {
+        when(parser.parseUpload(any(), any(), any(), any())).thenAnswer(invocation -> {
+            UploadProgress progress = invocation.getArgument(3);
+            progress.start(UploadJob.Phase.PARSE, 3);
+            progress.update(UploadJob.Phase.PARSE, 3, 3);
+            return ParseResult.builder().rides(List.of()).totalRows(3).successfulRows(2).skippedRows(1).build();
+        });
+        signInTo(1L);
+
+        UploadJob job = service.submit(csv(), DAY, false);
+        assertThat(job.getStatus()).isEqualTo(UploadJob.JobStatus.PENDING);
+        assertThat(job.getOrgId()).isEqualTo(1L);
+
+        UploadJobDto done = awaitFinished(job.getId());
+        assertThat(done.getStatus()).isEqualTo(UploadJob.JobStatus.COMPLETED);
+        assertThat(done.getPhase()).isEqualTo(UploadJob.Phase.PARSE);
+        assertThat(done.getTotalRows()).isEqualTo(3);
+        assertThat(done.getSuccessfulRows()).isEqualTo(2);
+        assertThat(done.getSkippedRows()).isEqualTo(1);
+        assertThat(done.getCompletedAt()).isNotNull();
+        assertThat(rows.get(job.getId()).getStatus()).isEqualTo(UploadJob.JobStatus.COMPLETED);
+    }
+
+    @Test
+    void aFailedPhaseFailsTheJobWithItsError() throws Exception {
+        when(parser.parseUpload(any(), any(), any(), any())).thenAnswer(invocation -> {
+            throw new IllegalStateException("Missing PICK UP column");
+        });
+        signInTo(1L);
+
+        UploadJob job = service.submit(csv(), DAY, false);
+
+        UploadJobDto done = awaitFinished(job.getId());
+        assertThat(done.getStatus()).isEqualTo(UploadJob.JobStatus.FAILED);
+        assertThat(done.getError()).isEqualTo("Missing PICK UP column");
+    }
+
+    @Test
+    void awaitStatusAnswersAtOnceOnceTheJobHasFinished() throws Exception {
+        when(parser.parseUpload(any(), any(), any(), any())).thenAnswer(invocation ->
+                ParseResult.builder().rides(List.of()).build());
+        signInTo(1L);
+        UploadJob job = service.submit(csv(), DAY, false);
+        UploadJobDto done = awaitFinished(job.getId());
+
+        CompletableFuture<Optional<UploadJobDto>> status = service.awaitStatus(job.getId(), done.getVersion(),
+                Duration.ofMinutes(5));
+
+        assertThat(status.isDone()).isTrue();
+        assertThat(status.get().map(UploadJobDto::getStatus)).contains(UploadJob.JobStatus.COMPLETED);
+    }
+
+    @Test
+    void jobsAreOnlyVisibleToTheirOrganization() throws Exception {
+        when(parser.parseUpload(any(), any(), any(), any())).thenAnswer(invocation ->
+                ParseResult.builder().rides(List.of()).build());
+        signInTo(1L);
+        Long ownJob = service.submit(csv(), DAY, false).getId();
+        awaitFinished(ownJob);
+        SecurityContextHolder.clearContext();
+        Long unscopedJob = service.submit(csv(), DAY, false).getId();
+
+        assertThat(service.status(ownJob)).isEmpty();
+        assertThat(service.status(unscopedJob)).isPresent();
+
+        signInTo(2L);
+        assertThat(service.status(ownJob)).isEmpty();
+        assertThat(service.status(unscopedJob)).isEmpty();
+        assertThat(service.awaitStatus(ownJob, 0, Duration.ofMinutes(5)).get()).isEmpty();
+        assertThat(service.subscribe(ownJob)).isEmpty();
+
+        signInTo(1L);
+        assertThat(service.status(ownJob)).isPresent();
+        assertThat(service.status(unscopedJob)).isEmpty();
+    }
+
+    @Test
+    void jobsLeftUnfinishedByARestartAreFailed() {
+        UploadJob pending = row(UploadJob.JobStatus.PENDING);
+        UploadJob running = row(UploadJob.JobStatus.RUNNING);
+        UploadJob completed = row(UploadJob.JobStatus.COMPLETED);
+
+        service.failInterruptedJobs();
+
+        assertThat(pending.getStatus()).isEqualTo(UploadJob.JobStatus.FAILED);
+        assertThat(running.getStatus()).isEqualTo(UploadJob.JobStatus.FAILED);
+        assertThat(running.getError()).contains("restart");
+        assertThat(running.getCompletedAt()).isNotNull();
+        assertThat(completed.getStatus()).isEqualTo(UploadJob.JobStatus.COMPLETED);
+        assertThat(completed.getError()).isNull();
+    }
+
+    /** Long-poll until the job has finished, as a client would. */
+    private UploadJobDto awaitFinished(Long jobId) throws Exception {
+        long since = Long.MIN_VALUE;
+        for (int poll = 0; poll < 50; poll++) {
+            UploadJobDto dto = service.awaitStatus(jobId, since, Duration.ofSeconds(1)).get(5, TimeUnit.SECONDS)
+                    .orElseThrow();
+            if (dto.getCompletedAt() != null) return dto;
+            since = dto.getVersion();
+        }
+        throw new AssertionError("Upload job " + jobId + " did not finish");
+    }
+
+    private UploadJobRepository jobRepository() {
+        UploadJobRepository jobs = mock(UploadJobRepository.class);
+        when(jobs.save(any())).thenAnswer(invocation -> {
+            UploadJob job = invocation.getArgument(0);
+            if (job.getId() == null) job.setId(ids.incrementAndGet());
+            rows.put(job.getId(), job);
+            return job;
+        });
+        when(jobs.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(jobs.findById(any())).thenAnswer(invocation -> Optional.ofNullable(rows.get(invocation.getArgument(0))));
+        when(jobs.findByStatusIn(any())).thenAnswer(invocation -> {
+            Collection<UploadJob.JobStatus> statuses = invocation.getArgument(0);
+            return new ArrayList<>(rows.values().stream().filter(job -> statuses.contains(job.getStatus())).toList());
+        });
+        return jobs;
+    }
+
+    private UploadJob row(UploadJob.JobStatus status) {
+        UploadJob job = new UploadJob();
+        job.setId(ids.incrementAndGet());
+        job.setStatus(status);
+        rows.put(job.getId(), job);
+        return job;
+    }
+
+    private static MockMultipartFile csv() {
+        return new MockMultipartFile("file", "rides.csv", "text/csv",
+                "NAME,PHONE,PICK UP,DROP OFF,TIME\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void signInTo(Long orgId) {
+        UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken("dispatcher", null,
+                List.of());
+        auth.setDetails(Map.of("orgId", orgId));
+        SecurityContextHolder.getContext().setAuthentication(auth);
+    }
+}
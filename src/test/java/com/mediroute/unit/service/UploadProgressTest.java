@@ -0,0 +1,35 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.entity.UploadJob;
+import com.mediroute.service.parser.UploadProgress;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UploadProgressTest {
+
+    @Test
+    void everyChangeBumpsTheVersionAndShowsInTheSnapshot() {
+        UploadProgress progress = new UploadProgress();
+        long initial = progress.version();
+
+        progress.start(UploadJob.Phase.PARSE, 0);
+        progress.advance(UploadJob.Phase.PARSE, 500);
+        progress.advance(UploadJob.Phase.PARSE, 250);
+        progress.start(UploadJob.Phase.GEOCODE, 0);
+        progress.update(UploadJob.Phase.GEOCODE, 3, 10);
+
+        UploadProgress.Snapshot snapshot = progress.snapshot();
+        assertThat(snapshot.version()).isEqualTo(initial + 5);
+        assertThat(snapshot.status()).isEqualTo(UploadJob.JobStatus.RUNNING);
+        assertThat(snapshot.phase()).isEqualTo(UploadJob.Phase.GEOCODE);
+        assertThat(snapshot.phases().get(UploadJob.Phase.PARSE)).isEqualTo(new UploadProgress.PhaseCount(750, 0));
+        assertThat(snapshot.phases().get(UploadJob.Phase.GEOCODE)).isEqualTo(new UploadProgress.PhaseCount(3, 10));
+        assertThat(progress.isFinished()).isFalse();
+
+        progress.finish(UploadJob.JobStatus.FAILED);
+        assertThat(progress.isFinished()).isTrue();
+        assertThat(progress.snapshot().version()).isGreaterThan(snapshot.version());
+        assertThat(progress.snapshot().phase()).isEqualTo(UploadJob.Phase.GEOCODE);
+    }
+}
@@ -0,0 +1,77 @@
+package com.mediroute.unit.service;
+
+import com.mediroute.config.AppProps;
+import com.mediroute.entity.Driver;
+import com.mediroute.entity.Ride;
+import com.mediroute.service.ride.routing.RoutePlan;
+import com.mediroute.service.ride.routing.VrptwRouteSolver;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.List;
+
+import static com.mediroute.unit.service.RoutingFixtures.DAY;
+import static com.mediroute.unit.service.RoutingFixtures.driver;
+import static com.mediroute.unit.service.RoutingFixtures.ride;
+import static com.mediroute.unit.service.RoutingFixtures.rideIds;
+import static com.mediroute.unit.service.RoutingFixtures.snapshotOf;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class VrptwRouteSolverTest {
+
+    private VrptwRouteSolver solver;
+
+    private final List<Driver> drivers = List.of(
+            driver(1L, 39.70, -104.90),
+            driver(2L, 39.80, -104.80));
+
+    @BeforeEach
+    void setUp() {
+        AppProps props = new AppProps();
+        props.getOptimizer().setSolveTimeLimitSeconds(1);
+        solver = new VrptwRouteSolver(props);
+        assumeTrue(solver.isAvailable(), "OR-Tools native libraries are not available on this host");
+    }
+
+    @Test
+    void keepsEveryPickupInsideItsWindow() {
+        // One driver cannot make both 9:00 pickups, 11 km apart, within 15 minutes of the time
+        List<Ride> rides = List.of(ride(10L, 9, 39.701, -104.901), ride(11L, 9, 39.801, -104.801));
+
+        RoutePlan plan = solver.solve(snapshotOf(rides, List.of(drivers.get(0))));
+
+        assertThat(plan.getAssignedRideCount()).isEqualTo(1);
+        assertThat(plan.getUnassigned()).hasSize(1);
+        RoutePlan.Stop stop = plan.getRoutes().get(1L).get(0);
+        assertThat(stop.pickupEta()).isBetween(DAY.withHour(8).withMinute(45), DAY.withHour(9).withMinute(15));
+        assertThat(stop.dropoffEta()).isAfter(stop.pickupEta());
+    }
+
+    @Test
+    void keepsRoutesInsideDriverShifts() {
+        drivers.get(0).setShiftStart(LocalTime.of(8, 0));
+        drivers.get(0).setShiftEnd(LocalTime.of(12, 0));
+        List<Ride> rides = List.of(ride(10L, 9, 39.701, -104.901), ride(11L, 14, 39.702, -104.902));
+
+        RoutePlan plan = solver.solve(snapshotOf(rides, drivers));
+
+        assertThat(rideIds(plan, 2L)).contains(11L);
+        assertThat(rideIds(plan, 1L)).doesNotContain(11L);
+        assertThat(plan.getUnassigned()).isEmpty();
+    }
+
+    @Test
+    void stopsGivingDriversRidesAtTheirDailyCap() {
+        drivers.get(0).setMaxDailyRides(2);
+        List<Ride> rides = List.of(ride(10L, 9, 39.701, -104.901), ride(11L, 11, 39.702, -104.902),
+                ride(12L, 13, 39.703, -104.903));
+
+        RoutePlan plan = solver.solve(snapshotOf(rides, drivers));
+
+        assertThat(rideIds(plan, 1L)).hasSize(2);
+        assertThat(rideIds(plan, 2L)).hasSize(1);
+        assertThat(plan.getUnassigned()).isEmpty();
+    }
+}